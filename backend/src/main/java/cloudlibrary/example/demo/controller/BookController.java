@@ -1,12 +1,36 @@
 package cloudlibrary.example.demo.controller;
 
+import cloudlibrary.example.demo.dto.BookDetail;
+import cloudlibrary.example.demo.dto.BookImportSummary;
+import cloudlibrary.example.demo.dto.BookPurgeStatus;
+import cloudlibrary.example.demo.dto.BookSearchHit;
+import cloudlibrary.example.demo.dto.BookSummary;
+import cloudlibrary.example.demo.dto.CursorPage;
+import cloudlibrary.example.demo.dto.PostFeedItem;
+import cloudlibrary.example.demo.dto.RatingDistribution;
+import cloudlibrary.example.demo.dto.RatingStats;
+import cloudlibrary.example.demo.dto.RatingSummary;
+import cloudlibrary.example.demo.dto.TopBooks;
+import cloudlibrary.example.demo.dto.VersionTag;
 import cloudlibrary.example.demo.model.Book;
+import cloudlibrary.example.demo.service.BookExportService;
+import cloudlibrary.example.demo.service.BookImportService;
+import cloudlibrary.example.demo.service.BookLeaderboardService;
 import cloudlibrary.example.demo.service.BookService;
+import cloudlibrary.example.demo.service.PostService;
 import cloudlibrary.example.demo.service.RatingService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import org.slf4j.Logger;
@@ -20,25 +44,76 @@ public class BookController {
 
     private final BookService bookService;
     private final RatingService ratingService;
+    private final BookImportService bookImportService;
+    private final BookExportService bookExportService;
+    private final BookLeaderboardService bookLeaderboardService;
+    private final PostService postService;
 
-    public BookController(BookService bookService, RatingService ratingService) {
+    public BookController(BookService bookService, RatingService ratingService,
+                          BookImportService bookImportService, BookExportService bookExportService,
+                          BookLeaderboardService bookLeaderboardService, PostService postService) {
         this.bookService = bookService;
         this.ratingService = ratingService;
+        this.bookImportService = bookImportService;
+        this.bookExportService = bookExportService;
+        this.bookLeaderboardService = bookLeaderboardService;
+        this.postService = postService;
     }
 
     @GetMapping
-    public ResponseEntity<List<Book>> getAllBooks() {
-        log.info("Request GET /api/books - Solicitando todos los libros");
-        List<Book> books = bookService.findAllBooks();
-        return ResponseEntity.ok(books);
+    public ResponseEntity<CursorPage<BookSummary>> getAllBooks(
+            @RequestParam(required = false) Long categoryId,
+            @RequestParam(required = false) String sort,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) {
+        log.info("Request GET /api/books - Solicitando página de libros (categoría: {}, orden: {}, limit: {})",
+                categoryId, sort, limit);
+        return ResponseEntity.ok(bookService.findBooks(categoryId, sort, cursor, limit));
+    }
+
+    @GetMapping("/search")
+    public ResponseEntity<CursorPage<BookSearchHit>> searchBooks(
+            @RequestParam String q,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) {
+        log.info("Request GET /api/books/search - Buscando libros con el texto: {}", q);
+        return ResponseEntity.ok(bookService.searchBooks(q, cursor, limit));
+    }
+
+    // Se sirve desde el ranking precalculado en memoria; generatedAt indica su antigüedad
+    @GetMapping("/top")
+    public ResponseEntity<TopBooks> getTopBooks(
+            @RequestParam(required = false) Long categoryId,
+            @RequestParam(required = false) Integer limit) {
+        log.info("Request GET /api/books/top - Solicitando ranking de libros (categoría: {}, limit: {})", categoryId, limit);
+        return ResponseEntity.ok(bookLeaderboardService.top(categoryId, limit));
+    }
+
+    @GetMapping(value = "/export", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> exportBooks() {
+        log.info("Request GET /api/books/export - Exportando el catálogo completo en NDJSON");
+        StreamingResponseBody body = bookExportService::exportNdjson;
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/x-ndjson"))
+                .body(body);
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<Book> getBookById(@PathVariable Long id) {
+    public ResponseEntity<BookDetail> getBookById(@PathVariable Long id, WebRequest request) {
         log.info("Request GET /api/books/{} - Solicitando libro por ID", id);
 
-        return bookService.findBookById(id)
-                .map(ResponseEntity::ok)
+        // Solo se consultan las versiones; si el cliente ya tiene esta, no se lee ni serializa la ficha
+        Optional<VersionTag> version = bookService.findBookVersion(id);
+        if (version.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        String etag = version.get().etag();
+        if (request.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+
+        return bookService.findBookDetail(id)
+                .map(detail -> ResponseEntity.ok().eTag(etag).body(detail))
                 .orElse(ResponseEntity.notFound().build());
     }
 
@@ -49,6 +124,19 @@ public class BookController {
         return ResponseEntity.ok(saved);
     }
 
+    // El cuerpo se lee en streaming desde la petición, sin cargarlo entero en memoria
+    @PostMapping(value = "/import", consumes = "application/x-ndjson")
+    public ResponseEntity<BookImportSummary> importBooksNdjson(InputStream body) throws IOException {
+        log.info("Request POST /api/books/import - Importación masiva de libros (NDJSON)");
+        return ResponseEntity.ok(bookImportService.importBooks(body, BookImportService.Format.NDJSON));
+    }
+
+    @PostMapping(value = "/import", consumes = "text/csv")
+    public ResponseEntity<BookImportSummary> importBooksCsv(InputStream body) throws IOException {
+        log.info("Request POST /api/books/import - Importación masiva de libros (CSV)");
+        return ResponseEntity.ok(bookImportService.importBooks(body, BookImportService.Format.CSV));
+    }
+
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> deleteBook(@PathVariable Long id) {
         log.info("Request DELETE /api/books/{} - Eliminando libro", id);
@@ -56,18 +144,66 @@ public class BookController {
         return ResponseEntity.noContent().build();
     }
 
+    // Progreso de la purga de un libro borrado; 404 si no está borrado o ya no queda nada de él
+    @GetMapping("/{id}/purge")
+    public ResponseEntity<BookPurgeStatus> getPurgeStatus(@PathVariable Long id) {
+        log.info("Request GET /api/books/{}/purge - Consultando la purga del libro", id);
+        return bookService.findPurgeStatus(id)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
     @GetMapping("/{id}/average-rating")
     public ResponseEntity<Double> getAverageRating(@PathVariable Long id) {
         log.info("Request GET /api/books/{}/average-rating - Calculando valoración media", id);
 
-        Optional<Book> book = bookService.findBookById(id);
-        if (book.isEmpty()) {
+        // Una única lectura por PK de los agregados mantenidos en books
+        Optional<RatingStats> stats = ratingService.findRatingStats(id);
+        if (stats.isEmpty()) {
             log.warn("No se encontró el libro con ID {} al calcular la media", id);
             return ResponseEntity.notFound().build();
         }
 
-        Double avg = ratingService.averageRatingForBook(id);
+        Double avg = stats.get().average();
         Double result = (avg != null) ? avg : 0.0;
         return ResponseEntity.ok(result);
     }
+
+    @GetMapping("/{id}/rating-distribution")
+    public ResponseEntity<RatingDistribution> getRatingDistribution(@PathVariable Long id) {
+        log.info("Request GET /api/books/{}/rating-distribution - Solicitando distribución de estrellas", id);
+
+        return ratingService.findRatingDistribution(id)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> {
+                    log.warn("No se encontró el libro con ID {} al pedir la distribución", id);
+                    return ResponseEntity.notFound().build();
+                });
+    }
+
+    @GetMapping("/{id}/posts")
+    public ResponseEntity<CursorPage<PostFeedItem>> getPostsByBook(
+            @PathVariable Long id,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) {
+        log.info("Request GET /api/books/{}/posts - Solicitando posts del libro (limit: {})", id, limit);
+        return ResponseEntity.ok(postService.getPostsByBook(id, cursor, limit));
+    }
+
+    @GetMapping(value = "/{id}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamBookEvents(@PathVariable Long id) {
+        log.info("Request GET /api/books/{}/events - Suscripción a posts en directo", id);
+        return postService.subscribeToBook(id)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> {
+                    log.warn("No se encontró el libro con ID {} al suscribirse a sus posts", id);
+                    return ResponseEntity.notFound().build();
+                });
+    }
+
+    @GetMapping("/average-ratings")
+    public ResponseEntity<Map<Long, RatingSummary>> getAverageRatings(@RequestParam List<Long> ids) {
+        log.info("Request GET /api/books/average-ratings - Calculando valoración media de {} libros", ids.size());
+        return ResponseEntity.ok(ratingService.findRatingSummaries(ids));
+    }
 }
\ No newline at end of file
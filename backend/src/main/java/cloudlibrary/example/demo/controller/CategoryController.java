@@ -2,8 +2,10 @@ package cloudlibrary.example.demo.controller;
 
 import cloudlibrary.example.demo.model.Category;
 import cloudlibrary.example.demo.service.CategoryService;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.List;
 
@@ -23,9 +25,14 @@ public class CategoryController {
     }
 
     @GetMapping
-    public ResponseEntity<List<Category>> getAllCategories() {
+    public ResponseEntity<List<Category>> getAllCategories(WebRequest request) {
         log.info("Request GET /api/categories - Solicitando todas las categorías");
-        return ResponseEntity.ok(categoryService.getAllCategories());
+
+        String etag = categoryService.getCategoriesVersion().etag();
+        if (request.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+        return ResponseEntity.ok().eTag(etag).body(categoryService.getAllCategories());
     }
 
     @GetMapping("/{id}")
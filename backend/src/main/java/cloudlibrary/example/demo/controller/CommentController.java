@@ -1,5 +1,10 @@
 package cloudlibrary.example.demo.controller;
 
+import cloudlibrary.example.demo.dto.CommentItem;
+import cloudlibrary.example.demo.dto.CommentRequest;
+import cloudlibrary.example.demo.dto.CommentThread;
+import cloudlibrary.example.demo.dto.CommentView;
+import cloudlibrary.example.demo.dto.CursorPage;
 import cloudlibrary.example.demo.model.Comment;
 import cloudlibrary.example.demo.service.CommentService;
 import org.springframework.http.ResponseEntity;
@@ -27,10 +32,27 @@ public class CommentController {
         return ResponseEntity.ok(commentService.getCommentsByPost(postId));
     }
 
+    @GetMapping("/{id}/replies")
+    public ResponseEntity<CursorPage<CommentItem>> getReplies(@PathVariable Long id,
+                                                              @RequestParam(required = false) String after,
+                                                              @RequestParam(required = false) Integer limit) {
+        log.info("Request GET /api/comments/{}/replies - Respuestas del comentario (limit: {})", id, limit);
+        return ResponseEntity.ok(commentService.getReplies(id, after, limit));
+    }
+
+    @GetMapping("/{id}/thread")
+    public ResponseEntity<CommentThread> getThread(@PathVariable Long id,
+                                                   @RequestParam(required = false) Integer maxDepth,
+                                                   @RequestParam(required = false) Integer maxChildren) {
+        log.info("Request GET /api/comments/{}/thread - Subárbol del comentario (maxDepth: {}, maxChildren: {})",
+                id, maxDepth, maxChildren);
+        return ResponseEntity.ok(commentService.getThread(id, maxDepth, maxChildren));
+    }
+
     @PostMapping
-    public ResponseEntity<Comment> addComment(@RequestBody Comment comment) {
-        log.info("Request POST /api/comments - Añadiendo nuevo comentario para el post {}", comment.getPost().getId());
-        return ResponseEntity.ok(commentService.addComment(comment));
+    public ResponseEntity<CommentView> addComment(@RequestBody CommentRequest request) {
+        log.info("Request POST /api/comments - Añadiendo nuevo comentario para el post {}", request.postId());
+        return ResponseEntity.ok(commentService.addComment(request));
     }
 
     @DeleteMapping("/{id}")
@@ -41,18 +63,13 @@ public class CommentController {
     }
 
     @PostMapping("/{parentId}/reply")
-    public ResponseEntity<Comment> addReplyToComment(
+    public ResponseEntity<CommentView> addReplyToComment(
             @PathVariable Long parentId,
-            @RequestBody Comment reply) {
+            @RequestBody CommentRequest reply) {
 
         log.info("Request POST /api/comments/{}/reply - Añadiendo respuesta al comentario", parentId);
 
-        try {
-            Comment savedReply = commentService.addReply(parentId, reply);
-            return ResponseEntity.ok(savedReply);
-        } catch (IllegalArgumentException e) {
-            log.warn("No se pudo añadir la respuesta. Comentario padre con ID: {} no encontrado.", parentId);
-            return ResponseEntity.notFound().build(); // Si no encuentra el padre
-        }
+        // Padre inexistente: ResourceNotFoundException, 404 desde el manejador global
+        return ResponseEntity.ok(commentService.addReply(parentId, reply));
     }
 }
\ No newline at end of file
@@ -1,11 +1,24 @@
 package cloudlibrary.example.demo.controller;
 
-import cloudlibrary.example.demo.model.Post;
+import cloudlibrary.example.demo.dto.CommentItem;
+import cloudlibrary.example.demo.dto.CommentNode;
+import cloudlibrary.example.demo.dto.CursorPage;
+import cloudlibrary.example.demo.dto.PostDetail;
+import cloudlibrary.example.demo.dto.PostFeedItem;
+import cloudlibrary.example.demo.dto.PostRequest;
+import cloudlibrary.example.demo.dto.PostView;
+import cloudlibrary.example.demo.dto.VersionTag;
+import cloudlibrary.example.demo.service.CommentService;
 import cloudlibrary.example.demo.service.PostService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.List;
+import java.util.Optional;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -17,21 +30,62 @@ public class PostController {
     private static final Logger log = LoggerFactory.getLogger(PostController.class);
 
     private final PostService postService;
-    public PostController(PostService postService) {
+    private final CommentService commentService;
+    public PostController(PostService postService, CommentService commentService) {
         this.postService = postService;
+        this.commentService = commentService;
     }
 
     @GetMapping
-    public ResponseEntity<List<Post>> getAllPosts() {
-        log.info("Request GET /api/posts - Solicitando todos los posts");
-        return ResponseEntity.ok(postService.getAllPosts());
+    public ResponseEntity<CursorPage<PostFeedItem>> getAllPosts(@RequestParam(required = false) String before,
+                                                                @RequestParam(required = false) Integer limit) {
+        log.info("Request GET /api/posts - Solicitando posts (limit: {})", limit);
+        return ResponseEntity.ok(postService.getFeed(before, limit));
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<Post> getPostById(@PathVariable Long id) {
+    public ResponseEntity<PostDetail> getPostById(@PathVariable Long id, WebRequest request) {
         log.info("Request GET /api/posts/{} - Solicitando post por ID", id);
 
+        Optional<VersionTag> version = postService.findPostVersion(id);
+        if (version.isEmpty()) {
+            log.warn("No se encontró el post con ID: {}", id);
+            return ResponseEntity.notFound().build();
+        }
+        String etag = version.get().etag();
+        if (request.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+
         return postService.getPostById(id)
+                .map(post -> ResponseEntity.ok().eTag(etag).body(post))
+                .orElseGet(() -> {
+                    log.warn("No se encontró el post con ID: {}", id);
+                    return ResponseEntity.notFound().build();
+                });
+    }
+
+    @GetMapping("/{id}/comments")
+    public ResponseEntity<CursorPage<CommentItem>> getComments(@PathVariable Long id,
+                                                               @RequestParam(required = false) String after,
+                                                               @RequestParam(required = false) Integer limit) {
+        log.info("Request GET /api/posts/{}/comments - Comentarios de primer nivel (limit: {})", id, limit);
+        return ResponseEntity.ok(commentService.getTopLevelComments(id, after, limit));
+    }
+
+    @GetMapping("/{id}/comments/tree")
+    public ResponseEntity<List<CommentNode>> getCommentTree(@PathVariable Long id,
+                                                            @RequestParam(required = false) Integer maxDepth,
+                                                            @RequestParam(required = false) Integer maxChildren) {
+        log.info("Request GET /api/posts/{}/comments/tree - Árbol de comentarios (maxDepth: {}, maxChildren: {})",
+                id, maxDepth, maxChildren);
+        return ResponseEntity.ok(commentService.getCommentTree(id, maxDepth, maxChildren));
+    }
+
+    @GetMapping(value = "/{id}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamPostEvents(@PathVariable Long id) {
+        log.info("Request GET /api/posts/{}/events - Suscripción a comentarios en directo", id);
+        return postService.subscribeToPost(id)
                 .map(ResponseEntity::ok)
                 .orElseGet(() -> {
                     log.warn("No se encontró el post con ID: {}", id);
@@ -40,9 +94,9 @@ public class PostController {
     }
 
     @PostMapping
-    public ResponseEntity<Post> addPost(@RequestBody Post post) {
-        log.info("Request POST /api/posts - Creando nuevo post con título: {}", post.getTitle());
-        return ResponseEntity.ok(postService.addPost(post));
+    public ResponseEntity<PostView> addPost(@RequestBody PostRequest request) {
+        log.info("Request POST /api/posts - Creando nuevo post con título: {}", request.title());
+        return ResponseEntity.ok(postService.addPost(request));
     }
 
     @DeleteMapping("/{id}")
@@ -1,12 +1,14 @@
 package cloudlibrary.example.demo.controller;
 
-import cloudlibrary.example.demo.model.Rating;
+import cloudlibrary.example.demo.dto.CursorPage;
+import cloudlibrary.example.demo.dto.RatingRequest;
+import cloudlibrary.example.demo.dto.RatingView;
+import cloudlibrary.example.demo.dto.RatingWriteResult;
 import cloudlibrary.example.demo.service.RatingService;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.List;
-
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -22,15 +24,25 @@ public class RatingController {
     }
 
     @GetMapping("/book/{bookId}")
-    public ResponseEntity<List<Rating>> getRatingsByBook(@PathVariable Long bookId) {
-        log.info("Request GET /api/ratings/book/{} - Solicitando valoraciones para el libro", bookId);
-        return ResponseEntity.ok(ratingService.getRatingsByBook(bookId));
+    public ResponseEntity<CursorPage<RatingView>> getRatingsByBook(
+            @PathVariable Long bookId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) {
+        log.info("Request GET /api/ratings/book/{} - Solicitando página de valoraciones para el libro (limit: {})", bookId, limit);
+        return ResponseEntity.ok(ratingService.getRatingsByBook(bookId, cursor, limit));
     }
 
     @PostMapping
-    public ResponseEntity<Rating> addRating(@RequestBody Rating rating) {
-        log.info("Request POST /api/ratings - Añadiendo valoración de {} estrellas para el libro {}", rating.getValue(), rating.getBook().getId());
-        return ResponseEntity.ok(ratingService.addRating(rating));
+    public ResponseEntity<RatingWriteResult> addRating(@RequestBody RatingRequest request) {
+        log.info("Request POST /api/ratings - Añadiendo valoración de {} estrellas para el libro {}", request.value(), request.bookId());
+        RatingWriteResult result = ratingService.addRating(request);
+        // 201 si es nueva, 200 si sustituye la anterior del usuario, 202 si queda en el log write-behind
+        HttpStatus status = switch (result.outcome()) {
+            case CREATED -> HttpStatus.CREATED;
+            case UPDATED -> HttpStatus.OK;
+            case ACCEPTED -> HttpStatus.ACCEPTED;
+        };
+        return ResponseEntity.status(status).body(result);
     }
 
     @DeleteMapping("/{id}")
@@ -1,6 +1,8 @@
 package cloudlibrary.example.demo.controller;
 
+import cloudlibrary.example.demo.dto.Recommendations;
 import cloudlibrary.example.demo.model.User;
+import cloudlibrary.example.demo.service.RecommendationService;
 import cloudlibrary.example.demo.service.UserService;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -16,9 +18,11 @@ public class UserController {
     private static final Logger log = LoggerFactory.getLogger(UserController.class);
 
     private final UserService userService;
+    private final RecommendationService recommendationService;
 
-    public UserController(UserService userService) {
+    public UserController(UserService userService, RecommendationService recommendationService) {
         this.userService = userService;
+        this.recommendationService = recommendationService;
     }
 
     @PostMapping("/register")
@@ -68,4 +72,19 @@ public class UserController {
             return ResponseEntity.status(HttpStatus.NOT_IMPLEMENTED).build();
         }
     }
+
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Void> deleteUser(@PathVariable Long id) {
+        log.info("Request DELETE /api/users/{} - Eliminando usuario y su contenido", id);
+        userService.deleteUser(id);
+        return ResponseEntity.noContent().build();
+    }
+
+    @GetMapping("/{id}/recommendations")
+    public ResponseEntity<Recommendations> getRecommendations(
+            @PathVariable Long id,
+            @RequestParam(required = false) Integer limit) {
+        log.info("Request GET /api/users/{}/recommendations - Solicitando recomendaciones (limit: {})", id, limit);
+        return ResponseEntity.ok(recommendationService.recommend(id, limit));
+    }
 }
\ No newline at end of file
@@ -0,0 +1,10 @@
+package cloudlibrary.example.demo.dto;
+
+public record BookDetail(
+        Long id,
+        String title,
+        String author,
+        String description,
+        Long categoryId,
+        String categoryName) {
+}
@@ -0,0 +1,8 @@
+package cloudlibrary.example.demo.dto;
+
+public record BookImportRow(
+        String title,
+        String author,
+        String description,
+        Long categoryId) {
+}
@@ -0,0 +1,17 @@
+package cloudlibrary.example.demo.dto;
+
+import java.util.List;
+
+/**
+ * Resultado de una importación masiva. {@code errors} se limita a los primeros fallos;
+ * {@code failed} cuenta todos.
+ */
+public record BookImportSummary(
+        long received,
+        long imported,
+        long failed,
+        List<RowError> errors) {
+
+    public record RowError(long line, String message) {
+    }
+}
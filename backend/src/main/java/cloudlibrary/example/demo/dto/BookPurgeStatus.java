@@ -0,0 +1,7 @@
+package cloudlibrary.example.demo.dto;
+
+import java.time.LocalDateTime;
+
+/** Libro borrado pendiente de purga y las filas que aún dependen de él. */
+public record BookPurgeStatus(Long bookId, LocalDateTime deletedAt, long posts, long comments, long ratings) {
+}
@@ -0,0 +1,4 @@
+package cloudlibrary.example.demo.dto;
+
+public record BookRatingStats(Long bookId, long count, long sum) {
+}
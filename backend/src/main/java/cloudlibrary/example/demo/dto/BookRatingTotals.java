@@ -0,0 +1,5 @@
+package cloudlibrary.example.demo.dto;
+
+/** Número y suma de valoraciones de un libro, de los contadores de la tabla books. */
+public record BookRatingTotals(Long bookId, Long categoryId, long count, long sum) {
+}
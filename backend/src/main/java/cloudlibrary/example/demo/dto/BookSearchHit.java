@@ -0,0 +1,10 @@
+package cloudlibrary.example.demo.dto;
+
+public record BookSearchHit(
+        Long id,
+        String title,
+        String author,
+        Long categoryId,
+        String categoryName,
+        double score) {
+}
@@ -0,0 +1,74 @@
+package cloudlibrary.example.demo.dto;
+
+import cloudlibrary.example.demo.exception.InvalidRequestException;
+
+import java.util.Locale;
+
+/**
+ * Ordenaciones del listado de libros. Cada una tiene su índice en books y su propio formato
+ * de cursor, con la clave de ordenación de la última fila más el id como desempate.
+ */
+public enum BookSort {
+    ID,
+    /** Los libros no tienen fecha de alta: el id es creciente, así que "más recientes" es id descendente. */
+    NEWEST,
+    TITLE,
+    AUTHOR,
+    RATING;
+
+    // Título y autor admiten nulos: se recorren primero los valores y después los nulos por id
+    private static final String VALUE_PHASE = "v";
+    private static final String NULL_PHASE = "n";
+
+    /** Posición tras la última fila devuelta; {@code key} es null en la fase de nulos. */
+    public record Position(Object key, long id) {
+    }
+
+    public static BookSort fromParam(String value) {
+        if (value == null || value.isBlank()) {
+            return ID;
+        }
+        return switch (value.trim().toLowerCase(Locale.ROOT)) {
+            case "newest" -> NEWEST;
+            case "title" -> TITLE;
+            case "author" -> AUTHOR;
+            case "rating" -> RATING;
+            default -> throw new InvalidRequestException("Ordenación no soportada: " + value);
+        };
+    }
+
+    public boolean nullableKey() {
+        return this == TITLE || this == AUTHOR;
+    }
+
+    public String encodeCursor(Object key, long id) {
+        return switch (this) {
+            case ID, NEWEST -> PageCursor.encode(id);
+            case TITLE, AUTHOR -> key == null
+                    ? PageCursor.encode(NULL_PHASE, "", id)
+                    : PageCursor.encode(VALUE_PHASE, key, id);
+            case RATING -> PageCursor.encode(key, id);
+        };
+    }
+
+    public Position decodeCursor(String cursor) {
+        try {
+            return switch (this) {
+                case ID, NEWEST -> new Position(null, PageCursor.decodeLong(cursor));
+                case TITLE, AUTHOR -> {
+                    String[] keys = PageCursor.decode(cursor, 3);
+                    if (!VALUE_PHASE.equals(keys[0]) && !NULL_PHASE.equals(keys[0])) {
+                        throw new InvalidRequestException("Cursor de paginación no válido");
+                    }
+                    yield new Position(VALUE_PHASE.equals(keys[0]) ? keys[1] : null, Long.parseLong(keys[2]));
+                }
+                case RATING -> {
+                    String[] keys = PageCursor.decode(cursor, 2);
+                    yield new Position(Double.parseDouble(keys[0]), Long.parseLong(keys[1]));
+                }
+            };
+        } catch (NumberFormatException e) {
+            throw new InvalidRequestException("Cursor de paginación no válido");
+        }
+    }
+}
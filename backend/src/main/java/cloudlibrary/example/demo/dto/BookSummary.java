@@ -0,0 +1,9 @@
+package cloudlibrary.example.demo.dto;
+
+public record BookSummary(
+        Long id,
+        String title,
+        String author,
+        Long categoryId,
+        String categoryName) {
+}
@@ -0,0 +1,12 @@
+package cloudlibrary.example.demo.dto;
+
+/**
+ * Huella de una colección completa. Con ids autoincrementales cualquier alta cambia maxId,
+ * cualquier baja sin alta cambia count y cualquier modificación incrementa versionSum.
+ */
+public record CollectionVersion(long count, long maxId, long versionSum) {
+
+    public String etag() {
+        return "\"" + count + "-" + maxId + "-" + versionSum + "\"";
+    }
+}
@@ -0,0 +1,8 @@
+package cloudlibrary.example.demo.dto;
+
+import java.time.LocalDateTime;
+
+/** Comentario de un listado paginado, con el número de respuestas directas pero sin ellas. */
+public record CommentItem(Long id, String content, Long authorId, Long postId, Long parentId,
+                          LocalDateTime createdAt, long replyCount) {
+}
@@ -0,0 +1,12 @@
+package cloudlibrary.example.demo.dto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Comentario dentro del árbol de un post. {@code replyCount} cuenta todas las respuestas directas,
+ * también las que se han recortado de {@code replies} por profundidad o por número de hijos.
+ */
+public record CommentNode(Long id, String content, Long authorId, Long parentId, LocalDateTime createdAt,
+                          int replyCount, List<CommentNode> replies) {
+}
@@ -0,0 +1,5 @@
+package cloudlibrary.example.demo.dto;
+
+/** Lo necesario para borrar un comentario con su subárbol y corregir los agregados que dependen de él. */
+public record CommentRef(Long id, Long postId, Long parentId, String path) {
+}
@@ -0,0 +1,8 @@
+package cloudlibrary.example.demo.dto;
+
+/**
+ * Alta de un comentario por ids. Con {@code parentId} es una respuesta y el post se toma del
+ * comentario padre, así que {@code postId} se ignora.
+ */
+public record CommentRequest(String content, Long authorId, Long postId, Long parentId) {
+}
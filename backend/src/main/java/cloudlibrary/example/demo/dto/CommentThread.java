@@ -0,0 +1,5 @@
+package cloudlibrary.example.demo.dto;
+
+/** Subárbol de un comentario; {@code descendantCount} cuenta también lo que se ha recortado. */
+public record CommentThread(long descendantCount, CommentNode root) {
+}
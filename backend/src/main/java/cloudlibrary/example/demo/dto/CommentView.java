@@ -0,0 +1,7 @@
+package cloudlibrary.example.demo.dto;
+
+import java.time.LocalDateTime;
+
+/** Comentario con sus relaciones reducidas a ids. */
+public record CommentView(Long id, String content, Long authorId, Long postId, Long parentId, LocalDateTime createdAt) {
+}
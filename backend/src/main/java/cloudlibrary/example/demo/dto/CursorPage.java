@@ -0,0 +1,14 @@
+package cloudlibrary.example.demo.dto;
+
+import java.util.List;
+
+/**
+ * Página de resultados paginada por cursor (keyset). {@code next} es un cursor opaco
+ * que se devuelve tal cual en la siguiente petición; es {@code null} en la última página.
+ */
+public record CursorPage<T>(List<T> items, String next) {
+
+    public static <T> CursorPage<T> of(List<T> items, String next) {
+        return new CursorPage<>(items, next);
+    }
+}
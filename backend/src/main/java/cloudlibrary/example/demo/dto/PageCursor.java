@@ -0,0 +1,51 @@
+package cloudlibrary.example.demo.dto;
+
+import cloudlibrary.example.demo.exception.InvalidRequestException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Codifica y decodifica cursores opacos. Internamente un cursor es la lista de claves
+ * de ordenación de la última fila devuelta, separadas y en Base64 URL-safe.
+ */
+public final class PageCursor {
+
+    private static final String SEPARATOR = "\u001F";
+
+    private PageCursor() {
+    }
+
+    public static String encode(Object... keys) {
+        StringBuilder raw = new StringBuilder();
+        for (int i = 0; i < keys.length; i++) {
+            if (i > 0) {
+                raw.append(SEPARATOR);
+            }
+            raw.append(keys[i]);
+        }
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(raw.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static String[] decode(String cursor, int expectedKeys) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] keys = raw.split(SEPARATOR, -1);
+            if (keys.length != expectedKeys) {
+                throw new InvalidRequestException("Cursor de paginación no válido");
+            }
+            return keys;
+        } catch (IllegalArgumentException e) {
+            throw new InvalidRequestException("Cursor de paginación no válido");
+        }
+    }
+
+    public static long decodeLong(String cursor) {
+        try {
+            return Long.parseLong(decode(cursor, 1)[0]);
+        } catch (NumberFormatException e) {
+            throw new InvalidRequestException("Cursor de paginación no válido");
+        }
+    }
+}
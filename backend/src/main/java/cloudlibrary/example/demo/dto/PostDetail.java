@@ -0,0 +1,11 @@
+package cloudlibrary.example.demo.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * Ficha de un post: solo campos que cubre su ETag, la versión del post y la de su libro. Del autor
+ * va el id, que no cambia; su nombre o sus datos de cuenta no tienen versión.
+ */
+public record PostDetail(Long id, String title, String content, Long authorId, Long bookId, String bookTitle,
+                         LocalDateTime createdAt) {
+}
@@ -0,0 +1,16 @@
+package cloudlibrary.example.demo.dto;
+
+import java.time.LocalDateTime;
+
+/** Post tal como aparece en el listado global: autor y libro reducidos a id y nombre. */
+public record PostFeedItem(Long id,
+                           String title,
+                           String content,
+                           Long authorId,
+                           String authorUsername,
+                           Long bookId,
+                           String bookTitle,
+                           LocalDateTime createdAt,
+                           long commentCount,
+                           LocalDateTime lastCommentAt) {
+}
@@ -0,0 +1,5 @@
+package cloudlibrary.example.demo.dto;
+
+/** Alta de un post: autor y libro van por id; el libro es opcional y debe existir. */
+public record PostRequest(String title, String content, Long authorId, Long bookId) {
+}
@@ -0,0 +1,7 @@
+package cloudlibrary.example.demo.dto;
+
+import java.time.LocalDateTime;
+
+/** Post recién creado, sin cargar autor ni libro. */
+public record PostView(Long id, String title, String content, Long authorId, Long bookId, LocalDateTime createdAt) {
+}
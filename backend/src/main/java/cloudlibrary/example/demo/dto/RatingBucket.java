@@ -0,0 +1,4 @@
+package cloudlibrary.example.demo.dto;
+
+public record RatingBucket(Long bookId, int value, long count) {
+}
@@ -0,0 +1,18 @@
+package cloudlibrary.example.demo.dto;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/** Número de valoraciones por estrella (1 a 5) de un libro. */
+public record RatingDistribution(long total, Map<Integer, Long> stars) {
+
+    public static RatingDistribution of(long[] counts) {
+        Map<Integer, Long> stars = new LinkedHashMap<>();
+        long total = 0;
+        for (int i = 0; i < counts.length; i++) {
+            stars.put(i + 1, counts[i]);
+            total += counts[i];
+        }
+        return new RatingDistribution(total, stars);
+    }
+}
@@ -0,0 +1,4 @@
+package cloudlibrary.example.demo.dto;
+
+public record RatingRef(Long bookId, Long userId, int value) {
+}
@@ -0,0 +1,5 @@
+package cloudlibrary.example.demo.dto;
+
+/** Alta o actualización de una valoración; sin {@code userId} es anónima. */
+public record RatingRequest(Long bookId, Long userId, int value) {
+}
@@ -0,0 +1,8 @@
+package cloudlibrary.example.demo.dto;
+
+public record RatingStats(long count, long sum) {
+
+    public Double average() {
+        return count == 0 ? null : (double) sum / count;
+    }
+}
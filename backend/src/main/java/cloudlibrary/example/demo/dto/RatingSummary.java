@@ -0,0 +1,8 @@
+package cloudlibrary.example.demo.dto;
+
+public record RatingSummary(double average, long count) {
+
+    public static RatingSummary of(long count, long sum) {
+        return new RatingSummary(count == 0 ? 0.0 : (double) sum / count, count);
+    }
+}
@@ -0,0 +1,5 @@
+package cloudlibrary.example.demo.dto;
+
+/** Valoración tal como se lista por libro: sin la entidad User ni Book. */
+public record RatingView(Long id, int value, Long userId, String username) {
+}
@@ -0,0 +1,15 @@
+package cloudlibrary.example.demo.dto;
+
+/**
+ * Resultado del alta de una valoración. Un usuario solo tiene una valoración por libro:
+ * si ya existía se actualiza y {@code previousValue} lleva el valor anterior.
+ */
+public record RatingWriteResult(Long id, Long bookId, Long userId, int value, Integer previousValue, Outcome outcome) {
+
+    public enum Outcome {
+        CREATED,
+        UPDATED,
+        // Modo write-behind: registrada en el log local, aún sin id
+        ACCEPTED
+    }
+}
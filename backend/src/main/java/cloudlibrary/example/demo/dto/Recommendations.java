@@ -0,0 +1,8 @@
+package cloudlibrary.example.demo.dto;
+
+import java.time.Instant;
+import java.util.List;
+
+/** Recomendaciones de un usuario; {@code modelBuiltAt} es null mientras no hay modelo. */
+public record Recommendations(Instant modelBuiltAt, List<RecommendedBook> books) {
+}
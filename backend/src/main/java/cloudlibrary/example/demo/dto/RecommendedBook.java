@@ -0,0 +1,11 @@
+package cloudlibrary.example.demo.dto;
+
+/** Libro recomendado; {@code score} es la valoración que se predice para el usuario (1 a 5). */
+public record RecommendedBook(
+        Long id,
+        String title,
+        String author,
+        Long categoryId,
+        String categoryName,
+        double score) {
+}
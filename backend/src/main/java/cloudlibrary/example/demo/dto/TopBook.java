@@ -0,0 +1,13 @@
+package cloudlibrary.example.demo.dto;
+
+/** Entrada del ranking: {@code score} es la media bayesiana, {@code average} la media simple. */
+public record TopBook(
+        Long id,
+        String title,
+        String author,
+        Long categoryId,
+        String categoryName,
+        long ratingCount,
+        double average,
+        double score) {
+}
@@ -0,0 +1,8 @@
+package cloudlibrary.example.demo.dto;
+
+import java.time.Instant;
+import java.util.List;
+
+/** Ranking servido desde memoria; {@code generatedAt} es null hasta la primera reconstrucción. */
+public record TopBooks(Instant generatedAt, List<TopBook> books) {
+}
@@ -0,0 +1,14 @@
+package cloudlibrary.example.demo.dto;
+
+/**
+ * Versión de un recurso y de la entidad relacionada cuyo contenido aparece en su representación
+ * (p. ej. la categoría de un libro). Basta para calcular el ETag sin cargar la entidad.
+ */
+public record VersionTag(long version, Long refId, Long refVersion) {
+
+    public String etag() {
+        return refId == null
+                ? "\"" + version + "\""
+                : "\"" + version + "-" + refId + "." + refVersion + "\"";
+    }
+}
@@ -0,0 +1,7 @@
+package cloudlibrary.example.demo.event;
+
+import cloudlibrary.example.demo.dto.CommentView;
+
+/** Comentario o respuesta nuevos. Como {@link RatingChangedEvent}, los oyentes en memoria lo atienden tras el commit. */
+public record CommentCreatedEvent(CommentView comment) {
+}
@@ -0,0 +1,7 @@
+package cloudlibrary.example.demo.event;
+
+import cloudlibrary.example.demo.dto.PostView;
+
+/** Post nuevo. Como {@link RatingChangedEvent}, los oyentes en memoria lo atienden tras el commit. */
+public record PostCreatedEvent(PostView post) {
+}
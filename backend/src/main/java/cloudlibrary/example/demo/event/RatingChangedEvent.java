@@ -0,0 +1,18 @@
+package cloudlibrary.example.demo.event;
+
+/**
+ * Una valoración ha cambiado. {@code userId} es null en valoraciones anónimas,
+ * {@code previousValue} es null si se ha creado y
+ * {@code newValue} es null si se ha borrado. Se publica dentro de la transacción;
+ * los oyentes en memoria deben usar {@code @TransactionalEventListener} para verlo solo tras el commit.
+ */
+public record RatingChangedEvent(Long bookId, Long userId, Integer previousValue, Integer newValue) {
+
+    public static RatingChangedEvent created(Long bookId, Long userId, int value) {
+        return new RatingChangedEvent(bookId, userId, null, value);
+    }
+
+    public static RatingChangedEvent deleted(Long bookId, Long userId, int value) {
+        return new RatingChangedEvent(bookId, userId, value, null);
+    }
+}
@@ -2,6 +2,7 @@ package cloudlibrary.example.demo.exception;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
@@ -39,6 +40,30 @@ public class GlobalExceptionHandler {
         return new ResponseEntity<>(errorBody, HttpStatus.CONFLICT);
     }
 
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ResponseEntity<?> handleOptimisticLocking(OptimisticLockingFailureException ex, WebRequest request) {
+
+        log.warn("Conflicto de versión: {} (Ruta: {})", ex.getMessage(), request.getDescription(false));
+
+        Map<String, String> errorBody = Map.of(
+                "message", "El recurso ha sido modificado por otra petición",
+                "path", request.getDescription(false)
+        );
+        return new ResponseEntity<>(errorBody, HttpStatus.CONFLICT);
+    }
+
+    @ExceptionHandler(InvalidRequestException.class)
+    public ResponseEntity<?> handleInvalidRequest(InvalidRequestException ex, WebRequest request) {
+
+        log.warn("Petición no válida: {} (Ruta: {})", ex.getMessage(), request.getDescription(false));
+
+        Map<String, String> errorBody = Map.of(
+                "message", ex.getMessage(),
+                "path", request.getDescription(false)
+        );
+        return new ResponseEntity<>(errorBody, HttpStatus.BAD_REQUEST);
+    }
+
 
     @ExceptionHandler(Exception.class)
     public ResponseEntity<?> handleGlobalException(Exception ex, WebRequest request) {
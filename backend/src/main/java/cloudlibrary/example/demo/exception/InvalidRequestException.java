@@ -0,0 +1,7 @@
+package cloudlibrary.example.demo.exception;
+
+public class InvalidRequestException extends RuntimeException {
+    public InvalidRequestException(String message) {
+        super(message);
+    }
+}
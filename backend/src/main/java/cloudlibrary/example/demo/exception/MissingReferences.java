@@ -0,0 +1,29 @@
+package cloudlibrary.example.demo.exception;
+
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.sql.SQLException;
+import java.util.Set;
+
+/**
+ * Las altas por id no comprueban antes que existan las filas referenciadas: lo hace la clave
+ * foránea. Esta clase traduce esa violación a un 404.
+ */
+public final class MissingReferences {
+
+    // 23503 en PostgreSQL; H2 usa 23506 cuando falta el padre
+    private static final Set<String> FOREIGN_KEY_STATES = Set.of("23503", "23506");
+
+    private MissingReferences() {
+    }
+
+    /** {@link ResourceNotFoundException} si la causa es una clave foránea; si no, la propia excepción. */
+    public static RuntimeException translate(DataIntegrityViolationException e, String message) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException sql && FOREIGN_KEY_STATES.contains(sql.getSQLState())) {
+                return new ResourceNotFoundException(message);
+            }
+        }
+        return e;
+    }
+}
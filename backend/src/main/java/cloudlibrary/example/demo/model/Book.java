@@ -1,21 +1,43 @@
 package cloudlibrary.example.demo.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.Getter;
+import org.hibernate.annotations.ColumnDefault;
 import lombok.Setter;
+import org.hibernate.annotations.SQLRestriction;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Setter
 @Getter
 @Entity
-@Table(name = "books")
+// Un índice por ordenación del listado, con y sin filtro de categoría; id como desempate del keyset
+@Table(name = "books", indexes = {
+        @Index(name = "idx_books_category_id", columnList = "category_id, id"),
+        @Index(name = "idx_books_category_title", columnList = "category_id, title, id"),
+        @Index(name = "idx_books_category_author", columnList = "category_id, author, id"),
+        @Index(name = "idx_books_category_rating", columnList = "category_id, rating_average, id"),
+        @Index(name = "idx_books_title", columnList = "title, id"),
+        @Index(name = "idx_books_author", columnList = "author, id"),
+        @Index(name = "idx_books_rating", columnList = "rating_average, id"),
+        @Index(name = "idx_books_deleted_at", columnList = "deleted_at, id")
+})
+// Borrado lógico: un libro con deleted_at desaparece de todas las consultas sobre la entidad y
+// BookPurgeJob borra después sus posts y valoraciones por tandas
+@SQLRestriction("deleted_at IS NULL")
 public class Book {
 
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
+    @Version
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private long version;
+
     private String title;
     private String author;
     private String description;
@@ -24,9 +46,32 @@ public class Book {
     @JoinColumn(name = "category_id")
     private Category category;
 
+    // Agregados de valoraciones mantenidos por RatingService con UPDATE atómicos;
+    // nunca se escriben desde la entidad para no pisar incrementos concurrentes
+    @JsonIgnore
+    @ColumnDefault("0")
+    @Column(name = "rating_count", nullable = false, insertable = false, updatable = false)
+    private long ratingCount;
+
+    @JsonIgnore
+    @ColumnDefault("0")
+    @Column(name = "rating_sum", nullable = false, insertable = false, updatable = false)
+    private long ratingSum;
+
+    @JsonIgnore
+    @ColumnDefault("0")
+    @Column(name = "rating_average", nullable = false, insertable = false, updatable = false)
+    private double ratingAverage;
+
+    @JsonIgnore
+    @Column(name = "deleted_at", insertable = false, updatable = false)
+    private LocalDateTime deletedAt;
+
+    @JsonIgnore
     @OneToMany(mappedBy = "book", cascade = CascadeType.ALL)
     private List<Post> posts;
 
+    @JsonIgnore
     @OneToMany(mappedBy = "book", cascade = CascadeType.ALL)
     private List<Rating> ratings;
 }
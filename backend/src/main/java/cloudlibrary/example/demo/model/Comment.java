@@ -1,8 +1,10 @@
 package cloudlibrary.example.demo.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.Setter;
+import org.hibernate.annotations.ColumnDefault;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -10,10 +12,28 @@ import java.util.List;
 @Setter
 @Getter
 @Entity
-@Table(name = "comments")
+@Table(name = "comments", indexes = {
+        @Index(name = "idx_comments_post_parent_created_at_id", columnList = "post_id, parent_comment_id, created_at, id"),
+        @Index(name = "idx_comments_parent_created_at_id", columnList = "parent_comment_id, created_at, id"),
+        @Index(name = "idx_comments_path", columnList = "path"),
+        @Index(name = "idx_comments_author_id", columnList = "author_id, id")
+})
 public class Comment {
 
-    @Id @GeneratedValue(strategy = GenerationType.IDENTITY)
+    /** Dígitos de cada segmento de {@link #path}: el id de un comentario, con ceros a la izquierda. */
+    public static final int PATH_SEGMENT = 12;
+
+    /** Niveles admitidos en un hilo; mantiene la ruta por debajo del límite de una entrada de índice. */
+    public static final int MAX_DEPTH = 200;
+
+    /** Secuencia de los ids: los INSERT nativos la usan para escribir la ruta en la misma sentencia. */
+    public static final String ID_SEQUENCE = "comments_id_seq";
+
+    // En bases existentes es la secuencia de la antigua columna IDENTITY, que se llamaba igual
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = ID_SEQUENCE)
+    @SequenceGenerator(name = ID_SEQUENCE, sequenceName = ID_SEQUENCE, allocationSize = 1)
+    @ColumnDefault("nextval('" + ID_SEQUENCE + "')")
     private Long id;
 
     private String content;
@@ -33,5 +53,31 @@ public class Comment {
 
     @OneToMany(mappedBy = "parent", cascade = CascadeType.ALL)
     private List<Comment> replies;
+
+    /**
+     * Ruta materializada: los ids de los antecesores y el propio, de la raíz hacia abajo. El subárbol
+     * de un comentario es el rango [path, {@link #pathUpperBound}) del índice, sin recorrer padres.
+     * La escriben los INSERT de CommentService; lo guardado por otra vía la recibe de CommentPathBackfillJob.
+     */
+    @Column(length = MAX_DEPTH * PATH_SEGMENT)
+    private String path;
+
+    private Integer depth;
+
+    // Respuestas directas, mantenidas por CommentService con UPDATE atómicos como Post.commentCount
+    @JsonIgnore
+    @ColumnDefault("0")
+    @Column(name = "reply_count", nullable = false, insertable = false, updatable = false)
+    private long replyCount;
+
+    public static String pathSegment(long id) {
+        return String.format("%0" + PATH_SEGMENT + "d", id);
+    }
+
+    /** Primera ruta que ya no pertenece al subárbol: el último segmento más uno. */
+    public static String pathUpperBound(String path) {
+        int last = path.length() - PATH_SEGMENT;
+        return path.substring(0, last) + pathSegment(Long.parseLong(path.substring(last)) + 1);
+    }
 }
 
@@ -1,8 +1,10 @@
 package cloudlibrary.example.demo.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.Setter;
+import org.hibernate.annotations.ColumnDefault;
 
 import java.util.List;
 
@@ -11,11 +13,20 @@ import java.time.LocalDateTime;
 @Setter
 @Getter
 @Entity
-@Table(name = "posts")
+@Table(name = "posts", indexes = {
+        @Index(name = "idx_posts_created_at_id", columnList = "created_at, id"),
+        @Index(name = "idx_posts_book_created_at_id", columnList = "book_id, created_at, id"),
+        @Index(name = "idx_posts_author_id", columnList = "user_id, id")
+})
 public class Post {
     @Id @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
+    @Version
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private long version;
+
     private String title;
     private String content;
 
@@ -23,13 +34,26 @@ public class Post {
     @JoinColumn(name = "user_id")
     private User author;
 
-    @ManyToOne(cascade = {CascadeType.PERSIST, CascadeType.MERGE})
+    @ManyToOne
     @JoinColumn(name = "book_id")
     private Book book;
 
+    @JsonIgnore
     @OneToMany(mappedBy = "post", cascade = CascadeType.ALL)
     private List<Comment> comments;
 
+    @Column(nullable = false)
     private LocalDateTime createdAt = LocalDateTime.now();
+
+    // Agregados de comentarios, mantenidos por CommentService con UPDATE atómicos; fuera del
+    // JSON porque no cambian la versión y el ETag del post no los cubre
+    @JsonIgnore
+    @ColumnDefault("0")
+    @Column(name = "comment_count", nullable = false, insertable = false, updatable = false)
+    private long commentCount;
+
+    @JsonIgnore
+    @Column(name = "last_comment_at", insertable = false, updatable = false)
+    private LocalDateTime lastCommentAt;
 }
 
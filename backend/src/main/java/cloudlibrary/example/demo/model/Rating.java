@@ -7,11 +7,18 @@ import lombok.Setter;
 @Setter
 @Getter
 @Entity
-@Table(name = "ratings")
+@Table(name = "ratings",
+        indexes = {
+                @Index(name = "idx_ratings_book_value", columnList = "book_id, \"value\""),
+                @Index(name = "idx_ratings_book_id", columnList = "book_id, id")
+        },
+        uniqueConstraints = @UniqueConstraint(name = "uk_ratings_user_book", columnNames = {"user_id", "book_id"}))
 public class Rating {
     @Id @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
+    // Entre comillas: VALUE es palabra reservada en H2; en PostgreSQL "value" es la misma columna de siempre
+    @Column(name = "\"value\"")
     private int value; // de 1 a 5 estrellas
 
     @ManyToOne
@@ -0,0 +1,20 @@
+package cloudlibrary.example.demo.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Cuántas entradas de un segmento del log write-behind están ya en la base de datos. Se escribe en
+ * la misma transacción que ellas, así que al repetir un segmento tras una caída se saltan.
+ */
+@Setter
+@Getter
+@Entity
+@Table(name = "rating_log_progress")
+public class RatingLogProgress {
+    @Id
+    private Long segment;
+
+    private int applied;
+}
@@ -0,0 +1,294 @@
+package cloudlibrary.example.demo.recommend;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.stream.IntStream;
+
+/**
+ * Los K libros más parecidos a cada libro, por coseno ajustado (valores centrados en la media
+ * de cada usuario) con encogimiento {@code n / (n + shrinkage)} según el número n de lectores
+ * en común. Cada libro ocupa una franja fija de K posiciones, ordenada de mayor a menor similitud
+ * y rellena con {@link #NONE}. Solo se guardan similitudes positivas. Las franjas van en páginas de
+ * {@value #PAGE_SIZE} libros que las versiones comparten: una actualización copia solo las páginas
+ * que modifica.
+ */
+public final class ItemNeighbours {
+
+    public static final int NONE = -1;
+
+    static final int PAGE_SIZE = 1024;
+
+    private static final int PAGE_SHIFT = Integer.numberOfTrailingZeros(PAGE_SIZE);
+
+    /** Parámetros del cálculo de similitud. */
+    public record Settings(int k, float shrinkage, int maxRatingsPerUser) {
+    }
+
+    private final Settings settings;
+    private final int itemCount;
+    private final int[][] neighbourPages;
+    private final float[][] scorePages;
+    // Páginas propias de esta versión, que se pueden escribir; el resto es de la anterior
+    private final boolean[] ownedPages;
+    private final float[] norms;
+
+    private ItemNeighbours(Settings settings, int itemCount) {
+        this.settings = settings;
+        this.itemCount = itemCount;
+        int pages = pageCount(itemCount);
+        this.neighbourPages = new int[pages][];
+        this.scorePages = new float[pages][];
+        this.ownedPages = new boolean[pages];
+        for (int page = 0; page < pages; page++) {
+            allocatePage(page);
+        }
+        this.norms = new float[itemCount];
+    }
+
+    private ItemNeighbours(Settings settings, ItemNeighbours previous, int itemCount) {
+        this.settings = settings;
+        this.itemCount = itemCount;
+        int pages = pageCount(itemCount);
+        this.neighbourPages = Arrays.copyOf(previous.neighbourPages, pages);
+        this.scorePages = Arrays.copyOf(previous.scorePages, pages);
+        this.ownedPages = new boolean[pages];
+        for (int page = previous.neighbourPages.length; page < pages; page++) {
+            allocatePage(page);
+        }
+        this.norms = Arrays.copyOf(previous.norms, itemCount);
+    }
+
+    /**
+     * Cálculo completo, en paralelo por bloques de libros. Cada tarea reserva sus propios acumuladores
+     * (tres arrays del tamaño del catálogo), así que hay unas pocas tareas por núcleo, no una por libro.
+     */
+    public static ItemNeighbours compute(RatingMatrix matrix, Settings settings) {
+        int itemCount = matrix.itemCount();
+        ItemNeighbours result = new ItemNeighbours(settings, itemCount);
+        int tasks = Math.max(1, Math.min(itemCount, Runtime.getRuntime().availableProcessors() * 4));
+        int perTask = (itemCount + tasks - 1) / Math.max(1, tasks);
+        IntStream.range(0, tasks).parallel().forEach(task -> {
+            RatingMatrix.Row column = new RatingMatrix.Row();
+            RatingMatrix.Row row = new RatingMatrix.Row();
+            int to = Math.min(itemCount, (task + 1) * perTask);
+            for (int item = task * perTask; item < to; item++) {
+                result.norms[item] = norm(matrix, settings, item, column, row);
+            }
+        });
+        IntStream.range(0, tasks).parallel().forEach(task -> {
+            Workspace workspace = new Workspace(itemCount);
+            int to = Math.min(itemCount, (task + 1) * perTask);
+            for (int item = task * perTask; item < to; item++) {
+                result.computeRow(matrix, item, workspace, null);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Recalcula las filas de los libros afectados y corrige su entrada en las filas del resto
+     * (la similitud es simétrica). Si un libro afectado sale de la lista de otro, esa lista queda
+     * con un hueco hasta el siguiente cálculo completo, en lugar de buscar el sustituto. Solo cambia
+     * la norma de los libros afectados: la del resto se reutiliza.
+     */
+    public ItemNeighbours update(RatingMatrix matrix, int[] touchedItems) {
+        ItemNeighbours result = new ItemNeighbours(settings, this, matrix.itemCount());
+        BitSet touched = new BitSet(matrix.itemCount());
+        Workspace workspace = new Workspace(matrix.itemCount());
+        for (int item : touchedItems) {
+            touched.set(item);
+            result.norms[item] = norm(matrix, settings, item, workspace.column, workspace.row);
+        }
+        for (int item : touchedItems) {
+            for (int slot = 0; slot < settings.k(); slot++) {
+                int neighbour = result.neighbour(item, slot);
+                if (neighbour != NONE && !touched.get(neighbour)) {
+                    result.remove(neighbour, item);
+                }
+            }
+            result.computeRow(matrix, item, workspace, touched);
+        }
+        return result;
+    }
+
+    Settings settings() {
+        return settings;
+    }
+
+    public int k() {
+        return settings.k();
+    }
+
+    /** Vecino en la posición {@code slot} (0 = el más parecido), o {@link #NONE}. */
+    public int neighbour(int item, int slot) {
+        if (item >= itemCount) {
+            return NONE;
+        }
+        return neighbourPages[item >>> PAGE_SHIFT][offset(item) + slot];
+    }
+
+    public float score(int item, int slot) {
+        return scorePages[item >>> PAGE_SHIFT][offset(item) + slot];
+    }
+
+    public long memoryBytes() {
+        return (long) neighbourPages.length * PAGE_SIZE * settings.k() * (Integer.BYTES + Float.BYTES)
+                + (long) norms.length * Float.BYTES;
+    }
+
+    private static float norm(RatingMatrix matrix, Settings settings, int item, RatingMatrix.Row column,
+                              RatingMatrix.Row row) {
+        matrix.itemColumn(item, column);
+        double sum = 0;
+        for (int p = column.from; p < column.to; p++) {
+            matrix.userRow(column.ids[p], row);
+            if (row.size() <= settings.maxRatingsPerUser()) {
+                double centered = column.values[p] - row.mean;
+                sum += centered * centered;
+            }
+        }
+        return (float) Math.sqrt(sum);
+    }
+
+    /**
+     * Productos escalares del libro con todos los que comparten lector, acumulados recorriendo sus
+     * lectores y las filas de estos. Los usuarios con más de maxRatingsPerUser valoraciones se
+     * ignoran: su coste es cuadrático y apenas discriminan. Con {@code patch} no nulo, además se
+     * actualiza la entrada de este libro en la fila de cada vecino no incluido en {@code patch}.
+     */
+    private void computeRow(RatingMatrix matrix, int item, Workspace ws, BitSet patch) {
+        int[] neighbours = writableNeighbours(item);
+        float[] scores = scorePages[item >>> PAGE_SHIFT];
+        int base = offset(item);
+        Arrays.fill(neighbours, base, base + settings.k(), NONE);
+        Arrays.fill(scores, base, base + settings.k(), 0f);
+        if (norms[item] == 0f) {
+            return;
+        }
+
+        RatingMatrix.Row column = ws.column;
+        RatingMatrix.Row row = ws.row;
+        matrix.itemColumn(item, column);
+        for (int p = column.from; p < column.to; p++) {
+            matrix.userRow(column.ids[p], row);
+            if (row.size() > settings.maxRatingsPerUser()) {
+                continue;
+            }
+            float mean = row.mean;
+            float centered = column.values[p] - mean;
+            for (int q = row.from; q < row.to; q++) {
+                int other = row.ids[q];
+                if (other == item) {
+                    continue;
+                }
+                if (ws.coRaters[other] == 0) {
+                    ws.touched[ws.touchedSize++] = other;
+                }
+                ws.coRaters[other]++;
+                ws.dot[other] += centered * (row.values[q] - mean);
+            }
+        }
+
+        for (int i = 0; i < ws.touchedSize; i++) {
+            int other = ws.touched[i];
+            float similarity = 0f;
+            if (norms[other] > 0f) {
+                int n = ws.coRaters[other];
+                similarity = ws.dot[other] / (norms[item] * norms[other]) * (n / (n + settings.shrinkage()));
+            }
+            if (similarity > 0f) {
+                offer(item, other, similarity);
+            }
+            if (patch != null && !patch.get(other)) {
+                remove(other, item);
+                if (similarity > 0f) {
+                    offer(other, item, similarity);
+                }
+            }
+            ws.dot[other] = 0f;
+            ws.coRaters[other] = 0;
+        }
+        ws.touchedSize = 0;
+    }
+
+    // Inserción ordenada en la franja de K; lo habitual es descartar comparando con la última
+    private void offer(int item, int candidate, float similarity) {
+        int[] neighbours = neighbourPages[item >>> PAGE_SHIFT];
+        float[] scores = scorePages[item >>> PAGE_SHIFT];
+        int base = offset(item);
+        int last = base + settings.k() - 1;
+        if (neighbours[last] != NONE && scores[last] >= similarity) {
+            return;
+        }
+        neighbours = writableNeighbours(item);
+        scores = scorePages[item >>> PAGE_SHIFT];
+        int pos = last;
+        while (pos > base && (neighbours[pos - 1] == NONE || scores[pos - 1] < similarity)) {
+            neighbours[pos] = neighbours[pos - 1];
+            scores[pos] = scores[pos - 1];
+            pos--;
+        }
+        neighbours[pos] = candidate;
+        scores[pos] = similarity;
+    }
+
+    private void remove(int item, int neighbour) {
+        int[] neighbours = neighbourPages[item >>> PAGE_SHIFT];
+        int base = offset(item);
+        int end = base + settings.k();
+        for (int pos = base; pos < end && neighbours[pos] != NONE; pos++) {
+            if (neighbours[pos] == neighbour) {
+                neighbours = writableNeighbours(item);
+                float[] scores = scorePages[item >>> PAGE_SHIFT];
+                System.arraycopy(neighbours, pos + 1, neighbours, pos, end - pos - 1);
+                System.arraycopy(scores, pos + 1, scores, pos, end - pos - 1);
+                neighbours[end - 1] = NONE;
+                scores[end - 1] = 0f;
+                return;
+            }
+        }
+    }
+
+    // Copia la página del libro la primera vez que esta versión la modifica; devuelve la franja de vecinos
+    private int[] writableNeighbours(int item) {
+        int page = item >>> PAGE_SHIFT;
+        if (!ownedPages[page]) {
+            neighbourPages[page] = neighbourPages[page].clone();
+            scorePages[page] = scorePages[page].clone();
+            ownedPages[page] = true;
+        }
+        return neighbourPages[page];
+    }
+
+    private void allocatePage(int page) {
+        neighbourPages[page] = new int[PAGE_SIZE * settings.k()];
+        scorePages[page] = new float[PAGE_SIZE * settings.k()];
+        Arrays.fill(neighbourPages[page], NONE);
+        ownedPages[page] = true;
+    }
+
+    private int offset(int item) {
+        return (item & (PAGE_SIZE - 1)) * settings.k();
+    }
+
+    private static int pageCount(int itemCount) {
+        return (itemCount + PAGE_SIZE - 1) >>> PAGE_SHIFT;
+    }
+
+    // Acumuladores densos por libro, reutilizados entre filas: solo se limpian las posiciones tocadas
+    private static final class Workspace {
+
+        private final float[] dot;
+        private final int[] coRaters;
+        private final int[] touched;
+        private int touchedSize;
+        private final RatingMatrix.Row column = new RatingMatrix.Row();
+        private final RatingMatrix.Row row = new RatingMatrix.Row();
+
+        private Workspace(int itemCount) {
+            this.dot = new float[itemCount];
+            this.coRaters = new int[itemCount];
+            this.touched = new int[itemCount];
+        }
+    }
+}
@@ -0,0 +1,623 @@
+package cloudlibrary.example.demo.recommend;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Matriz dispersa usuario x libro de valoraciones, en formato CSR por filas (usuario) y por
+ * columnas (libro). Cada valoración ocupa un int y un byte en cada orientación; los ids de base
+ * de datos se traducen a índices densos, que se conservan entre actualizaciones.
+ * Es inmutable: {@link #apply} devuelve una matriz nueva que comparte el CSR y guarda aparte, en una
+ * capa por encima, las filas de los usuarios y las columnas de los libros que han cambiado. Cuando
+ * esa capa crece demasiado se vuelve a compactar todo en CSR.
+ */
+public final class RatingMatrix {
+
+    /** Cambio de la valoración de un usuario a un libro; {@code value} 0 indica que se ha borrado. */
+    public record Change(long userId, long bookId, int value) {
+    }
+
+    /** Matriz resultante de aplicar cambios e índices de los libros cuya similitud puede haber cambiado. */
+    public record Update(RatingMatrix matrix, int[] touchedItems) {
+    }
+
+    // Fracción de las valoraciones que puede ocupar la capa de cambios antes de compactar
+    static final double COMPACT_FRACTION = 0.1;
+
+    private static final int[] NO_IDS = new int[0];
+    private static final byte[] NO_VALUES = new byte[0];
+
+    /** Fila de un usuario o columna de un libro: {@code ids[from, to)} y sus valores. Se reutiliza entre lecturas. */
+    static final class Row {
+
+        int[] ids;
+        byte[] values;
+        int from;
+        int to;
+        /** Media del usuario; solo en filas. */
+        float mean;
+
+        int size() {
+            return to - from;
+        }
+    }
+
+    // CSR de la última compactación: compartido entre versiones y nunca modificado
+    private final long[] userIds;
+    private final long[] itemIds;
+    private final LongIntHashMap userIndex;
+    private final LongIntHashMap itemIndex;
+
+    private final int[] userOffsets;
+    private final int[] userItems;
+    private final byte[] userValues;
+    private final float[] userMeans;
+
+    private final int[] itemOffsets;
+    private final int[] itemUsers;
+    private final byte[] itemValues;
+
+    // Cambios desde la compactación: cada versión tiene su copia, que solo se modifica dentro de apply
+    private final Ids newUsers;
+    private final Ids newItems;
+    private final Overlay users;
+    private final Overlay items;
+    private int ratingCount;
+
+    private RatingMatrix(long[] userIds, long[] itemIds, LongIntHashMap userIndex, LongIntHashMap itemIndex,
+                         int[] userOffsets, int[] userItems, byte[] userValues,
+                         int[] itemOffsets, int[] itemUsers, byte[] itemValues) {
+        this.userIds = userIds;
+        this.itemIds = itemIds;
+        this.userIndex = userIndex;
+        this.itemIndex = itemIndex;
+        this.userOffsets = userOffsets;
+        this.userItems = userItems;
+        this.userValues = userValues;
+        this.itemOffsets = itemOffsets;
+        this.itemUsers = itemUsers;
+        this.itemValues = itemValues;
+        this.userMeans = new float[userIds.length];
+        for (int u = 0; u < userIds.length; u++) {
+            userMeans[u] = mean(userValues, userOffsets[u], userOffsets[u + 1]);
+        }
+        this.newUsers = new Ids(userIds.length);
+        this.newItems = new Ids(itemIds.length);
+        this.users = new Overlay();
+        this.items = new Overlay();
+        this.ratingCount = userItems.length;
+    }
+
+    // Versión siguiente: comparte el CSR y copia la capa de cambios (solo referencias a las filas)
+    private RatingMatrix(RatingMatrix previous) {
+        this.userIds = previous.userIds;
+        this.itemIds = previous.itemIds;
+        this.userIndex = previous.userIndex;
+        this.itemIndex = previous.itemIndex;
+        this.userOffsets = previous.userOffsets;
+        this.userItems = previous.userItems;
+        this.userValues = previous.userValues;
+        this.userMeans = previous.userMeans;
+        this.itemOffsets = previous.itemOffsets;
+        this.itemUsers = previous.itemUsers;
+        this.itemValues = previous.itemValues;
+        this.newUsers = new Ids(previous.newUsers);
+        this.newItems = new Ids(previous.newItems);
+        this.users = new Overlay(previous.users);
+        this.items = new Overlay(previous.items);
+        this.ratingCount = previous.ratingCount;
+    }
+
+    public static Builder builder(int expectedRatings) {
+        return new Builder(expectedRatings);
+    }
+
+    public int userCount() {
+        return userIds.length + newUsers.size;
+    }
+
+    public int itemCount() {
+        return itemIds.length + newItems.size;
+    }
+
+    public int ratingCount() {
+        return ratingCount;
+    }
+
+    long userId(int user) {
+        return user < userIds.length ? userIds[user] : newUsers.id(user);
+    }
+
+    public long itemId(int item) {
+        return item < itemIds.length ? itemIds[item] : newItems.id(item);
+    }
+
+    /** Índice denso del libro, o {@link LongIntHashMap#MISSING} si no tiene valoraciones en el modelo. */
+    public int itemIndex(long bookId) {
+        int index = itemIndex.get(bookId);
+        return index != LongIntHashMap.MISSING ? index : newItems.get(bookId);
+    }
+
+    private int userIndex(long userId) {
+        int index = userIndex.get(userId);
+        return index != LongIntHashMap.MISSING ? index : newUsers.get(userId);
+    }
+
+    /** Libros valorados por el usuario, con sus valores y su media. */
+    void userRow(int user, Row row) {
+        if (users.read(user, row)) {
+            return;
+        }
+        if (user < userIds.length) {
+            row.ids = userItems;
+            row.values = userValues;
+            row.from = userOffsets[user];
+            row.to = userOffsets[user + 1];
+            row.mean = userMeans[user];
+        } else {
+            empty(row);
+        }
+    }
+
+    /** Usuarios que han valorado el libro, con sus valores. */
+    void itemColumn(int item, Row column) {
+        if (items.read(item, column)) {
+            return;
+        }
+        if (item < itemIds.length) {
+            column.ids = itemUsers;
+            column.values = itemValues;
+            column.from = itemOffsets[item];
+            column.to = itemOffsets[item + 1];
+            column.mean = 0f;
+        } else {
+            empty(column);
+        }
+    }
+
+    public long memoryBytes() {
+        return (long) (userIds.length + itemIds.length) * Long.BYTES
+                + userIndex.memoryBytes() + itemIndex.memoryBytes()
+                + (long) (userOffsets.length + itemOffsets.length) * Integer.BYTES
+                + (long) (userItems.length + itemUsers.length) * Integer.BYTES
+                + userValues.length + itemValues.length
+                + (long) userMeans.length * Float.BYTES
+                + newUsers.memoryBytes() + newItems.memoryBytes()
+                + users.memoryBytes() + items.memoryBytes();
+    }
+
+    /**
+     * Aplica los cambios (el último gana si un par usuario-libro se repite). Los libros afectados son
+     * todos los valorados, antes o después, por algún usuario modificado: al cambiar su media cambian
+     * sus valores centrados en todos ellos. El coste es el de las filas de los usuarios modificados y
+     * las columnas de los libros cambiados, no el de la matriz entera, salvo cuando toca compactar.
+     */
+    public Update apply(List<Change> changes) {
+        return apply(changes, COMPACT_FRACTION);
+    }
+
+    Update apply(List<Change> changes, double compactFraction) {
+        RatingMatrix next = new RatingMatrix(this);
+        Row row = new Row();
+
+        // Perfil nuevo de cada usuario modificado, partiendo de su fila actual
+        LongIntHashMap profileByUser = new LongIntHashMap(changes.size());
+        List<Profile> profiles = new ArrayList<>();
+        BitSet touched = new BitSet();
+        for (Change change : changes) {
+            int user = next.userIndexOrAdd(change.userId());
+            int item = next.itemIndexOrAdd(change.bookId());
+            int slot = profileByUser.get(user);
+            if (slot == LongIntHashMap.MISSING) {
+                slot = profiles.size();
+                profileByUser.put(user, slot);
+                profiles.add(currentProfile(user, touched, row));
+            }
+            int value = change.value();
+            profiles.get(slot).set(item, (value >= 1 && value <= 5) ? value : 0);
+            touched.set(item);
+        }
+
+        // Filas nuevas de los usuarios y, aparte, los pares (libro, usuario) cuyo valor cambia
+        int[] patchItems = new int[changes.size()];
+        int[] patchUsers = new int[changes.size()];
+        int[] patchValues = new int[changes.size()];
+        int patches = 0;
+        for (Profile profile : profiles) {
+            int kept = 0;
+            for (int i = 0; i < profile.size; i++) {
+                if (profile.values[i] > 0) {
+                    kept++;
+                }
+                if (profile.values[i] != profile.before[i]) {
+                    patchItems[patches] = profile.items[i];
+                    patchUsers[patches] = profile.user;
+                    patchValues[patches] = profile.values[i];
+                    patches++;
+                    next.ratingCount += (profile.values[i] > 0 ? 1 : 0) - (profile.before[i] > 0 ? 1 : 0);
+                }
+            }
+            int[] rowItems = new int[kept];
+            byte[] rowValues = new byte[kept];
+            int pos = 0;
+            for (int i = 0; i < profile.size; i++) {
+                if (profile.values[i] > 0) {
+                    rowItems[pos] = profile.items[i];
+                    rowValues[pos++] = (byte) profile.values[i];
+                }
+            }
+            next.users.put(profile.user, rowItems, rowValues, mean(rowValues, 0, kept));
+        }
+
+        // Columnas: se agrupan los cambios por libro y cada columna afectada se reescribe una vez
+        long[] order = new long[patches];
+        for (int i = 0; i < patches; i++) {
+            order[i] = ((long) patchItems[i] << 32) | i;
+        }
+        Arrays.sort(order);
+        for (int start = 0, end; start < patches; start = end) {
+            int item = (int) (order[start] >>> 32);
+            end = start + 1;
+            while (end < patches && (int) (order[end] >>> 32) == item) {
+                end++;
+            }
+            next.patchColumn(item, order, start, end, patchUsers, patchValues, row);
+        }
+
+        if (next.users.entries + next.items.entries > compactFraction * next.ratingCount) {
+            next = next.compact();
+        }
+        return new Update(next, touched.stream().toArray());
+    }
+
+    // Columna actual del libro sin los usuarios cambiados, más los que siguen valorándolo
+    private void patchColumn(int item, long[] order, int from, int to, int[] patchUsers, int[] patchValues, Row column) {
+        LongIntHashMap changed = new LongIntHashMap(to - from);
+        for (int i = from; i < to; i++) {
+            changed.put(patchUsers[(int) order[i]], i);
+        }
+        itemColumn(item, column);
+        int[] columnUsers = new int[column.size() + (to - from)];
+        byte[] columnValues = new byte[columnUsers.length];
+        int size = 0;
+        for (int p = column.from; p < column.to; p++) {
+            if (changed.get(column.ids[p]) == LongIntHashMap.MISSING) {
+                columnUsers[size] = column.ids[p];
+                columnValues[size++] = column.values[p];
+            }
+        }
+        for (int i = from; i < to; i++) {
+            int patch = (int) order[i];
+            if (patchValues[patch] > 0) {
+                columnUsers[size] = patchUsers[patch];
+                columnValues[size++] = (byte) patchValues[patch];
+            }
+        }
+        items.put(item, Arrays.copyOf(columnUsers, size), Arrays.copyOf(columnValues, size), 0f);
+    }
+
+    // Todo a CSR otra vez, conservando los índices; deja la capa de cambios vacía
+    private RatingMatrix compact() {
+        Builder builder = new Builder(this, ratingCount);
+        Row row = new Row();
+        for (int user = 0; user < userCount(); user++) {
+            userRow(user, row);
+            for (int p = row.from; p < row.to; p++) {
+                builder.addIndexed(user, row.ids[p], row.values[p]);
+            }
+        }
+        return builder.build();
+    }
+
+    private int userIndexOrAdd(long userId) {
+        int index = userIndex(userId);
+        return index != LongIntHashMap.MISSING ? index : newUsers.add(userId);
+    }
+
+    private int itemIndexOrAdd(long bookId) {
+        int index = itemIndex(bookId);
+        return index != LongIntHashMap.MISSING ? index : newItems.add(bookId);
+    }
+
+    // Fila actual del usuario; sus libros quedan marcados como afectados
+    private Profile currentProfile(int user, BitSet touched, Row row) {
+        Profile profile = new Profile(user);
+        userRow(user, row);
+        for (int p = row.from; p < row.to; p++) {
+            profile.load(row.ids[p], row.values[p]);
+            touched.set(row.ids[p]);
+        }
+        return profile;
+    }
+
+    private static float mean(byte[] values, int from, int to) {
+        long sum = 0;
+        for (int p = from; p < to; p++) {
+            sum += values[p];
+        }
+        return (to > from) ? (float) sum / (to - from) : 0f;
+    }
+
+    private static void empty(Row row) {
+        row.ids = NO_IDS;
+        row.values = NO_VALUES;
+        row.from = 0;
+        row.to = 0;
+        row.mean = 0f;
+    }
+
+    // Perfil de un usuario como pares (libro, valor), con el valor anterior de cada uno; los cambios por
+    // refresco son pocos, basta búsqueda lineal
+    private static final class Profile {
+
+        private final int user;
+        private int[] items = new int[8];
+        private int[] values = new int[8];
+        private int[] before = new int[8];
+        private int size;
+
+        private Profile(int user) {
+            this.user = user;
+        }
+
+        private void load(int item, int value) {
+            append(item, value, value);
+        }
+
+        private void set(int item, int value) {
+            for (int i = 0; i < size; i++) {
+                if (items[i] == item) {
+                    values[i] = value;
+                    return;
+                }
+            }
+            append(item, value, 0);
+        }
+
+        private void append(int item, int value, int previous) {
+            if (size == items.length) {
+                items = Arrays.copyOf(items, size * 2);
+                values = Arrays.copyOf(values, size * 2);
+                before = Arrays.copyOf(before, size * 2);
+            }
+            items[size] = item;
+            values[size] = value;
+            before[size] = previous;
+            size++;
+        }
+    }
+
+    // Ids añadidos desde la compactación; sus índices siguen a los del CSR
+    private static final class Ids {
+
+        private final int offset;
+        private final LongIntHashMap index;
+        private long[] ids;
+        private int size;
+
+        private Ids(int offset) {
+            this.offset = offset;
+            this.index = new LongIntHashMap(16);
+            this.ids = new long[16];
+        }
+
+        private Ids(Ids previous) {
+            this.offset = previous.offset;
+            this.index = previous.index.copy();
+            this.ids = previous.ids.clone();
+            this.size = previous.size;
+        }
+
+        private int get(long id) {
+            return size == 0 ? LongIntHashMap.MISSING : index.get(id);
+        }
+
+        private int add(long id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size] = id;
+            index.put(id, offset + size);
+            return offset + size++;
+        }
+
+        private long id(int i) {
+            return ids[i - offset];
+        }
+
+        private long memoryBytes() {
+            return (long) ids.length * Long.BYTES + index.memoryBytes();
+        }
+    }
+
+    // Filas (o columnas) reescritas desde la compactación, por índice. Las filas no se modifican
+    // nunca: una versión nueva copia el mapa y los arrays de referencias, no las valoraciones
+    private static final class Overlay {
+
+        private final LongIntHashMap slots;
+        private int[][] ids;
+        private byte[][] values;
+        private float[] means;
+        private int size;
+        private long entries;
+
+        private Overlay() {
+            this.slots = new LongIntHashMap(16);
+            this.ids = new int[16][];
+            this.values = new byte[16][];
+            this.means = new float[16];
+        }
+
+        private Overlay(Overlay previous) {
+            this.slots = previous.slots.copy();
+            this.ids = previous.ids.clone();
+            this.values = previous.values.clone();
+            this.means = previous.means.clone();
+            this.size = previous.size;
+            this.entries = previous.entries;
+        }
+
+        private boolean read(int index, Row row) {
+            if (size == 0) {
+                return false;
+            }
+            int slot = slots.get(index);
+            if (slot == LongIntHashMap.MISSING) {
+                return false;
+            }
+            row.ids = ids[slot];
+            row.values = values[slot];
+            row.from = 0;
+            row.to = ids[slot].length;
+            row.mean = means[slot];
+            return true;
+        }
+
+        private void put(int index, int[] rowIds, byte[] rowValues, float mean) {
+            int slot = slots.get(index);
+            if (slot == LongIntHashMap.MISSING) {
+                if (size == ids.length) {
+                    ids = Arrays.copyOf(ids, size * 2);
+                    values = Arrays.copyOf(values, size * 2);
+                    means = Arrays.copyOf(means, size * 2);
+                }
+                slot = size++;
+                slots.put(index, slot);
+            } else {
+                entries -= ids[slot].length;
+            }
+            ids[slot] = rowIds;
+            values[slot] = rowValues;
+            means[slot] = mean;
+            entries += rowIds.length;
+        }
+
+        private long memoryBytes() {
+            return slots.memoryBytes() + (long) ids.length * (2L * Long.BYTES + Float.BYTES)
+                    + entries * (Integer.BYTES + 1);
+        }
+    }
+
+    /**
+     * Acumula valoraciones en arrays primitivos crecientes y las ordena en CSR con counting sort.
+     * La matriz construida comparte los índices del builder, que no debe reutilizarse.
+     */
+    public static final class Builder {
+
+        private final LongIntHashMap userIndex;
+        private final LongIntHashMap itemIndex;
+        private long[] userIds;
+        private long[] itemIds;
+        private int userCount;
+        private int itemCount;
+
+        private int[] users;
+        private int[] items;
+        private byte[] values;
+        private int size;
+
+        private Builder(int expectedRatings) {
+            int capacity = Math.max(16, expectedRatings);
+            this.userIndex = new LongIntHashMap(Math.max(16, capacity / 16));
+            this.itemIndex = new LongIntHashMap(Math.max(16, capacity / 64));
+            this.userIds = new long[Math.max(16, capacity / 16)];
+            this.itemIds = new long[Math.max(16, capacity / 64)];
+            this.users = new int[capacity];
+            this.items = new int[capacity];
+            this.values = new byte[capacity];
+        }
+
+        // Conserva los índices de la matriz de partida
+        private Builder(RatingMatrix base, int expectedRatings) {
+            this(expectedRatings);
+            for (int user = 0; user < base.userCount(); user++) {
+                userIndex(base.userId(user));
+            }
+            for (int item = 0; item < base.itemCount(); item++) {
+                itemIndex(base.itemId(item));
+            }
+        }
+
+        public Builder add(long userId, long bookId, int value) {
+            if (value < 1 || value > 5) {
+                return this;
+            }
+            addIndexed(userIndex(userId), itemIndex(bookId), value);
+            return this;
+        }
+
+        private void addIndexed(int user, int item, int value) {
+            if (size == users.length) {
+                int capacity = users.length + (users.length >> 1);
+                users = Arrays.copyOf(users, capacity);
+                items = Arrays.copyOf(items, capacity);
+                values = Arrays.copyOf(values, capacity);
+            }
+            users[size] = user;
+            items[size] = item;
+            values[size] = (byte) value;
+            size++;
+        }
+
+        private int userIndex(long userId) {
+            int index = userIndex.get(userId);
+            if (index == LongIntHashMap.MISSING) {
+                if (userCount == userIds.length) {
+                    userIds = Arrays.copyOf(userIds, userCount * 2);
+                }
+                index = userCount++;
+                userIds[index] = userId;
+                userIndex.put(userId, index);
+            }
+            return index;
+        }
+
+        private int itemIndex(long bookId) {
+            int index = itemIndex.get(bookId);
+            if (index == LongIntHashMap.MISSING) {
+                if (itemCount == itemIds.length) {
+                    itemIds = Arrays.copyOf(itemIds, itemCount * 2);
+                }
+                index = itemCount++;
+                itemIds[index] = bookId;
+                itemIndex.put(bookId, index);
+            }
+            return index;
+        }
+
+        public RatingMatrix build() {
+            int[] userOffsets = new int[userCount + 1];
+            int[] itemOffsets = new int[itemCount + 1];
+            for (int i = 0; i < size; i++) {
+                userOffsets[users[i] + 1]++;
+                itemOffsets[items[i] + 1]++;
+            }
+            for (int u = 0; u < userCount; u++) {
+                userOffsets[u + 1] += userOffsets[u];
+            }
+            for (int it = 0; it < itemCount; it++) {
+                itemOffsets[it + 1] += itemOffsets[it];
+            }
+
+            int[] userItems = new int[size];
+            byte[] userValues = new byte[size];
+            int[] itemUsers = new int[size];
+            byte[] itemValues = new byte[size];
+            int[] userCursor = Arrays.copyOf(userOffsets, userCount);
+            int[] itemCursor = Arrays.copyOf(itemOffsets, itemCount);
+            for (int i = 0; i < size; i++) {
+                int up = userCursor[users[i]]++;
+                userItems[up] = items[i];
+                userValues[up] = values[i];
+                int ip = itemCursor[items[i]]++;
+                itemUsers[ip] = users[i];
+                itemValues[ip] = values[i];
+            }
+
+            return new RatingMatrix(Arrays.copyOf(userIds, userCount), Arrays.copyOf(itemIds, itemCount),
+                    userIndex, itemIndex, userOffsets, userItems, userValues, itemOffsets, itemUsers, itemValues);
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package cloudlibrary.example.demo.recommend;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Modelo de recomendación por libros similares: la matriz de valoraciones y los K vecinos de cada
+ * libro. Es inmutable; {@link #update} devuelve otro modelo, así que se publica con una referencia
+ * atómica y las lecturas no se bloquean nunca.
+ */
+public final class RecommendationModel {
+
+    /** Libro recomendado con la valoración que se predice para el usuario. */
+    public record ScoredBook(long bookId, double score) {
+    }
+
+    private static final double FULL_RECOMPUTE_FRACTION = 0.1;
+
+    private final RatingMatrix matrix;
+    private final ItemNeighbours neighbours;
+    private final Instant builtAt;
+
+    private RecommendationModel(RatingMatrix matrix, ItemNeighbours neighbours, Instant builtAt) {
+        this.matrix = matrix;
+        this.neighbours = neighbours;
+        this.builtAt = builtAt;
+    }
+
+    public static RecommendationModel build(RatingMatrix matrix, ItemNeighbours.Settings settings) {
+        return new RecommendationModel(matrix, ItemNeighbours.compute(matrix, settings), Instant.now());
+    }
+
+    /**
+     * Aplica cambios recalculando solo los libros afectados. Si afectan a buena parte del catálogo
+     * sale más barato el cálculo completo, que además es paralelo.
+     */
+    public RecommendationModel update(List<RatingMatrix.Change> changes) {
+        if (changes.isEmpty()) {
+            return this;
+        }
+        RatingMatrix.Update update = matrix.apply(changes);
+        RatingMatrix next = update.matrix();
+        ItemNeighbours nextNeighbours = (update.touchedItems().length > next.itemCount() * FULL_RECOMPUTE_FRACTION)
+                ? ItemNeighbours.compute(next, neighbours.settings())
+                : neighbours.update(next, update.touchedItems());
+        return new RecommendationModel(next, nextNeighbours, Instant.now());
+    }
+
+    /**
+     * Predicción para cada vecino de los libros valorados: media del usuario más la media de sus
+     * desviaciones ponderada por similitud. A igual predicción gana el de mayor similitud acumulada.
+     * Los libros ya valorados no se recomiendan.
+     */
+    public List<ScoredBook> recommend(long[] ratedBookIds, int[] values, int limit) {
+        if (ratedBookIds.length == 0) {
+            return List.of();
+        }
+        double mean = 0;
+        for (int value : values) {
+            mean += value;
+        }
+        mean /= values.length;
+
+        int k = neighbours.k();
+        LongIntHashMap rated = new LongIntHashMap(ratedBookIds.length);
+        int[] ratedItems = new int[ratedBookIds.length];
+        for (int i = 0; i < ratedBookIds.length; i++) {
+            ratedItems[i] = matrix.itemIndex(ratedBookIds[i]);
+            if (ratedItems[i] != LongIntHashMap.MISSING) {
+                rated.put(ratedItems[i], i);
+            }
+        }
+
+        // Candidatos: índice de libro -> posición en los acumuladores
+        LongIntHashMap slots = new LongIntHashMap(ratedBookIds.length * k);
+        int[] candidates = new int[ratedBookIds.length * k];
+        double[] weighted = new double[candidates.length];
+        double[] weights = new double[candidates.length];
+        int count = 0;
+        for (int i = 0; i < ratedItems.length; i++) {
+            int item = ratedItems[i];
+            if (item == LongIntHashMap.MISSING) {
+                continue;
+            }
+            double deviation = values[i] - mean;
+            for (int slot = 0; slot < k; slot++) {
+                int neighbour = neighbours.neighbour(item, slot);
+                if (neighbour == ItemNeighbours.NONE) {
+                    break;
+                }
+                if (rated.get(neighbour) != LongIntHashMap.MISSING) {
+                    continue;
+                }
+                int index = slots.get(neighbour);
+                if (index == LongIntHashMap.MISSING) {
+                    index = count++;
+                    slots.put(neighbour, index);
+                    candidates[index] = neighbour;
+                }
+                float similarity = neighbours.score(item, slot);
+                weighted[index] += similarity * deviation;
+                weights[index] += similarity;
+            }
+        }
+
+        double[] predicted = new double[count];
+        for (int i = 0; i < count; i++) {
+            predicted[i] = mean + weighted[i] / weights[i];
+        }
+
+        // Montículo de mínimos con los mejores candidatos: O(n log limit), sin ordenar todos
+        int size = Math.min(limit, count);
+        int[] heap = new int[size];
+        int filled = 0;
+        for (int i = 0; i < count; i++) {
+            if (filled < size) {
+                heap[filled] = i;
+                siftUp(heap, filled++, predicted, weights);
+            } else if (better(i, heap[0], predicted, weights)) {
+                heap[0] = i;
+                siftDown(heap, size, predicted, weights);
+            }
+        }
+
+        ScoredBook[] result = new ScoredBook[size];
+        for (int pos = size - 1; pos >= 0; pos--) {
+            int best = heap[0];
+            result[pos] = new ScoredBook(matrix.itemId(candidates[best]), predicted[best]);
+            heap[0] = heap[pos];
+            siftDown(heap, pos, predicted, weights);
+        }
+        return List.of(result);
+    }
+
+    private static boolean better(int a, int b, double[] predicted, double[] weights) {
+        return predicted[a] != predicted[b] ? predicted[a] > predicted[b] : weights[a] > weights[b];
+    }
+
+    private static void siftUp(int[] heap, int pos, double[] predicted, double[] weights) {
+        while (pos > 0) {
+            int parent = (pos - 1) / 2;
+            if (!better(heap[parent], heap[pos], predicted, weights)) {
+                break;
+            }
+            swap(heap, parent, pos);
+            pos = parent;
+        }
+    }
+
+    private static void siftDown(int[] heap, int size, double[] predicted, double[] weights) {
+        int pos = 0;
+        while (true) {
+            int worst = pos;
+            int left = 2 * pos + 1;
+            int right = left + 1;
+            if (left < size && better(heap[worst], heap[left], predicted, weights)) {
+                worst = left;
+            }
+            if (right < size && better(heap[worst], heap[right], predicted, weights)) {
+                worst = right;
+            }
+            if (worst == pos) {
+                return;
+            }
+            swap(heap, pos, worst);
+            pos = worst;
+        }
+    }
+
+    private static void swap(int[] heap, int a, int b) {
+        int tmp = heap[a];
+        heap[a] = heap[b];
+        heap[b] = tmp;
+    }
+
+    public Instant builtAt() {
+        return builtAt;
+    }
+
+    public int ratingCount() {
+        return matrix.ratingCount();
+    }
+
+    public long memoryBytes() {
+        return matrix.memoryBytes() + neighbours.memoryBytes();
+    }
+}
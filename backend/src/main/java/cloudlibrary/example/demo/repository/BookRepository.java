@@ -1,9 +1,123 @@
 package cloudlibrary.example.demo.repository;
 
+import cloudlibrary.example.demo.dto.BookDetail;
+import cloudlibrary.example.demo.dto.BookRatingStats;
+import cloudlibrary.example.demo.dto.BookRatingTotals;
+import cloudlibrary.example.demo.dto.BookSummary;
+import cloudlibrary.example.demo.dto.RatingStats;
+import cloudlibrary.example.demo.dto.VersionTag;
 import cloudlibrary.example.demo.model.Book;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_READ_ONLY;
+
 @Repository
-public interface BookRepository extends JpaRepository<Book, Long> {
+public interface BookRepository extends JpaRepository<Book, Long>, BookRepositoryCustom {
+
+    @Query("SELECT new cloudlibrary.example.demo.dto.BookSummary(b.id, b.title, b.author, c.id, c.name) " +
+            "FROM Book b LEFT JOIN b.category c WHERE b.id IN :ids")
+    List<BookSummary> findSummariesByIds(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT new cloudlibrary.example.demo.dto.BookDetail(b.id, b.title, b.author, b.description, c.id, c.name) " +
+            "FROM Book b LEFT JOIN b.category c WHERE b.id = :id")
+    Optional<BookDetail> findDetailById(@Param("id") Long id);
+
+    // Paginación keyset: busca por índice de la PK a partir del último id visto
+    @Query("SELECT new cloudlibrary.example.demo.dto.BookDetail(b.id, b.title, b.author, b.description, c.id, c.name) " +
+            "FROM Book b LEFT JOIN b.category c WHERE b.id > :afterId ORDER BY b.id")
+    List<BookDetail> findDetailsAfter(@Param("afterId") Long afterId, Limit limit);
+
+    // Cursor de servidor: con autocommit desactivado el driver trae las filas de fetch-size en fetch-size.
+    // Es una proyección, así que no se acumulan entidades gestionadas en el contexto de persistencia
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT new cloudlibrary.example.demo.dto.BookDetail(b.id, b.title, b.author, b.description, c.id, c.name) " +
+            "FROM Book b LEFT JOIN b.category c ORDER BY b.id")
+    Stream<BookDetail> streamAllDetails();
+
+    // La ficha incluye el nombre de la categoría, así que su versión forma parte del ETag
+    @Query("SELECT new cloudlibrary.example.demo.dto.VersionTag(b.version, c.id, c.version) " +
+            "FROM Book b LEFT JOIN b.category c WHERE b.id = :id")
+    Optional<VersionTag> findVersionTag(@Param("id") Long id);
+
+    // Agregados del ranking desde los contadores de books: una pasada por la tabla de libros, sin agrupar
+    // las valoraciones. Los libros borrados se excluyen aquí y no después del top-N, para no acortar el ranking
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT new cloudlibrary.example.demo.dto.BookRatingTotals(b.id, b.category.id, b.ratingCount, b.ratingSum) " +
+            "FROM Book b WHERE b.deletedAt IS NULL AND b.ratingCount > 0")
+    Stream<BookRatingTotals> streamRatingTotals();
+
+    // Media global del ranking, sin los libros borrados
+    @Query("SELECT new cloudlibrary.example.demo.dto.RatingStats(COALESCE(SUM(b.ratingCount), 0), COALESCE(SUM(b.ratingSum), 0)) " +
+            "FROM Book b WHERE b.deletedAt IS NULL")
+    RatingStats findGlobalRatingStats();
+
+    @Query("SELECT new cloudlibrary.example.demo.dto.RatingStats(b.ratingCount, b.ratingSum) FROM Book b WHERE b.id = :id")
+    Optional<RatingStats> findRatingStats(@Param("id") Long id);
+
+    @Query("SELECT new cloudlibrary.example.demo.dto.BookRatingStats(b.id, b.ratingCount, b.ratingSum) " +
+            "FROM Book b WHERE b.id IN :ids")
+    List<BookRatingStats> findRatingStatsByIds(@Param("ids") Collection<Long> ids);
+
+    // Incremento atómico en la propia fila: no hay lectura previa, así que no se pierden actualizaciones.
+    // Un libro borrado no se actualiza: 0 filas
+    @Modifying
+    @Query("UPDATE Book b SET b.ratingCount = b.ratingCount + :countDelta, b.ratingSum = b.ratingSum + :sumDelta, " +
+            "b.ratingAverage = CASE WHEN b.ratingCount + :countDelta = 0 THEN 0.0 " +
+            "ELSE CAST(b.ratingSum + :sumDelta AS Double) / (b.ratingCount + :countDelta) END " +
+            "WHERE b.id = :id AND b.deletedAt IS NULL")
+    int applyRatingDelta(@Param("id") Long id, @Param("countDelta") long countDelta, @Param("sumDelta") long sumDelta);
+
+    @Modifying
+    @Query("UPDATE Book b SET " +
+            "b.ratingCount = (SELECT COUNT(r) FROM Rating r WHERE r.book.id = b.id), " +
+            "b.ratingSum = (SELECT COALESCE(SUM(r.value), 0) FROM Rating r WHERE r.book.id = b.id), " +
+            "b.ratingAverage = (SELECT COALESCE(AVG(r.value), 0.0) FROM Rating r WHERE r.book.id = b.id) " +
+            "WHERE b.id BETWEEN :fromId AND :toId")
+    int recomputeRatingStats(@Param("fromId") Long fromId, @Param("toId") Long toId);
+
+    @Query("SELECT COALESCE(MAX(b.id), 0) FROM Book b")
+    long findMaxId();
+
+    // FOR SHARE sobre un libro vivo (@SQLRestriction filtra los borrados): un borrado lógico
+    // concurrente espera a que se confirme lo que se está colgando del libro
+    @Lock(LockModeType.PESSIMISTIC_READ)
+    @Query("SELECT b.id FROM Book b WHERE b.id = :id")
+    Optional<Long> lockLiveById(@Param("id") Long id);
+
+    // SQL nativo en las tres: la restricción de la entidad esconde justo las filas con deleted_at
+    @Modifying
+    @Query(value = "UPDATE books SET deleted_at = :deletedAt WHERE id = :id AND deleted_at IS NULL", nativeQuery = true)
+    int softDeleteById(@Param("id") Long id, @Param("deletedAt") LocalDateTime deletedAt);
+
+    // Recorre idx_books_deleted_at: los borrados más antiguos primero
+    @Query(value = "SELECT id FROM books WHERE deleted_at IS NOT NULL ORDER BY deleted_at, id LIMIT :limit",
+            nativeQuery = true)
+    List<Long> findSoftDeletedIds(@Param("limit") int limit);
+
+    @Modifying
+    @Query(value = "DELETE FROM books WHERE id = :id AND deleted_at IS NOT NULL", nativeQuery = true)
+    int purgeById(@Param("id") Long id);
 }
@@ -0,0 +1,20 @@
+package cloudlibrary.example.demo.repository;
+
+import cloudlibrary.example.demo.dto.BookPurgeStatus;
+import cloudlibrary.example.demo.dto.BookSort;
+import cloudlibrary.example.demo.dto.BookSummary;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface BookRepositoryCustom {
+
+    /** Fila del listado junto con el valor de su clave de ordenación, para construir el cursor. */
+    record ListedBook(BookSummary book, Object sortKey) {
+    }
+
+    List<ListedBook> findListing(Long categoryId, BookSort sort, BookSort.Position after, int limit);
+
+    /** Vacío si el libro no existe o no está borrado. */
+    Optional<BookPurgeStatus> findPurgeStatus(Long id);
+}
@@ -0,0 +1,128 @@
+package cloudlibrary.example.demo.repository;
+
+import cloudlibrary.example.demo.dto.BookPurgeStatus;
+import cloudlibrary.example.demo.dto.BookSort;
+import cloudlibrary.example.demo.dto.BookSummary;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.TypedQuery;
+import org.hibernate.query.NativeQuery;
+import org.hibernate.type.StandardBasicTypes;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Listado paginado por keyset. La consulta se compone según filtro y ordenación para que cada
+ * combinación sea un rango sobre uno de los índices de books y nunca una ordenación en memoria.
+ * El cursor se compara como fila, {@code (clave, id) > (:afterKey, :afterId)}: así es el punto de
+ * partida del índice y no un filtro sobre todo lo anterior, como pasaría con el OR equivalente.
+ */
+class BookRepositoryImpl implements BookRepositoryCustom {
+
+    private static final String SELECT =
+            "SELECT b.id AS id, b.title AS title, b.author AS author, c.id AS categoryId, c.name AS categoryName, " +
+            "b.ratingAverage AS rating FROM Book b LEFT JOIN b.category c";
+
+    // Cada recuento va por el índice de la clave foránea: ratings.book_id, posts.book_id y comments.post_id
+    private static final String PURGE_STATUS =
+            "SELECT b.deleted_at AS deleted_at, " +
+            "(SELECT COUNT(*) FROM posts p WHERE p.book_id = b.id) AS posts, " +
+            "(SELECT COUNT(*) FROM comments c JOIN posts p ON p.id = c.post_id WHERE p.book_id = b.id) AS comments, " +
+            "(SELECT COUNT(*) FROM ratings r WHERE r.book_id = b.id) AS ratings " +
+            "FROM books b WHERE b.id = :id AND b.deleted_at IS NOT NULL";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<ListedBook> findListing(Long categoryId, BookSort sort, BookSort.Position after, int limit) {
+        return switch (sort) {
+            case ID -> page(categoryId, sort, after == null ? null : "b.id > :afterId", "b.id ASC", after, limit);
+            case NEWEST -> page(categoryId, sort, after == null ? null : "b.id < :afterId", "b.id DESC", after, limit);
+            case RATING -> page(categoryId, sort,
+                    after == null ? null : "(b.ratingAverage, b.id) < (:afterKey, :afterId)",
+                    "b.ratingAverage DESC, b.id DESC", after, limit);
+            case TITLE -> nullablePage(categoryId, sort, "b.title", after, limit);
+            case AUTHOR -> nullablePage(categoryId, sort, "b.author", after, limit);
+        };
+    }
+
+    // Dos rangos consecutivos: valores no nulos por (clave, id) y después los nulos por id
+    private List<ListedBook> nullablePage(Long categoryId, BookSort sort, String key,
+                                          BookSort.Position after, int limit) {
+        List<ListedBook> rows = new ArrayList<>();
+        boolean inNullPhase = after != null && after.key() == null;
+        if (!inNullPhase) {
+            String keyset = key + " IS NOT NULL" + (after == null ? ""
+                    : " AND (" + key + ", b.id) > (:afterKey, :afterId)");
+            rows.addAll(page(categoryId, sort, keyset, key + " ASC, b.id ASC", after, limit));
+        }
+        if (rows.size() < limit) {
+            String keyset = key + " IS NULL" + (inNullPhase ? " AND b.id > :afterId" : "");
+            rows.addAll(page(categoryId, sort, keyset, "b.id ASC", inNullPhase ? after : null, limit - rows.size()));
+        }
+        return rows;
+    }
+
+    private List<ListedBook> page(Long categoryId, BookSort sort, String keyset, String orderBy,
+                                  BookSort.Position after, int limit) {
+        StringBuilder jpql = new StringBuilder(SELECT);
+        Map<String, Object> params = new HashMap<>();
+        List<String> conditions = new ArrayList<>();
+        if (categoryId != null) {
+            conditions.add("b.category.id = :categoryId");
+            params.put("categoryId", categoryId);
+        }
+        if (keyset != null) {
+            conditions.add(keyset);
+            if (keyset.contains(":afterId")) {
+                params.put("afterId", after.id());
+            }
+            if (keyset.contains(":afterKey")) {
+                params.put("afterKey", after.key());
+            }
+        }
+        if (!conditions.isEmpty()) {
+            jpql.append(" WHERE ").append(String.join(" AND ", conditions));
+        }
+        jpql.append(" ORDER BY ").append(orderBy);
+
+        TypedQuery<Tuple> query = entityManager.createQuery(jpql.toString(), Tuple.class);
+        params.forEach(query::setParameter);
+        query.setMaxResults(limit);
+
+        List<ListedBook> rows = new ArrayList<>();
+        for (Tuple t : query.getResultList()) {
+            BookSummary book = new BookSummary(t.get("id", Long.class), t.get("title", String.class),
+                    t.get("author", String.class), t.get("categoryId", Long.class), t.get("categoryName", String.class));
+            Object sortKey = switch (sort) {
+                case TITLE -> book.title();
+                case AUTHOR -> book.author();
+                case RATING -> t.get("rating", Double.class);
+                case ID, NEWEST -> book.id();
+            };
+            rows.add(new ListedBook(book, sortKey));
+        }
+        return rows;
+    }
+
+    @Override
+    public Optional<BookPurgeStatus> findPurgeStatus(Long id) {
+        List<Tuple> rows = entityManager.createNativeQuery(PURGE_STATUS, Tuple.class)
+                .setParameter("id", id)
+                .unwrap(NativeQuery.class)
+                .addScalar("deleted_at", StandardBasicTypes.LOCAL_DATE_TIME)
+                .addScalar("posts", StandardBasicTypes.LONG)
+                .addScalar("comments", StandardBasicTypes.LONG)
+                .addScalar("ratings", StandardBasicTypes.LONG)
+                .getResultList();
+        return rows.stream().findFirst().map(t -> new BookPurgeStatus(id, t.get("deleted_at", LocalDateTime.class),
+                t.get("posts", Long.class), t.get("comments", Long.class), t.get("ratings", Long.class)));
+    }
+}
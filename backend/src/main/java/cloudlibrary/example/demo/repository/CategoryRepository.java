@@ -1,10 +1,16 @@
 package cloudlibrary.example.demo.repository;
 
+import cloudlibrary.example.demo.dto.CollectionVersion;
 import cloudlibrary.example.demo.model.Category;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 @Repository
 public interface CategoryRepository extends JpaRepository<Category, Long> {
     boolean existsByName(String name);
+
+    @Query("SELECT new cloudlibrary.example.demo.dto.CollectionVersion(COUNT(c), COALESCE(MAX(c.id), 0L), COALESCE(SUM(c.version), 0L)) " +
+            "FROM Category c")
+    CollectionVersion findCollectionVersion();
 }
@@ -1,11 +1,129 @@
 package cloudlibrary.example.demo.repository;
 
+import cloudlibrary.example.demo.dto.CommentItem;
+import cloudlibrary.example.demo.dto.CommentRef;
+import cloudlibrary.example.demo.dto.CommentView;
 import cloudlibrary.example.demo.model.Comment;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
-public interface CommentRepository extends JpaRepository<Comment, Long> {
+public interface CommentRepository extends JpaRepository<Comment, Long>, CommentRepositoryCustom {
+
+    String ITEM_SELECT = "SELECT new cloudlibrary.example.demo.dto.CommentItem(" +
+            "c.id, c.content, c.author.id, c.post.id, c.parent.id, c.createdAt, c.replyCount) " +
+            "FROM Comment c ";
+
     List<Comment> findByPostId(Long postId);
+
+    // Primer nivel del post: recorre idx_comments_post_parent_created_at_id con parent_comment_id nulo
+    @Query(ITEM_SELECT + "WHERE c.post.id = :postId AND c.parent IS NULL ORDER BY c.createdAt, c.id")
+    List<CommentItem> findTopLevel(@Param("postId") Long postId, Limit limit);
+
+    // El cursor como comparación de filas, igual que el feed de posts: es el punto de partida del índice
+    @Query(ITEM_SELECT + "WHERE c.post.id = :postId AND c.parent IS NULL AND (c.createdAt, c.id) > (:createdAt, :id) " +
+            "ORDER BY c.createdAt, c.id")
+    List<CommentItem> findTopLevelAfter(@Param("postId") Long postId, @Param("createdAt") LocalDateTime createdAt,
+                                        @Param("id") Long id, Limit limit);
+
+    // Respuestas directas: recorre idx_comments_parent_created_at_id
+    @Query(ITEM_SELECT + "WHERE c.parent.id = :parentId ORDER BY c.createdAt, c.id")
+    List<CommentItem> findReplies(@Param("parentId") Long parentId, Limit limit);
+
+    @Query(ITEM_SELECT + "WHERE c.parent.id = :parentId AND (c.createdAt, c.id) > (:createdAt, :id) " +
+            "ORDER BY c.createdAt, c.id")
+    List<CommentItem> findRepliesAfter(@Param("parentId") Long parentId, @Param("createdAt") LocalDateTime createdAt,
+                                       @Param("id") Long id, Limit limit);
+
+    @Modifying
+    @Query("UPDATE Comment c SET c.replyCount = c.replyCount + 1 WHERE c.id = :id")
+    int applyReplyAdded(@Param("id") Long id);
+
+    // Tras un borrado, y en la reparación periódica por rangos de id
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Comment c SET c.replyCount = (SELECT COUNT(r) FROM Comment r WHERE r.parent.id = c.id) " +
+            "WHERE c.id BETWEEN :fromId AND :toId")
+    int recomputeReplyCounts(@Param("fromId") long fromId, @Param("toId") long toId);
+
+    /** Todos los comentarios del post en una consulta, sin cargar entidades ni relaciones. */
+    @Query("""
+            SELECT new cloudlibrary.example.demo.dto.CommentView(
+                c.id, c.content, c.author.id, c.post.id, c.parent.id, c.createdAt)
+            FROM Comment c
+            WHERE c.post.id = :postId
+            ORDER BY c.id""")
+    List<CommentView> findViewsByPostId(@Param("postId") Long postId);
+
+    @Query("SELECT c.path FROM Comment c WHERE c.id = :id AND c.path IS NOT NULL")
+    Optional<String> findPathById(@Param("id") Long id);
+
+    /** Subárbol por rango de ruta, raíz incluida, hasta la profundidad absoluta {@code maxDepth}. */
+    @Query("""
+            SELECT new cloudlibrary.example.demo.dto.CommentView(
+                c.id, c.content, c.author.id, c.post.id, c.parent.id, c.createdAt)
+            FROM Comment c
+            WHERE c.path >= :path AND c.path < :upperBound AND c.depth <= :maxDepth
+            ORDER BY c.path""")
+    List<CommentView> findSubtree(@Param("path") String path, @Param("upperBound") String upperBound,
+                                  @Param("maxDepth") int maxDepth);
+
+    /** Descendientes del comentario con esa ruta, sin contarlo a él. */
+    @Query("SELECT COUNT(c) FROM Comment c WHERE c.path > :path AND c.path < :upperBound")
+    long countDescendants(@Param("path") String path, @Param("upperBound") String upperBound);
+
+    // existsById sin los comentarios de posts de un libro borrado, que insertReply tampoco acepta
+    @Query("SELECT COUNT(c) > 0 FROM Comment c LEFT JOIN Post p ON p.id = c.post.id " +
+            "LEFT JOIN Book b ON b.id = p.book.id WHERE c.id = :id AND " + PostRepository.LIVE_BOOK)
+    boolean existsLiveById(@Param("id") Long id);
+
+    @Query("SELECT COALESCE(MAX(c.id), 0) FROM Comment c")
+    long findMaxId();
+
+    @Modifying
+    @Query(value = "UPDATE comments SET depth = 0, " +
+            "path = LPAD(CAST(id AS VARCHAR(20)), " + Comment.PATH_SEGMENT + ", '0') " +
+            "WHERE path IS NULL AND parent_comment_id IS NULL AND id BETWEEN :fromId AND :toId",
+            nativeQuery = true)
+    int backfillRootPaths(@Param("fromId") long fromId, @Param("toId") long toId);
+
+    /**
+     * Un nivel de respuestas cuyo padre ya tiene ruta; se repite hasta que no quede ninguna. Las que
+     * pasarían de MAX_DEPTH (hilos antiguos, de antes del límite) no caben en path y se quedan sin
+     * ruta, con el respaldo por parent de las lecturas y los borrados.
+     */
+    @Modifying
+    @Query(value = "UPDATE comments SET " +
+            "depth = (SELECT p.depth + 1 FROM comments p WHERE p.id = comments.parent_comment_id), " +
+            "path = (SELECT p.path FROM comments p WHERE p.id = comments.parent_comment_id) " +
+            "|| LPAD(CAST(id AS VARCHAR(20)), " + Comment.PATH_SEGMENT + ", '0') " +
+            "WHERE path IS NULL AND id BETWEEN :fromId AND :toId " +
+            "AND EXISTS (SELECT 1 FROM comments p WHERE p.id = comments.parent_comment_id AND p.path IS NOT NULL " +
+            "AND p.depth < " + (Comment.MAX_DEPTH - 1) + ")",
+            nativeQuery = true)
+    int backfillReplyPaths(@Param("fromId") long fromId, @Param("toId") long toId);
+
+    // Primer comentario al que el relleno puede dar ruta ya (raíz, o respuesta de un padre con ruta
+    // que admite otro nivel); null si no queda ninguno. Los anteriores sin ruta ya no la tendrán
+    @Query(value = "SELECT MIN(c.id) FROM comments c LEFT JOIN comments p ON p.id = c.parent_comment_id " +
+            "WHERE c.path IS NULL AND (c.parent_comment_id IS NULL " +
+            "OR (p.path IS NOT NULL AND p.depth < " + (Comment.MAX_DEPTH - 1) + "))",
+            nativeQuery = true)
+    Long findFirstBackfillableId();
+
+    @Query("SELECT new cloudlibrary.example.demo.dto.CommentRef(c.id, c.post.id, c.parent.id, c.path) " +
+            "FROM Comment c WHERE c.id = :id")
+    Optional<CommentRef> findRefById(@Param("id") Long id);
+
+    // Los de mayor id primero: si uno cuelga de otro del mismo autor, se borra antes el de abajo.
+    // Recorre idx_comments_author_id hacia atrás; incluye los que aún no tienen ruta
+    @Query("SELECT new cloudlibrary.example.demo.dto.CommentRef(c.id, c.post.id, c.parent.id, c.path) " +
+            "FROM Comment c WHERE c.author.id = :authorId ORDER BY c.id DESC")
+    List<CommentRef> findRefsByAuthorId(@Param("authorId") Long authorId, Limit limit);
 }
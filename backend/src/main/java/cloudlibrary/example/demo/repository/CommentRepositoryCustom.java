@@ -0,0 +1,29 @@
+package cloudlibrary.example.demo.repository;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+public interface CommentRepositoryCustom {
+
+    /** Respuesta insertada y post al que pertenece, heredado del padre. */
+    record InsertedReply(Long id, Long postId) {
+    }
+
+    /** Inserta un comentario de primer nivel con su ruta; vacío si el post no existe o su libro está borrado. */
+    Optional<Long> insertComment(Long postId, Long authorId, String content, LocalDateTime createdAt);
+
+    /**
+     * Inserta la respuesta copiando el post del padre y prolongando su ruta; vacío si el padre no
+     * existe o ya está en la profundidad máxima del hilo.
+     */
+    Optional<InsertedReply> insertReply(Long parentId, Long authorId, String content, LocalDateTime createdAt);
+
+    /**
+     * Borra una tanda de comentarios del post, de mayor a menor id. Una respuesta siempre tiene id
+     * mayor que su padre, así que cuando se borra un comentario sus respuestas ya no están.
+     */
+    int deleteChunkByPost(Long postId, int limit);
+
+    /** Borra una tanda del subárbol [path, upperBound) por ruta descendente: las respuestas antes que sus padres. */
+    int deleteSubtreeChunk(String path, String upperBound, int limit);
+}
@@ -0,0 +1,120 @@
+package cloudlibrary.example.demo.repository;
+
+import cloudlibrary.example.demo.model.Comment;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+/**
+ * Altas en una sola sentencia: el id sale de la secuencia dentro del propio INSERT, así que la ruta
+ * se escribe a la vez que la fila. Las respuestas no cargan el padre: el post, la profundidad y la
+ * ruta salen de su fila en el INSERT ... SELECT. Si el padre no existe o el hilo está al límite de
+ * profundidad no se inserta nada. Los borrados masivos van por tandas acotadas de DELETE, sin cargar
+ * entidades.
+ */
+class CommentRepositoryImpl implements CommentRepositoryCustom {
+
+    private static final String NEXT_ID = "(SELECT nextval('" + Comment.ID_SEQUENCE + "') AS id) n";
+
+    private static final String SEGMENT = "LPAD(CAST(n.id AS VARCHAR(20)), " + Comment.PATH_SEGMENT + ", '0')";
+
+    // Posts de un libro con borrado lógico: la FK no lo distingue, así que el libro se filtra aquí
+    private static final String LIVE_BOOK = "LEFT JOIN books b ON b.id = po.book_id ";
+
+    private static final String INSERT_COMMENT =
+            "INSERT INTO comments (id, content, created_at, author_id, post_id, depth, path) " +
+            "SELECT n.id, CAST(? AS VARCHAR(255)), CAST(? AS TIMESTAMP), CAST(? AS BIGINT), po.id, " +
+            "0, " + SEGMENT + " " +
+            "FROM posts po " + LIVE_BOOK + "CROSS JOIN " + NEXT_ID + " " +
+            "WHERE po.id = ? AND b.deleted_at IS NULL";
+
+    // Padre aún sin ruta (pendiente de CommentPathBackfillJob): la respuesta queda sin ruta y la recibe con él
+    private static final String INSERT_REPLY =
+            "INSERT INTO comments (id, content, created_at, author_id, post_id, parent_comment_id, depth, path) " +
+            "SELECT n.id, CAST(? AS VARCHAR(255)), CAST(? AS TIMESTAMP), CAST(? AS BIGINT), p.post_id, p.id, " +
+            "p.depth + 1, p.path || " + SEGMENT + " " +
+            "FROM comments p LEFT JOIN posts po ON po.id = p.post_id " + LIVE_BOOK + "CROSS JOIN " + NEXT_ID + " " +
+            "WHERE p.id = ? AND b.deleted_at IS NULL AND COALESCE(p.depth, 0) < " + (Comment.MAX_DEPTH - 1);
+
+    private static final String POSTGRES_INSERT_COMMENT = INSERT_COMMENT + " RETURNING id";
+    private static final String POSTGRES_INSERT_REPLY = INSERT_REPLY + " RETURNING id, post_id";
+
+    // H2 (tests): FINAL TABLE en lugar de RETURNING
+    private static final String H2_INSERT_COMMENT = "SELECT id FROM FINAL TABLE (" + INSERT_COMMENT + ")";
+    private static final String H2_INSERT_REPLY = "SELECT id, post_id FROM FINAL TABLE (" + INSERT_REPLY + ")";
+
+    private static final String POST_CHUNK =
+            "SELECT id FROM comments WHERE post_id = ? ORDER BY id DESC LIMIT ?";
+
+    private static final String SUBTREE_CHUNK =
+            "SELECT id FROM comments WHERE path >= ? AND path < ? ORDER BY path DESC LIMIT ?";
+
+    // H2 (tests) comprueba la FK padre-hijo fila a fila dentro de la sentencia; PostgreSQL, al
+    // final, así que allí basta el DELETE. En H2 la tanda se desengancha antes de sus padres
+    private static final String DETACH = "UPDATE comments SET parent_comment_id = NULL WHERE id IN (%s)";
+
+    private static final String DELETE = "DELETE FROM comments WHERE id IN (%s)";
+
+    private static final RowMapper<InsertedReply> INSERTED_REPLY = (rs, rowNum) ->
+            new InsertedReply(rs.getLong("id"), rs.getObject("post_id", Long.class));
+
+    private final JdbcTemplate jdbcTemplate;
+    private volatile Boolean postgres;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    CommentRepositoryImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public Optional<Long> insertComment(Long postId, Long authorId, String content, LocalDateTime createdAt) {
+        // El post o el autor pueden estar persistidos por JPA y aún sin escribir
+        entityManager.flush();
+        String sql = postgres() ? POSTGRES_INSERT_COMMENT : H2_INSERT_COMMENT;
+        return jdbcTemplate.queryForList(sql, Long.class, content, createdAt, authorId, postId).stream().findFirst();
+    }
+
+    @Override
+    public Optional<InsertedReply> insertReply(Long parentId, Long authorId, String content, LocalDateTime createdAt) {
+        // El padre puede estar persistido por JPA y aún sin escribir
+        entityManager.flush();
+        String sql = postgres() ? POSTGRES_INSERT_REPLY : H2_INSERT_REPLY;
+        return jdbcTemplate.query(sql, INSERTED_REPLY, content, createdAt, authorId, parentId).stream().findFirst();
+    }
+
+    @Override
+    public int deleteChunkByPost(Long postId, int limit) {
+        return deleteChunk(POST_CHUNK, postId, limit);
+    }
+
+    @Override
+    public int deleteSubtreeChunk(String path, String upperBound, int limit) {
+        return deleteChunk(SUBTREE_CHUNK, path, upperBound, limit);
+    }
+
+    // Sentencias directas: lo que hubiera cargado en el contexto de persistencia deja de ser válido
+    private int deleteChunk(String chunk, Object... args) {
+        entityManager.flush();
+        if (!postgres()) {
+            jdbcTemplate.update(DETACH.formatted(chunk), args);
+        }
+        int deleted = jdbcTemplate.update(DELETE.formatted(chunk), args);
+        entityManager.clear();
+        return deleted;
+    }
+
+    private boolean postgres() {
+        if (postgres == null) {
+            String product = jdbcTemplate.execute((ConnectionCallback<String>) c -> c.getMetaData().getDatabaseProductName());
+            postgres = "PostgreSQL".equalsIgnoreCase(product);
+        }
+        return postgres;
+    }
+}
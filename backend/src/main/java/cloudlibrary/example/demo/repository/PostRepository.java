@@ -1,13 +1,90 @@
 package cloudlibrary.example.demo.repository;
 
+import cloudlibrary.example.demo.dto.PostDetail;
+import cloudlibrary.example.demo.dto.PostFeedItem;
+import cloudlibrary.example.demo.dto.VersionTag;
 import cloudlibrary.example.demo.model.Post;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface PostRepository extends JpaRepository<Post, Long> {
+
+    String FEED_SELECT = "SELECT new cloudlibrary.example.demo.dto.PostFeedItem(p.id, p.title, p.content, " +
+            "a.id, a.username, b.id, b.title, p.createdAt, p.commentCount, p.lastCommentAt) " +
+            "FROM Post p LEFT JOIN p.author a LEFT JOIN Book b ON b.id = p.book.id ";
+
+    // La restricción de Book va en el ON del join: un libro borrado deja b a null pero no quita el
+    // post. Se une por la FK (p.book.id) y no por la asociación para poder compararla aquí con b.id
+    String LIVE_BOOK = "(p.book.id IS NULL OR b.id IS NOT NULL) ";
+
     List<Post> findByAuthorId(Long userId);
-    List<Post> findByBookId(Long bookId);
+
+    @Query("SELECT new cloudlibrary.example.demo.dto.VersionTag(p.version, b.id, b.version) " +
+            "FROM Post p LEFT JOIN Book b ON b.id = p.book.id WHERE p.id = :id AND " + LIVE_BOOK)
+    Optional<VersionTag> findVersionTag(@Param("id") Long id);
+
+    // Lo que cubre findVersionTag: columnas del post y el título del libro; el autor solo por su FK
+    @Query("SELECT new cloudlibrary.example.demo.dto.PostDetail(p.id, p.title, p.content, p.author.id, b.id, " +
+            "b.title, p.createdAt) FROM Post p LEFT JOIN Book b ON b.id = p.book.id WHERE p.id = :id AND " + LIVE_BOOK)
+    Optional<PostDetail> findDetailById(@Param("id") Long id);
+
+    // Recorre idx_posts_created_at_id hacia atrás
+    @Query(FEED_SELECT + "WHERE " + LIVE_BOOK + "ORDER BY p.createdAt DESC, p.id DESC")
+    List<PostFeedItem> findFeed(Limit limit);
+
+    // Comparación de filas: PostgreSQL la usa como punto de partida del índice; con el OR equivalente
+    // recorrería el índice desde el principio filtrando, y cada página sería más lenta que la anterior
+    @Query(FEED_SELECT + "WHERE " + LIVE_BOOK + "AND (p.createdAt, p.id) < (:createdAt, :id) " +
+            "ORDER BY p.createdAt DESC, p.id DESC")
+    List<PostFeedItem> findFeedBefore(@Param("createdAt") LocalDateTime createdAt, @Param("id") Long id, Limit limit);
+
+    // Mismo recorrido sobre idx_posts_book_created_at_id, acotado al libro
+    @Query(FEED_SELECT + "WHERE p.book.id = :bookId ORDER BY p.createdAt DESC, p.id DESC")
+    List<PostFeedItem> findByBook(@Param("bookId") Long bookId, Limit limit);
+
+    @Query(FEED_SELECT + "WHERE p.book.id = :bookId AND (p.createdAt, p.id) < (:createdAt, :id) " +
+            "ORDER BY p.createdAt DESC, p.id DESC")
+    List<PostFeedItem> findByBookBefore(@Param("bookId") Long bookId, @Param("createdAt") LocalDateTime createdAt,
+                                        @Param("id") Long id, Limit limit);
+
+    // Incremento atómico en la fila del post, como los agregados de valoraciones en books
+    @Modifying
+    @Query("UPDATE Post p SET p.commentCount = p.commentCount + 1, " +
+            "p.lastCommentAt = CASE WHEN p.lastCommentAt IS NULL OR p.lastCommentAt < :createdAt " +
+            "THEN :createdAt ELSE p.lastCommentAt END " +
+            "WHERE p.id = :id")
+    int applyCommentAdded(@Param("id") Long id, @Param("createdAt") LocalDateTime createdAt);
+
+    // Un borrado arrastra las respuestas y puede llevarse el último comentario: se recalcula
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Post p SET " +
+            "p.commentCount = (SELECT COUNT(c) FROM Comment c WHERE c.post.id = p.id), " +
+            "p.lastCommentAt = (SELECT MAX(c.createdAt) FROM Comment c WHERE c.post.id = p.id) " +
+            "WHERE p.id BETWEEN :fromId AND :toId")
+    int recomputeCommentStats(@Param("fromId") Long fromId, @Param("toId") Long toId);
+
+    @Query("SELECT COALESCE(MAX(p.id), 0) FROM Post p")
+    long findMaxId();
+
+    // Recorre idx_posts_author_id
+    @Query("SELECT p.id FROM Post p WHERE p.author.id = :authorId ORDER BY p.id")
+    List<Long> findIdsByAuthorId(@Param("authorId") Long authorId, Limit limit);
+
+    // Recorre idx_posts_book_created_at_id; el orden da igual porque se borran todos
+    @Query("SELECT p.id FROM Post p WHERE p.book.id = :bookId")
+    List<Long> findIdsByBookId(@Param("bookId") Long bookId, Limit limit);
+
+    // Sentencia directa: sin cargar el post ni recorrer la cascada de sus comentarios
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("DELETE FROM Post p WHERE p.id = :id")
+    int deletePostById(@Param("id") Long id);
 }
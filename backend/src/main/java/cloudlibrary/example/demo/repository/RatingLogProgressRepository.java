@@ -0,0 +1,9 @@
+package cloudlibrary.example.demo.repository;
+
+import cloudlibrary.example.demo.model.RatingLogProgress;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface RatingLogProgressRepository extends JpaRepository<RatingLogProgress, Long> {
+}
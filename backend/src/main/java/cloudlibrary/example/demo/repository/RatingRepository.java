@@ -1,17 +1,40 @@
 package cloudlibrary.example.demo.repository;
 
+import cloudlibrary.example.demo.dto.RatingBucket;
+import cloudlibrary.example.demo.dto.RatingRef;
+import cloudlibrary.example.demo.dto.RatingView;
 import cloudlibrary.example.demo.model.Rating;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
+import java.util.Optional;
 
 @Repository
-public interface RatingRepository extends JpaRepository<Rating, Long> {
-    List<Rating> findByBookId(Long bookId);
+public interface RatingRepository extends JpaRepository<Rating, Long>, RatingRepositoryCustom {
 
-    @Query("SELECT AVG(r.value) FROM Rating r WHERE r.book.id = :bookId")
-    Double findAverageByBook(@Param("bookId") Long bookId);
+    // Recorre idx_ratings_book_id (book_id, id) desde el cursor; el usuario se une solo para el nombre
+    @Query("SELECT new cloudlibrary.example.demo.dto.RatingView(r.id, r.value, u.id, u.username) " +
+            "FROM Rating r LEFT JOIN r.user u WHERE r.book.id = :bookId AND r.id > :afterId ORDER BY r.id")
+    List<RatingView> findViewsByBookAfter(@Param("bookId") Long bookId, @Param("afterId") Long afterId, Limit limit);
+
+    @Query("SELECT new cloudlibrary.example.demo.dto.RatingRef(r.book.id, r.user.id, r.value) FROM Rating r WHERE r.id = :id")
+    Optional<RatingRef> findRefById(@Param("id") Long id);
+
+    // Usa el índice único (user_id, book_id)
+    @Query("SELECT new cloudlibrary.example.demo.dto.RatingRef(r.book.id, r.user.id, r.value) FROM Rating r WHERE r.user.id = :userId")
+    List<RatingRef> findRefsByUserId(@Param("userId") Long userId);
+
+    // Recorre el índice (book_id, value) sin tocar la tabla
+    @Query("SELECT new cloudlibrary.example.demo.dto.RatingBucket(r.book.id, r.value, COUNT(r)) " +
+            "FROM Rating r WHERE r.value BETWEEN 1 AND 5 GROUP BY r.book.id, r.value")
+    List<RatingBucket> countByBookAndValue();
+
+    @Modifying
+    @Query("DELETE FROM Rating r WHERE r.id = :id")
+    int deleteByIdReturningCount(@Param("id") Long id);
 }
@@ -0,0 +1,32 @@
+package cloudlibrary.example.demo.repository;
+
+import cloudlibrary.example.demo.dto.RatingRef;
+
+import java.util.List;
+
+public interface RatingRepositoryCustom {
+
+    /** Fila afectada por el upsert; {@code previousValue} es null si se ha insertado. */
+    record Upserted(Long id, Integer previousValue) {
+
+        public boolean created() {
+            return previousValue == null;
+        }
+    }
+
+    Upserted upsert(Long userId, Long bookId, int value);
+
+    @FunctionalInterface
+    interface RatingVisitor {
+        void visit(long userId, long bookId, int value);
+    }
+
+    /** Recorre con cursor todas las valoraciones con usuario, sin crear un objeto por fila. Requiere transacción. */
+    void forEachUserRating(RatingVisitor visitor);
+
+    /** Borra hasta {@code limit} valoraciones del usuario y devuelve las que se han borrado de verdad. */
+    List<RatingRef> deleteChunkByUser(Long userId, int limit);
+
+    /** Igual que {@link #deleteChunkByUser}, para las valoraciones de un libro. */
+    List<RatingRef> deleteChunkByBook(Long bookId, int limit);
+}
@@ -0,0 +1,125 @@
+package cloudlibrary.example.demo.repository;
+
+import cloudlibrary.example.demo.dto.RatingRef;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.PreparedStatement;
+import java.util.List;
+
+/**
+ * Alta o actualización de la valoración (usuario, libro) contra el índice único
+ * uk_ratings_user_book, devolviendo el valor anterior sin guardarlo en la fila. En PostgreSQL es
+ * una sola sentencia: un CTE bloquea y lee la fila actual, y según exista la actualiza o inserta
+ * una nueva. La columna value va siempre entre comillas porque en H2 es palabra reservada.
+ */
+class RatingRepositoryImpl implements RatingRepositoryCustom {
+
+    // Si otra transacción inserta el mismo par entre la lectura y el INSERT, DO NOTHING no devuelve
+    // filas (tras esperar a su commit) y se repite: la segunda vez el CTE ya encuentra la fila
+    private static final String POSTGRES_UPSERT =
+            "WITH old AS (SELECT id, \"value\" FROM ratings WHERE user_id = ? AND book_id = ? FOR UPDATE), " +
+            "upd AS (UPDATE ratings r SET \"value\" = ? FROM old WHERE r.id = old.id " +
+            "RETURNING r.id, old.\"value\" AS previous_value), " +
+            "ins AS (INSERT INTO ratings (user_id, book_id, \"value\") " +
+            "SELECT CAST(? AS BIGINT), CAST(? AS BIGINT), CAST(? AS INT) WHERE NOT EXISTS (SELECT 1 FROM old) " +
+            "ON CONFLICT (user_id, book_id) DO NOTHING RETURNING id, CAST(NULL AS INT) AS previous_value) " +
+            "SELECT id, previous_value FROM upd UNION ALL SELECT id, previous_value FROM ins";
+
+    private static final int UPSERT_ATTEMPTS = 3;
+
+    // H2 (tests): lectura con bloqueo y después UPDATE o INSERT
+    private static final String H2_SELECT_FOR_UPDATE =
+            "SELECT id, \"value\" AS previous_value FROM ratings WHERE user_id = ? AND book_id = ? FOR UPDATE";
+    private static final String H2_UPDATE = "UPDATE ratings SET \"value\" = ? WHERE id = ?";
+    private static final String H2_INSERT =
+            "SELECT id FROM FINAL TABLE (INSERT INTO ratings (user_id, book_id, \"value\") VALUES (?, ?, ?))";
+
+    private static final String DELETE_USER_CHUNK =
+            "DELETE FROM ratings WHERE id IN (SELECT id FROM ratings WHERE user_id = ? LIMIT ?)";
+
+    // RETURNING / OLD TABLE: el descuento en books se hace solo por las filas que esta sentencia borró
+    private static final String POSTGRES_DELETE_USER_CHUNK = DELETE_USER_CHUNK + " RETURNING book_id, user_id, \"value\"";
+
+    private static final String H2_DELETE_USER_CHUNK =
+            "SELECT book_id, user_id, \"value\" FROM OLD TABLE (" + DELETE_USER_CHUNK + ")";
+
+    private static final String DELETE_BOOK_CHUNK =
+            "DELETE FROM ratings WHERE id IN (SELECT id FROM ratings WHERE book_id = ? LIMIT ?)";
+
+    private static final String POSTGRES_DELETE_BOOK_CHUNK = DELETE_BOOK_CHUNK + " RETURNING book_id, user_id, \"value\"";
+
+    private static final String H2_DELETE_BOOK_CHUNK =
+            "SELECT book_id, user_id, \"value\" FROM OLD TABLE (" + DELETE_BOOK_CHUNK + ")";
+
+    private static final String SCAN_USER_RATINGS =
+            "SELECT user_id, book_id, \"value\" FROM ratings WHERE user_id IS NOT NULL";
+    private static final int SCAN_FETCH_SIZE = 10_000;
+
+    private static final RowMapper<Upserted> UPSERTED = (rs, rowNum) ->
+            new Upserted(rs.getLong("id"), (Integer) rs.getObject("previous_value"));
+
+    private static final RowMapper<RatingRef> DELETED = (rs, rowNum) ->
+            new RatingRef(rs.getLong("book_id"), rs.getObject("user_id", Long.class), rs.getInt("value"));
+
+    private final JdbcTemplate jdbcTemplate;
+    private volatile Boolean postgres;
+
+    RatingRepositoryImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public Upserted upsert(Long userId, Long bookId, int value) {
+        if (!postgres()) {
+            return h2Upsert(userId, bookId, value);
+        }
+        for (int attempt = 0; attempt < UPSERT_ATTEMPTS; attempt++) {
+            List<Upserted> rows = jdbcTemplate.query(POSTGRES_UPSERT, UPSERTED, userId, bookId, value, userId, bookId, value);
+            if (!rows.isEmpty()) {
+                return rows.get(0);
+            }
+        }
+        throw new ConcurrencyFailureException("No se pudo guardar la valoración del usuario " + userId
+                + " para el libro " + bookId + " tras " + UPSERT_ATTEMPTS + " intentos");
+    }
+
+    private Upserted h2Upsert(Long userId, Long bookId, int value) {
+        List<Upserted> existing = jdbcTemplate.query(H2_SELECT_FOR_UPDATE, UPSERTED, userId, bookId);
+        if (!existing.isEmpty()) {
+            jdbcTemplate.update(H2_UPDATE, value, existing.get(0).id());
+            return existing.get(0);
+        }
+        return new Upserted(jdbcTemplate.queryForObject(H2_INSERT, Long.class, userId, bookId, value), null);
+    }
+
+    @Override
+    public List<RatingRef> deleteChunkByUser(Long userId, int limit) {
+        return jdbcTemplate.query(postgres() ? POSTGRES_DELETE_USER_CHUNK : H2_DELETE_USER_CHUNK, DELETED, userId, limit);
+    }
+
+    @Override
+    public List<RatingRef> deleteChunkByBook(Long bookId, int limit) {
+        return jdbcTemplate.query(postgres() ? POSTGRES_DELETE_BOOK_CHUNK : H2_DELETE_BOOK_CHUNK, DELETED, bookId, limit);
+    }
+
+    @Override
+    public void forEachUserRating(RatingVisitor visitor) {
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(SCAN_USER_RATINGS);
+            ps.setFetchSize(SCAN_FETCH_SIZE);
+            return ps;
+        }, (RowCallbackHandler) rs -> visitor.visit(rs.getLong(1), rs.getLong(2), rs.getInt(3)));
+    }
+
+    private boolean postgres() {
+        if (postgres == null) {
+            String product = jdbcTemplate.execute((ConnectionCallback<String>) c -> c.getMetaData().getDatabaseProductName());
+            postgres = "PostgreSQL".equalsIgnoreCase(product);
+        }
+        return postgres;
+    }
+}
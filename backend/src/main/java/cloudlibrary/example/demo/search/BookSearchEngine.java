@@ -0,0 +1,28 @@
+package cloudlibrary.example.demo.search;
+
+import cloudlibrary.example.demo.dto.BookSearchHit;
+
+import java.util.List;
+
+/**
+ * Motor de búsqueda de texto completo sobre título, autor y descripción.
+ * La implementación se elige con {@code app.search.engine} (postgres | memory).
+ */
+public interface BookSearchEngine {
+
+    /**
+     * Devuelve los libros que contienen todos los términos de la consulta,
+     * ordenados por relevancia descendente y, a igualdad, por id.
+     */
+    List<BookSearchHit> search(String query, int offset, int limit);
+
+    void index(Long bookId, String title, String author, String description);
+
+    void remove(Long bookId);
+
+    /**
+     * Se invoca tras escrituras masivas que no pasan por {@link #index}.
+     */
+    default void refresh() {
+    }
+}
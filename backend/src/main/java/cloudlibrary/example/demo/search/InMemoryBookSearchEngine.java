@@ -0,0 +1,275 @@
+package cloudlibrary.example.demo.search;
+
+import cloudlibrary.example.demo.dto.BookDetail;
+import cloudlibrary.example.demo.dto.BookSearchHit;
+import cloudlibrary.example.demo.dto.BookSummary;
+import cloudlibrary.example.demo.repository.BookRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Índice invertido en la JVM, pensado para H2 y tests. Casa los mismos libros que
+ * {@link PostgresBookSearchEngine}: configuración 'simple' (minúsculas, sin stemming) y todos los
+ * términos obligatorios. El orden solo se le parece: los pesos de título, autor y descripción son
+ * los de A/B/C en ts_rank, pero aquí la puntuación es la suma de pesos por aparición, sin la
+ * normalización ni la saturación por frecuencia de ts_rank, así que con varios términos o
+ * repeticiones dos libros pueden quedar en distinto orden que en PostgreSQL.
+ */
+@Component
+@ConditionalOnProperty(name = "app.search.engine", havingValue = "memory")
+public class InMemoryBookSearchEngine implements BookSearchEngine {
+
+    private static final Logger log = LoggerFactory.getLogger(InMemoryBookSearchEngine.class);
+
+    static final float TITLE_WEIGHT = 1.0f;
+    static final float AUTHOR_WEIGHT = 0.4f;
+    static final float DESCRIPTION_WEIGHT = 0.2f;
+
+    private static final int REBUILD_CHUNK = 1000;
+
+    private final BookRepository bookRepository;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Se sustituye entero al reconstruir; se lee y modifica bajo el lock
+    private Index current = new Index();
+
+    // Altas y bajas que llegan durante una reconstrucción (null = baja), para aplicarlas también
+    // al índice nuevo antes de publicarlo. Es null cuando no hay reconstrucción en curso
+    private Map<Long, Map<String, Float>> changedDuringRebuild;
+
+    public InMemoryBookSearchEngine(BookRepository bookRepository) {
+        this.bookRepository = bookRepository;
+    }
+
+    /**
+     * Construye el índice aparte y lo publica de una vez: mientras tanto las búsquedas siguen
+     * viendo el anterior completo, nunca uno vacío o a medio llenar.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void rebuild() {
+        lock.writeLock().lock();
+        try {
+            changedDuringRebuild = new HashMap<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        Index fresh = new Index();
+        try {
+            long afterId = 0;
+            List<BookDetail> chunk;
+            do {
+                chunk = bookRepository.findDetailsAfter(afterId, Limit.of(REBUILD_CHUNK));
+                for (BookDetail book : chunk) {
+                    fresh.put(book.id(), weights(book.title(), book.author(), book.description()));
+                    afterId = book.id();
+                }
+            } while (chunk.size() == REBUILD_CHUNK);
+        } catch (DataAccessException e) {
+            log.error("No se pudo construir el índice de búsqueda en memoria", e);
+            fresh = null;
+        }
+
+        int indexed;
+        lock.writeLock().lock();
+        try {
+            if (fresh != null) {
+                // Lo cambiado después de leer su tanda es más reciente que lo leído
+                changedDuringRebuild.forEach(fresh::put);
+                current = fresh;
+            }
+            changedDuringRebuild = null;
+            indexed = current.termsByBook.size();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (fresh != null) {
+            log.info("Índice de búsqueda en memoria construido con {} libros", indexed);
+        }
+    }
+
+    @Override
+    public void refresh() {
+        rebuild();
+    }
+
+    @Override
+    public List<BookSearchHit> search(String query, int offset, int limit) {
+        List<Match> matches = rank(query, offset, limit);
+        if (matches.isEmpty()) {
+            return List.of();
+        }
+
+        Map<Long, BookSummary> summaries = bookRepository
+                .findSummariesByIds(matches.stream().map(Match::bookId).toList()).stream()
+                .collect(Collectors.toMap(BookSummary::id, Function.identity()));
+
+        List<BookSearchHit> hits = new ArrayList<>(matches.size());
+        for (Match match : matches) {
+            BookSummary book = summaries.get(match.bookId());
+            if (book != null) {
+                hits.add(new BookSearchHit(book.id(), book.title(), book.author(),
+                        book.categoryId(), book.categoryName(), match.score()));
+            }
+        }
+        return hits;
+    }
+
+    List<Match> rank(String query, int offset, int limit) {
+        Set<String> terms = tokenize(query);
+        if (terms.isEmpty()) {
+            return List.of();
+        }
+
+        lock.readLock().lock();
+        try {
+            List<Map<Long, Float>> lists = new ArrayList<>(terms.size());
+            for (String term : terms) {
+                Map<Long, Float> list = current.postings.get(term);
+                if (list == null) {
+                    return List.of();
+                }
+                lists.add(list);
+            }
+            // Se recorre la lista de postings más corta y se comprueba en las demás:
+            // el coste depende de los documentos que casan, no del tamaño del catálogo
+            lists.sort(Comparator.comparingInt(Map::size));
+
+            List<Match> matches = new ArrayList<>();
+            for (Map.Entry<Long, Float> candidate : lists.get(0).entrySet()) {
+                double score = candidate.getValue();
+                boolean all = true;
+                for (int i = 1; i < lists.size() && all; i++) {
+                    Float weight = lists.get(i).get(candidate.getKey());
+                    if (weight == null) {
+                        all = false;
+                    } else {
+                        score += weight;
+                    }
+                }
+                if (all) {
+                    matches.add(new Match(candidate.getKey(), score));
+                }
+            }
+
+            matches.sort(Comparator.comparingDouble(Match::score).reversed().thenComparing(Match::bookId));
+            if (offset >= matches.size()) {
+                return List.of();
+            }
+            return List.copyOf(matches.subList(offset, Math.min(matches.size(), offset + limit)));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void index(Long bookId, String title, String author, String description) {
+        update(bookId, weights(title, author, description));
+    }
+
+    @Override
+    public void remove(Long bookId) {
+        update(bookId, null);
+    }
+
+    private void update(Long bookId, Map<String, Float> weights) {
+        lock.writeLock().lock();
+        try {
+            current.put(bookId, weights);
+            if (changedDuringRebuild != null) {
+                changedDuringRebuild.put(bookId, weights);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static Map<String, Float> weights(String title, String author, String description) {
+        Map<String, Float> weights = new HashMap<>();
+        addField(weights, title, TITLE_WEIGHT);
+        addField(weights, author, AUTHOR_WEIGHT);
+        addField(weights, description, DESCRIPTION_WEIGHT);
+        return weights;
+    }
+
+    private static void addField(Map<String, Float> weights, String text, float weight) {
+        if (text == null) {
+            return;
+        }
+        for (String token : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (!token.isEmpty()) {
+                weights.merge(token, weight, Float::sum);
+            }
+        }
+    }
+
+    static Set<String> tokenize(String text) {
+        Set<String> terms = new LinkedHashSet<>();
+        if (text == null) {
+            return terms;
+        }
+        for (String token : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (!token.isEmpty()) {
+                terms.add(token);
+            }
+        }
+        return terms;
+    }
+
+    record Match(Long bookId, double score) {
+    }
+
+    private static final class Index {
+
+        // término -> (id de libro -> peso acumulado del término en ese libro)
+        final Map<String, Map<Long, Float>> postings = new HashMap<>();
+        final Map<Long, Set<String>> termsByBook = new HashMap<>();
+
+        // weights null = quitar el libro
+        void put(Long bookId, Map<String, Float> weights) {
+            remove(bookId);
+            if (weights == null) {
+                return;
+            }
+            weights.forEach((term, weight) ->
+                    postings.computeIfAbsent(term, t -> new HashMap<>()).put(bookId, weight));
+            termsByBook.put(bookId, new HashSet<>(weights.keySet()));
+        }
+
+        private void remove(Long bookId) {
+            Set<String> terms = termsByBook.remove(bookId);
+            if (terms == null) {
+                return;
+            }
+            for (String term : terms) {
+                Map<Long, Float> list = postings.get(term);
+                if (list != null) {
+                    list.remove(bookId);
+                    if (list.isEmpty()) {
+                        postings.remove(term);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package cloudlibrary.example.demo.search;
+
+import cloudlibrary.example.demo.dto.BookSearchHit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Búsqueda sobre una columna tsvector generada en books con índice GIN.
+ * Postgres mantiene la columna al insertar/actualizar, así que index/remove no hacen nada.
+ */
+@Component
+@ConditionalOnProperty(name = "app.search.engine", havingValue = "postgres", matchIfMissing = true)
+public class PostgresBookSearchEngine implements BookSearchEngine {
+
+    private static final Logger log = LoggerFactory.getLogger(PostgresBookSearchEngine.class);
+
+    // Pesos A/B/C: el título pesa más que el autor y este más que la descripción
+    private static final String ADD_SEARCH_VECTOR = """
+            ALTER TABLE books ADD COLUMN IF NOT EXISTS search_vector tsvector
+            GENERATED ALWAYS AS (
+                setweight(to_tsvector('simple', coalesce(title, '')), 'A') ||
+                setweight(to_tsvector('simple', coalesce(author, '')), 'B') ||
+                setweight(to_tsvector('simple', coalesce(description, '')), 'C')
+            ) STORED""";
+
+    private static final String CREATE_GIN_INDEX =
+            "CREATE INDEX IF NOT EXISTS idx_books_search_vector ON books USING GIN (search_vector)";
+
+    private static final String SEARCH = """
+            SELECT b.id, b.title, b.author, c.id AS category_id, c.name AS category_name,
+                   ts_rank(b.search_vector, q) AS score
+            FROM books b
+            CROSS JOIN plainto_tsquery('simple', :query) q
+            LEFT JOIN categorias c ON c.id = b.category_id
+            WHERE b.search_vector @@ q AND b.deleted_at IS NULL
+            ORDER BY score DESC, b.id
+            LIMIT :limit OFFSET :offset""";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+
+    public PostgresBookSearchEngine(JdbcTemplate jdbcTemplate, NamedParameterJdbcTemplate namedJdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = namedJdbcTemplate;
+    }
+
+    // ddl-auto=update no sabe crear columnas generadas ni índices GIN: se crean aquí de forma idempotente
+    @EventListener(ApplicationReadyEvent.class)
+    public void createSearchSchema() {
+        try {
+            jdbcTemplate.execute(ADD_SEARCH_VECTOR);
+            jdbcTemplate.execute(CREATE_GIN_INDEX);
+            log.info("Índice de búsqueda de texto completo preparado en books.search_vector");
+        } catch (DataAccessException e) {
+            log.error("No se pudo preparar el índice de búsqueda de texto completo", e);
+        }
+    }
+
+    @Override
+    public List<BookSearchHit> search(String query, int offset, int limit) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("query", query)
+                .addValue("limit", limit)
+                .addValue("offset", offset);
+
+        return namedJdbcTemplate.query(SEARCH, params, (rs, rowNum) -> new BookSearchHit(
+                rs.getLong("id"),
+                rs.getString("title"),
+                rs.getString("author"),
+                rs.getObject("category_id", Long.class),
+                rs.getString("category_name"),
+                rs.getDouble("score")));
+    }
+
+    @Override
+    public void index(Long bookId, String title, String author, String description) {
+        // La columna generada se recalcula en el propio INSERT/UPDATE
+    }
+
+    @Override
+    public void remove(Long bookId) {
+        // Mientras espera la purga, el libro borrado se descarta por deleted_at; sale del índice GIN con el DELETE
+    }
+}
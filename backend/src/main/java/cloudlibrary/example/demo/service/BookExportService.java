@@ -0,0 +1,76 @@
+package cloudlibrary.example.demo.service;
+
+import cloudlibrary.example.demo.dto.BookDetail;
+import cloudlibrary.example.demo.repository.BookRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Exporta el catálogo completo como NDJSON con memoria constante: las filas se leen de un
+ * cursor de base de datos y se escriben en la respuesta según llegan.
+ */
+@Service
+public class BookExportService {
+
+    private static final Logger log = LoggerFactory.getLogger(BookExportService.class);
+
+    private static final int FLUSH_EVERY = 1000;
+
+    private final BookRepository bookRepository;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ObjectWriter rowWriter;
+
+    public BookExportService(BookRepository bookRepository,
+                             PlatformTransactionManager transactionManager,
+                             ObjectMapper objectMapper) {
+        this.bookRepository = bookRepository;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.rowWriter = objectMapper.writerFor(BookDetail.class);
+    }
+
+    public long exportNdjson(OutputStream target) throws IOException {
+        long start = System.currentTimeMillis();
+        BufferedOutputStream out = new BufferedOutputStream(target, 64 * 1024);
+
+        // El Stream solo es válido dentro de una transacción (cursor abierto en la conexión)
+        Long rows;
+        try {
+            rows = readOnlyTransaction.execute(status -> {
+                long count = 0;
+                try (Stream<BookDetail> books = bookRepository.streamAllDetails()) {
+                    Iterator<BookDetail> it = books.iterator();
+                    while (it.hasNext()) {
+                        out.write(rowWriter.writeValueAsBytes(it.next()));
+                        out.write('\n');
+                        if (++count % FLUSH_EVERY == 0) {
+                            out.flush();
+                        }
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return count;
+            });
+        } catch (UncheckedIOException e) {
+            // Normalmente el cliente ha cortado la conexión
+            throw e.getCause();
+        }
+        out.flush();
+
+        log.info("Exportación NDJSON del catálogo: {} libros en {} ms", rows, System.currentTimeMillis() - start);
+        return rows != null ? rows : 0;
+    }
+}
@@ -0,0 +1,240 @@
+package cloudlibrary.example.demo.service;
+
+import cloudlibrary.example.demo.dto.BookImportRow;
+import cloudlibrary.example.demo.dto.BookImportSummary;
+import cloudlibrary.example.demo.exception.InvalidRequestException;
+import cloudlibrary.example.demo.search.BookSearchEngine;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Importación masiva de libros leyendo la petición línea a línea (NDJSON o CSV).
+ *
+ * <p>Book usa IDENTITY, con lo que Hibernate desactiva el batching de INSERT. Este camino
+ * no necesita los ids generados, así que escribe con JDBC batch directamente: la base de
+ * datos asigna la identidad y el driver de Postgres reescribe cada lote en un único
+ * INSERT multi-fila (reWriteBatchedInserts).
+ */
+@Service
+public class BookImportService {
+
+    private static final Logger log = LoggerFactory.getLogger(BookImportService.class);
+
+    static final int MAX_REPORTED_ERRORS = 100;
+
+    private static final String INSERT_BOOK =
+            "INSERT INTO books (title, author, description, category_id) VALUES (?, ?, ?, ?)";
+
+    private static final int[] INSERT_TYPES = {Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.BIGINT};
+
+    public enum Format { NDJSON, CSV }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final BookSearchEngine bookSearchEngine;
+    private final ObjectReader rowReader;
+    private final int batchSize;
+
+    public BookImportService(JdbcTemplate jdbcTemplate,
+                             TransactionTemplate transactionTemplate,
+                             BookSearchEngine bookSearchEngine,
+                             ObjectMapper objectMapper,
+                             @Value("${app.books.import.batch-size:1000}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.bookSearchEngine = bookSearchEngine;
+        this.rowReader = objectMapper.readerFor(BookImportRow.class);
+        this.batchSize = batchSize;
+    }
+
+    public BookImportSummary importBooks(InputStream body, Format format) throws IOException {
+        long start = System.currentTimeMillis();
+        Progress progress = new Progress();
+        List<PendingRow> batch = new ArrayList<>(batchSize);
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+            Map<String, Integer> csvColumns = null;
+            String line;
+            long lineNumber = 0;
+
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                if (format == Format.CSV && csvColumns == null) {
+                    csvColumns = parseCsvHeader(line);
+                    continue;
+                }
+
+                progress.received++;
+                try {
+                    BookImportRow row = (format == Format.NDJSON) ? parseJson(line) : parseCsv(line, csvColumns);
+                    validate(row);
+                    batch.add(new PendingRow(lineNumber, row));
+                } catch (IllegalArgumentException e) {
+                    progress.fail(lineNumber, e.getMessage());
+                }
+
+                if (batch.size() == batchSize) {
+                    flush(batch, progress);
+                }
+            }
+        }
+        flush(batch, progress);
+
+        if (progress.imported > 0) {
+            bookSearchEngine.refresh();
+        }
+        log.info("Importación de libros terminada: {} recibidos, {} importados, {} fallidos en {} ms",
+                progress.received, progress.imported, progress.failed, System.currentTimeMillis() - start);
+        return new BookImportSummary(progress.received, progress.imported, progress.failed, progress.errors);
+    }
+
+    // Cada lote se confirma en su propia transacción
+    private void flush(List<PendingRow> batch, Progress progress) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(INSERT_BOOK,
+                    batch.stream().map(p -> toArgs(p.row())).toList(), INSERT_TYPES));
+            progress.imported += batch.size();
+        } catch (DataAccessException e) {
+            // Un fallo de BD (p. ej. category_id inexistente) tumba el lote entero:
+            // se reintenta fila a fila para importar las buenas y reportar solo las malas
+            for (PendingRow pending : batch) {
+                try {
+                    transactionTemplate.executeWithoutResult(status ->
+                            jdbcTemplate.update(INSERT_BOOK, toArgs(pending.row()), INSERT_TYPES));
+                    progress.imported++;
+                } catch (DataAccessException rowError) {
+                    progress.fail(pending.line(), "Error de base de datos: " + rowError.getMostSpecificCause().getMessage());
+                }
+            }
+        }
+        batch.clear();
+    }
+
+    private BookImportRow parseJson(String line) {
+        try {
+            return rowReader.readValue(line);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("JSON no válido: " + e.getOriginalMessage());
+        }
+    }
+
+    private static Map<String, Integer> parseCsvHeader(String line) {
+        List<String> names = splitCsv(line);
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = 0; i < names.size(); i++) {
+            columns.put(names.get(i).trim().toLowerCase(Locale.ROOT), i);
+        }
+        if (!columns.containsKey("title") || !columns.containsKey("author")) {
+            throw new InvalidRequestException("La cabecera CSV debe incluir las columnas title y author");
+        }
+        return columns;
+    }
+
+    private static BookImportRow parseCsv(String line, Map<String, Integer> columns) {
+        List<String> values = splitCsv(line);
+        String categoryId = column(values, columns, "categoryid");
+        try {
+            return new BookImportRow(
+                    column(values, columns, "title"),
+                    column(values, columns, "author"),
+                    column(values, columns, "description"),
+                    (categoryId == null || categoryId.isBlank()) ? null : Long.valueOf(categoryId.trim()));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("categoryId no es numérico: " + categoryId);
+        }
+    }
+
+    private static String column(List<String> values, Map<String, Integer> columns, String name) {
+        Integer index = columns.get(name);
+        return (index == null || index >= values.size()) ? null : values.get(index);
+    }
+
+    // CSV RFC 4180 de una sola línea: comas como separador, comillas dobles escapadas como ""
+    static List<String> splitCsv(String line) {
+        List<String> values = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    current.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    current.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(current.toString());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Comillas sin cerrar en la línea CSV");
+        }
+        values.add(current.toString());
+        return values;
+    }
+
+    private static void validate(BookImportRow row) {
+        if (row == null || row.title() == null || row.title().isBlank()) {
+            throw new IllegalArgumentException("El libro debe tener título");
+        }
+        if (row.author() == null || row.author().isBlank()) {
+            throw new IllegalArgumentException("El libro debe tener autor");
+        }
+    }
+
+    private static Object[] toArgs(BookImportRow row) {
+        return new Object[]{row.title(), row.author(), row.description(), row.categoryId()};
+    }
+
+    private record PendingRow(long line, BookImportRow row) {
+    }
+
+    private static final class Progress {
+        long received;
+        long imported;
+        long failed;
+        final List<BookImportSummary.RowError> errors = new ArrayList<>();
+
+        void fail(long line, String message) {
+            failed++;
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(new BookImportSummary.RowError(line, message));
+            }
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package cloudlibrary.example.demo.service;
+
+import cloudlibrary.example.demo.dto.BookRatingTotals;
+import cloudlibrary.example.demo.dto.BookSummary;
+import cloudlibrary.example.demo.dto.RatingStats;
+import cloudlibrary.example.demo.dto.TopBook;
+import cloudlibrary.example.demo.dto.TopBooks;
+import cloudlibrary.example.demo.repository.BookRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+/**
+ * Ranking de libros mejor valorados por media bayesiana:
+ * {@code (C·m + suma) / (C + n)}, con m la media global y C el peso de la media a priori.
+ * Un libro con pocas valoraciones queda cerca de la media global hasta acumular más.
+ *
+ * <p>Un job lo reconstruye a partir de los contadores de valoraciones de books y deja en memoria
+ * solo los primeros N, global y por categoría; las lecturas son un subList sobre una instantánea
+ * inmutable.
+ */
+@Service
+public class BookLeaderboardService {
+
+    private static final Logger log = LoggerFactory.getLogger(BookLeaderboardService.class);
+
+    static final int DEFAULT_LIMIT = 10;
+    private static final int SUMMARY_CHUNK = 1000;
+
+    private record Candidate(long bookId, Long categoryId, long count, long sum, double score) {
+    }
+
+    private record Snapshot(Instant generatedAt, List<TopBook> global, Map<Long, List<TopBook>> byCategory) {
+    }
+
+    // Mejor puntuación primero; a igualdad, el que tiene más valoraciones y después el id más bajo
+    private static final Comparator<Candidate> RANKING = Comparator.comparingDouble(Candidate::score).reversed()
+            .thenComparing(Comparator.comparingLong(Candidate::count).reversed())
+            .thenComparingLong(Candidate::bookId);
+
+    private final BookRepository bookRepository;
+    private final TransactionTemplate readOnlyTransaction;
+    private final int size;
+    private final double priorWeight;
+    private final AtomicReference<Snapshot> snapshot =
+            new AtomicReference<>(new Snapshot(null, List.of(), Map.of()));
+
+    public BookLeaderboardService(BookRepository bookRepository,
+                                  PlatformTransactionManager transactionManager,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${app.books.leaderboard.size:100}") int size,
+                                  @Value("${app.books.leaderboard.prior-weight:10}") double priorWeight) {
+        this.bookRepository = bookRepository;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.size = size;
+        this.priorWeight = priorWeight;
+        meterRegistry.gauge("books.leaderboard.age.seconds", snapshot, ref -> {
+            Instant generatedAt = ref.get().generatedAt();
+            return generatedAt == null ? Double.NaN : Instant.now().getEpochSecond() - generatedAt.getEpochSecond();
+        });
+    }
+
+    public TopBooks top(Long categoryId, Integer limit) {
+        Snapshot current = snapshot.get();
+        List<TopBook> ranking = (categoryId == null)
+                ? current.global()
+                : current.byCategory().getOrDefault(categoryId, List.of());
+        int count = Math.max(1, Math.min(limit == null ? DEFAULT_LIMIT : limit, size));
+        return new TopBooks(current.generatedAt(), ranking.subList(0, Math.min(count, ranking.size())));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        scheduledRebuild();
+    }
+
+    @Scheduled(cron = "${app.books.leaderboard.rebuild-cron:0 * * * * *}")
+    public void scheduledRebuild() {
+        try {
+            rebuild();
+        } catch (DataAccessException e) {
+            log.error("No se pudo reconstruir el ranking de libros mejor valorados", e);
+        }
+    }
+
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+        Instant generatedAt = Instant.now();
+
+        Map<Long, PriorityQueue<Candidate>> byCategory = new HashMap<>();
+        PriorityQueue<Candidate> global = new PriorityQueue<>(RANKING.reversed());
+        readOnlyTransaction.executeWithoutResult(status -> {
+            RatingStats totals = bookRepository.findGlobalRatingStats();
+            if (totals == null || totals.count() == 0) {
+                return;
+            }
+            double mean = totals.average();
+            try (Stream<BookRatingTotals> rows = bookRepository.streamRatingTotals()) {
+                rows.forEach(row -> {
+                    double score = (priorWeight * mean + row.sum()) / (priorWeight + row.count());
+                    Candidate candidate = new Candidate(row.bookId(), row.categoryId(), row.count(), row.sum(), score);
+                    offer(global, candidate);
+                    if (row.categoryId() != null) {
+                        offer(byCategory.computeIfAbsent(row.categoryId(), id -> new PriorityQueue<>(RANKING.reversed())), candidate);
+                    }
+                });
+            }
+        });
+
+        Map<Long, BookSummary> summaries = loadSummaries(global, byCategory);
+        Map<Long, List<TopBook>> categories = new HashMap<>();
+        byCategory.forEach((categoryId, heap) -> categories.put(categoryId, toRanking(heap, summaries)));
+        snapshot.set(new Snapshot(generatedAt, toRanking(global, summaries), Map.copyOf(categories)));
+
+        log.info("Ranking de libros reconstruido ({} categorías) en {} ms",
+                categories.size(), System.currentTimeMillis() - start);
+    }
+
+    // Montículo de mínimos acotado a los N mejores: O(libros · log N) sin ordenar todo
+    private void offer(PriorityQueue<Candidate> heap, Candidate candidate) {
+        if (heap.size() < size) {
+            heap.add(candidate);
+        } else if (RANKING.compare(candidate, heap.peek()) < 0) {
+            heap.poll();
+            heap.add(candidate);
+        }
+    }
+
+    private Map<Long, BookSummary> loadSummaries(PriorityQueue<Candidate> global,
+                                                 Map<Long, PriorityQueue<Candidate>> byCategory) {
+        List<Long> ids = new ArrayList<>();
+        global.forEach(c -> ids.add(c.bookId()));
+        byCategory.values().forEach(heap -> heap.forEach(c -> ids.add(c.bookId())));
+        List<Long> distinct = ids.stream().distinct().toList();
+
+        Map<Long, BookSummary> summaries = new HashMap<>();
+        for (int from = 0; from < distinct.size(); from += SUMMARY_CHUNK) {
+            List<Long> chunk = distinct.subList(from, Math.min(distinct.size(), from + SUMMARY_CHUNK));
+            bookRepository.findSummariesByIds(chunk).forEach(summary -> summaries.put(summary.id(), summary));
+        }
+        return summaries;
+    }
+
+    private static List<TopBook> toRanking(PriorityQueue<Candidate> heap, Map<Long, BookSummary> summaries) {
+        return heap.stream()
+                .sorted(RANKING)
+                .filter(c -> summaries.containsKey(c.bookId())) // borrado entre las dos consultas
+                .map(c -> {
+                    BookSummary book = summaries.get(c.bookId());
+                    return new TopBook(book.id(), book.title(), book.author(), book.categoryId(), book.categoryName(),
+                            c.count(), (double) c.sum() / c.count(), c.score());
+                })
+                .toList();
+    }
+}
@@ -0,0 +1,146 @@
+package cloudlibrary.example.demo.service;
+
+import cloudlibrary.example.demo.repository.BookRepository;
+import cloudlibrary.example.demo.repository.PostRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Purga los libros con borrado lógico: sus valoraciones, sus posts con los comentarios y al final
+ * la fila del libro. Cada tanda va en su transacción y entre tandas hay una pausa, para que un libro
+ * popular no acapare la base de datos. No guarda estado propio: lo pendiente es lo que queda en las
+ * tablas, así que tras una caída la siguiente ejecución sigue donde se quedó.
+ */
+@Component
+public class BookPurgeJob {
+
+    private static final Logger log = LoggerFactory.getLogger(BookPurgeJob.class);
+
+    static final int BOOKS_PER_QUERY = 100;
+
+    private final BookRepository bookRepository;
+    private final PostRepository postRepository;
+    private final PostService postService;
+    private final RatingService ratingService;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+    private final long pauseMs;
+    private final AtomicInteger pending = new AtomicInteger();
+
+    public BookPurgeJob(BookRepository bookRepository,
+                        PostRepository postRepository,
+                        PostService postService,
+                        RatingService ratingService,
+                        TransactionTemplate transactionTemplate,
+                        MeterRegistry meterRegistry,
+                        @Value("${app.deletes.chunk-size:1000}") int chunkSize,
+                        @Value("${app.books.purge.pause-ms:100}") long pauseMs) {
+        this.bookRepository = bookRepository;
+        this.postRepository = postRepository;
+        this.postService = postService;
+        this.ratingService = ratingService;
+        this.transactionTemplate = transactionTemplate;
+        this.chunkSize = chunkSize;
+        this.pauseMs = pauseMs;
+        meterRegistry.gauge("books.purge.pending", pending);
+    }
+
+    // El primer disparo es al arrancar: retoma lo que una caída dejara a medias
+    @Scheduled(fixedDelayString = "${app.books.purge.interval-ms:30000}")
+    public void scheduledPurge() {
+        try {
+            purgePending();
+        } catch (DataAccessException e) {
+            log.error("Fallo al purgar los libros borrados", e);
+        }
+    }
+
+    /**
+     * Purga todos los libros borrados, del más antiguo al más reciente; devuelve cuántos. Un libro
+     * que falla se salta hasta la siguiente ejecución y sigue contando como pendiente.
+     */
+    public synchronized int purgePending() {
+        int purged = 0;
+        Set<Long> failed = new HashSet<>();
+        List<Long> ids;
+        // Los fallidos son siempre los primeros de la consulta: se piden de más para no repetirlos
+        while (!(ids = withoutFailed(bookRepository.findSoftDeletedIds(BOOKS_PER_QUERY + failed.size()), failed)).isEmpty()) {
+            pending.set(failed.size() + ids.size());
+            for (Long id : ids) {
+                try {
+                    if (!purge(id)) {
+                        return purged;
+                    }
+                } catch (DataAccessException e) {
+                    log.error("No se pudo purgar el libro {}, se reintenta en la siguiente ejecución", id, e);
+                    failed.add(id);
+                    continue;
+                }
+                purged++;
+                pending.decrementAndGet();
+            }
+        }
+        pending.set(failed.size());
+        return purged;
+    }
+
+    private static List<Long> withoutFailed(List<Long> ids, Set<Long> failed) {
+        return failed.isEmpty() ? ids : ids.stream().filter(id -> !failed.contains(id)).toList();
+    }
+
+    // false si el hilo se interrumpe: lo que falte se retoma en la siguiente ejecución
+    private boolean purge(Long bookId) {
+        long start = System.currentTimeMillis();
+        long ratings = 0;
+        int rows;
+        while ((rows = ratingService.deleteRatingChunkByBook(bookId)) > 0) {
+            ratings += rows;
+            if (!pause()) {
+                return false;
+            }
+        }
+
+        long posts = 0;
+        List<Long> postIds;
+        while (!(postIds = postRepository.findIdsByBookId(bookId, Limit.of(chunkSize))).isEmpty()) {
+            for (Long postId : postIds) {
+                postService.deleteWithComments(postId);
+                posts++;
+                if (!pause()) {
+                    return false;
+                }
+            }
+        }
+
+        // Un post o una valoración creados entre medias hacen fallar la FK: se reintenta en la siguiente ejecución
+        transactionTemplate.executeWithoutResult(status -> bookRepository.purgeById(bookId));
+        log.info("Libro {} purgado: {} valoraciones y {} posts en {} ms",
+                bookId, ratings, posts, System.currentTimeMillis() - start);
+        return true;
+    }
+
+    private boolean pause() {
+        if (pauseMs <= 0) {
+            return true;
+        }
+        try {
+            Thread.sleep(pauseMs);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -1,34 +1,117 @@
 package cloudlibrary.example.demo.service;
 
+import cloudlibrary.example.demo.config.CacheConfig;
+import cloudlibrary.example.demo.dto.BookDetail;
+import cloudlibrary.example.demo.dto.BookPurgeStatus;
+import cloudlibrary.example.demo.dto.BookSearchHit;
+import cloudlibrary.example.demo.dto.BookSort;
+import cloudlibrary.example.demo.dto.BookSummary;
+import cloudlibrary.example.demo.dto.CursorPage;
+import cloudlibrary.example.demo.dto.VersionTag;
+import cloudlibrary.example.demo.dto.PageCursor;
+import cloudlibrary.example.demo.exception.InvalidRequestException;
 import cloudlibrary.example.demo.model.Book;
 import cloudlibrary.example.demo.repository.BookRepository;
+import cloudlibrary.example.demo.repository.BookRepositoryCustom.ListedBook;
+import cloudlibrary.example.demo.search.BookSearchEngine;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
 @Service
 public class BookService {
 
+    static final int DEFAULT_PAGE_SIZE = 20;
+    static final int MAX_PAGE_SIZE = 100;
+    // Los resultados por relevancia se paginan por desplazamiento: se limita la profundidad
+    static final int MAX_SEARCH_OFFSET = 1000;
+
     private final BookRepository bookRepository;
+    private final BookSearchEngine bookSearchEngine;
 
-    public BookService(BookRepository bookRepository) {
+    public BookService(BookRepository bookRepository, BookSearchEngine bookSearchEngine) {
         this.bookRepository = bookRepository;
+        this.bookSearchEngine = bookSearchEngine;
     }
 
-    public List<Book> findAllBooks() {
-        return bookRepository.findAll();
+    public CursorPage<BookSummary> findBooks(Long categoryId, String sort, String cursor, Integer limit) {
+        BookSort order = BookSort.fromParam(sort);
+        int pageSize = pageSize(limit);
+        BookSort.Position after = (cursor == null || cursor.isBlank()) ? null : order.decodeCursor(cursor);
+
+        // Se pide una fila de más para saber si existe página siguiente sin hacer COUNT
+        List<ListedBook> rows = bookRepository.findListing(categoryId, order, after, pageSize + 1);
+        List<BookSummary> books = rows.stream().limit(pageSize).map(ListedBook::book).toList();
+        if (rows.size() <= pageSize) {
+            return CursorPage.of(books, null);
+        }
+        ListedBook last = rows.get(pageSize - 1);
+        return CursorPage.of(books, order.encodeCursor(last.sortKey(), last.book().id()));
+    }
+
+    public CursorPage<BookSearchHit> searchBooks(String query, String cursor, Integer limit) {
+        if (query == null || query.isBlank()) {
+            throw new InvalidRequestException("El texto de búsqueda no puede estar vacío");
+        }
+        int pageSize = pageSize(limit);
+        long offset = (cursor == null || cursor.isBlank()) ? 0L : PageCursor.decodeLong(cursor);
+        if (offset < 0 || offset > MAX_SEARCH_OFFSET) {
+            throw new InvalidRequestException("Cursor de paginación no válido");
+        }
+
+        List<BookSearchHit> rows = bookSearchEngine.search(query, (int) offset, pageSize + 1);
+        if (rows.size() <= pageSize || offset + pageSize > MAX_SEARCH_OFFSET) {
+            return CursorPage.of(rows.subList(0, Math.min(rows.size(), pageSize)), null);
+        }
+        return CursorPage.of(rows.subList(0, pageSize), PageCursor.encode(offset + pageSize));
     }
 
     public Optional<Book> findBookById(Long id) {
         return bookRepository.findById(id);
     }
 
+    public Optional<VersionTag> findBookVersion(Long id) {
+        return bookRepository.findVersionTag(id);
+    }
+
+    // Se cachea el DTO inmutable, nunca la entidad gestionada: no puede disparar cargas lazy
+    @Cacheable(cacheNames = CacheConfig.BOOKS_CACHE, key = "#id", unless = "#result == null")
+    public Optional<BookDetail> findBookDetail(Long id) {
+        return bookRepository.findDetailById(id);
+    }
+
+    @CacheEvict(cacheNames = CacheConfig.BOOKS_CACHE, key = "#book.id", condition = "#book.id != null")
     public Book saveBook(Book book) {
-        return bookRepository.save(book);
+        Book saved = bookRepository.save(book);
+        bookSearchEngine.index(saved.getId(), saved.getTitle(), saved.getAuthor(), saved.getDescription());
+        return saved;
     }
 
+    /**
+     * Borrado lógico: se marca deleted_at en la fila del libro y deja de aparecer en las consultas.
+     * Posts, comentarios y valoraciones los borra después {@link BookPurgeJob} por tandas, así que
+     * la petición no bloquea nada aunque el libro tenga miles de filas dependientes.
+     */
+    @Transactional
+    @CacheEvict(cacheNames = CacheConfig.BOOKS_CACHE, key = "#id")
     public void deleteBook(Long id) {
-        bookRepository.deleteById(id);
+        bookRepository.softDeleteById(id, LocalDateTime.now());
+        bookSearchEngine.remove(id);
+    }
+
+    public Optional<BookPurgeStatus> findPurgeStatus(Long id) {
+        return bookRepository.findPurgeStatus(id);
+    }
+
+    static int pageSize(Integer limit) {
+        if (limit == null) {
+            return DEFAULT_PAGE_SIZE;
+        }
+        return Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
     }
 }
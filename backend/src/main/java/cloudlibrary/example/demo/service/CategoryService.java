@@ -1,7 +1,10 @@
 package cloudlibrary.example.demo.service;
 
+import cloudlibrary.example.demo.config.CacheConfig;
+import cloudlibrary.example.demo.dto.CollectionVersion;
 import cloudlibrary.example.demo.model.Category;
 import cloudlibrary.example.demo.repository.CategoryRepository;
+import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
@@ -20,6 +23,10 @@ public class CategoryService {
         return categoryRepository.findAll();
     }
 
+    public CollectionVersion getCategoriesVersion() {
+        return categoryRepository.findCollectionVersion();
+    }
+
     public Optional<Category> getCategoryById(Long id) {
         return categoryRepository.findById(id);
     }
@@ -31,6 +38,8 @@ public class CategoryService {
         return categoryRepository.save(category);
     }
 
+    // Las fichas de libro cacheadas incluyen el nombre de la categoría
+    @CacheEvict(cacheNames = CacheConfig.BOOKS_CACHE, allEntries = true)
     public Category updateCategory(Long id, Category updated) {
         return categoryRepository.findById(id)
                 .map(category -> {
@@ -40,6 +49,7 @@ public class CategoryService {
                 .orElseThrow(() -> new IllegalArgumentException("Categoría no encontrada"));
     }
 
+    @CacheEvict(cacheNames = CacheConfig.BOOKS_CACHE, allEntries = true)
     public void deleteCategory(Long id) {
         categoryRepository.deleteById(id);
     }
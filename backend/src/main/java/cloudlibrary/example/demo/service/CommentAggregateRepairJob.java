@@ -0,0 +1,84 @@
+package cloudlibrary.example.demo.service;
+
+import cloudlibrary.example.demo.repository.CommentRepository;
+import cloudlibrary.example.demo.repository.PostRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Recalcula comment_count / last_comment_at de posts y reply_count de comentarios a partir de la
+ * tabla comments, por rangos de id como {@link RatingAggregateRepairJob}. También rellena las filas
+ * anteriores a las columnas.
+ */
+@Component
+public class CommentAggregateRepairJob {
+
+    private static final Logger log = LoggerFactory.getLogger(CommentAggregateRepairJob.class);
+
+    private final PostRepository postRepository;
+    private final CommentRepository commentRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final boolean repairOnStartup;
+
+    public CommentAggregateRepairJob(PostRepository postRepository,
+                                     CommentRepository commentRepository,
+                                     TransactionTemplate transactionTemplate,
+                                     @Value("${app.comments.aggregate-repair.batch-size:1000}") int batchSize,
+                                     @Value("${app.comments.aggregate-repair.on-startup:false}") boolean repairOnStartup) {
+        this.postRepository = postRepository;
+        this.commentRepository = commentRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.batchSize = batchSize;
+        this.repairOnStartup = repairOnStartup;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void repairOnStartup() {
+        if (repairOnStartup) {
+            scheduledRepair();
+        }
+    }
+
+    @Scheduled(cron = "${app.comments.aggregate-repair.cron:0 45 3 * * *}")
+    public void scheduledRepair() {
+        try {
+            repairAll();
+        } catch (DataAccessException e) {
+            log.error("Fallo al reparar los agregados de comentarios", e);
+        }
+    }
+
+    public long repairAll() {
+        long start = System.currentTimeMillis();
+        long maxId = postRepository.findMaxId();
+        long updated = 0;
+
+        for (long fromId = 1; fromId <= maxId; fromId += batchSize) {
+            long from = fromId;
+            long to = fromId + batchSize - 1;
+            Integer rows = transactionTemplate.execute(status -> postRepository.recomputeCommentStats(from, to));
+            updated += (rows != null) ? rows : 0;
+        }
+
+        long maxCommentId = commentRepository.findMaxId();
+        long comments = 0;
+        for (long fromId = 1; fromId <= maxCommentId; fromId += batchSize) {
+            long from = fromId;
+            long to = fromId + batchSize - 1;
+            Integer rows = transactionTemplate.execute(status -> commentRepository.recomputeReplyCounts(from, to));
+            comments += (rows != null) ? rows : 0;
+        }
+
+        log.info("Agregados de comentarios recalculados para {} posts y {} comentarios en {} ms",
+                updated, comments, System.currentTimeMillis() - start);
+        return updated + comments;
+    }
+}
@@ -0,0 +1,74 @@
+package cloudlibrary.example.demo.service;
+
+import cloudlibrary.example.demo.repository.CommentRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Rellena path / depth de los comentarios anteriores a la ruta materializada, por rangos de id.
+ * Una respuesta siempre tiene id mayor que su padre, así que al llegar a su rango el padre ya
+ * tiene ruta; dentro del rango se repite un nivel cada vez hasta que no cambia nada. Empieza en
+ * el primer comentario que puede recibir ruta, así que en una base ya migrada es una sola consulta.
+ * Las respuestas más hondas que MAX_DEPTH se quedan sin ruta.
+ */
+@Component
+public class CommentPathBackfillJob {
+
+    private static final Logger log = LoggerFactory.getLogger(CommentPathBackfillJob.class);
+
+    private final CommentRepository commentRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+
+    public CommentPathBackfillJob(CommentRepository commentRepository,
+                                  TransactionTemplate transactionTemplate,
+                                  @Value("${app.comments.path-backfill.batch-size:1000}") int batchSize) {
+        this.commentRepository = commentRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.batchSize = batchSize;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillOnStartup() {
+        try {
+            backfillAll();
+        } catch (DataAccessException e) {
+            log.error("Fallo al calcular las rutas de los comentarios", e);
+        }
+    }
+
+    public long backfillAll() {
+        long start = System.currentTimeMillis();
+        Long firstId = commentRepository.findFirstBackfillableId();
+        if (firstId == null) {
+            return 0;
+        }
+        long maxId = commentRepository.findMaxId();
+        long updated = 0;
+
+        for (long fromId = firstId; fromId <= maxId; fromId += batchSize) {
+            long from = fromId;
+            long to = fromId + batchSize - 1;
+            Integer rows = transactionTemplate.execute(status -> {
+                int total = commentRepository.backfillRootPaths(from, to);
+                int level;
+                while ((level = commentRepository.backfillReplyPaths(from, to)) > 0) {
+                    total += level;
+                }
+                return total;
+            });
+            updated += (rows != null) ? rows : 0;
+        }
+
+        if (updated > 0) {
+            log.info("Rutas calculadas para {} comentarios en {} ms", updated, System.currentTimeMillis() - start);
+        }
+        return updated;
+    }
+}
@@ -1,22 +1,57 @@
 package cloudlibrary.example.demo.service;
 
-import cloudlibrary.example.demo.model.Book;
+import cloudlibrary.example.demo.dto.CommentItem;
+import cloudlibrary.example.demo.dto.CommentNode;
+import cloudlibrary.example.demo.dto.CommentRef;
+import cloudlibrary.example.demo.dto.CommentRequest;
+import cloudlibrary.example.demo.dto.CommentThread;
+import cloudlibrary.example.demo.dto.CommentView;
+import cloudlibrary.example.demo.dto.CursorPage;
+import cloudlibrary.example.demo.event.CommentCreatedEvent;
+import cloudlibrary.example.demo.exception.InvalidRequestException;
+import cloudlibrary.example.demo.exception.MissingReferences;
+import cloudlibrary.example.demo.exception.ResourceNotFoundException;
 import cloudlibrary.example.demo.model.Comment;
-import cloudlibrary.example.demo.repository.BookRepository;
 import cloudlibrary.example.demo.repository.CommentRepository;
+import cloudlibrary.example.demo.repository.PostRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 @Service
 public class CommentService {
+
+    // Tope de niveles del árbol: cada nivel son dos de anidamiento en el JSON y Jackson corta a 1000
+    static final int MAX_TREE_DEPTH = 200;
+
     private final CommentRepository commentRepository;
-    private final BookRepository bookRepository;
+    private final PostRepository postRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+    private final int deleteChunkSize;
 
-    public CommentService(CommentRepository commentRepository, BookRepository bookRepository) {
+    public CommentService(CommentRepository commentRepository, PostRepository postRepository,
+                          ApplicationEventPublisher eventPublisher,
+                          TransactionTemplate transactionTemplate,
+                          @Value("${app.deletes.chunk-size:1000}") int deleteChunkSize) {
         this.commentRepository = commentRepository;
-        this.bookRepository = bookRepository;
+        this.postRepository = postRepository;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = transactionTemplate;
+        this.deleteChunkSize = deleteChunkSize;
     }
 
     public List<Comment> findByPost(Long postId) {
@@ -31,33 +66,242 @@ public class CommentService {
         return commentRepository.findByPostId(postId);
     }
 
-    public Comment addComment(Comment comment) {
-        if (comment.getPost() == null || comment.getAuthor() == null) {
+    /**
+     * Comentarios de primer nivel del post, del más antiguo al más reciente, paginados por
+     * (createdAt, id). El cursor {@code after} es el {@code next} de la página anterior.
+     */
+    @Transactional(readOnly = true)
+    public CursorPage<CommentItem> getTopLevelComments(Long postId, String after, Integer limit) {
+        if (!postRepository.existsById(postId)) {
+            throw new ResourceNotFoundException("Post no encontrado");
+        }
+        int pageSize = BookService.pageSize(limit);
+        Limit rowLimit = Limit.of(pageSize + 1);
+
+        List<CommentItem> rows;
+        if (after == null || after.isBlank()) {
+            rows = commentRepository.findTopLevel(postId, rowLimit);
+        } else {
+            CreatedAtKey key = CreatedAtKey.decode(after);
+            rows = commentRepository.findTopLevelAfter(postId, key.createdAt(), key.id(), rowLimit);
+        }
+        return page(rows, pageSize);
+    }
+
+    /** Respuestas directas del comentario, con la misma paginación que el primer nivel. */
+    @Transactional(readOnly = true)
+    public CursorPage<CommentItem> getReplies(Long commentId, String after, Integer limit) {
+        if (!commentRepository.existsById(commentId)) {
+            throw new ResourceNotFoundException("Comentario no encontrado");
+        }
+        int pageSize = BookService.pageSize(limit);
+        Limit rowLimit = Limit.of(pageSize + 1);
+
+        List<CommentItem> rows;
+        if (after == null || after.isBlank()) {
+            rows = commentRepository.findReplies(commentId, rowLimit);
+        } else {
+            CreatedAtKey key = CreatedAtKey.decode(after);
+            rows = commentRepository.findRepliesAfter(commentId, key.createdAt(), key.id(), rowLimit);
+        }
+        return page(rows, pageSize);
+    }
+
+    // Se pide una fila de más para saber si hay página siguiente sin COUNT
+    private static CursorPage<CommentItem> page(List<CommentItem> rows, int pageSize) {
+        if (rows.size() <= pageSize) {
+            return CursorPage.of(rows, null);
+        }
+        List<CommentItem> page = rows.subList(0, pageSize);
+        CommentItem last = page.get(pageSize - 1);
+        return CursorPage.of(page, CreatedAtKey.encode(last.createdAt(), last.id()));
+    }
+
+    /**
+     * Árbol de comentarios del post con una sola consulta. Sin {@code maxDepth} se devuelven hasta
+     * {@link #MAX_TREE_DEPTH} niveles; sin {@code maxChildren}, todas las respuestas.
+     */
+    @Transactional(readOnly = true)
+    public List<CommentNode> getCommentTree(Long postId, Integer maxDepth, Integer maxChildren) {
+        checkTreeLimits(maxDepth, maxChildren);
+        if (!postRepository.existsById(postId)) {
+            throw new ResourceNotFoundException("Post no encontrado");
+        }
+        return CommentTrees.build(commentRepository.findViewsByPostId(postId), treeDepth(maxDepth),
+                treeChildren(maxChildren));
+    }
+
+    /**
+     * Subárbol de un comentario leído por rango de su ruta materializada: el coste depende del
+     * tamaño del subárbol, no del post. {@code maxDepth} cuenta niveles desde el propio comentario.
+     */
+    @Transactional(readOnly = true)
+    public CommentThread getThread(Long commentId, Integer maxDepth, Integer maxChildren) {
+        checkTreeLimits(maxDepth, maxChildren);
+        int levels = treeDepth(maxDepth);
+        Optional<String> found = commentRepository.findPathById(commentId);
+        if (found.isEmpty()) {
+            return getThreadFromPost(commentId, levels, treeChildren(maxChildren));
+        }
+        String path = found.get();
+        String upperBound = Comment.pathUpperBound(path);
+        int rootDepth = path.length() / Comment.PATH_SEGMENT - 1;
+
+        List<CommentView> subtree = commentRepository.findSubtree(path, upperBound, rootDepth + levels - 1);
+        CommentNode root = CommentTrees.build(subtree, levels, treeChildren(maxChildren)).get(0);
+        return new CommentThread(commentRepository.countDescendants(path, upperBound), root);
+    }
+
+    // Ruta pendiente de CommentPathBackfillJob: el subárbol se filtra de todos los comentarios del post,
+    // como en getCommentTree. Van por id y una respuesta siempre tiene id mayor que su padre: basta una pasada
+    private CommentThread getThreadFromPost(Long commentId, int levels, int maxChildren) {
+        CommentRef comment = commentRepository.findRefById(commentId)
+                .orElseThrow(() -> new ResourceNotFoundException("Comentario no encontrado"));
+        List<CommentView> all = (comment.postId() != null)
+                ? commentRepository.findViewsByPostId(comment.postId())
+                : List.of();
+        Set<Long> inSubtree = new HashSet<>();
+        inSubtree.add(commentId);
+        List<CommentView> subtree = new ArrayList<>();
+        for (CommentView view : all) {
+            if (view.id().equals(commentId) || (view.parentId() != null && inSubtree.contains(view.parentId()))) {
+                inSubtree.add(view.id());
+                subtree.add(view);
+            }
+        }
+        if (subtree.isEmpty()) { // sin post no es alcanzable desde la API
+            throw new ResourceNotFoundException("Comentario no encontrado");
+        }
+        CommentNode root = CommentTrees.build(subtree, levels, maxChildren).get(0);
+        return new CommentThread(subtree.size() - 1, root);
+    }
+
+    private static void checkTreeLimits(Integer maxDepth, Integer maxChildren) {
+        if ((maxDepth != null && maxDepth < 1) || (maxChildren != null && maxChildren < 1)) {
+            throw new InvalidRequestException("maxDepth y maxChildren deben ser mayores que cero");
+        }
+    }
+
+    private static int treeDepth(Integer maxDepth) {
+        return Math.min(maxDepth != null ? maxDepth : MAX_TREE_DEPTH, MAX_TREE_DEPTH);
+    }
+
+    private static int treeChildren(Integer maxChildren) {
+        return maxChildren != null ? maxChildren : Integer.MAX_VALUE;
+    }
+
+    /**
+     * Un único INSERT, con la ruta incluida: el id sale de la secuencia dentro de la propia sentencia.
+     * Si trae {@code parentId} se da de alta como respuesta.
+     */
+    @Transactional
+    public CommentView addComment(CommentRequest request) {
+        if (request.parentId() != null) {
+            return addReply(request.parentId(), request);
+        }
+        if (request.postId() == null || request.authorId() == null) {
             throw new IllegalArgumentException("El comentario debe tener post y autor");
         }
-        return commentRepository.save(comment);
+
+        LocalDateTime createdAt = LocalDateTime.now();
+        Long id;
+        try {
+            id = commentRepository.insertComment(request.postId(), request.authorId(), request.content(), createdAt)
+                    .orElseThrow(() -> new ResourceNotFoundException("Post no encontrado"));
+        } catch (DataIntegrityViolationException e) {
+            throw MissingReferences.translate(e, "Autor o post no encontrado");
+        }
+        postRepository.applyCommentAdded(request.postId(), createdAt);
+        CommentView view = new CommentView(id, request.content(), request.authorId(),
+                request.postId(), null, createdAt);
+        eventPublisher.publishEvent(new CommentCreatedEvent(view));
+        return view;
     }
 
+    /** Borra el comentario con todas sus respuestas por rango de ruta, sin cargarlas. */
     public void deleteComment(Long commentId) {
-        if (!commentRepository.existsById(commentId)) {
-            throw new IllegalArgumentException("Comentario no encontrado");
+        CommentRef comment = commentRepository.findRefById(commentId)
+                .orElseThrow(() -> new IllegalArgumentException("Comentario no encontrado"));
+        deleteWithReplies(comment);
+        recomputeAggregates(List.of(comment));
+    }
+
+    /**
+     * Comentarios del autor en posts ajenos, cada uno con su subárbol (como hacía la cascada de
+     * {@code Comment.replies}). Los de sus propios posts ya se van con {@link PostService#deletePostsByAuthor}.
+     */
+    public long deleteCommentsByAuthor(Long authorId) {
+        long deleted = 0;
+        List<CommentRef> chunk;
+        while (!(chunk = commentRepository.findRefsByAuthorId(authorId, Limit.of(deleteChunkSize))).isEmpty()) {
+            chunk.forEach(this::deleteWithReplies);
+            recomputeAggregates(chunk);
+            deleted += chunk.size();
         }
-        commentRepository.deleteById(commentId);
+        return deleted;
     }
 
-    public Comment addReply(Long parentId, Comment reply) {
+    private void deleteWithReplies(CommentRef comment) {
+        if (comment.path() == null) { // pendiente de CommentPathBackfillJob: cascada de JPA
+            transactionTemplate.executeWithoutResult(status -> commentRepository.deleteById(comment.id()));
+        } else {
+            deleteSubtree(comment);
+        }
+    }
 
-        Comment parent = commentRepository.findById(parentId)
-                .orElseThrow(() -> new IllegalArgumentException("Comentario padre no encontrado"));
+    // Tandas en transacciones propias; las respuestas caen antes que sus padres por el orden de ruta
+    private void deleteSubtree(CommentRef comment) {
+        String upperBound = Comment.pathUpperBound(comment.path());
+        Integer rows;
+        do {
+            rows = transactionTemplate.execute(status ->
+                    commentRepository.deleteSubtreeChunk(comment.path(), upperBound, deleteChunkSize));
+        } while (rows != null && rows == deleteChunkSize);
+    }
 
-        reply.setParent(parent); // ¡La clave está aquí!
-        reply.setPost(parent.getPost()); // La respuesta pertenece al mismo post que el padre
+    // Recuento del post y del padre de cada subárbol borrado, una vez por fila afectada
+    private void recomputeAggregates(Collection<CommentRef> deleted) {
+        Set<Long> posts = new LinkedHashSet<>();
+        Set<Long> parents = new LinkedHashSet<>();
+        for (CommentRef comment : deleted) {
+            if (comment.postId() != null) {
+                posts.add(comment.postId());
+            }
+            if (comment.parentId() != null) {
+                parents.add(comment.parentId());
+            }
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            posts.forEach(postId -> postRepository.recomputeCommentStats(postId, postId));
+            parents.forEach(parentId -> commentRepository.recomputeReplyCounts(parentId, parentId));
+        });
+    }
 
-        if (reply.getAuthor() == null) {
+    /** El post y la ruta de la respuesta se copian del padre en el único INSERT, sin leerlo antes. */
+    @Transactional
+    public CommentView addReply(Long parentId, CommentRequest request) {
+        if (request.authorId() == null) {
             throw new IllegalArgumentException("La respuesta debe tener un autor");
         }
 
-        return commentRepository.save(reply);
+        LocalDateTime createdAt = LocalDateTime.now();
+        CommentRepository.InsertedReply inserted;
+        try {
+            inserted = commentRepository.insertReply(parentId, request.authorId(), request.content(), createdAt)
+                    .orElseThrow(() -> commentRepository.existsLiveById(parentId)
+                            ? new InvalidRequestException("El hilo ha alcanzado la profundidad máxima")
+                            : new ResourceNotFoundException("Comentario padre no encontrado"));
+        } catch (DataIntegrityViolationException e) {
+            throw MissingReferences.translate(e, "Autor no encontrado");
+        }
+        if (inserted.postId() != null) {
+            postRepository.applyCommentAdded(inserted.postId(), createdAt);
+        }
+        commentRepository.applyReplyAdded(parentId);
+        CommentView view = new CommentView(inserted.id(), request.content(), request.authorId(),
+                inserted.postId(), parentId, createdAt);
+        eventPublisher.publishEvent(new CommentCreatedEvent(view));
+        return view;
     }
 }
 
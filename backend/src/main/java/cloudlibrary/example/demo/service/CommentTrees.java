@@ -0,0 +1,107 @@
+package cloudlibrary.example.demo.service;
+
+import cloudlibrary.example.demo.dto.CommentNode;
+import cloudlibrary.example.demo.dto.CommentView;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Monta el árbol de comentarios de un post a partir de la lista plana, en O(n) y sin recursión:
+ * los hijos se enlazan en arrays por índice, se recorre en anchura y los nodos se crean en orden
+ * inverso, de modo que las respuestas de cada comentario ya existen cuando se crea.
+ */
+final class CommentTrees {
+
+    private static final int NONE = -1;
+
+    private CommentTrees() {
+    }
+
+    /**
+     * @param maxDepth    niveles que se devuelven; 1 son solo los comentarios de primer nivel
+     * @param maxChildren respuestas que se devuelven por comentario; el primer nivel no se recorta
+     */
+    static List<CommentNode> build(List<CommentView> comments, int maxDepth, int maxChildren) {
+        int n = comments.size();
+        Map<Long, Integer> index = new HashMap<>(n * 2);
+        for (int i = 0; i < n; i++) {
+            index.put(comments.get(i).id(), i);
+        }
+
+        // Listas de hijos en orden de llegada; las raíces van en su propia lista
+        int[] firstChild = new int[n];
+        int[] lastChild = new int[n];
+        int[] nextSibling = new int[n];
+        int[] childCount = new int[n];
+        Arrays.fill(firstChild, NONE);
+        Arrays.fill(nextSibling, NONE);
+        int firstRoot = NONE;
+        int lastRoot = NONE;
+        for (int i = 0; i < n; i++) {
+            Long parentId = comments.get(i).parentId();
+            Integer parent = (parentId != null) ? index.get(parentId) : null;
+            if (parent == null || parent == i) { // padre en otro post o ya borrado: se trata como raíz
+                if (firstRoot == NONE) {
+                    firstRoot = i;
+                } else {
+                    nextSibling[lastRoot] = i;
+                }
+                lastRoot = i;
+            } else {
+                if (firstChild[parent] == NONE) {
+                    firstChild[parent] = i;
+                } else {
+                    nextSibling[lastChild[parent]] = i;
+                }
+                lastChild[parent] = i;
+                childCount[parent]++;
+            }
+        }
+
+        // Recorrido en anchura limitado por profundidad y por hijos
+        int[] order = new int[n];
+        int[] depth = new int[n];
+        int size = 0;
+        for (int root = firstRoot; root != NONE; root = nextSibling[root]) {
+            order[size++] = root;
+        }
+        int roots = size;
+        for (int head = 0; head < size; head++) {
+            int node = order[head];
+            if (depth[node] + 1 >= maxDepth) {
+                continue;
+            }
+            int taken = 0;
+            for (int child = firstChild[node]; child != NONE && taken < maxChildren; child = nextSibling[child]) {
+                depth[child] = depth[node] + 1;
+                order[size++] = child;
+                taken++;
+            }
+        }
+
+        CommentNode[] built = new CommentNode[n];
+        for (int pos = size - 1; pos >= 0; pos--) {
+            int node = order[pos];
+            List<CommentNode> replies = new ArrayList<>();
+            if (depth[node] + 1 < maxDepth) {
+                for (int child = firstChild[node]; child != NONE && replies.size() < maxChildren;
+                     child = nextSibling[child]) {
+                    replies.add(built[child]);
+                }
+            }
+            CommentView comment = comments.get(node);
+            built[node] = new CommentNode(comment.id(), comment.content(), comment.authorId(), comment.parentId(),
+                    comment.createdAt(), childCount[node], replies);
+        }
+
+        List<CommentNode> tree = new ArrayList<>(roots);
+        for (int pos = 0; pos < roots; pos++) {
+            tree.add(built[order[pos]]);
+        }
+        return tree;
+    }
+}
@@ -0,0 +1,24 @@
+package cloudlibrary.example.demo.service;
+
+import cloudlibrary.example.demo.dto.PageCursor;
+import cloudlibrary.example.demo.exception.InvalidRequestException;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+
+/** Clave (createdAt, id) de los listados de posts y comentarios, como cursor opaco. */
+record CreatedAtKey(LocalDateTime createdAt, Long id) {
+
+    static String encode(LocalDateTime createdAt, Long id) {
+        return PageCursor.encode(createdAt, id);
+    }
+
+    static CreatedAtKey decode(String cursor) {
+        String[] keys = PageCursor.decode(cursor, 2);
+        try {
+            return new CreatedAtKey(LocalDateTime.parse(keys[0]), Long.parseLong(keys[1]));
+        } catch (DateTimeParseException | NumberFormatException e) {
+            throw new InvalidRequestException("Cursor de paginación no válido");
+        }
+    }
+}
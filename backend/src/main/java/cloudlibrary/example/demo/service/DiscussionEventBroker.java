@@ -0,0 +1,198 @@
+package cloudlibrary.example.demo.service;
+
+import cloudlibrary.example.demo.event.CommentCreatedEvent;
+import cloudlibrary.example.demo.event.PostCreatedEvent;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Publicación en memoria de posts y comentarios nuevos a los clientes suscritos por SSE, en lugar
+ * de que cada pestaña sondee los comentarios. Temas: {@code post:{id}} recibe los comentarios del
+ * post y {@code book:{id}} los posts nuevos del libro.
+ *
+ * <p>Una conexión inactiva no ocupa hilo: cada suscriptor tiene una cola acotada y solo mientras
+ * hay eventos pendientes un hilo virtual los escribe. El evento se serializa una vez para todos.
+ * Un cliente que no lee llena su cola y se le desconecta, sin frenar al resto ni al publicador;
+ * al reconectar puede releer el listado paginado.
+ */
+@Service
+public class DiscussionEventBroker {
+
+    private static final Logger log = LoggerFactory.getLogger(DiscussionEventBroker.class);
+
+    private final ObjectMapper objectMapper;
+    private final Executor senders;
+    private final int bufferSize;
+    private final long timeoutMs;
+
+    private final Map<String, Set<Subscriber>> topics = new ConcurrentHashMap<>();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+    private final Counter evictions;
+
+    @Autowired
+    public DiscussionEventBroker(ObjectMapper objectMapper,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${app.live.buffer-size:64}") int bufferSize,
+                                 @Value("${app.live.timeout-ms:1800000}") long timeoutMs) {
+        this(objectMapper, meterRegistry, Executors.newVirtualThreadPerTaskExecutor(), bufferSize, timeoutMs);
+    }
+
+    DiscussionEventBroker(ObjectMapper objectMapper, MeterRegistry meterRegistry, Executor senders,
+                          int bufferSize, long timeoutMs) {
+        this.objectMapper = objectMapper;
+        this.senders = senders;
+        this.bufferSize = bufferSize;
+        this.timeoutMs = timeoutMs;
+        meterRegistry.gauge("live.subscribers", subscriberCount);
+        this.evictions = meterRegistry.counter("live.evictions");
+    }
+
+    public static String postTopic(Long postId) {
+        return "post:" + postId;
+    }
+
+    public static String bookTopic(Long bookId) {
+        return "book:" + bookId;
+    }
+
+    public SseEmitter subscribe(String topic) {
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        Subscriber subscriber = new Subscriber(topic, emitter);
+        // Alta y baja dentro de compute: una baja no puede retirar el conjunto justo cuando se añade a él
+        topics.compute(topic, (key, subscribers) -> {
+            Set<Subscriber> set = (subscribers != null) ? subscribers : ConcurrentHashMap.newKeySet();
+            set.add(subscriber);
+            return set;
+        });
+        subscriberCount.incrementAndGet();
+        emitter.onCompletion(() -> remove(subscriber));
+        emitter.onTimeout(() -> remove(subscriber));
+        emitter.onError(e -> remove(subscriber));
+        return emitter;
+    }
+
+    public void publish(String topic, String name, Object data) {
+        Set<Subscriber> subscribers = topics.get(topic);
+        if (subscribers == null || subscribers.isEmpty()) {
+            return;
+        }
+        String json;
+        try {
+            json = objectMapper.writeValueAsString(data);
+        } catch (JsonProcessingException e) {
+            log.error("No se pudo serializar el evento {} para {}", name, topic, e);
+            return;
+        }
+        Set<ResponseBodyEmitter.DataWithMediaType> event = SseEmitter.event().name(name).data(json, MediaType.APPLICATION_JSON).build();
+        for (Subscriber subscriber : subscribers) {
+            subscriber.enqueue(event);
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPostCreated(PostCreatedEvent event) {
+        if (event.post().bookId() != null) {
+            publish(bookTopic(event.post().bookId()), "post", event.post());
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCommentCreated(CommentCreatedEvent event) {
+        if (event.comment().postId() != null) {
+            publish(postTopic(event.comment().postId()), "comment", event.comment());
+        }
+    }
+
+    /** Comentario SSE periódico: mantiene abiertos los proxies y descubre las conexiones muertas. */
+    @Scheduled(fixedDelayString = "${app.live.heartbeat-ms:25000}")
+    public void heartbeat() {
+        Set<ResponseBodyEmitter.DataWithMediaType> ping = SseEmitter.event().comment("ping").build();
+        for (Set<Subscriber> subscribers : topics.values()) {
+            for (Subscriber subscriber : subscribers) {
+                subscriber.enqueue(ping);
+            }
+        }
+    }
+
+    int subscriberCount() {
+        return subscriberCount.get();
+    }
+
+    private void remove(Subscriber subscriber) {
+        boolean[] removed = new boolean[1];
+        topics.computeIfPresent(subscriber.topic, (key, subscribers) -> {
+            removed[0] = subscribers.remove(subscriber);
+            return subscribers.isEmpty() ? null : subscribers;
+        });
+        if (removed[0]) {
+            subscriberCount.decrementAndGet();
+        }
+    }
+
+    private final class Subscriber {
+
+        private final String topic;
+        private final SseEmitter emitter;
+        private final Queue<Set<ResponseBodyEmitter.DataWithMediaType>> pending;
+        private final AtomicBoolean draining = new AtomicBoolean();
+
+        private Subscriber(String topic, SseEmitter emitter) {
+            this.topic = topic;
+            this.emitter = emitter;
+            this.pending = new ArrayBlockingQueue<>(bufferSize);
+        }
+
+        private void enqueue(Set<ResponseBodyEmitter.DataWithMediaType> event) {
+            if (!pending.offer(event)) {
+                evictions.increment();
+                log.debug("Suscriptor lento de {} desconectado: cola llena", topic);
+                remove(this);
+                emitter.complete();
+                return;
+            }
+            if (draining.compareAndSet(false, true)) {
+                senders.execute(this::drain);
+            }
+        }
+
+        // Un solo hilo escribe a la vez; tras soltar el testigo se revisa la cola por si llegó algo entre medias
+        private void drain() {
+            try {
+                do {
+                    Set<ResponseBodyEmitter.DataWithMediaType> event;
+                    while ((event = pending.poll()) != null) {
+                        emitter.send(event);
+                    }
+                    draining.set(false);
+                } while (!pending.isEmpty() && draining.compareAndSet(false, true));
+            } catch (IOException | IllegalStateException e) {
+                // Cliente desconectado o emisor ya completado
+                draining.set(false);
+                remove(this);
+            }
+        }
+    }
+}
@@ -1,9 +1,26 @@
 package cloudlibrary.example.demo.service;
 
+import cloudlibrary.example.demo.dto.CursorPage;
+import cloudlibrary.example.demo.dto.PostDetail;
+import cloudlibrary.example.demo.dto.PostFeedItem;
+import cloudlibrary.example.demo.dto.PostRequest;
+import cloudlibrary.example.demo.dto.PostView;
+import cloudlibrary.example.demo.dto.VersionTag;
+import cloudlibrary.example.demo.event.PostCreatedEvent;
+import cloudlibrary.example.demo.exception.MissingReferences;
+import cloudlibrary.example.demo.exception.ResourceNotFoundException;
 import cloudlibrary.example.demo.model.Post;
 import cloudlibrary.example.demo.repository.BookRepository;
+import cloudlibrary.example.demo.repository.CommentRepository;
 import cloudlibrary.example.demo.repository.PostRepository;
+import cloudlibrary.example.demo.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.List;
 import java.util.Optional;
@@ -12,10 +29,25 @@ import java.util.Optional;
 public class PostService {
     private final PostRepository postRepository;
     private final BookRepository bookRepository;
-
-    public PostService(PostRepository postRepository, BookRepository bookRepository) {
+    private final UserRepository userRepository;
+    private final DiscussionEventBroker discussionEventBroker;
+    private final ApplicationEventPublisher eventPublisher;
+    private final CommentRepository commentRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int deleteChunkSize;
+
+    public PostService(PostRepository postRepository, BookRepository bookRepository, UserRepository userRepository,
+                       DiscussionEventBroker discussionEventBroker, ApplicationEventPublisher eventPublisher,
+                       CommentRepository commentRepository, TransactionTemplate transactionTemplate,
+                       @Value("${app.deletes.chunk-size:1000}") int deleteChunkSize) {
         this.postRepository = postRepository;
         this.bookRepository = bookRepository;
+        this.userRepository = userRepository;
+        this.discussionEventBroker = discussionEventBroker;
+        this.eventPublisher = eventPublisher;
+        this.commentRepository = commentRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.deleteChunkSize = deleteChunkSize;
     }
 
     public List<Post> findAll() {
@@ -26,40 +58,148 @@ public class PostService {
         return postRepository.save(post);
     }
 
-    public List<Post> findByBookId(Long bookId) {
-        return postRepository.findByBookId(bookId);
+    /** Posts de un libro, del más reciente al más antiguo, con los agregados de comentarios. */
+    public CursorPage<PostFeedItem> getPostsByBook(Long bookId, String cursor, Integer limit) {
+        if (!bookRepository.existsById(bookId)) {
+            throw new ResourceNotFoundException("Libro no encontrado");
+        }
+        int pageSize = BookService.pageSize(limit);
+        Limit rowLimit = Limit.of(pageSize + 1);
+
+        List<PostFeedItem> rows;
+        if (cursor == null || cursor.isBlank()) {
+            rows = postRepository.findByBook(bookId, rowLimit);
+        } else {
+            CreatedAtKey key = CreatedAtKey.decode(cursor);
+            rows = postRepository.findByBookBefore(bookId, key.createdAt(), key.id(), rowLimit);
+        }
+        return page(rows, pageSize);
     }
 
     public List<Post> findByUserId(Long userId) {
         return postRepository.findByAuthorId(userId);
     }
 
-    public List<Post> getAllPosts() {
-        return postRepository.findAll();
+    /**
+     * Listado global del más reciente al más antiguo, paginado por (createdAt, id). El cursor
+     * {@code before} es el {@code next} de la página anterior.
+     */
+    public CursorPage<PostFeedItem> getFeed(String before, Integer limit) {
+        int pageSize = BookService.pageSize(limit);
+        Limit rowLimit = Limit.of(pageSize + 1);
+
+        List<PostFeedItem> rows;
+        if (before == null || before.isBlank()) {
+            rows = postRepository.findFeed(rowLimit);
+        } else {
+            CreatedAtKey key = CreatedAtKey.decode(before);
+            rows = postRepository.findFeedBefore(key.createdAt(), key.id(), rowLimit);
+        }
+        return page(rows, pageSize);
+    }
+
+    public Optional<PostDetail> getPostById(Long id) {
+        return postRepository.findDetailById(id);
     }
 
-    public Optional<Post> getPostById(Long id) {
-        return postRepository.findById(id);
+    public Optional<VersionTag> findPostVersion(Long id) {
+        return postRepository.findVersionTag(id);
     }
 
 
-    public Post addPost(Post post) {
-        if (post.getAuthor() == null) {
+    /**
+     * Un único INSERT: autor y libro se enlazan por referencia y su existencia la comprueba la FK.
+     * La FK no distingue un libro con borrado lógico, así que el libro se bloquea antes como en vivo.
+     */
+    public PostView addPost(PostRequest request) {
+        if (request.authorId() == null) {
             throw new IllegalArgumentException("El post debe tener un usuario");
         }
 
-        if (post.getBook() != null && post.getBook().getId() == null) {
-            bookRepository.save(post.getBook());
+        Post post = new Post();
+        post.setTitle(request.title());
+        post.setContent(request.content());
+        post.setAuthor(userRepository.getReferenceById(request.authorId()));
+        if (request.bookId() != null) {
+            post.setBook(bookRepository.getReferenceById(request.bookId()));
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                if (request.bookId() != null && bookRepository.lockLiveById(request.bookId()).isEmpty()) {
+                    throw new ResourceNotFoundException("Libro no encontrado");
+                }
+                postRepository.save(post);
+            });
+        } catch (DataIntegrityViolationException e) {
+            throw MissingReferences.translate(e, "Autor o libro no encontrado");
         }
+        PostView view = new PostView(post.getId(), post.getTitle(), post.getContent(),
+                request.authorId(), request.bookId(), post.getCreatedAt());
+        eventPublisher.publishEvent(new PostCreatedEvent(view));
+        return view;
+    }
 
-        return postRepository.save(post);
+    /**
+     * Comentarios nuevos del post, en directo; vacío si el post no existe. No se lanza excepción
+     * porque el cliente pide text/event-stream y el cuerpo de error JSON no se podría escribir.
+     */
+    public Optional<SseEmitter> subscribeToPost(Long postId) {
+        if (!postRepository.existsById(postId)) {
+            return Optional.empty();
+        }
+        return Optional.of(discussionEventBroker.subscribe(DiscussionEventBroker.postTopic(postId)));
     }
 
+    /** Posts nuevos del libro, en directo; vacío si el libro no existe. */
+    public Optional<SseEmitter> subscribeToBook(Long bookId) {
+        if (!bookRepository.existsById(bookId)) {
+            return Optional.empty();
+        }
+        return Optional.of(discussionEventBroker.subscribe(DiscussionEventBroker.bookTopic(bookId)));
+    }
+
+    /**
+     * Borra los comentarios con DELETE por tandas, cada una en su transacción, y después el post:
+     * no se carga ninguna entidad, así que el coste no depende de la cascada de JPA.
+     */
     public void deletePost(Long postId) {
         if (!postRepository.existsById(postId)) {
             throw new IllegalArgumentException("Post no encontrado");
         }
-        postRepository.deleteById(postId);
+        deleteWithComments(postId);
+    }
+
+    /** Todos los posts del autor, con sus comentarios; devuelve cuántos se han borrado. */
+    public long deletePostsByAuthor(Long authorId) {
+        long deleted = 0;
+        List<Long> ids;
+        while (!(ids = postRepository.findIdsByAuthorId(authorId, Limit.of(deleteChunkSize))).isEmpty()) {
+            ids.forEach(this::deleteWithComments);
+            deleted += ids.size();
+        }
+        return deleted;
+    }
+
+    // También lo usa BookPurgeJob, que espacia los posts de un libro borrado
+    void deleteWithComments(Long postId) {
+        Integer rows;
+        do {
+            rows = transactionTemplate.execute(status -> commentRepository.deleteChunkByPost(postId, deleteChunkSize));
+        } while (rows != null && rows == deleteChunkSize);
+        // Lo comentado entre la última tanda y aquí se borra junto con el post
+        transactionTemplate.executeWithoutResult(status -> {
+            commentRepository.deleteChunkByPost(postId, deleteChunkSize);
+            postRepository.deletePostById(postId);
+        });
     }
-}
 
+    // Se pide una fila de más para saber si hay página siguiente sin COUNT
+    private static CursorPage<PostFeedItem> page(List<PostFeedItem> rows, int pageSize) {
+        if (rows.size() <= pageSize) {
+            return CursorPage.of(rows, null);
+        }
+        List<PostFeedItem> page = rows.subList(0, pageSize);
+        PostFeedItem last = page.get(pageSize - 1);
+        return CursorPage.of(page, CreatedAtKey.encode(last.createdAt(), last.id()));
+    }
+}
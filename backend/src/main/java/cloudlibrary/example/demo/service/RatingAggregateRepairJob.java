@@ -0,0 +1,71 @@
+package cloudlibrary.example.demo.service;
+
+import cloudlibrary.example.demo.repository.BookRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Recalcula rating_count / rating_sum de books a partir de la tabla ratings.
+ * Trabaja por rangos de id, cada uno en su propia transacción, para no bloquear
+ * toda la tabla books mientras se repara.
+ */
+@Component
+public class RatingAggregateRepairJob {
+
+    private static final Logger log = LoggerFactory.getLogger(RatingAggregateRepairJob.class);
+
+    private final BookRepository bookRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final boolean repairOnStartup;
+
+    public RatingAggregateRepairJob(BookRepository bookRepository,
+                                    TransactionTemplate transactionTemplate,
+                                    @Value("${app.ratings.aggregate-repair.batch-size:1000}") int batchSize,
+                                    @Value("${app.ratings.aggregate-repair.on-startup:false}") boolean repairOnStartup) {
+        this.bookRepository = bookRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.batchSize = batchSize;
+        this.repairOnStartup = repairOnStartup;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void repairOnStartup() {
+        if (repairOnStartup) {
+            scheduledRepair();
+        }
+    }
+
+    @Scheduled(cron = "${app.ratings.aggregate-repair.cron:0 30 3 * * *}")
+    public void scheduledRepair() {
+        try {
+            repairAll();
+        } catch (DataAccessException e) {
+            log.error("Fallo al reparar los agregados de valoraciones", e);
+        }
+    }
+
+    public long repairAll() {
+        long start = System.currentTimeMillis();
+        long maxId = bookRepository.findMaxId();
+        long updated = 0;
+
+        for (long fromId = 1; fromId <= maxId; fromId += batchSize) {
+            long from = fromId;
+            long to = fromId + batchSize - 1;
+            Integer rows = transactionTemplate.execute(status -> bookRepository.recomputeRatingStats(from, to));
+            updated += (rows != null) ? rows : 0;
+        }
+
+        log.info("Agregados de valoraciones recalculados para {} libros en {} ms",
+                updated, System.currentTimeMillis() - start);
+        return updated;
+    }
+}
@@ -0,0 +1,167 @@
+package cloudlibrary.example.demo.service;
+
+import cloudlibrary.example.demo.dto.RatingBucket;
+import cloudlibrary.example.demo.dto.RatingDistribution;
+import cloudlibrary.example.demo.event.RatingChangedEvent;
+import cloudlibrary.example.demo.repository.RatingRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histograma de estrellas por libro en memoria. Los contadores son LongAdder: las valoraciones
+ * concurrentes de un libro popular no compiten por la misma celda. Se carga con una única
+ * consulta agregada al arrancar y se contrasta periódicamente con la tabla ratings.
+ */
+@Service
+public class RatingHistogramService {
+
+    private static final Logger log = LoggerFactory.getLogger(RatingHistogramService.class);
+
+    static final int STARS = 5;
+
+    private final RatingRepository ratingRepository;
+    private final ConcurrentHashMap<Long, LongAdder[]> histograms = new ConcurrentHashMap<>();
+
+    // Diferencias vistas en la última reconciliación; solo se corrigen si se repiten en la siguiente,
+    // para no "arreglar" una valoración confirmada entre la consulta y la comparación
+    private Map<Long, long[]> pendingDrift = Map.of();
+
+    public RatingHistogramService(RatingRepository ratingRepository) {
+        this.ratingRepository = ratingRepository;
+    }
+
+    public RatingDistribution distribution(Long bookId) {
+        return RatingDistribution.of(snapshot(bookId));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onRatingChanged(RatingChangedEvent event) {
+        if (event.previousValue() != null) {
+            add(event.bookId(), event.previousValue(), -1);
+        }
+        if (event.newValue() != null) {
+            add(event.bookId(), event.newValue(), 1);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        try {
+            long start = System.currentTimeMillis();
+            Map<Long, long[]> counts = loadFromTable();
+            counts.forEach((bookId, stars) -> {
+                for (int i = 0; i < STARS; i++) {
+                    add(bookId, i + 1, stars[i]);
+                }
+            });
+            log.info("Histogramas de valoraciones cargados para {} libros en {} ms",
+                    counts.size(), System.currentTimeMillis() - start);
+        } catch (DataAccessException e) {
+            log.error("No se pudieron cargar los histogramas de valoraciones", e);
+        }
+    }
+
+    @Scheduled(cron = "${app.ratings.histogram.reconcile-cron:0 15 * * * *}")
+    public void scheduledReconcile() {
+        try {
+            reconcile();
+        } catch (DataAccessException e) {
+            log.error("Fallo al reconciliar los histogramas de valoraciones", e);
+        }
+    }
+
+    /** Devuelve cuántos libros se han corregido. */
+    public synchronized int reconcile() {
+        Map<Long, long[]> expected = loadFromTable();
+        Map<Long, long[]> drift = new HashMap<>();
+
+        for (Long bookId : union(expected.keySet(), histograms.keySet())) {
+            long[] actual = snapshot(bookId);
+            long[] target = expected.getOrDefault(bookId, new long[STARS]);
+            long[] diff = new long[STARS];
+            boolean differs = false;
+            for (int i = 0; i < STARS; i++) {
+                diff[i] = target[i] - actual[i];
+                differs |= diff[i] != 0;
+            }
+            if (differs) {
+                drift.put(bookId, diff);
+            }
+        }
+
+        int fixed = 0;
+        Map<Long, long[]> stillPending = new HashMap<>();
+        for (Map.Entry<Long, long[]> entry : drift.entrySet()) {
+            long[] previous = pendingDrift.get(entry.getKey());
+            if (previous != null && Arrays.equals(previous, entry.getValue())) {
+                for (int i = 0; i < STARS; i++) {
+                    add(entry.getKey(), i + 1, entry.getValue()[i]);
+                }
+                fixed++;
+            } else {
+                stillPending.put(entry.getKey(), entry.getValue());
+            }
+        }
+        pendingDrift = stillPending;
+
+        if (fixed > 0 || !stillPending.isEmpty()) {
+            log.warn("Histogramas de valoraciones: {} libros corregidos, {} con diferencias pendientes",
+                    fixed, stillPending.size());
+        }
+        return fixed;
+    }
+
+    private Map<Long, long[]> loadFromTable() {
+        Map<Long, long[]> counts = new HashMap<>();
+        for (RatingBucket bucket : ratingRepository.countByBookAndValue()) {
+            counts.computeIfAbsent(bucket.bookId(), id -> new long[STARS])[bucket.value() - 1] = bucket.count();
+        }
+        return counts;
+    }
+
+    private void add(Long bookId, int value, long delta) {
+        if (value < 1 || value > STARS || delta == 0) {
+            return;
+        }
+        histograms.computeIfAbsent(bookId, id -> newCounters())[value - 1].add(delta);
+    }
+
+    private long[] snapshot(Long bookId) {
+        long[] counts = new long[STARS];
+        LongAdder[] counters = histograms.get(bookId);
+        if (counters != null) {
+            for (int i = 0; i < STARS; i++) {
+                counts[i] = counters[i].sum();
+            }
+        }
+        return counts;
+    }
+
+    private static LongAdder[] newCounters() {
+        LongAdder[] counters = new LongAdder[STARS];
+        for (int i = 0; i < STARS; i++) {
+            counters[i] = new LongAdder();
+        }
+        return counters;
+    }
+
+    private static Set<Long> union(Set<Long> a, Set<Long> b) {
+        Set<Long> all = new HashSet<>(a);
+        all.addAll(b);
+        return all;
+    }
+}
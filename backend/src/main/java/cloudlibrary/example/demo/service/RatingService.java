@@ -1,17 +1,72 @@
 package cloudlibrary.example.demo.service;
 
+import cloudlibrary.example.demo.dto.BookRatingStats;
+import cloudlibrary.example.demo.dto.CursorPage;
+import cloudlibrary.example.demo.dto.PageCursor;
+import cloudlibrary.example.demo.dto.RatingDistribution;
+import cloudlibrary.example.demo.dto.RatingRef;
+import cloudlibrary.example.demo.dto.RatingRequest;
+import cloudlibrary.example.demo.dto.RatingStats;
+import cloudlibrary.example.demo.dto.RatingSummary;
+import cloudlibrary.example.demo.dto.RatingView;
+import cloudlibrary.example.demo.dto.RatingWriteResult;
+import cloudlibrary.example.demo.event.RatingChangedEvent;
+import cloudlibrary.example.demo.exception.InvalidRequestException;
+import cloudlibrary.example.demo.exception.MissingReferences;
+import cloudlibrary.example.demo.exception.ResourceNotFoundException;
 import cloudlibrary.example.demo.model.Rating;
+import cloudlibrary.example.demo.repository.BookRepository;
 import cloudlibrary.example.demo.repository.RatingRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 
 @Service
 public class RatingService {
+    static final int MAX_BATCH_IDS = 100;
+
     private final RatingRepository ratingRepository;
+    private final BookRepository bookRepository;
+    private final RatingHistogramService ratingHistogramService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+    // Solo existe con app.ratings.ingest.mode=write-behind
+    private final RatingWriteBehindLog writeBehindLog;
+    private final Timer addRatingTimer;
+    private final int deleteChunkSize;
 
-    public RatingService(RatingRepository ratingRepository) {
+    public RatingService(RatingRepository ratingRepository, BookRepository bookRepository,
+                         RatingHistogramService ratingHistogramService, ApplicationEventPublisher eventPublisher,
+                         TransactionTemplate transactionTemplate, ObjectProvider<RatingWriteBehindLog> writeBehindLog,
+                         MeterRegistry meterRegistry,
+                         @Value("${app.deletes.chunk-size:1000}") int deleteChunkSize) {
         this.ratingRepository = ratingRepository;
+        this.bookRepository = bookRepository;
+        this.ratingHistogramService = ratingHistogramService;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = transactionTemplate;
+        this.writeBehindLog = writeBehindLog.getIfAvailable();
+        // Latencia y throughput (count / tiempo) del alta, comparables entre modos por la etiqueta
+        this.addRatingTimer = Timer.builder("ratings.add")
+                .description("Tiempo de respuesta del alta de valoraciones, commit incluido")
+                .tag("mode", this.writeBehindLog != null ? "write-behind" : "direct")
+                .register(meterRegistry);
+        this.deleteChunkSize = deleteChunkSize;
     }
 
     public Rating save(Rating rating) {
@@ -19,24 +74,149 @@ public class RatingService {
     }
 
     public Double averageRatingForBook(Long bookId) {
-        return ratingRepository.findAverageByBook(bookId);
+        return findRatingStats(bookId).map(RatingStats::average).orElse(null);
+    }
+
+    public Optional<RatingStats> findRatingStats(Long bookId) {
+        return bookRepository.findRatingStats(bookId);
+    }
+
+    public Optional<RatingDistribution> findRatingDistribution(Long bookId) {
+        if (!bookRepository.existsById(bookId)) {
+            return Optional.empty();
+        }
+        return Optional.of(ratingHistogramService.distribution(bookId));
     }
 
-    public List<Rating> getRatingsByBook(Long bookId) {
-        return ratingRepository.findByBookId(bookId);
+    public Map<Long, RatingSummary> findRatingSummaries(Collection<Long> bookIds) {
+        if (bookIds == null || bookIds.isEmpty()) {
+            throw new InvalidRequestException("Debe indicarse al menos un id de libro");
+        }
+        Set<Long> ids = new LinkedHashSet<>(bookIds);
+        if (ids.size() > MAX_BATCH_IDS) {
+            throw new InvalidRequestException("No se pueden pedir más de " + MAX_BATCH_IDS + " libros por llamada");
+        }
+
+        // Una sola sentencia IN sobre la PK de books, lea los ids que lea
+        Map<Long, RatingSummary> byId = new LinkedHashMap<>();
+        for (BookRatingStats stats : bookRepository.findRatingStatsByIds(ids)) {
+            byId.put(stats.bookId(), RatingSummary.of(stats.count(), stats.sum()));
+        }
+
+        // Se respeta el orden de la petición; los libros inexistentes no aparecen
+        Map<Long, RatingSummary> result = new LinkedHashMap<>();
+        for (Long id : ids) {
+            RatingSummary summary = byId.get(id);
+            if (summary != null) {
+                result.put(id, summary);
+            }
+        }
+        return result;
     }
 
-    public Rating addRating(Rating rating) {
-        if (rating.getBook() == null) {
+    public CursorPage<RatingView> getRatingsByBook(Long bookId, String cursor, Integer limit) {
+        int pageSize = BookService.pageSize(limit);
+        long afterId = (cursor == null || cursor.isBlank()) ? 0L : PageCursor.decodeLong(cursor);
+
+        // Una fila de más para saber si hay página siguiente sin COUNT
+        List<RatingView> rows = ratingRepository.findViewsByBookAfter(bookId, afterId, Limit.of(pageSize + 1));
+        if (rows.size() <= pageSize) {
+            return CursorPage.of(rows, null);
+        }
+        List<RatingView> page = rows.subList(0, pageSize);
+        return CursorPage.of(page, PageCursor.encode(page.get(pageSize - 1).id()));
+    }
+
+    /**
+     * Un usuario tiene como mucho una valoración por libro: si ya existía se sustituye su valor.
+     * En modo write-behind la valoración queda en el log local y se aplica en el siguiente lote.
+     */
+    public RatingWriteResult addRating(RatingRequest request) {
+        if (request.bookId() == null) {
             throw new IllegalArgumentException("La valoración debe pertenecer a un libro");
         }
-        return ratingRepository.save(rating);
+        // Fuera de rango no entraría en el histograma pero sí en rating_sum/rating_count
+        if (request.value() < 1 || request.value() > RatingHistogramService.STARS) {
+            throw new InvalidRequestException("La valoración debe estar entre 1 y " + RatingHistogramService.STARS);
+        }
+        Long bookId = request.bookId();
+        Long userId = request.userId();
+        int value = request.value();
+        // Sin @Transactional: el temporizador tiene que incluir el commit
+        return addRatingTimer.record(() -> {
+            if (writeBehindLog != null) {
+                if (!bookRepository.existsById(bookId)) {
+                    throw new ResourceNotFoundException("Libro no encontrado");
+                }
+                writeBehindLog.append(bookId, userId, value);
+                return new RatingWriteResult(null, bookId, userId, value, null, RatingWriteResult.Outcome.ACCEPTED);
+            }
+            return transactionTemplate.execute(status -> {
+                RatingRepository.Upserted upserted;
+                try {
+                    upserted = ratingRepository.upsert(userId, bookId, value);
+                } catch (DataIntegrityViolationException e) {
+                    throw MissingReferences.translate(e, "Usuario o libro no encontrado");
+                }
+                Integer previous = upserted.previousValue();
+                long countDelta = upserted.created() ? 1 : 0;
+                long sumDelta = upserted.created() ? value : value - previous;
+                // La FK no distingue un libro borrado pendiente de purga; el UPDATE de agregados sí
+                if (bookRepository.applyRatingDelta(bookId, countDelta, sumDelta) == 0) {
+                    throw new ResourceNotFoundException("Usuario o libro no encontrado");
+                }
+                eventPublisher.publishEvent(new RatingChangedEvent(bookId, userId, previous, value));
+                return new RatingWriteResult(upserted.id(), bookId, userId, value, previous,
+                        upserted.created() ? RatingWriteResult.Outcome.CREATED : RatingWriteResult.Outcome.UPDATED);
+            });
+        });
     }
 
+    @Transactional
     public void deleteRating(Long ratingId) {
-        if (!ratingRepository.existsById(ratingId)) {
-            throw new IllegalArgumentException("Rating no encontrado");
+        RatingRef ref = ratingRepository.findRefById(ratingId)
+                .orElseThrow(() -> new IllegalArgumentException("Rating no encontrado"));
+
+        // Si otra petición la borró entre medias, no se descuenta dos veces
+        if (ratingRepository.deleteByIdReturningCount(ratingId) == 1) {
+            bookRepository.applyRatingDelta(ref.bookId(), -1, -ref.value());
+            eventPublisher.publishEvent(RatingChangedEvent.deleted(ref.bookId(), ref.userId(), ref.value()));
         }
-        ratingRepository.deleteById(ratingId);
+    }
+
+    /**
+     * Valoraciones del usuario por tandas. Cada tanda devuelve las filas que borró de verdad, así
+     * que el descuento en el libro no se duplica si otra petición borra la misma valoración.
+     */
+    public long deleteRatingsByUser(Long userId) {
+        long deleted = 0;
+        Integer rows;
+        do {
+            rows = transactionTemplate.execute(status -> {
+                List<RatingRef> chunk = ratingRepository.deleteChunkByUser(userId, deleteChunkSize);
+                for (RatingRef ref : chunk) {
+                    bookRepository.applyRatingDelta(ref.bookId(), -1, -ref.value());
+                    eventPublisher.publishEvent(RatingChangedEvent.deleted(ref.bookId(), ref.userId(), ref.value()));
+                }
+                return chunk.size();
+            });
+            deleted += (rows != null) ? rows : 0;
+        } while (rows != null && rows == deleteChunkSize);
+        return deleted;
+    }
+
+    /**
+     * Una tanda de valoraciones de un libro borrado. Los agregados del libro no se corrigen porque
+     * la fila va a desaparecer; el evento sí se publica, para el histograma y las recomendaciones.
+     */
+    int deleteRatingChunkByBook(Long bookId) {
+        Integer rows = transactionTemplate.execute(status -> {
+            List<RatingRef> chunk = ratingRepository.deleteChunkByBook(bookId, deleteChunkSize);
+            for (RatingRef ref : chunk) {
+                eventPublisher.publishEvent(RatingChangedEvent.deleted(ref.bookId(), ref.userId(), ref.value()));
+            }
+            return chunk.size();
+        });
+        return (rows != null) ? rows : 0;
     }
 }
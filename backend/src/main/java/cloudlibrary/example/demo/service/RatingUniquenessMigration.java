@@ -0,0 +1,65 @@
+package cloudlibrary.example.demo.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Bases anteriores al upsert pueden tener varias valoraciones del mismo usuario para un libro,
+ * y entonces ddl-auto=update no consigue crear uk_ratings_user_book. Al arrancar se conserva la
+ * más reciente de cada par, se crea el índice único y se recalculan los agregados si hubo borrados.
+ * También se quita previous_value, que guardaba el upsert anterior y ya no se escribe.
+ * Va antes que el resto de oyentes de arranque para que el histograma se cargue ya sin duplicados.
+ */
+@Component
+public class RatingUniquenessMigration {
+
+    private static final Logger log = LoggerFactory.getLogger(RatingUniquenessMigration.class);
+
+    private static final String DELETE_DUPLICATES =
+            "DELETE FROM ratings WHERE user_id IS NOT NULL AND EXISTS (" +
+            "SELECT 1 FROM ratings d WHERE d.user_id = ratings.user_id AND d.book_id = ratings.book_id AND d.id > ratings.id)";
+
+    private static final String CREATE_UNIQUE_INDEX =
+            "CREATE UNIQUE INDEX IF NOT EXISTS uk_ratings_user_book ON ratings (user_id, book_id)";
+
+    private static final String DROP_PREVIOUS_VALUE = "ALTER TABLE ratings DROP COLUMN IF EXISTS previous_value";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final RatingAggregateRepairJob ratingAggregateRepairJob;
+
+    public RatingUniquenessMigration(JdbcTemplate jdbcTemplate,
+                                     TransactionTemplate transactionTemplate,
+                                     RatingAggregateRepairJob ratingAggregateRepairJob) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.ratingAggregateRepairJob = ratingAggregateRepairJob;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void enforceOneRatingPerUser() {
+        try {
+            Integer removed = transactionTemplate.execute(status -> {
+                int deleted = jdbcTemplate.update(DELETE_DUPLICATES);
+                jdbcTemplate.execute(CREATE_UNIQUE_INDEX);
+                jdbcTemplate.execute(DROP_PREVIOUS_VALUE);
+                return deleted;
+            });
+            if (removed != null && removed > 0) {
+                log.warn("Eliminadas {} valoraciones duplicadas (mismo usuario y libro); se recalculan los agregados", removed);
+                ratingAggregateRepairJob.repairAll();
+            }
+        } catch (DataAccessException e) {
+            log.error("No se pudo imponer una valoración por usuario y libro", e);
+        }
+    }
+}
@@ -0,0 +1,398 @@
+package cloudlibrary.example.demo.service;
+
+import cloudlibrary.example.demo.event.RatingChangedEvent;
+import cloudlibrary.example.demo.model.RatingLogProgress;
+import cloudlibrary.example.demo.repository.BookRepository;
+import cloudlibrary.example.demo.repository.RatingLogProgressRepository;
+import cloudlibrary.example.demo.repository.RatingRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+/**
+ * Modo write-behind de las valoraciones: cada alta se añade a un fichero local y se confirma
+ * al cliente sin transacción; un hilo de fondo la inserta después en lotes.
+ *
+ * <p>El log se parte en segmentos. Al vaciar, el segmento activo se cierra y se abre otro; cada
+ * segmento cerrado se inserta en una transacción y solo se borra tras el commit. Los segmentos que
+ * quedan en disco al arrancar se reinsertan. Una caída entre el commit y el borrado del fichero
+ * repite ese segmento, pero cada transacción guarda también cuántas entradas del segmento lleva
+ * aplicadas (rating_log_progress), y al repetirlo se saltan: sin eso las valoraciones anónimas,
+ * que no chocan con ninguna fila, se insertarían y contarían dos veces.
+ */
+@Component
+@ConditionalOnProperty(name = "app.ratings.ingest.mode", havingValue = "write-behind")
+public class RatingWriteBehindLog {
+
+    private static final Logger log = LoggerFactory.getLogger(RatingWriteBehindLog.class);
+
+    private static final String SEGMENT_PREFIX = "ratings-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    record Entry(long bookId, Long userId, int value) {
+    }
+
+    private record Segment(Path file, List<Entry> entries) {
+    }
+
+    private final RatingRepository ratingRepository;
+    private final BookRepository bookRepository;
+    private final RatingLogProgressRepository progressRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Path directory;
+    private final int batchSize;
+    private final long flushIntervalMs;
+    private final boolean fsyncOnAppend;
+
+    private final Object appendLock = new Object();
+    private FileChannel activeChannel;
+    private Path activeFile;
+    private List<Entry> activeEntries = new ArrayList<>();
+    private long nextSequence;
+
+    // Segmentos cerrados pendientes de insertar, en orden; solo los consume el hilo de vaciado
+    private final Deque<Segment> sealed = new ConcurrentLinkedDeque<>();
+    private final AtomicBoolean drainRequested = new AtomicBoolean();
+    private final ScheduledExecutorService drainer =
+            Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, "ratings-write-behind"));
+    private final Counter drainedCounter;
+
+    public RatingWriteBehindLog(RatingRepository ratingRepository,
+                                BookRepository bookRepository,
+                                RatingLogProgressRepository progressRepository,
+                                TransactionTemplate transactionTemplate,
+                                ApplicationEventPublisher eventPublisher,
+                                MeterRegistry meterRegistry,
+                                @Value("${app.ratings.ingest.log-dir:data/ratings-log}") Path directory,
+                                @Value("${app.ratings.ingest.batch-size:500}") int batchSize,
+                                @Value("${app.ratings.ingest.flush-interval-ms:200}") long flushIntervalMs,
+                                @Value("${app.ratings.ingest.fsync-on-append:false}") boolean fsyncOnAppend) throws IOException {
+        this.ratingRepository = ratingRepository;
+        this.bookRepository = bookRepository;
+        this.progressRepository = progressRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.eventPublisher = eventPublisher;
+        this.directory = directory;
+        this.batchSize = batchSize;
+        this.flushIntervalMs = flushIntervalMs;
+        this.fsyncOnAppend = fsyncOnAppend;
+
+        Files.createDirectories(directory);
+        // Los números de segmento no se repiten entre arranques, aunque el directorio quede vacío:
+        // el progreso que sobreviva de un segmento ya borrado no se confunde con uno nuevo
+        nextSequence = System.currentTimeMillis();
+        recoverSegments();
+        openSegment();
+
+        this.drainedCounter = Counter.builder("ratings.write_behind.drained")
+                .description("Valoraciones insertadas desde el log local")
+                .register(meterRegistry);
+        Gauge.builder("ratings.write_behind.pending", this, RatingWriteBehindLog::pending)
+                .description("Valoraciones confirmadas al cliente y aún no insertadas")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        drainer.scheduleWithFixedDelay(this::drainQuietly, 0, flushIntervalMs, TimeUnit.MILLISECONDS);
+        log.info("Valoraciones en modo write-behind: log en {}, lotes de {} cada {} ms",
+                directory.toAbsolutePath(), batchSize, flushIntervalMs);
+    }
+
+    public void append(long bookId, Long userId, int value) {
+        byte[] line = (bookId + "," + (userId != null ? userId : "") + "," + value + "\n")
+                .getBytes(StandardCharsets.US_ASCII);
+        int pendingInSegment;
+        synchronized (appendLock) {
+            try {
+                ByteBuffer buffer = ByteBuffer.wrap(line);
+                while (buffer.hasRemaining()) {
+                    activeChannel.write(buffer);
+                }
+                if (fsyncOnAppend) {
+                    activeChannel.force(false);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("No se pudo escribir en el log de valoraciones", e);
+            }
+            activeEntries.add(new Entry(bookId, userId, value));
+            pendingInSegment = activeEntries.size();
+        }
+        // Si se llena un lote no se espera al siguiente intervalo
+        if (pendingInSegment >= batchSize && drainRequested.compareAndSet(false, true)) {
+            drainer.execute(this::drainQuietly);
+        }
+    }
+
+    /** Inserta todo lo pendiente. Devuelve cuántas valoraciones se han escrito en la base de datos. */
+    public long drain() {
+        drainRequested.set(false);
+        sealActiveSegment();
+
+        long drained = 0;
+        Segment segment;
+        while ((segment = sealed.peekFirst()) != null) {
+            if (!persist(segment)) {
+                // Base de datos no disponible: se reintenta en la siguiente pasada
+                break;
+            }
+            try {
+                Files.deleteIfExists(segment.file());
+            } catch (IOException e) {
+                log.error("No se pudo borrar el segmento ya insertado {}", segment.file(), e);
+            }
+            forgetProgress(sequenceOf(segment.file()));
+            sealed.pollFirst();
+            drained += segment.entries().size();
+        }
+        drainedCounter.increment(drained);
+        return drained;
+    }
+
+    public long pending() {
+        long pending;
+        synchronized (appendLock) {
+            pending = activeEntries.size();
+        }
+        for (Segment segment : sealed) {
+            pending += segment.entries().size();
+        }
+        return pending;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        drainer.shutdown();
+        try {
+            drainer.awaitTermination(10, TimeUnit.SECONDS);
+            drain();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            log.warn("Quedan valoraciones sin insertar; se reinsertarán al arrancar", e);
+        }
+        synchronized (appendLock) {
+            try {
+                activeChannel.close();
+            } catch (IOException e) {
+                log.warn("No se pudo cerrar el log de valoraciones", e);
+            }
+        }
+    }
+
+    private void drainQuietly() {
+        try {
+            drain();
+        } catch (RuntimeException e) {
+            log.error("Fallo al vaciar el log de valoraciones", e);
+        }
+    }
+
+    private void sealActiveSegment() {
+        synchronized (appendLock) {
+            if (activeEntries.isEmpty()) {
+                return;
+            }
+            try {
+                activeChannel.force(false);
+                activeChannel.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException("No se pudo cerrar el segmento " + activeFile, e);
+            }
+            sealed.addLast(new Segment(activeFile, activeEntries));
+            activeEntries = new ArrayList<>();
+            openSegment();
+        }
+    }
+
+    private boolean persist(Segment segment) {
+        long sequence = sequenceOf(segment.file());
+        List<Entry> entries = segment.entries();
+        int applied;
+        try {
+            applied = progressRepository.findById(sequence).map(RatingLogProgress::getApplied).orElse(0);
+        } catch (DataAccessException e) {
+            log.error("Base de datos no disponible al vaciar el log de valoraciones", e);
+            return false;
+        }
+        if (applied >= entries.size()) {
+            return true;
+        }
+        if (applied > 0) {
+            log.info("Segmento {}: se saltan {} valoraciones ya insertadas antes de la caída", segment.file().getFileName(), applied);
+        }
+
+        List<Entry> remaining = entries.subList(applied, entries.size());
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                insertAll(remaining);
+                saveProgress(sequence, entries.size());
+            });
+            return true;
+        } catch (DataAccessException e) {
+            log.warn("Fallo el lote de {} valoraciones, se reintenta fila a fila: {}", remaining.size(), e.getMessage());
+        }
+
+        for (int i = applied; i < entries.size(); i++) {
+            Entry entry = entries.get(i);
+            int done = i + 1;
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    insertAll(List.of(entry));
+                    saveProgress(sequence, done);
+                });
+            } catch (DataIntegrityViolationException e) {
+                // También habría fallado en modo directo (libro o usuario inexistente): se descarta
+                log.error("Valoración descartada del log (libro {}, usuario {}): {}",
+                        entry.bookId(), entry.userId(), e.getMostSpecificCause().getMessage());
+            } catch (DataAccessException e) {
+                log.error("Base de datos no disponible al vaciar el log de valoraciones", e);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void saveProgress(long sequence, int applied) {
+        RatingLogProgress progress = new RatingLogProgress();
+        progress.setSegment(sequence);
+        progress.setApplied(applied);
+        progressRepository.save(progress);
+    }
+
+    // Con el fichero ya borrado el progreso no se vuelve a leer; si queda por un fallo no estorba
+    private void forgetProgress(long sequence) {
+        try {
+            progressRepository.deleteById(sequence);
+        } catch (DataAccessException e) {
+            log.warn("No se pudo borrar el progreso del segmento {}: {}", sequence, e.getMessage());
+        }
+    }
+
+    private void insertAll(List<Entry> entries) {
+        // Un upsert por entrada y no un INSERT por lotes: cada una necesita el valor anterior para el
+        // delta de agregados y el evento del histograma, y dos entradas del mismo (usuario, libro)
+        // tienen que aplicarse en orden. Sí hay un solo commit y un UPDATE de agregados por libro y lote
+        Map<Long, long[]> deltas = new HashMap<>();
+        List<RatingChangedEvent> events = new ArrayList<>(entries.size());
+        for (Entry entry : entries) {
+            RatingRepository.Upserted upserted = ratingRepository.upsert(entry.userId(), entry.bookId(), entry.value());
+            Integer previous = upserted.previousValue();
+            long[] delta = deltas.computeIfAbsent(entry.bookId(), id -> new long[2]);
+            if (upserted.created()) {
+                delta[0]++;
+                delta[1] += entry.value();
+            } else {
+                delta[1] += entry.value() - previous;
+            }
+            events.add(new RatingChangedEvent(entry.bookId(), entry.userId(), previous, entry.value()));
+        }
+        for (Map.Entry<Long, long[]> delta : deltas.entrySet()) {
+            // Libro con borrado lógico: la FK lo deja pasar, pero en modo directo se rechaza. Se deshace
+            // el lote y el reintento fila a fila descarta solo las valoraciones de ese libro
+            if (bookRepository.applyRatingDelta(delta.getKey(), delta.getValue()[0], delta.getValue()[1]) == 0) {
+                throw new DataIntegrityViolationException("Libro " + delta.getKey() + " borrado");
+            }
+        }
+        events.forEach(eventPublisher::publishEvent);
+    }
+
+    private void recoverSegments() throws IOException {
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(directory)) {
+            files = listing.filter(p -> p.getFileName().toString().startsWith(SEGMENT_PREFIX)
+                            && p.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .sorted()
+                    .toList();
+        }
+
+        long recovered = 0;
+        for (Path file : files) {
+            List<Entry> entries = new ArrayList<>();
+            String[] lines = Files.readString(file, StandardCharsets.US_ASCII).split("\n", -1);
+            // Lo que sigue al último salto de línea es una escritura a medias de cuando se cayó el proceso
+            if (!lines[lines.length - 1].isEmpty()) {
+                log.warn("Descartada línea incompleta al final de {}", file.getFileName());
+            }
+            for (int i = 0; i < lines.length - 1; i++) {
+                Entry entry = parse(lines[i]);
+                if (entry != null) {
+                    entries.add(entry);
+                } else {
+                    log.warn("Línea ignorada en {}: '{}'", file.getFileName(), lines[i]);
+                }
+            }
+            sealed.addLast(new Segment(file, entries));
+            recovered += entries.size();
+            nextSequence = Math.max(nextSequence, sequenceOf(file) + 1);
+        }
+        if (!files.isEmpty()) {
+            log.info("Recuperadas {} valoraciones pendientes de {} segmentos del log", recovered, files.size());
+        }
+    }
+
+    private void openSegment() {
+        activeFile = directory.resolve(SEGMENT_PREFIX + String.format("%015d", nextSequence++) + SEGMENT_SUFFIX);
+        try {
+            activeChannel = FileChannel.open(activeFile,
+                    StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo crear el segmento " + activeFile, e);
+        }
+    }
+
+    private static Entry parse(String line) {
+        String[] fields = line.split(",", -1);
+        if (fields.length != 3) {
+            return null;
+        }
+        try {
+            Long userId = fields[1].isEmpty() ? null : Long.parseLong(fields[1]);
+            return new Entry(Long.parseLong(fields[0]), userId, Integer.parseInt(fields[2]));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static long sequenceOf(Path file) {
+        String name = file.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
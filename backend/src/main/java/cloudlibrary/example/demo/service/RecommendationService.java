@@ -0,0 +1,178 @@
+package cloudlibrary.example.demo.service;
+
+import cloudlibrary.example.demo.dto.BookSummary;
+import cloudlibrary.example.demo.dto.RatingRef;
+import cloudlibrary.example.demo.dto.RecommendedBook;
+import cloudlibrary.example.demo.dto.Recommendations;
+import cloudlibrary.example.demo.event.RatingChangedEvent;
+import cloudlibrary.example.demo.exception.ResourceNotFoundException;
+import cloudlibrary.example.demo.recommend.ItemNeighbours;
+import cloudlibrary.example.demo.recommend.RatingMatrix;
+import cloudlibrary.example.demo.recommend.RecommendationModel;
+import cloudlibrary.example.demo.repository.BookRepository;
+import cloudlibrary.example.demo.repository.RatingRepository;
+import cloudlibrary.example.demo.repository.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Recomendaciones por filtrado colaborativo basado en libros. El modelo se construye en la JVM
+ * al arrancar y cada noche; entre medias, las valoraciones confirmadas se encolan y se aplican
+ * cada pocos segundos recalculando solo los libros afectados. El perfil del usuario se lee de
+ * base de datos en cada petición, así que lo que acaba de valorar ya cuenta y no se le recomienda.
+ */
+@Service
+public class RecommendationService {
+
+    private static final Logger log = LoggerFactory.getLogger(RecommendationService.class);
+
+    static final int DEFAULT_LIMIT = 10;
+    static final int MAX_LIMIT = 100;
+
+    private final RatingRepository ratingRepository;
+    private final BookRepository bookRepository;
+    private final UserRepository userRepository;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ItemNeighbours.Settings settings;
+
+    private final AtomicReference<RecommendationModel> model = new AtomicReference<>();
+    private final Queue<RatingMatrix.Change> pendingChanges = new ConcurrentLinkedQueue<>();
+
+    public RecommendationService(RatingRepository ratingRepository,
+                                 BookRepository bookRepository,
+                                 UserRepository userRepository,
+                                 PlatformTransactionManager transactionManager,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${app.recommendations.neighbours:50}") int neighbours,
+                                 @Value("${app.recommendations.shrinkage:10}") float shrinkage,
+                                 @Value("${app.recommendations.max-ratings-per-user:2000}") int maxRatingsPerUser) {
+        this.ratingRepository = ratingRepository;
+        this.bookRepository = bookRepository;
+        this.userRepository = userRepository;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.settings = new ItemNeighbours.Settings(neighbours, shrinkage, maxRatingsPerUser);
+        meterRegistry.gauge("recommendations.model.bytes", model,
+                ref -> ref.get() == null ? 0 : ref.get().memoryBytes());
+        meterRegistry.gauge("recommendations.pending", pendingChanges, Queue::size);
+    }
+
+    public Recommendations recommend(Long userId, Integer limit) {
+        if (!userRepository.existsById(userId)) {
+            throw new ResourceNotFoundException("Usuario no encontrado");
+        }
+        RecommendationModel current = model.get();
+        if (current == null) {
+            return new Recommendations(null, List.of());
+        }
+
+        List<RatingRef> profile = ratingRepository.findRefsByUserId(userId);
+        long[] bookIds = new long[profile.size()];
+        int[] values = new int[profile.size()];
+        for (int i = 0; i < profile.size(); i++) {
+            bookIds[i] = profile.get(i).bookId();
+            values[i] = profile.get(i).value();
+        }
+        int count = Math.max(1, Math.min(limit == null ? DEFAULT_LIMIT : limit, MAX_LIMIT));
+        List<RecommendationModel.ScoredBook> scored = current.recommend(bookIds, values, count);
+        if (scored.isEmpty()) {
+            return new Recommendations(current.builtAt(), List.of());
+        }
+
+        Map<Long, BookSummary> summaries = bookRepository
+                .findSummariesByIds(scored.stream().map(RecommendationModel.ScoredBook::bookId).toList())
+                .stream()
+                .collect(Collectors.toMap(BookSummary::id, Function.identity()));
+        List<RecommendedBook> books = new ArrayList<>(scored.size());
+        for (RecommendationModel.ScoredBook book : scored) {
+            BookSummary summary = summaries.get(book.bookId());
+            if (summary != null) { // borrado después de construir el modelo
+                books.add(new RecommendedBook(summary.id(), summary.title(), summary.author(),
+                        summary.categoryId(), summary.categoryName(), book.score()));
+            }
+        }
+        return new Recommendations(current.builtAt(), books);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onRatingChanged(RatingChangedEvent event) {
+        if (event.userId() != null) {
+            int value = event.newValue() != null ? event.newValue() : 0;
+            pendingChanges.add(new RatingMatrix.Change(event.userId(), event.bookId(), value));
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        scheduledRebuild();
+    }
+
+    @Scheduled(cron = "${app.recommendations.rebuild-cron:0 0 4 * * *}")
+    public void scheduledRebuild() {
+        try {
+            rebuild();
+        } catch (DataAccessException e) {
+            log.error("No se pudo construir el modelo de recomendaciones", e);
+        }
+    }
+
+    /**
+     * Los cambios que llegan durante la lectura siguen en la cola y se aplican después; aplicar
+     * uno que la lectura ya incluía no tiene efecto, porque un cambio fija el valor, no lo suma.
+     */
+    public synchronized void rebuild() {
+        long start = System.currentTimeMillis();
+        RatingMatrix.Builder builder = RatingMatrix.builder(1024);
+        readOnlyTransaction.executeWithoutResult(status -> ratingRepository.forEachUserRating(builder::add));
+        RatingMatrix matrix = builder.build();
+        long loaded = System.currentTimeMillis();
+
+        RecommendationModel built = RecommendationModel.build(matrix, settings);
+        model.set(built);
+        log.info("Modelo de recomendaciones: {} valoraciones, {} usuarios, {} libros; lectura {} ms, cálculo {} ms, {} KB",
+                matrix.ratingCount(), matrix.userCount(), matrix.itemCount(), loaded - start,
+                System.currentTimeMillis() - loaded, built.memoryBytes() / 1024);
+    }
+
+    @Scheduled(fixedDelayString = "${app.recommendations.refresh-interval-ms:10000}")
+    public synchronized void applyPendingChanges() {
+        RecommendationModel current = model.get();
+        if (current == null) {
+            // Sin modelo (falló la construcción al arrancar) la próxima reconstrucción lee todas
+            // las valoraciones: la cola sobra y, si no se vacía, crece sin límite
+            pendingChanges.clear();
+            return;
+        }
+        if (pendingChanges.isEmpty()) {
+            return;
+        }
+        List<RatingMatrix.Change> changes = new ArrayList<>();
+        RatingMatrix.Change change;
+        while ((change = pendingChanges.poll()) != null) {
+            changes.add(change);
+        }
+        long start = System.currentTimeMillis();
+        model.set(current.update(changes));
+        log.debug("Aplicados {} cambios de valoraciones al modelo de recomendaciones en {} ms",
+                changes.size(), System.currentTimeMillis() - start);
+    }
+}
@@ -1,9 +1,11 @@
 package cloudlibrary.example.demo.service;
 
+import cloudlibrary.example.demo.exception.ResourceNotFoundException;
 import cloudlibrary.example.demo.model.User;
 import cloudlibrary.example.demo.repository.UserRepository;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.util.Optional;
 
@@ -12,10 +14,20 @@ public class UserService {
 
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
+    private final PostService postService;
+    private final CommentService commentService;
+    private final RatingService ratingService;
+    private final TransactionTemplate transactionTemplate;
 
-    public UserService(UserRepository userRepository, PasswordEncoder passwordEncoder) {
+    public UserService(UserRepository userRepository, PasswordEncoder passwordEncoder, PostService postService,
+                       CommentService commentService, RatingService ratingService,
+                       TransactionTemplate transactionTemplate) {
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
+        this.postService = postService;
+        this.commentService = commentService;
+        this.ratingService = ratingService;
+        this.transactionTemplate = transactionTemplate;
     }
 
     public User registerUser(User user) {
@@ -40,4 +52,19 @@ public class UserService {
         return userRepository.findById(id)
                 .orElseThrow(() -> new IllegalArgumentException("Usuario no encontrado"));
     }
+
+    /**
+     * Baja de la cuenta sin cargar sus colecciones: posts (con todos sus comentarios), comentarios
+     * en posts ajenos (con sus respuestas) y valoraciones se borran por tandas ajustando los
+     * agregados, y al final la fila del usuario.
+     */
+    public void deleteUser(Long id) {
+        if (!userRepository.existsById(id)) {
+            throw new ResourceNotFoundException("Usuario no encontrado");
+        }
+        postService.deletePostsByAuthor(id);
+        commentService.deleteCommentsByAuthor(id);
+        ratingService.deleteRatingsByUser(id);
+        transactionTemplate.executeWithoutResult(status -> userRepository.deleteUserById(id));
+    }
 }
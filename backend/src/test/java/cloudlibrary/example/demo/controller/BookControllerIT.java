@@ -1,11 +1,18 @@
 package cloudlibrary.example.demo.controller;
 
+import cloudlibrary.example.demo.dto.CommentRequest;
+import cloudlibrary.example.demo.dto.RatingRequest;
 import cloudlibrary.example.demo.model.Book;
-import cloudlibrary.example.demo.model.Rating;
+import cloudlibrary.example.demo.model.Post;
 import cloudlibrary.example.demo.model.User;
 import cloudlibrary.example.demo.repository.BookRepository;
+import cloudlibrary.example.demo.repository.PostRepository;
 import cloudlibrary.example.demo.repository.RatingRepository;
 import cloudlibrary.example.demo.repository.UserRepository;
+import cloudlibrary.example.demo.service.BookLeaderboardService;
+import cloudlibrary.example.demo.service.BookService;
+import cloudlibrary.example.demo.service.CommentService;
+import cloudlibrary.example.demo.service.RatingService;
 
 import com.fasterxml.jackson.databind.ObjectMapper; // Para convertir objetos a JSON
 import org.junit.jupiter.api.BeforeEach;
@@ -19,6 +26,11 @@ import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.Matchers.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -44,6 +56,21 @@ public class BookControllerIT {
     @Autowired
     private RatingRepository ratingRepository;
 
+    @Autowired
+    private RatingService ratingService;
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private BookLeaderboardService bookLeaderboardService;
+
+    @Autowired
+    private PostRepository postRepository;
+
+    @Autowired
+    private CommentService commentService;
+
     @Autowired
     private PasswordEncoder passwordEncoder;
 
@@ -79,8 +106,61 @@ public class BookControllerIT {
                         .with(user(testUsername)))
                 .andExpect(status().isOk())
                 .andExpect(content().contentType(MediaType.APPLICATION_JSON))
-                .andExpect(jsonPath("$", hasSize(1)))
-                .andExpect(jsonPath("$[0].title", is("Libro de Test de Integración")));
+                .andExpect(jsonPath("$.items", hasSize(1)))
+                .andExpect(jsonPath("$.items[0].title", is("Libro de Test de Integración")))
+                .andExpect(jsonPath("$.next").value(nullValue()));
+    }
+
+    @Test
+    void shouldPaginateBooksWithCursor() throws Exception {
+        Book second = new Book();
+        second.setTitle("Segundo libro");
+        second.setAuthor("Autor Test");
+        bookRepository.save(second);
+
+        String body = mockMvc.perform(get("/api/books").param("limit", "1")
+                        .with(user(testUsername)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items", hasSize(1)))
+                .andExpect(jsonPath("$.items[0].id", is(testBook.getId().intValue())))
+                .andExpect(jsonPath("$.next", notNullValue()))
+                .andReturn().getResponse().getContentAsString();
+
+        String next = objectMapper.readTree(body).get("next").asText();
+
+        mockMvc.perform(get("/api/books").param("limit", "1").param("cursor", next)
+                        .with(user(testUsername)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items", hasSize(1)))
+                .andExpect(jsonPath("$.items[0].title", is("Segundo libro")))
+                .andExpect(jsonPath("$.next").value(nullValue()));
+    }
+
+    @Test
+    void shouldListBooksSortedByAuthor() throws Exception {
+        Book second = new Book();
+        second.setTitle("Segundo libro");
+        second.setAuthor("Ana Autora");
+        bookRepository.save(second);
+
+        mockMvc.perform(get("/api/books").param("sort", "author")
+                        .with(user(testUsername)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[*].author", contains("Ana Autora", "Autor Test")));
+    }
+
+    @Test
+    void shouldRejectUnknownSort() throws Exception {
+        mockMvc.perform(get("/api/books").param("sort", "precio")
+                        .with(user(testUsername)))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void shouldRejectMalformedCursor() throws Exception {
+        mockMvc.perform(get("/api/books").param("cursor", "%%%")
+                        .with(user(testUsername)))
+                .andExpect(status().isBadRequest());
     }
 
     @Test
@@ -89,7 +169,32 @@ public class BookControllerIT {
                         .with(user(testUsername)))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.id", is(testBook.getId().intValue())))
-                .andExpect(jsonPath("$.title", is(testBook.getTitle())));
+                .andExpect(jsonPath("$.title", is(testBook.getTitle())))
+                .andExpect(jsonPath("$.posts").doesNotExist())
+                .andExpect(jsonPath("$.ratings").doesNotExist());
+    }
+
+    @Test
+    void shouldAnswerNotModifiedUntilBookChanges() throws Exception {
+        String etag = mockMvc.perform(get("/api/books/" + testBook.getId())
+                        .with(user(testUsername)))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("ETag"))
+                .andReturn().getResponse().getHeader("ETag");
+
+        mockMvc.perform(get("/api/books/" + testBook.getId()).header("If-None-Match", etag)
+                        .with(user(testUsername)))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+
+        testBook.setTitle("Título revisado");
+        bookService.saveBook(testBook);
+
+        mockMvc.perform(get("/api/books/" + testBook.getId()).header("If-None-Match", etag)
+                        .with(user(testUsername)))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", not(etag)))
+                .andExpect(jsonPath("$.title", is("Título revisado")));
     }
 
     @Test
@@ -128,6 +233,32 @@ public class BookControllerIT {
                 .andExpect(status().isNotFound());
     }
 
+    @Test
+    void shouldReportPurgeProgressOfDeletedBook() throws Exception {
+        ratingService.addRating(new RatingRequest(testBook.getId(), testUser.getId(), 5));
+
+        mockMvc.perform(get("/api/books/" + testBook.getId() + "/purge")
+                        .with(user(testUsername)))
+                .andExpect(status().isNotFound());
+
+        mockMvc.perform(delete("/api/books/" + testBook.getId())
+                        .with(user(testUsername))
+                        .with(csrf()))
+                .andExpect(status().isNoContent());
+
+        mockMvc.perform(get("/api/books/" + testBook.getId() + "/purge")
+                        .with(user(testUsername)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.bookId", is(testBook.getId().intValue())))
+                .andExpect(jsonPath("$.deletedAt", notNullValue()))
+                .andExpect(jsonPath("$.ratings", is(1)))
+                .andExpect(jsonPath("$.posts", is(0)));
+
+        mockMvc.perform(get("/api/books/" + testBook.getId() + "/average-rating")
+                        .with(user(testUsername)))
+                .andExpect(status().isNotFound());
+    }
+
     @Test
     void shouldGetAverageRating_WhenNoRatings_ReturnsZero() throws Exception {
         mockMvc.perform(get("/api/books/" + testBook.getId() + "/average-rating")
@@ -139,17 +270,15 @@ public class BookControllerIT {
 
     @Test
     void shouldGetAverageRating_WhenRatingsExist() throws Exception {
-        Rating r1 = new Rating();
-        r1.setBook(testBook);
-        r1.setUser(testUser);
-        r1.setValue(5);
-        ratingRepository.save(r1);
-
-        Rating r2 = new Rating();
-        r2.setBook(testBook);
-        r2.setUser(testUser);
-        r2.setValue(3);
-        ratingRepository.save(r2);
+        ratingService.addRating(new RatingRequest(testBook.getId(), testUser.getId(), 5));
+
+        User other = new User();
+        other.setUsername("lectora");
+        other.setEmail("lectora@example.com");
+        other.setPassword(passwordEncoder.encode("password123"));
+        other = userRepository.save(other);
+
+        ratingService.addRating(new RatingRequest(testBook.getId(), other.getId(), 3));
 
         mockMvc.perform(get("/api/books/" + testBook.getId() + "/average-rating")
                         .with(user(testUsername)))
@@ -164,4 +293,206 @@ public class BookControllerIT {
                         .with(user(testUsername)))
                 .andExpect(status().isNotFound());
     }
-}
\ No newline at end of file
+
+    @Test
+    void shouldRankTopBooksByBayesianAverage() throws Exception {
+        Book consistent = new Book();
+        consistent.setTitle("Muchas valoraciones altas");
+        consistent = bookRepository.save(consistent);
+        Book poor = new Book();
+        poor.setTitle("Valoraciones bajas");
+        poor = bookRepository.save(poor);
+
+        // Valoraciones anónimas: no cuentan para la restricción de una por usuario
+        rateAnonymously(testBook, 5);
+        for (int value : new int[]{5, 5, 5, 5, 4}) {
+            rateAnonymously(consistent, value);
+        }
+        for (int i = 0; i < 4; i++) {
+            rateAnonymously(poor, 1);
+        }
+        // Un libro borrado no entra en el ranking ni en la media global, aunque aún no se haya purgado
+        Book deleted = new Book();
+        deleted.setTitle("Borrado");
+        deleted = bookRepository.save(deleted);
+        for (int i = 0; i < 10; i++) {
+            rateAnonymously(deleted, 5);
+        }
+        mockMvc.perform(delete("/api/books/" + deleted.getId())
+                        .with(user(testUsername))
+                        .with(csrf()))
+                .andExpect(status().isNoContent());
+        bookLeaderboardService.rebuild();
+
+        mockMvc.perform(get("/api/books/top")
+                        .param("limit", "2")
+                        .with(user(testUsername)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.generatedAt", notNullValue()))
+                .andExpect(jsonPath("$.books", hasSize(2)))
+                .andExpect(jsonPath("$.books[0].id", is(consistent.getId().intValue())))
+                .andExpect(jsonPath("$.books[0].ratingCount", is(5)))
+                .andExpect(jsonPath("$.books[1].id", is(testBook.getId().intValue())))
+                // Media global 33 / 10 = 3,3, sin las diez valoraciones del libro borrado
+                .andExpect(jsonPath("$.books[0].score", closeTo((10 * 3.3 + 24) / 15, 1e-9)));
+    }
+
+    @Test
+    void shouldListPostsOfBookWithCommentCounts() throws Exception {
+        Post quiet = new Post();
+        quiet.setTitle("Sin comentarios");
+        quiet.setAuthor(testUser);
+        quiet.setBook(testBook);
+        quiet.setCreatedAt(LocalDateTime.of(2030, 1, 1, 10, 0));
+        postRepository.save(quiet);
+
+        Post busy = new Post();
+        busy.setTitle("Con comentarios");
+        busy.setAuthor(testUser);
+        busy.setBook(testBook);
+        busy.setCreatedAt(LocalDateTime.of(2030, 1, 1, 11, 0));
+        postRepository.save(busy);
+
+        for (int i = 0; i < 2; i++) {
+            commentService.addComment(new CommentRequest("Comentario " + i, testUser.getId(), busy.getId(), null));
+        }
+
+        mockMvc.perform(get("/api/books/" + testBook.getId() + "/posts")
+                        .with(user(testUsername)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[*].title", contains("Con comentarios", "Sin comentarios")))
+                .andExpect(jsonPath("$.items[0].commentCount", is(2)))
+                .andExpect(jsonPath("$.items[0].lastCommentAt", notNullValue()))
+                .andExpect(jsonPath("$.items[1].commentCount", is(0)))
+                .andExpect(jsonPath("$.items[1].lastCommentAt").value(nullValue()));
+    }
+
+    @Test
+    void shouldReturnNotFoundForPostsOfUnknownBook() throws Exception {
+        mockMvc.perform(get("/api/books/9999/posts")
+                        .with(user(testUsername)))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void shouldGetRatingDistribution() throws Exception {
+        // El histograma se actualiza tras el commit; aquí la transacción del test nunca se confirma
+        mockMvc.perform(get("/api/books/" + testBook.getId() + "/rating-distribution")
+                        .with(user(testUsername)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.total", is(0)))
+                .andExpect(jsonPath("$.stars.*", hasSize(5)));
+
+        mockMvc.perform(get("/api/books/99999/rating-distribution")
+                        .with(user(testUsername)))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void shouldGetAverageRatingsForManyBooks() throws Exception {
+        Book other = new Book();
+        other.setTitle("Otro libro");
+        other.setAuthor("Otro autor");
+        other = bookRepository.save(other);
+
+        ratingService.addRating(new RatingRequest(testBook.getId(), testUser.getId(), 4));
+
+        mockMvc.perform(get("/api/books/average-ratings")
+                        .param("ids", testBook.getId() + "," + other.getId() + ",99999")
+                        .with(user(testUsername)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$['" + testBook.getId() + "'].average", is(4.0)))
+                .andExpect(jsonPath("$['" + testBook.getId() + "'].count", is(1)))
+                .andExpect(jsonPath("$['" + other.getId() + "'].average", is(0.0)))
+                .andExpect(jsonPath("$['" + other.getId() + "'].count", is(0)))
+                .andExpect(jsonPath("$['99999']").doesNotExist());
+    }
+
+    @Test
+    void shouldRejectTooManyIdsForAverageRatings() throws Exception {
+        String ids = LongStream.rangeClosed(1, 101)
+                .mapToObj(Long::toString)
+                .collect(Collectors.joining(","));
+
+        mockMvc.perform(get("/api/books/average-ratings").param("ids", ids)
+                        .with(user(testUsername)))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void shouldSearchBooksByRelevance() throws Exception {
+        Book inTitle = new Book();
+        inTitle.setTitle("Historia de la nube");
+        inTitle.setAuthor("Autor Test");
+        bookService.saveBook(inTitle);
+
+        Book inDescription = new Book();
+        inDescription.setTitle("Sistemas distribuidos");
+        inDescription.setAuthor("Otro Autor");
+        inDescription.setDescription("Incluye un capítulo sobre la nube");
+        bookService.saveBook(inDescription);
+
+        mockMvc.perform(get("/api/books/search").param("q", "nube")
+                        .with(user(testUsername)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items", hasSize(2)))
+                .andExpect(jsonPath("$.items[0].title", is("Historia de la nube")))
+                .andExpect(jsonPath("$.items[1].title", is("Sistemas distribuidos")));
+    }
+
+    @Test
+    void shouldRejectBlankSearch() throws Exception {
+        mockMvc.perform(get("/api/books/search").param("q", " ")
+                        .with(user(testUsername)))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void shouldImportNdjsonAndReportRowErrors() throws Exception {
+        String ndjson = """
+                {"title":"Importado 1","author":"Autor A","description":"Primero"}
+                {"title":"Importado 2","author":"Autor B"}
+                {"title":"Sin autor"}
+                {no es json
+                """;
+
+        mockMvc.perform(post("/api/books/import")
+                        .with(user(testUsername))
+                        .contentType("application/x-ndjson")
+                        .content(ndjson))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.received", is(4)))
+                .andExpect(jsonPath("$.imported", is(2)))
+                .andExpect(jsonPath("$.failed", is(2)))
+                .andExpect(jsonPath("$.errors[0].line", is(3)))
+                .andExpect(jsonPath("$.errors[1].line", is(4)));
+
+        assertThat(bookRepository.count()).isEqualTo(3);
+    }
+
+    @Test
+    void shouldImportCsvWithQuotedFields() throws Exception {
+        String csv = """
+                title,author,description
+                "Libro, con coma",Autor CSV,"Dice ""hola""\"
+                Otro libro,Autor CSV,
+                """;
+
+        mockMvc.perform(post("/api/books/import")
+                        .with(user(testUsername))
+                        .contentType("text/csv")
+                        .content(csv))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported", is(2)))
+                .andExpect(jsonPath("$.failed", is(0)));
+
+        mockMvc.perform(get("/api/books/search").param("q", "coma")
+                        .with(user(testUsername)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].title", is("Libro, con coma")));
+    }
+
+    private void rateAnonymously(Book book, int value) {
+        ratingService.addRating(new RatingRequest(book.getId(), null, value));
+    }
+}
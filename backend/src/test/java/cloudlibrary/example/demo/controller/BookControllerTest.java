@@ -1,7 +1,23 @@
 package cloudlibrary.example.demo.controller;
 
+import cloudlibrary.example.demo.dto.BookDetail;
+import cloudlibrary.example.demo.dto.BookImportSummary;
+import cloudlibrary.example.demo.dto.BookPurgeStatus;
+import cloudlibrary.example.demo.dto.BookSearchHit;
+import cloudlibrary.example.demo.dto.BookSummary;
+import cloudlibrary.example.demo.dto.CursorPage;
+import cloudlibrary.example.demo.dto.RatingDistribution;
+import cloudlibrary.example.demo.dto.RatingSummary;
+import cloudlibrary.example.demo.dto.TopBook;
+import cloudlibrary.example.demo.dto.TopBooks;
+import cloudlibrary.example.demo.dto.VersionTag;
 import cloudlibrary.example.demo.model.Book;
+import cloudlibrary.example.demo.service.BookExportService;
+import cloudlibrary.example.demo.service.BookImportService;
+import cloudlibrary.example.demo.service.BookLeaderboardService;
 import cloudlibrary.example.demo.service.BookService;
+import cloudlibrary.example.demo.service.PostService;
+import cloudlibrary.example.demo.service.RatingService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -9,9 +25,21 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -26,7 +54,24 @@ class BookControllerTest {
     @Mock
     private BookService bookService; // Mock del servicio
 
+    @Mock
+    private RatingService ratingService;
+
+    @Mock
+    private BookImportService bookImportService;
+
+    @Mock
+    private BookExportService bookExportService;
+
+    @Mock
+    private BookLeaderboardService bookLeaderboardService;
+
+    @Mock
+    private PostService postService;
+
     private Book testBook;
+    private BookSummary testSummary;
+    private BookDetail testDetail;
 
     @BeforeEach
     void setUp() {
@@ -35,33 +80,72 @@ class BookControllerTest {
         testBook.setTitle("Clean Code");
         testBook.setAuthor("Robert C. Martin");
         testBook.setDescription("Best practices for writing clean, maintainable code.");
+
+        testSummary = new BookSummary(1L, "Clean Code", "Robert C. Martin", null, null);
+        testDetail = new BookDetail(1L, "Clean Code", "Robert C. Martin",
+                "Best practices for writing clean, maintainable code.", null, null);
     }
 
     @Test
-    void shouldReturnAllBooks() {
-        when(bookService.findAllBooks()).thenReturn(List.of(testBook));
+    void shouldReturnPageOfBooks() {
+        when(bookService.findBooks(null, null, null, null)).thenReturn(CursorPage.of(List.of(testSummary), null));
 
-        ResponseEntity<List<Book>> response = bookController.getAllBooks();
+        ResponseEntity<CursorPage<BookSummary>> response = bookController.getAllBooks(null, null, null, null);
 
         assertThat(response).isNotNull();
         assertThat(response.getStatusCode().is2xxSuccessful()).isTrue();
-        assertThat(response.getBody()).hasSize(1);
-        assertThat(response.getBody().get(0).getTitle()).isEqualTo("Clean Code");
+        assertThat(response.getBody().items()).hasSize(1);
+        assertThat(response.getBody().items().get(0).title()).isEqualTo("Clean Code");
+        assertThat(response.getBody().next()).isNull();
 
-        verify(bookService, times(1)).findAllBooks();
+        verify(bookService, times(1)).findBooks(null, null, null, null);
+    }
+
+    @Test
+    void shouldSearchBooks() {
+        BookSearchHit hit = new BookSearchHit(1L, "Clean Code", "Robert C. Martin", null, null, 0.6);
+        when(bookService.searchBooks("clean", null, null)).thenReturn(CursorPage.of(List.of(hit), null));
+
+        ResponseEntity<CursorPage<BookSearchHit>> response = bookController.searchBooks("clean", null, null);
+
+        assertThat(response.getStatusCode().is2xxSuccessful()).isTrue();
+        assertThat(response.getBody().items()).containsExactly(hit);
+        verify(bookService, times(1)).searchBooks("clean", null, null);
     }
 
     @Test
     void shouldReturnBookById() {
-        when(bookService.findBookById(1L)).thenReturn(Optional.of(testBook));
+        when(bookService.findBookVersion(1L)).thenReturn(Optional.of(new VersionTag(3, null, null)));
+        when(bookService.findBookDetail(1L)).thenReturn(Optional.of(testDetail));
 
-        ResponseEntity<Book> response = bookController.getBookById(1L);
+        ResponseEntity<BookDetail> response = bookController.getBookById(1L, getRequest(null));
 
         assertThat(response).isNotNull();
         assertThat(response.getStatusCode().is2xxSuccessful()).isTrue();
-        assertThat(response.getBody()).isEqualTo(testBook);
+        assertThat(response.getBody()).isEqualTo(testDetail);
+        assertThat(response.getHeaders().getETag()).isEqualTo("\"3\"");
+
+        verify(bookService, times(1)).findBookDetail(1L);
+    }
 
-        verify(bookService, times(1)).findBookById(1L);
+    @Test
+    void shouldReturnNotModifiedWithoutLoadingBook() {
+        when(bookService.findBookVersion(1L)).thenReturn(Optional.of(new VersionTag(3, 7L, 1L)));
+        ResponseEntity<BookDetail> response = bookController.getBookById(1L, getRequest("\"3-7.1\""));
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+        assertThat(response.getBody()).isNull();
+        verify(bookService, never()).findBookDetail(anyLong());
+    }
+
+    @Test
+    void shouldReturnNotFoundForUnknownBook() {
+        when(bookService.findBookVersion(99L)).thenReturn(Optional.empty());
+
+        ResponseEntity<BookDetail> response = bookController.getBookById(99L, getRequest(null));
+
+        assertThat(response.getStatusCode().is4xxClientError()).isTrue();
+        verify(bookService, never()).findBookDetail(anyLong());
     }
 
     @Test
@@ -88,4 +172,86 @@ class BookControllerTest {
 
         verify(bookService, times(1)).deleteBook(1L);
     }
+
+    @Test
+    void shouldReturnPurgeStatusOfDeletedBook() {
+        BookPurgeStatus status = new BookPurgeStatus(1L, LocalDateTime.now(), 2, 10, 30);
+        when(bookService.findPurgeStatus(1L)).thenReturn(Optional.of(status));
+        when(bookService.findPurgeStatus(2L)).thenReturn(Optional.empty());
+
+        assertThat(bookController.getPurgeStatus(1L).getBody()).isEqualTo(status);
+        assertThat(bookController.getPurgeStatus(2L).getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+    }
+
+    @Test
+    void shouldReturnRatingDistribution() {
+        RatingDistribution distribution = RatingDistribution.of(new long[]{0, 0, 1, 2, 5});
+        when(ratingService.findRatingDistribution(1L)).thenReturn(Optional.of(distribution));
+
+        ResponseEntity<RatingDistribution> response = bookController.getRatingDistribution(1L);
+
+        assertThat(response.getStatusCode().is2xxSuccessful()).isTrue();
+        assertThat(response.getBody().total()).isEqualTo(8);
+        assertThat(response.getBody().stars()).containsEntry(5, 5L);
+    }
+
+    @Test
+    void shouldReturnAverageRatingsForIds() {
+        Map<Long, RatingSummary> summaries = Map.of(1L, new RatingSummary(4.5, 2));
+        when(ratingService.findRatingSummaries(List.of(1L, 2L))).thenReturn(summaries);
+
+        ResponseEntity<Map<Long, RatingSummary>> response = bookController.getAverageRatings(List.of(1L, 2L));
+
+        assertThat(response.getStatusCode().is2xxSuccessful()).isTrue();
+        assertThat(response.getBody()).containsEntry(1L, new RatingSummary(4.5, 2));
+        verify(ratingService, times(1)).findRatingSummaries(List.of(1L, 2L));
+    }
+
+    @Test
+    void shouldImportNdjsonBooks() throws Exception {
+        InputStream body = new ByteArrayInputStream(
+                "{\"title\":\"Clean Code\",\"author\":\"Robert C. Martin\"}\n".getBytes(StandardCharsets.UTF_8));
+        BookImportSummary summary = new BookImportSummary(1, 1, 0, List.of());
+        when(bookImportService.importBooks(body, BookImportService.Format.NDJSON)).thenReturn(summary);
+
+        ResponseEntity<BookImportSummary> response = bookController.importBooksNdjson(body);
+
+        assertThat(response.getStatusCode().is2xxSuccessful()).isTrue();
+        assertThat(response.getBody()).isEqualTo(summary);
+        verify(bookImportService, times(1)).importBooks(body, BookImportService.Format.NDJSON);
+    }
+
+    @Test
+    void shouldStreamExportThroughService() throws Exception {
+        ResponseEntity<StreamingResponseBody> response = bookController.exportBooks();
+
+        assertThat(response.getStatusCode().is2xxSuccessful()).isTrue();
+        assertThat(response.getHeaders().getContentType().toString()).isEqualTo("application/x-ndjson");
+
+        // La consulta no se lanza hasta que se escribe el cuerpo
+        verifyNoInteractions(bookExportService);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        response.getBody().writeTo(out);
+        verify(bookExportService, times(1)).exportNdjson(out);
+    }
+
+    private static ServletWebRequest getRequest(String ifNoneMatch) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/test");
+        if (ifNoneMatch != null) {
+            request.addHeader("If-None-Match", ifNoneMatch);
+        }
+        return new ServletWebRequest(request, new MockHttpServletResponse());
+    }
+
+    @Test
+    void shouldServeTopBooksFromLeaderboard() {
+        TopBooks top = new TopBooks(Instant.parse("2026-01-01T00:00:00Z"),
+                List.of(new TopBook(1L, "Clean Code", "Robert C. Martin", 3L, "Software", 20, 4.5, 4.3)));
+        when(bookLeaderboardService.top(3L, 5)).thenReturn(top);
+
+        ResponseEntity<TopBooks> response = bookController.getTopBooks(3L, 5);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getBody()).isEqualTo(top);
+    }
 }
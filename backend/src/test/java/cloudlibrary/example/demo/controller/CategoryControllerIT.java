@@ -69,6 +69,27 @@ public class CategoryControllerIT {
                 .andExpect(jsonPath("$[0].name", is("Ciencia Ficción")));
     }
 
+    @Test
+    void shouldAnswerNotModifiedUntilCategoriesChange() throws Exception {
+        String etag = mockMvc.perform(get("/api/categories")
+                        .with(user(testUsername)))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+
+        mockMvc.perform(get("/api/categories").header("If-None-Match", etag)
+                        .with(user(testUsername)))
+                .andExpect(status().isNotModified());
+
+        Category other = new Category();
+        other.setName("Ensayo");
+        categoryRepository.saveAndFlush(other);
+
+        mockMvc.perform(get("/api/categories").header("If-None-Match", etag)
+                        .with(user(testUsername)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)));
+    }
+
     @Test
     void shouldGetCategoryById() throws Exception {
         mockMvc.perform(get("/api/categories/" + testCategory.getId())
@@ -1,5 +1,6 @@
 package cloudlibrary.example.demo.controller;
 
+import cloudlibrary.example.demo.dto.CollectionVersion;
 import cloudlibrary.example.demo.model.Category;
 import cloudlibrary.example.demo.service.CategoryService;
 import org.junit.jupiter.api.Assertions;
@@ -9,7 +10,11 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
 
 import java.util.List;
 import java.util.Optional;
@@ -37,15 +42,27 @@ class CategoryControllerTest {
 
     @Test
     void shouldGetAllCategories() {
+        when(categoryService.getCategoriesVersion()).thenReturn(new CollectionVersion(1, 1, 0));
         when(categoryService.getAllCategories()).thenReturn(List.of(testCategory));
 
-        ResponseEntity<List<Category>> response = categoryController.getAllCategories();
+        ResponseEntity<List<Category>> response = categoryController.getAllCategories(getRequest(null));
 
         assertThat(response.getStatusCode().is2xxSuccessful()).isTrue();
         assertThat(response.getBody()).hasSize(1);
+        assertThat(response.getHeaders().getETag()).isEqualTo("\"1-1-0\"");
         verify(categoryService, times(1)).getAllCategories();
     }
 
+    @Test
+    void shouldReturnNotModifiedForUnchangedCategories() {
+        when(categoryService.getCategoriesVersion()).thenReturn(new CollectionVersion(1, 1, 0));
+
+        ResponseEntity<List<Category>> response = categoryController.getAllCategories(getRequest("\"1-1-0\""));
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+        verify(categoryService, never()).getAllCategories();
+    }
+
     @Test
     void shouldGetCategoryById() {
         when(categoryService.getCategoryById(1L)).thenReturn(Optional.of(testCategory));
@@ -99,4 +116,12 @@ class CategoryControllerTest {
         assertThat(response.getStatusCode().is2xxSuccessful()).isTrue();
         verify(categoryService, times(1)).deleteCategory(1L);
     }
-}
\ No newline at end of file
+
+    private static ServletWebRequest getRequest(String ifNoneMatch) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/test");
+        if (ifNoneMatch != null) {
+            request.addHeader("If-None-Match", ifNoneMatch);
+        }
+        return new ServletWebRequest(request, new MockHttpServletResponse());
+    }
+}
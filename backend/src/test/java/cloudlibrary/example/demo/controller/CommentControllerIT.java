@@ -92,8 +92,8 @@ public class CommentControllerIT {
     void shouldAddComment() throws Exception {
         Map<String, Object> newComment = Map.of(
                 "content", "Nuevo comentario",
-                "author", Map.of("id", testUser.getId()),
-                "post", Map.of("id", testPost.getId())
+                "authorId", testUser.getId(),
+                "postId", testPost.getId()
         );
 
         mockMvc.perform(post("/api/comments")
@@ -116,7 +116,7 @@ public class CommentControllerIT {
     void shouldAddReplyToComment() throws Exception {
         Map<String, Object> reply = Map.of(
                 "content", "Esta es una respuesta",
-                "author", Map.of("id", testUser.getId())
+                "authorId", testUser.getId()
         );
 
         mockMvc.perform(post("/api/comments/" + testComment.getId() + "/reply")
@@ -126,14 +126,75 @@ public class CommentControllerIT {
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.id", notNullValue()))
                 .andExpect(jsonPath("$.content", is("Esta es una respuesta")))
-                .andExpect(jsonPath("$.parent.id", is(testComment.getId().intValue())));
+                .andExpect(jsonPath("$.parentId", is(testComment.getId().intValue())))
+                .andExpect(jsonPath("$.postId", is(testPost.getId().intValue())));
+    }
+
+    @Test
+    void shouldPageRepliesOfComment() throws Exception {
+        for (String content : new String[]{"R1", "R2", "R3"}) {
+            mockMvc.perform(post("/api/comments/" + testComment.getId() + "/reply")
+                            .with(user(testUsername)).with(csrf())
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(Map.of("content", content, "authorId", testUser.getId()))))
+                    .andExpect(status().isOk());
+        }
+
+        String body = mockMvc.perform(get("/api/comments/" + testComment.getId() + "/replies").param("limit", "2")
+                        .with(user(testUsername)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[*].content", contains("R1", "R2")))
+                .andExpect(jsonPath("$.items[0].replyCount", is(0)))
+                .andExpect(jsonPath("$.next", notNullValue()))
+                .andReturn().getResponse().getContentAsString();
+
+        mockMvc.perform(get("/api/comments/" + testComment.getId() + "/replies")
+                        .param("after", objectMapper.readTree(body).get("next").asText())
+                        .with(user(testUsername)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[*].content", contains("R3")))
+                .andExpect(jsonPath("$.next").value(nullValue()));
+    }
+
+    @Test
+    void shouldReturnNotFoundForRepliesOfInvalidComment() throws Exception {
+        mockMvc.perform(get("/api/comments/9999/replies")
+                        .with(user(testUsername)))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void shouldGetThreadOfComment() throws Exception {
+        Map<String, Object> reply = Map.of(
+                "content", "Respuesta en el hilo",
+                "authorId", testUser.getId()
+        );
+        mockMvc.perform(post("/api/comments/" + testComment.getId() + "/reply")
+                        .with(user(testUsername)).with(csrf())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(reply)))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/api/comments/" + testComment.getId() + "/thread")
+                        .with(user(testUsername)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.descendantCount", is(1)))
+                .andExpect(jsonPath("$.root.id", is(testComment.getId().intValue())))
+                .andExpect(jsonPath("$.root.replies[0].content", is("Respuesta en el hilo")));
+    }
+
+    @Test
+    void shouldReturnNotFoundForThreadOfInvalidComment() throws Exception {
+        mockMvc.perform(get("/api/comments/9999/thread")
+                        .with(user(testUsername)))
+                .andExpect(status().isNotFound());
     }
 
     @Test
     void shouldReturnNotFoundWhenReplyingToInvalidParent() throws Exception {
         Map<String, Object> reply = Map.of(
                 "content", "Respuesta fallida",
-                "author", Map.of("id", testUser.getId())
+                "authorId", testUser.getId()
         );
 
         mockMvc.perform(post("/api/comments/9999/reply")
@@ -1,5 +1,11 @@
 package cloudlibrary.example.demo.controller;
 
+import cloudlibrary.example.demo.dto.CommentItem;
+import cloudlibrary.example.demo.dto.CommentNode;
+import cloudlibrary.example.demo.dto.CommentRequest;
+import cloudlibrary.example.demo.dto.CommentThread;
+import cloudlibrary.example.demo.dto.CommentView;
+import cloudlibrary.example.demo.dto.CursorPage;
 import cloudlibrary.example.demo.model.Comment;
 import cloudlibrary.example.demo.service.CommentService;
 import org.junit.jupiter.api.BeforeEach;
@@ -10,6 +16,7 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.http.ResponseEntity;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -44,19 +51,42 @@ class CommentControllerTest {
         verify(commentService, times(1)).getCommentsByPost(1L);
     }
 
+    @Test
+    void shouldGetReplies() {
+        CommentItem reply = new CommentItem(2L, "Respuesta", 3L, 5L, 1L, LocalDateTime.now(), 0);
+        when(commentService.getReplies(1L, "abc", 10)).thenReturn(CursorPage.of(List.of(reply), null));
+
+        ResponseEntity<CursorPage<CommentItem>> response = commentController.getReplies(1L, "abc", 10);
+
+        assertThat(response.getStatusCode().is2xxSuccessful()).isTrue();
+        assertThat(response.getBody().items()).containsExactly(reply);
+        verify(commentService, times(1)).getReplies(1L, "abc", 10);
+    }
+
+    @Test
+    void shouldGetThread() {
+        CommentNode root = new CommentNode(1L, "Gran post!", 3L, null, LocalDateTime.now(), 4, List.of());
+        when(commentService.getThread(1L, 1, null)).thenReturn(new CommentThread(9, root));
+
+        ResponseEntity<CommentThread> response = commentController.getThread(1L, 1, null);
+
+        assertThat(response.getStatusCode().is2xxSuccessful()).isTrue();
+        assertThat(response.getBody().descendantCount()).isEqualTo(9);
+        verify(commentService, times(1)).getThread(1L, 1, null);
+    }
+
     @Test
     void shouldAddReplyToComment() {
-        Comment reply = new Comment();
-        reply.setId(2L);
-        reply.setContent("No estoy de acuerdo");
+        CommentRequest reply = new CommentRequest("No estoy de acuerdo", 3L, null, null);
 
-        when(commentService.addReply(eq(1L), any(Comment.class))).thenReturn(reply);
+        when(commentService.addReply(eq(1L), any(CommentRequest.class)))
+                .thenReturn(new CommentView(2L, "No estoy de acuerdo", 3L, 5L, 1L, LocalDateTime.now()));
 
-        ResponseEntity<Comment> response = commentController.addReplyToComment(1L, reply);
+        ResponseEntity<CommentView> response = commentController.addReplyToComment(1L, reply);
 
         assertThat(response.getStatusCode().is2xxSuccessful()).isTrue();
-        assertThat(response.getBody().getId()).isEqualTo(2L);
-        verify(commentService, times(1)).addReply(eq(1L), any(Comment.class));
+        assertThat(response.getBody().id()).isEqualTo(2L);
+        verify(commentService, times(1)).addReply(eq(1L), any(CommentRequest.class));
     }
 
     @Test
@@ -1,11 +1,15 @@
 package cloudlibrary.example.demo.controller;
 
+import cloudlibrary.example.demo.dto.CommentRequest;
 import cloudlibrary.example.demo.model.Book;
+import cloudlibrary.example.demo.model.Comment;
 import cloudlibrary.example.demo.model.Post;
 import cloudlibrary.example.demo.model.User;
 import cloudlibrary.example.demo.repository.BookRepository;
+import cloudlibrary.example.demo.repository.CommentRepository;
 import cloudlibrary.example.demo.repository.PostRepository;
 import cloudlibrary.example.demo.repository.UserRepository;
+import cloudlibrary.example.demo.service.CommentService;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -18,6 +22,7 @@ import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
 import java.util.Map;
 
 import static org.hamcrest.Matchers.*;
@@ -43,6 +48,10 @@ public class PostControllerIT {
     @Autowired
     private UserRepository userRepository;
     @Autowired
+    private CommentService commentService;
+    @Autowired
+    private CommentRepository commentRepository;
+    @Autowired
     private PasswordEncoder passwordEncoder;
 
     private User testUser;
@@ -79,8 +88,79 @@ public class PostControllerIT {
         mockMvc.perform(get("/api/posts")
                         .with(user(testUsername)))
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$", hasSize(1)))
-                .andExpect(jsonPath("$[0].title", is("Post de prueba")));
+                .andExpect(jsonPath("$.items", hasSize(1)))
+                .andExpect(jsonPath("$.items[0].title", is("Post de prueba")))
+                .andExpect(jsonPath("$.items[0].authorUsername", is(testUsername)))
+                .andExpect(jsonPath("$.items[0].bookTitle", is("Libro para Posts")))
+                .andExpect(jsonPath("$.items[0].commentCount", is(0)))
+                .andExpect(jsonPath("$.next").value(nullValue()));
+    }
+
+    @Test
+    void shouldPageFeedNewestFirstWithCommentCounts() throws Exception {
+        LocalDateTime createdAt = LocalDateTime.of(2030, 1, 1, 12, 0);
+        Post older = newPost("Anterior", createdAt.minusHours(1));
+        Post tieLow = newPost("Empate bajo", createdAt);
+        Post tieHigh = newPost("Empate alto", createdAt);
+
+        commentService.addComment(new CommentRequest("Comentario", testUser.getId(), tieHigh.getId(), null));
+
+        String body = mockMvc.perform(get("/api/posts").param("limit", "2")
+                        .with(user(testUsername)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[*].id", contains(tieHigh.getId().intValue(), tieLow.getId().intValue())))
+                .andExpect(jsonPath("$.items[0].commentCount", is(1)))
+                .andExpect(jsonPath("$.next", notNullValue()))
+                .andReturn().getResponse().getContentAsString();
+
+        String next = objectMapper.readTree(body).get("next").asText();
+
+        mockMvc.perform(get("/api/posts").param("limit", "2").param("before", next)
+                        .with(user(testUsername)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[*].id", contains(older.getId().intValue(), testPost.getId().intValue())))
+                .andExpect(jsonPath("$.next").value(nullValue()));
+    }
+
+    @Test
+    void shouldRejectMalformedFeedCursor() throws Exception {
+        mockMvc.perform(get("/api/posts").param("before", "bm8tZXMtdW4tY3Vyc29y")
+                        .with(user(testUsername)))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void shouldAddPostReferencingIds() throws Exception {
+        Map<String, Object> newPost = Map.of(
+                "title", "Nuevo post",
+                "content", "Texto",
+                "authorId", testUser.getId(),
+                "bookId", testBook.getId()
+        );
+
+        mockMvc.perform(post("/api/posts")
+                        .with(user(testUsername)).with(csrf())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(newPost)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id", notNullValue()))
+                .andExpect(jsonPath("$.authorId", is(testUser.getId().intValue())))
+                .andExpect(jsonPath("$.bookId", is(testBook.getId().intValue())));
+    }
+
+    @Test
+    void shouldReturnNotFoundWhenPostReferencesMissingBook() throws Exception {
+        Map<String, Object> newPost = Map.of(
+                "title", "Nuevo post",
+                "authorId", testUser.getId(),
+                "bookId", 9999
+        );
+
+        mockMvc.perform(post("/api/posts")
+                        .with(user(testUsername)).with(csrf())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(newPost)))
+                .andExpect(status().isNotFound());
     }
 
     @Test
@@ -88,7 +168,23 @@ public class PostControllerIT {
         mockMvc.perform(get("/api/posts/" + testPost.getId())
                         .with(user(testUsername)))
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$.title", is(testPost.getTitle())));
+                .andExpect(jsonPath("$.title", is(testPost.getTitle())))
+                .andExpect(jsonPath("$.authorId", is(testUser.getId().intValue())))
+                .andExpect(jsonPath("$.bookTitle", is(testBook.getTitle())))
+                .andExpect(jsonPath("$.author").doesNotExist())
+                .andExpect(jsonPath("$.book").doesNotExist());
+    }
+
+    @Test
+    void shouldAnswerNotModifiedForUnchangedPost() throws Exception {
+        String etag = mockMvc.perform(get("/api/posts/" + testPost.getId())
+                        .with(user(testUsername)))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+
+        mockMvc.perform(get("/api/posts/" + testPost.getId()).header("If-None-Match", etag)
+                        .with(user(testUsername)))
+                .andExpect(status().isNotModified());
     }
 
     @Test
@@ -98,6 +194,98 @@ public class PostControllerIT {
                 .andExpect(status().isNotFound());
     }
 
+    @Test
+    void shouldPageTopLevelCommentsOldestFirstWithReplyCounts() throws Exception {
+        LocalDateTime createdAt = LocalDateTime.of(2030, 1, 1, 12, 0);
+        Comment first = newComment("Primero", createdAt.minusHours(1));
+        Comment tieLow = newComment("Empate bajo", createdAt);
+        Comment tieHigh = newComment("Empate alto", createdAt);
+        commentService.addReply(first.getId(), new CommentRequest("Respuesta", testUser.getId(), null, null));
+        commentService.addReply(first.getId(), new CommentRequest("Otra", testUser.getId(), null, null));
+
+        String body = mockMvc.perform(get("/api/posts/" + testPost.getId() + "/comments").param("limit", "2")
+                        .with(user(testUsername)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[*].id", contains(first.getId().intValue(), tieLow.getId().intValue())))
+                .andExpect(jsonPath("$.items[0].replyCount", is(2)))
+                .andExpect(jsonPath("$.items[0].replies").doesNotExist())
+                .andExpect(jsonPath("$.next", notNullValue()))
+                .andReturn().getResponse().getContentAsString();
+
+        String next = objectMapper.readTree(body).get("next").asText();
+
+        mockMvc.perform(get("/api/posts/" + testPost.getId() + "/comments").param("limit", "2").param("after", next)
+                        .with(user(testUsername)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[*].id", contains(tieHigh.getId().intValue())))
+                .andExpect(jsonPath("$.next").value(nullValue()));
+    }
+
+    @Test
+    void shouldReturnNotFoundForCommentsOfUnknownPost() throws Exception {
+        mockMvc.perform(get("/api/posts/9999/comments")
+                        .with(user(testUsername)))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void shouldReturnCommentTreeTruncatedByDepthAndChildren() throws Exception {
+        Long root = commentService.addComment(new CommentRequest("Raíz", testUser.getId(), testPost.getId(), null)).id();
+        Long first = commentService.addReply(root, new CommentRequest("Primera", testUser.getId(), null, null)).id();
+        commentService.addReply(root, new CommentRequest("Segunda", testUser.getId(), null, null));
+        Long nested = commentService.addReply(first, new CommentRequest("Anidada", testUser.getId(), null, null)).id();
+        commentService.addReply(nested, new CommentRequest("Profunda", testUser.getId(), null, null));
+
+        mockMvc.perform(get("/api/posts/" + testPost.getId() + "/comments/tree")
+                        .with(user(testUsername)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].replyCount", is(2)))
+                .andExpect(jsonPath("$[0].replies[*].content", contains("Primera", "Segunda")))
+                .andExpect(jsonPath("$[0].replies[0].replies[0].replies[0].content", is("Profunda")));
+
+        mockMvc.perform(get("/api/posts/" + testPost.getId() + "/comments/tree")
+                        .param("maxDepth", "3").param("maxChildren", "1")
+                        .with(user(testUsername)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].replyCount", is(2)))
+                .andExpect(jsonPath("$[0].replies[*].id", contains(first.intValue())))
+                .andExpect(jsonPath("$[0].replies[0].replies[0].id", is(nested.intValue())))
+                .andExpect(jsonPath("$[0].replies[0].replies[0].replyCount", is(1)))
+                .andExpect(jsonPath("$[0].replies[0].replies[0].replies", hasSize(0)));
+    }
+
+    @Test
+    void shouldReturnNotFoundForCommentTreeOfUnknownPost() throws Exception {
+        mockMvc.perform(get("/api/posts/9999/comments/tree")
+                        .with(user(testUsername)))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void shouldRejectNonPositiveTreeLimits() throws Exception {
+        mockMvc.perform(get("/api/posts/" + testPost.getId() + "/comments/tree").param("maxDepth", "0")
+                        .with(user(testUsername)))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void shouldOpenEventStreamForPost() throws Exception {
+        mockMvc.perform(get("/api/posts/" + testPost.getId() + "/events")
+                        .accept(MediaType.TEXT_EVENT_STREAM)
+                        .with(user(testUsername)))
+                .andExpect(status().isOk())
+                .andExpect(request().asyncStarted());
+    }
+
+    @Test
+    void shouldReturnNotFoundForEventStreamOfUnknownPost() throws Exception {
+        mockMvc.perform(get("/api/posts/9999/events")
+                        .accept(MediaType.TEXT_EVENT_STREAM)
+                        .with(user(testUsername)))
+                .andExpect(status().isNotFound());
+    }
+
     @Test
     void shouldDeletePost() throws Exception {
         mockMvc.perform(delete("/api/posts/" + testPost.getId())
@@ -108,4 +296,23 @@ public class PostControllerIT {
                         .with(user(testUsername)))
                 .andExpect(status().isNotFound());
     }
-}
\ No newline at end of file
+
+    private Comment newComment(String content, LocalDateTime createdAt) {
+        Comment comment = new Comment();
+        comment.setContent(content);
+        comment.setAuthor(testUser);
+        comment.setPost(testPost);
+        comment.setCreatedAt(createdAt);
+        return commentRepository.save(comment);
+    }
+
+    private Post newPost(String title, LocalDateTime createdAt) {
+        Post post = new Post();
+        post.setTitle(title);
+        post.setContent("Contenido...");
+        post.setAuthor(testUser);
+        post.setBook(testBook);
+        post.setCreatedAt(createdAt);
+        return postRepository.save(post);
+    }
+}
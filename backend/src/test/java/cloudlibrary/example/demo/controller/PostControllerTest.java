@@ -1,6 +1,14 @@
 package cloudlibrary.example.demo.controller;
 
-import cloudlibrary.example.demo.model.Post;
+import cloudlibrary.example.demo.dto.CommentItem;
+import cloudlibrary.example.demo.dto.CommentNode;
+import cloudlibrary.example.demo.dto.CursorPage;
+import cloudlibrary.example.demo.dto.PostDetail;
+import cloudlibrary.example.demo.dto.PostFeedItem;
+import cloudlibrary.example.demo.dto.PostRequest;
+import cloudlibrary.example.demo.dto.PostView;
+import cloudlibrary.example.demo.dto.VersionTag;
+import cloudlibrary.example.demo.service.CommentService;
 import cloudlibrary.example.demo.service.PostService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -8,8 +16,13 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -22,58 +35,100 @@ class PostControllerTest {
     @Mock
     private PostService postService;
 
+    @Mock
+    private CommentService commentService;
+
     @InjectMocks
     private PostController postController;
 
-    private Post testPost;
+    private PostDetail testPost;
 
     @BeforeEach
     void setUp() {
-        testPost = new Post();
-        testPost.setId(1L);
-        testPost.setTitle("Mi reseña");
+        testPost = new PostDetail(1L, "Mi reseña", "...", 2L, 5L, "Dune", LocalDateTime.now());
     }
 
     @Test
     void shouldGetAllPosts() {
-        when(postService.getAllPosts()).thenReturn(List.of(testPost));
+        PostFeedItem item = new PostFeedItem(1L, "Mi reseña", "...", 2L, "autor", 3L, "Dune",
+                LocalDateTime.now(), 4L, LocalDateTime.now());
+        when(postService.getFeed("abc", 10)).thenReturn(CursorPage.of(List.of(item), null));
 
-        ResponseEntity<List<Post>> response = postController.getAllPosts();
+        ResponseEntity<CursorPage<PostFeedItem>> response = postController.getAllPosts("abc", 10);
 
         assertThat(response.getStatusCode().is2xxSuccessful()).isTrue();
-        assertThat(response.getBody()).hasSize(1);
-        verify(postService, times(1)).getAllPosts();
+        assertThat(response.getBody().items()).hasSize(1);
+        verify(postService, times(1)).getFeed("abc", 10);
+    }
+
+    @Test
+    void shouldGetComments() {
+        CommentItem comment = new CommentItem(1L, "Raíz", 3L, 1L, null, LocalDateTime.now(), 2);
+        when(commentService.getTopLevelComments(1L, null, 20)).thenReturn(CursorPage.of(List.of(comment), "next"));
+
+        ResponseEntity<CursorPage<CommentItem>> response = postController.getComments(1L, null, 20);
+
+        assertThat(response.getStatusCode().is2xxSuccessful()).isTrue();
+        assertThat(response.getBody().next()).isEqualTo("next");
+        verify(commentService, times(1)).getTopLevelComments(1L, null, 20);
+    }
+
+    @Test
+    void shouldGetCommentTree() {
+        CommentNode reply = new CommentNode(2L, "Respuesta", 3L, 1L, LocalDateTime.now(), 0, List.of());
+        CommentNode root = new CommentNode(1L, "Raíz", 3L, null, LocalDateTime.now(), 1, List.of(reply));
+        when(commentService.getCommentTree(1L, 2, null)).thenReturn(List.of(root));
+
+        ResponseEntity<List<CommentNode>> response = postController.getCommentTree(1L, 2, null);
+
+        assertThat(response.getStatusCode().is2xxSuccessful()).isTrue();
+        assertThat(response.getBody().get(0).replies()).containsExactly(reply);
+        verify(commentService, times(1)).getCommentTree(1L, 2, null);
     }
 
     @Test
     void shouldGetPostById() {
+        when(postService.findPostVersion(1L)).thenReturn(Optional.of(new VersionTag(0, 5L, 2L)));
         when(postService.getPostById(1L)).thenReturn(Optional.of(testPost));
 
-        ResponseEntity<Post> response = postController.getPostById(1L);
+        ResponseEntity<PostDetail> response = postController.getPostById(1L, getRequest(null));
 
         assertThat(response.getStatusCode().is2xxSuccessful()).isTrue();
-        assertThat(response.getBody().getTitle()).isEqualTo("Mi reseña");
+        assertThat(response.getBody().title()).isEqualTo("Mi reseña");
+        assertThat(response.getHeaders().getETag()).isEqualTo("\"0-5.2\"");
         verify(postService, times(1)).getPostById(1L);
     }
 
+    @Test
+    void shouldReturnNotModifiedForMatchingETag() {
+        when(postService.findPostVersion(1L)).thenReturn(Optional.of(new VersionTag(0, 5L, 2L)));
+
+        ResponseEntity<PostDetail> response = postController.getPostById(1L, getRequest("\"0-5.2\""));
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+        verify(postService, never()).getPostById(anyLong());
+    }
+
     @Test
     void shouldReturnNotFoundForInvalidPostId() {
-        when(postService.getPostById(99L)).thenReturn(Optional.empty());
+        when(postService.findPostVersion(99L)).thenReturn(Optional.empty());
 
-        ResponseEntity<Post> response = postController.getPostById(99L);
+        ResponseEntity<PostDetail> response = postController.getPostById(99L, getRequest(null));
 
         assertThat(response.getStatusCode().is4xxClientError()).isTrue();
     }
 
     @Test
     void shouldAddPost() {
-        when(postService.addPost(any(Post.class))).thenReturn(testPost);
+        PostRequest request = new PostRequest("Mi reseña", "...", 2L, 3L);
+        PostView created = new PostView(1L, "Mi reseña", "...", 2L, 3L, LocalDateTime.now());
+        when(postService.addPost(request)).thenReturn(created);
 
-        ResponseEntity<Post> response = postController.addPost(testPost);
+        ResponseEntity<PostView> response = postController.addPost(request);
 
         assertThat(response.getStatusCode().is2xxSuccessful()).isTrue();
-        assertThat(response.getBody()).isEqualTo(testPost);
-        verify(postService, times(1)).addPost(any(Post.class));
+        assertThat(response.getBody()).isEqualTo(created);
+        verify(postService, times(1)).addPost(request);
     }
 
     @Test
@@ -85,4 +140,12 @@ class PostControllerTest {
         assertThat(response.getStatusCode().is2xxSuccessful()).isTrue();
         verify(postService, times(1)).deletePost(1L);
     }
-}
\ No newline at end of file
+
+    private static ServletWebRequest getRequest(String ifNoneMatch) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/test");
+        if (ifNoneMatch != null) {
+            request.addHeader("If-None-Match", ifNoneMatch);
+        }
+        return new ServletWebRequest(request, new MockHttpServletResponse());
+    }
+}
@@ -78,25 +78,77 @@ public class RatingControllerIT {
         mockMvc.perform(get("/api/ratings/book/" + testBook.getId())
                         .with(user(testUsername)))
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$", hasSize(1)))
-                .andExpect(jsonPath("$[0].value", is(5)));
+                .andExpect(jsonPath("$.items", hasSize(1)))
+                .andExpect(jsonPath("$.items[0].value", is(5)))
+                .andExpect(jsonPath("$.items[0].userId", is(testUser.getId().intValue())))
+                .andExpect(jsonPath("$.items[0].username", is(testUsername)))
+                .andExpect(jsonPath("$.items[0].password").doesNotExist())
+                .andExpect(jsonPath("$.next", nullValue()));
     }
 
     @Test
     void shouldAddRating() throws Exception {
+        Book otherBook = new Book();
+        otherBook.setTitle("Libro sin valorar");
+        bookRepository.save(otherBook);
+
         Map<String, Object> newRating = Map.of(
                 "value", 4,
-                "user", Map.of("id", testUser.getId()),
-                "book", Map.of("id", testBook.getId())
+                "userId", testUser.getId(),
+                "bookId", otherBook.getId()
         );
 
         mockMvc.perform(post("/api/ratings")
                         .with(user(testUsername)).with(csrf())
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(objectMapper.writeValueAsString(newRating)))
-                .andExpect(status().isOk())
+                .andExpect(status().isCreated())
                 .andExpect(jsonPath("$.id", notNullValue()))
-                .andExpect(jsonPath("$.value", is(4)));
+                .andExpect(jsonPath("$.value", is(4)))
+                .andExpect(jsonPath("$.outcome", is("CREATED")));
+    }
+
+    @Test
+    void shouldRejectValueOutOfRange() throws Exception {
+        Map<String, Object> newRating = Map.of(
+                "value", 6,
+                "userId", testUser.getId(),
+                "bookId", testBook.getId()
+        );
+
+        mockMvc.perform(post("/api/ratings")
+                        .with(user(testUsername)).with(csrf())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(newRating)))
+                .andExpect(status().isBadRequest());
+
+        mockMvc.perform(get("/api/ratings/book/" + testBook.getId())
+                        .with(user(testUsername)))
+                .andExpect(jsonPath("$.items", hasSize(1)))
+                .andExpect(jsonPath("$.items[0].value", is(5)));
+    }
+
+    @Test
+    void shouldUpdateExistingRatingOfSameUser() throws Exception {
+        Map<String, Object> newRating = Map.of(
+                "value", 2,
+                "userId", testUser.getId(),
+                "bookId", testBook.getId()
+        );
+
+        mockMvc.perform(post("/api/ratings")
+                        .with(user(testUsername)).with(csrf())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(newRating)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id", is(testRating.getId().intValue())))
+                .andExpect(jsonPath("$.value", is(2)))
+                .andExpect(jsonPath("$.previousValue", is(5)))
+                .andExpect(jsonPath("$.outcome", is("UPDATED")));
+
+        mockMvc.perform(get("/api/ratings/book/" + testBook.getId())
+                        .with(user(testUsername)))
+                .andExpect(jsonPath("$.items", hasSize(1)));
     }
 
     @Test
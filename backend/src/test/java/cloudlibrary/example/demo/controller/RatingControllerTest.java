@@ -1,14 +1,17 @@
 package cloudlibrary.example.demo.controller;
 
-import cloudlibrary.example.demo.model.Rating;
+import cloudlibrary.example.demo.dto.CursorPage;
+import cloudlibrary.example.demo.dto.RatingRequest;
+import cloudlibrary.example.demo.dto.RatingView;
+import cloudlibrary.example.demo.dto.RatingWriteResult;
 import cloudlibrary.example.demo.service.RatingService;
 import org.junit.jupiter.api.Assertions;
-import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 
 import java.util.List;
@@ -25,24 +28,30 @@ class RatingControllerTest {
     @InjectMocks
     private RatingController ratingController;
 
-    private Rating testRating;
-
-    @BeforeEach
-    void setUp() {
-        testRating = new Rating();
-        testRating.setId(1L);
-        testRating.setValue(5);
-    }
-
     @Test
     void shouldGetRatingsByBook() {
-        when(ratingService.getRatingsByBook(1L)).thenReturn(List.of(testRating));
+        when(ratingService.getRatingsByBook(1L, null, 20))
+                .thenReturn(CursorPage.of(List.of(new RatingView(1L, 5, 3L, "lector")), "c2"));
 
-        ResponseEntity<List<Rating>> response = ratingController.getRatingsByBook(1L);
+        ResponseEntity<CursorPage<RatingView>> response = ratingController.getRatingsByBook(1L, null, 20);
 
         assertThat(response.getStatusCode().is2xxSuccessful()).isTrue();
-        assertThat(response.getBody()).hasSize(1);
-        verify(ratingService, times(1)).getRatingsByBook(1L);
+        assertThat(response.getBody().items()).hasSize(1);
+        assertThat(response.getBody().next()).isEqualTo("c2");
+        verify(ratingService, times(1)).getRatingsByBook(1L, null, 20);
+    }
+
+    @Test
+    void shouldAnswerCreatedOrOkDependingOnUpsertOutcome() {
+        RatingRequest request = new RatingRequest(7L, 3L, 5);
+        when(ratingService.addRating(request))
+                .thenReturn(new RatingWriteResult(1L, 7L, 3L, 5, null, RatingWriteResult.Outcome.CREATED))
+                .thenReturn(new RatingWriteResult(1L, 7L, 3L, 5, 4, RatingWriteResult.Outcome.UPDATED))
+                .thenReturn(new RatingWriteResult(null, 7L, 3L, 5, null, RatingWriteResult.Outcome.ACCEPTED));
+
+        assertThat(ratingController.addRating(request).getStatusCode()).isEqualTo(HttpStatus.CREATED);
+        assertThat(ratingController.addRating(request).getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(ratingController.addRating(request).getStatusCode()).isEqualTo(HttpStatus.ACCEPTED);
     }
 
     @Test
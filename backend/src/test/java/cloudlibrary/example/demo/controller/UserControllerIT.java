@@ -123,4 +123,15 @@ public class UserControllerIT {
                 .andExpect(jsonPath("$.id", is(testUser.getId().intValue())))
                 .andExpect(jsonPath("$.username", is(testUsername)));
     }
-}
\ No newline at end of file
+
+    @Test
+    void shouldDeleteUser() throws Exception {
+        mockMvc.perform(delete("/api/users/" + testUser.getId())
+                        .with(user(testUsername)).with(csrf()))
+                .andExpect(status().isNoContent());
+
+        mockMvc.perform(delete("/api/users/" + testUser.getId())
+                        .with(user(testUsername)).with(csrf()))
+                .andExpect(status().isNotFound());
+    }
+}
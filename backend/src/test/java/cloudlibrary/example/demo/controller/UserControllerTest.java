@@ -1,6 +1,9 @@
 package cloudlibrary.example.demo.controller;
 
+import cloudlibrary.example.demo.dto.RecommendedBook;
+import cloudlibrary.example.demo.dto.Recommendations;
 import cloudlibrary.example.demo.model.User;
+import cloudlibrary.example.demo.service.RecommendationService;
 import cloudlibrary.example.demo.service.UserService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -11,6 +14,8 @@ import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.http.ResponseEntity;
 
+import java.time.Instant;
+import java.util.List;
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -25,6 +30,9 @@ class UserControllerTest {
     @Mock
     private UserService userService;
 
+    @Mock
+    private RecommendationService recommendationService;
+
     private User testUser;
 
     @BeforeEach
@@ -84,4 +92,26 @@ class UserControllerTest {
         assertThat(response.getBody()).isTrue();
         verify(userService, times(1)).authenticate(testUser.getEmail(), testUser.getPassword());
     }
+
+    @Test
+    void shouldDeleteUser() {
+        doNothing().when(userService).deleteUser(1L);
+
+        ResponseEntity<Void> response = userController.deleteUser(1L);
+
+        assertThat(response.getStatusCode().is2xxSuccessful()).isTrue();
+        verify(userService, times(1)).deleteUser(1L);
+    }
+
+    @Test
+    void shouldGetRecommendations() {
+        Recommendations recommendations = new Recommendations(Instant.parse("2026-01-01T04:00:00Z"),
+                List.of(new RecommendedBook(7L, "Dune", "Frank Herbert", null, null, 4.6)));
+        when(recommendationService.recommend(1L, 5)).thenReturn(recommendations);
+
+        ResponseEntity<Recommendations> response = userController.getRecommendations(1L, 5);
+
+        assertThat(response.getStatusCode().is2xxSuccessful()).isTrue();
+        assertThat(response.getBody()).isEqualTo(recommendations);
+    }
 }
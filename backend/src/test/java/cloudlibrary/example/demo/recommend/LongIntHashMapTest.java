@@ -0,0 +1,23 @@
+package cloudlibrary.example.demo.recommend;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LongIntHashMapTest {
+
+    @Test
+    void shouldStoreAndOverwriteValuesWhileGrowing() {
+        LongIntHashMap map = new LongIntHashMap(2);
+        for (long key = -500; key < 5000; key++) {
+            map.put(key * 31, (int) key + 1000);
+        }
+        map.put(0, 7);
+
+        assertThat(map.size()).isEqualTo(5500);
+        assertThat(map.get(0)).isEqualTo(7);
+        assertThat(map.get(31L * 4999)).isEqualTo(5999);
+        assertThat(map.get(-31L * 500)).isEqualTo(500);
+        assertThat(map.get(1)).isEqualTo(LongIntHashMap.MISSING);
+    }
+}
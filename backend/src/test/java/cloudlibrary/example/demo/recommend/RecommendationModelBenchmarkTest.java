@@ -0,0 +1,103 @@
+package cloudlibrary.example.demo.recommend;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tiempo de construcción, de refresco y memoria del modelo con datos sintéticos (popularidad de
+ * libros tipo Zipf). No se ejecuta por defecto:
+ * {@code mvn test -Dtest=RecommendationModelBenchmarkTest -Dbenchmark=true -Dbenchmark.ratings=10000000 -DargLine=-Xmx4g}
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class RecommendationModelBenchmarkTest {
+
+    @Test
+    void buildModel() {
+        int ratings = Integer.getInteger("benchmark.ratings", 10_000_000);
+        int books = Integer.getInteger("benchmark.books", 50_000);
+        int ratingsPerUser = 100;
+        int users = ratings / ratingsPerUser;
+        SplittableRandom random = new SplittableRandom(7);
+
+        long start = System.nanoTime();
+        RatingMatrix.Builder builder = RatingMatrix.builder(ratings);
+        for (long user = 1; user <= users; user++) {
+            for (int i = 0; i < ratingsPerUser; i++) {
+                // Exponente 1 aproximado: log-uniforme sobre el catálogo
+                long book = 1 + (long) Math.floor(Math.pow(books, random.nextDouble())) - 1;
+                builder.add(user, 1 + book, 1 + random.nextInt(5));
+            }
+        }
+        RatingMatrix matrix = builder.build();
+        long loaded = System.nanoTime();
+
+        ItemNeighbours.Settings settings = new ItemNeighbours.Settings(50, 10f, 2000);
+        RecommendationModel model = RecommendationModel.build(matrix, settings);
+        long built = System.nanoTime();
+
+        RecommendationModel updated = model.update(randomChanges(random, 10, users, books));
+        long smallRefresh = System.nanoTime();
+        updated = updated.update(randomChanges(random, 1000, users, books));
+        long largeRefresh = System.nanoTime();
+
+        // Refrescos seguidos como los del servicio: la capa de cambios crece hasta que toca compactar
+        int refreshes = Integer.getInteger("benchmark.refreshes", 60);
+        long applyNanos = 0;
+        long refreshNanos = 0;
+        long slowestRefresh = 0;
+        RatingMatrix current = matrix;
+        for (int i = 0; i < refreshes; i++) {
+            List<RatingMatrix.Change> changes = randomChanges(random, 100, users, books);
+            long applyStart = System.nanoTime();
+            current = current.apply(changes).matrix();
+            applyNanos += System.nanoTime() - applyStart;
+
+            long refreshStart = System.nanoTime();
+            updated = updated.update(changes);
+            long elapsed = System.nanoTime() - refreshStart;
+            refreshNanos += elapsed;
+            slowestRefresh = Math.max(slowestRefresh, elapsed);
+        }
+
+        long[] profile = new long[ratingsPerUser];
+        int[] values = new int[ratingsPerUser];
+        for (int i = 0; i < ratingsPerUser; i++) {
+            profile[i] = 1 + random.nextInt(books);
+            values[i] = 1 + random.nextInt(5);
+        }
+        int queries = 1000;
+        long queryStart = System.nanoTime();
+        for (int i = 0; i < queries; i++) {
+            updated.recommend(profile, values, 20);
+        }
+        long queryEnd = System.nanoTime();
+
+        System.out.printf("Valoraciones: %,d (usuarios %,d, libros %,d)%n", matrix.ratingCount(), matrix.userCount(), matrix.itemCount());
+        System.out.printf("Carga de la matriz: %,d ms%n", (loaded - start) / 1_000_000);
+        System.out.printf("Cálculo de vecinos: %,d ms%n", (built - loaded) / 1_000_000);
+        System.out.printf("Refresco con 10 cambios: %,d ms%n", (smallRefresh - built) / 1_000_000);
+        System.out.printf("Refresco con 1.000 cambios: %,d ms%n", (largeRefresh - smallRefresh) / 1_000_000);
+        System.out.printf("%d refrescos de 100 cambios: matriz %.2f ms, modelo %.2f ms de media (máximo %,d ms)%n",
+                refreshes, applyNanos / 1e6 / refreshes, refreshNanos / 1e6 / refreshes, slowestRefresh / 1_000_000);
+        System.out.printf("Recomendación (perfil de %d libros): %.3f ms de media%n", ratingsPerUser,
+                (queryEnd - queryStart) / 1e6 / queries);
+        System.out.printf("Memoria del modelo: %,d MB%n", model.memoryBytes() / (1024 * 1024));
+
+        assertThat(matrix.ratingCount()).isEqualTo(ratings);
+        assertThat(updated.ratingCount()).isGreaterThanOrEqualTo(ratings);
+    }
+
+    private static List<RatingMatrix.Change> randomChanges(SplittableRandom random, int count, int users, int books) {
+        List<RatingMatrix.Change> changes = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            changes.add(new RatingMatrix.Change(1 + random.nextInt(users), 1 + random.nextInt(books), 1 + random.nextInt(5)));
+        }
+        return changes;
+    }
+}
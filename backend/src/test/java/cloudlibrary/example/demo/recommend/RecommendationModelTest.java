@@ -0,0 +1,120 @@
+package cloudlibrary.example.demo.recommend;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class RecommendationModelTest {
+
+    private static final ItemNeighbours.Settings SETTINGS = new ItemNeighbours.Settings(50, 0f, 2000);
+
+    @Test
+    void shouldRecommendBooksRatedLikeTheOnesTheUserLiked() {
+        // Los libros 1 y 2 gustan a los mismos lectores; el 3 les gusta poco
+        RatingMatrix matrix = RatingMatrix.builder(16)
+                .add(10, 1, 5).add(10, 2, 5).add(10, 3, 1)
+                .add(11, 1, 4).add(11, 2, 5).add(11, 3, 2)
+                .add(12, 1, 5).add(12, 2, 4).add(12, 3, 1)
+                .build();
+        RecommendationModel model = RecommendationModel.build(matrix, SETTINGS);
+
+        List<RecommendationModel.ScoredBook> recommended = model.recommend(new long[]{1, 3}, new int[]{5, 1}, 10);
+
+        assertThat(recommended).extracting(RecommendationModel.ScoredBook::bookId).containsExactly(2L);
+        assertThat(recommended.get(0).score()).isGreaterThan(3.0);
+        assertThat(model.recommend(new long[0], new int[0], 10)).isEmpty();
+        assertThat(model.recommend(new long[]{99}, new int[]{5}, 10)).isEmpty();
+    }
+
+    @Test
+    void shouldMatchFullRebuildAfterIncrementalUpdate() {
+        Random random = new Random(42);
+        RatingMatrix.Builder builder = RatingMatrix.builder(1024);
+        for (long user = 1; user <= 60; user++) {
+            for (long book = 1; book <= 30; book++) {
+                if (random.nextInt(3) == 0) {
+                    builder.add(user, book, 1 + random.nextInt(5));
+                }
+            }
+        }
+        RatingMatrix matrix = builder.build();
+        RecommendationModel model = RecommendationModel.build(matrix, SETTINGS);
+
+        List<RatingMatrix.Change> changes = new ArrayList<>();
+        changes.add(new RatingMatrix.Change(3, 7, 5));
+        changes.add(new RatingMatrix.Change(3, 8, 0));
+        changes.add(new RatingMatrix.Change(61, 7, 4)); // usuario nuevo
+        changes.add(new RatingMatrix.Change(61, 31, 5)); // libro nuevo
+        changes.add(new RatingMatrix.Change(20, 2, 1));
+        changes.add(new RatingMatrix.Change(20, 2, 3)); // el último gana
+
+        RecommendationModel incremental = model.update(changes);
+        RatingMatrix.Update applied = matrix.apply(changes);
+        ItemNeighbours full = ItemNeighbours.compute(applied.matrix(), SETTINGS);
+        ItemNeighbours patched = ItemNeighbours.compute(matrix, SETTINGS).update(applied.matrix(), applied.touchedItems());
+
+        assertThat(incremental.ratingCount()).isEqualTo(applied.matrix().ratingCount());
+        assertSameNeighbours(patched, full, applied.matrix().itemCount());
+    }
+
+    @Test
+    void shouldMatchCompactedMatrixWhileChangesStayInTheOverlay() {
+        Random random = new Random(7);
+        RatingMatrix.Builder builder = RatingMatrix.builder(1024);
+        for (long user = 1; user <= 60; user++) {
+            for (long book = 1; book <= 30; book++) {
+                if (random.nextInt(3) == 0) {
+                    builder.add(user, book, 1 + random.nextInt(5));
+                }
+            }
+        }
+        RatingMatrix matrix = builder.build();
+
+        List<RatingMatrix.Change> first = List.of(
+                new RatingMatrix.Change(3, 7, 5),
+                new RatingMatrix.Change(3, 8, 0),
+                new RatingMatrix.Change(61, 7, 4), // usuario nuevo
+                new RatingMatrix.Change(61, 31, 5)); // libro nuevo
+        List<RatingMatrix.Change> second = List.of(
+                new RatingMatrix.Change(3, 7, 2), // mismo usuario y libro que en el primer refresco
+                new RatingMatrix.Change(61, 31, 0),
+                new RatingMatrix.Change(62, 31, 3),
+                new RatingMatrix.Change(20, 2, 1));
+        List<RatingMatrix.Change> all = new ArrayList<>(first);
+        all.addAll(second);
+
+        // Sin compactar: los cambios quedan en la capa por encima del CSR de partida
+        RatingMatrix.Update firstUpdate = matrix.apply(first, Double.MAX_VALUE);
+        RatingMatrix.Update secondUpdate = firstUpdate.matrix().apply(second, Double.MAX_VALUE);
+        RatingMatrix layered = secondUpdate.matrix();
+        RatingMatrix compacted = matrix.apply(all, 0).matrix();
+
+        assertThat(layered.ratingCount()).isEqualTo(compacted.ratingCount());
+        assertThat(layered.itemCount()).isEqualTo(compacted.itemCount());
+        for (int item = 0; item < compacted.itemCount(); item++) {
+            assertThat(layered.itemIndex(compacted.itemId(item))).isEqualTo(item);
+        }
+
+        ItemNeighbours full = ItemNeighbours.compute(compacted, SETTINGS);
+        assertSameNeighbours(ItemNeighbours.compute(layered, SETTINGS), full, compacted.itemCount());
+        ItemNeighbours patched = ItemNeighbours.compute(matrix, SETTINGS)
+                .update(firstUpdate.matrix(), firstUpdate.touchedItems())
+                .update(layered, secondUpdate.touchedItems());
+        assertSameNeighbours(patched, full, compacted.itemCount());
+    }
+
+    private static void assertSameNeighbours(ItemNeighbours actual, ItemNeighbours expected, int itemCount) {
+        for (int item = 0; item < itemCount; item++) {
+            for (int slot = 0; slot < SETTINGS.k(); slot++) {
+                assertThat(actual.neighbour(item, slot)).as("libro %d, posición %d", item, slot)
+                        .isEqualTo(expected.neighbour(item, slot));
+                assertThat(actual.score(item, slot)).isCloseTo(expected.score(item, slot), within(1e-5f));
+            }
+        }
+    }
+}
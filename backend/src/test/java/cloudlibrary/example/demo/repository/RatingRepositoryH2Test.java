@@ -0,0 +1,79 @@
+package cloudlibrary.example.demo.repository;
+
+import cloudlibrary.example.demo.dto.RatingRef;
+import cloudlibrary.example.demo.model.Book;
+import cloudlibrary.example.demo.model.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Transactional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Las ramas H2 de RatingRepositoryImpl (upsert con lectura bloqueante, borrados en OLD TABLE)
+ * contra un H2 sin NON_KEYWORDS, donde VALUE sigue siendo palabra reservada.
+ */
+@SpringBootTest
+@TestPropertySource(properties = {
+        "spring.datasource.url=jdbc:h2:mem:ratingsdb;DB_CLOSE_DELAY=-1;MODE=PostgreSQL",
+        "spring.datasource.driverClassName=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=password",
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "app.search.engine=memory"
+})
+@Transactional
+class RatingRepositoryH2Test {
+
+    @Autowired
+    private RatingRepository ratingRepository;
+    @Autowired
+    private BookRepository bookRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private User user;
+    private Book book;
+
+    @BeforeEach
+    void setUp() {
+        User reader = new User();
+        reader.setUsername("Lectora");
+        reader.setEmail("lectora@example.com");
+        reader.setPassword("123");
+        user = userRepository.save(reader);
+        Book target = new Book();
+        target.setTitle("Rayuela");
+        book = bookRepository.save(target);
+    }
+
+    @Test
+    void shouldUpdateSameRowWhenUpsertingTwice() {
+        RatingRepositoryCustom.Upserted first = ratingRepository.upsert(user.getId(), book.getId(), 3);
+        RatingRepositoryCustom.Upserted second = ratingRepository.upsert(user.getId(), book.getId(), 5);
+
+        assertThat(first.created()).isTrue();
+        assertThat(second.id()).isEqualTo(first.id());
+        assertThat(second.previousValue()).isEqualTo(3);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM ratings WHERE user_id = ? AND book_id = ?",
+                Integer.class, user.getId(), book.getId())).isEqualTo(1);
+        assertThat(ratingRepository.findById(first.id()).orElseThrow().getValue()).isEqualTo(5);
+    }
+
+    @Test
+    void shouldReturnDeletedRatingsInChunks() {
+        ratingRepository.upsert(user.getId(), book.getId(), 4);
+
+        assertThat(ratingRepository.deleteChunkByUser(user.getId(), 10))
+                .containsExactly(new RatingRef(book.getId(), user.getId(), 4));
+        assertThat(ratingRepository.deleteChunkByBook(book.getId(), 10)).isEmpty();
+        assertThat(ratingRepository.count()).isZero();
+    }
+}
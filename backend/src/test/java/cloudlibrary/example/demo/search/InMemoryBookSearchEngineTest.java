@@ -0,0 +1,104 @@
+package cloudlibrary.example.demo.search;
+
+import cloudlibrary.example.demo.dto.BookDetail;
+import cloudlibrary.example.demo.dto.BookSearchHit;
+import cloudlibrary.example.demo.dto.BookSummary;
+import cloudlibrary.example.demo.repository.BookRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class InMemoryBookSearchEngineTest {
+
+    @Mock
+    private BookRepository bookRepository;
+
+    @InjectMocks
+    private InMemoryBookSearchEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        engine.index(1L, "Clean Code", "Robert C. Martin", "A handbook of agile software craftsmanship");
+        engine.index(2L, "Clean Architecture", "Robert C. Martin", "Software structure and design");
+        engine.index(3L, "Refactoring", "Martin Fowler", "Improving the design of existing code");
+    }
+
+    @Test
+    void shouldRequireAllTermsAndRankTitleMatchesFirst() {
+        List<InMemoryBookSearchEngine.Match> matches = engine.rank("clean code", 0, 10);
+
+        // "code" está en el título del 1 y en la descripción del 3, pero solo el 1 tiene "clean"
+        assertThat(matches).extracting(InMemoryBookSearchEngine.Match::bookId).containsExactly(1L);
+    }
+
+    @Test
+    void shouldOrderByWeightedScoreThenId() {
+        List<InMemoryBookSearchEngine.Match> matches = engine.rank("martin", 0, 10);
+
+        // Orden propio de este motor (suma de pesos), no el de ts_rank: el autor pesa lo mismo en
+        // los tres y a igualdad de puntuación se ordena por id
+        assertThat(matches).extracting(InMemoryBookSearchEngine.Match::bookId).containsExactly(1L, 2L, 3L);
+
+        matches = engine.rank("design", 0, 10);
+        assertThat(matches).extracting(InMemoryBookSearchEngine.Match::bookId).containsExactly(2L, 3L);
+    }
+
+    @Test
+    void shouldPaginateAndForgetRemovedBooks() {
+        assertThat(engine.rank("martin", 1, 1)).extracting(InMemoryBookSearchEngine.Match::bookId).containsExactly(2L);
+
+        engine.remove(2L);
+        engine.index(3L, "Refactoring", "Fowler", "Improving the design of existing code");
+
+        assertThat(engine.rank("martin", 0, 10)).extracting(InMemoryBookSearchEngine.Match::bookId).containsExactly(1L);
+    }
+
+    @Test
+    void shouldReplaceIndexOnRebuildKeepingChangesMadeMeanwhile() {
+        when(bookRepository.findDetailsAfter(eq(0L), any())).thenAnswer(inv -> {
+            // Mientras se lee la base de datos se siguen viendo los libros anteriores
+            assertThat(engine.rank("martin", 0, 10)).hasSize(3);
+            engine.index(4L, "Patterns", "Martin Fowler", null);
+            return List.of(new BookDetail(1L, "Clean Code", "Robert C. Martin", null, null, null));
+        });
+
+        engine.rebuild();
+
+        assertThat(engine.rank("martin", 0, 10)).extracting(InMemoryBookSearchEngine.Match::bookId)
+                .containsExactly(1L, 4L);
+    }
+
+    @Test
+    void shouldKeepPreviousIndexWhenRebuildFails() {
+        when(bookRepository.findDetailsAfter(eq(0L), any())).thenThrow(new DataAccessResourceFailureException("sin conexión"));
+
+        engine.rebuild();
+
+        assertThat(engine.rank("martin", 0, 10)).hasSize(3);
+    }
+
+    @Test
+    void shouldHydrateHitsFromSummaries() {
+        when(bookRepository.findSummariesByIds(anyCollection()))
+                .thenReturn(List.of(new BookSummary(3L, "Refactoring", "Martin Fowler", null, null)));
+
+        List<BookSearchHit> hits = engine.search("REFACTORING", 0, 10);
+
+        assertThat(hits).hasSize(1);
+        assertThat(hits.get(0).title()).isEqualTo("Refactoring");
+        assertThat(hits.get(0).score()).isPositive();
+    }
+}
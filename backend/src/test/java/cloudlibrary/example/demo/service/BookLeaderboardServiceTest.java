@@ -0,0 +1,82 @@
+package cloudlibrary.example.demo.service;
+
+import cloudlibrary.example.demo.dto.BookRatingTotals;
+import cloudlibrary.example.demo.dto.BookSummary;
+import cloudlibrary.example.demo.dto.RatingStats;
+import cloudlibrary.example.demo.dto.TopBook;
+import cloudlibrary.example.demo.dto.TopBooks;
+import cloudlibrary.example.demo.repository.BookRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class BookLeaderboardServiceTest {
+
+    @Mock
+    private BookRepository bookRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private BookLeaderboardService leaderboardService;
+
+    @BeforeEach
+    void setUp() {
+        leaderboardService = new BookLeaderboardService(bookRepository, transactionManager,
+                new SimpleMeterRegistry(), 2, 10);
+    }
+
+    @Test
+    void shouldRankByBayesianAverageKeepingOnlyTopEntries() {
+        // Media global 3,3: el libro con un único 5 no supera al de cinco valoraciones altas
+        when(bookRepository.findGlobalRatingStats()).thenReturn(new RatingStats(10, 33));
+        when(bookRepository.streamRatingTotals()).thenReturn(Stream.of(
+                new BookRatingTotals(1L, 7L, 1, 5),
+                new BookRatingTotals(2L, 7L, 5, 24),
+                new BookRatingTotals(3L, null, 4, 4)));
+        when(bookRepository.findSummariesByIds(anyCollection())).thenAnswer(inv -> inv.<Collection<Long>>getArgument(0)
+                .stream().map(id -> new BookSummary(id, "Libro " + id, "Autor", id == 3L ? null : 7L, null)).toList());
+
+        leaderboardService.rebuild();
+
+        TopBooks global = leaderboardService.top(null, 10);
+        assertThat(global.generatedAt()).isNotNull();
+        assertThat(global.books()).extracting(TopBook::id).containsExactly(2L, 1L);
+        assertThat(global.books().get(0).score()).isEqualTo((10 * 3.3 + 24) / 15);
+        assertThat(global.books().get(0).average()).isEqualTo(4.8);
+
+        assertThat(leaderboardService.top(7L, 1).books()).extracting(TopBook::id).containsExactly(2L);
+        assertThat(leaderboardService.top(99L, null).books()).isEmpty();
+    }
+
+    @Test
+    void shouldServeEmptyRankingBeforeFirstRebuild() {
+        TopBooks top = leaderboardService.top(null, null);
+
+        assertThat(top.generatedAt()).isNull();
+        assertThat(top.books()).isEmpty();
+    }
+
+    @Test
+    void shouldBuildEmptyRankingWhenThereAreNoRatings() {
+        when(bookRepository.findGlobalRatingStats()).thenReturn(new RatingStats(0, 0));
+
+        leaderboardService.rebuild();
+
+        assertThat(leaderboardService.top(null, null).generatedAt()).isNotNull();
+        assertThat(leaderboardService.top(null, null).books()).isEmpty();
+    }
+}
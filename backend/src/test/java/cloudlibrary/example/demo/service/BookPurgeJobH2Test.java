@@ -0,0 +1,90 @@
+package cloudlibrary.example.demo.service;
+
+import cloudlibrary.example.demo.dto.CommentRequest;
+import cloudlibrary.example.demo.dto.CommentView;
+import cloudlibrary.example.demo.dto.PostRequest;
+import cloudlibrary.example.demo.dto.PostView;
+import cloudlibrary.example.demo.dto.RatingRequest;
+import cloudlibrary.example.demo.model.Book;
+import cloudlibrary.example.demo.model.User;
+import cloudlibrary.example.demo.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Purga completa de un libro en H2, que sigue las ramas propias de H2: el DETACH previo a cada
+ * tanda de comentarios y los borrados por tandas en OLD TABLE. Tandas de 2 para que un libro con
+ * pocas filas necesite varias.
+ */
+@SpringBootTest
+@TestPropertySource(properties = {
+        "spring.datasource.url=jdbc:h2:mem:purgedb;DB_CLOSE_DELAY=-1;MODE=PostgreSQL",
+        "spring.datasource.driverClassName=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=password",
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "app.search.engine=memory",
+        "app.deletes.chunk-size=2",
+        "app.books.purge.pause-ms=0"
+})
+class BookPurgeJobH2Test {
+
+    @Autowired
+    private BookPurgeJob bookPurgeJob;
+    @Autowired
+    private BookService bookService;
+    @Autowired
+    private PostService postService;
+    @Autowired
+    private CommentService commentService;
+    @Autowired
+    private RatingService ratingService;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void shouldPurgeBookWithRatingsPostsAndNestedComments() {
+        User reader = new User();
+        reader.setUsername("Purga");
+        reader.setEmail("purga@example.com");
+        reader.setPassword("123");
+        Long userId = userRepository.save(reader).getId();
+        Book book = new Book();
+        book.setTitle("Borrado");
+        Long bookId = bookService.saveBook(book).getId();
+
+        ratingService.addRating(new RatingRequest(bookId, userId, 5));
+        for (int value = 1; value <= 4; value++) {
+            ratingService.addRating(new RatingRequest(bookId, null, value));
+        }
+        for (int i = 0; i < 3; i++) {
+            PostView post = postService.addPost(new PostRequest("Post " + i, "...", userId, bookId));
+            CommentView parent = commentService.addComment(new CommentRequest("Raíz", userId, post.id(), null));
+            commentService.addComment(new CommentRequest("Otra raíz", userId, post.id(), null));
+            // Una cadena más larga que la tanda: cada una borra hijos cuyos padres siguen en la tabla
+            for (int depth = 0; depth < 4; depth++) {
+                parent = commentService.addReply(parent.id(), new CommentRequest("Nivel " + depth, userId, null, null));
+            }
+        }
+        bookService.deleteBook(bookId);
+
+        bookPurgeJob.purgePending();
+
+        assertThat(count("SELECT COUNT(*) FROM books WHERE id = ?", bookId)).isZero();
+        assertThat(count("SELECT COUNT(*) FROM ratings WHERE book_id = ?", bookId)).isZero();
+        assertThat(count("SELECT COUNT(*) FROM posts WHERE book_id = ?", bookId)).isZero();
+        assertThat(count("SELECT COUNT(*) FROM comments WHERE author_id = ?", userId)).isZero();
+    }
+
+    private long count(String sql, Long id) {
+        return jdbcTemplate.queryForObject(sql, Long.class, id);
+    }
+}
@@ -0,0 +1,64 @@
+package cloudlibrary.example.demo.service;
+
+import cloudlibrary.example.demo.repository.BookRepository;
+import cloudlibrary.example.demo.repository.PostRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BookPurgeJobTest {
+
+    @Mock
+    private BookRepository bookRepository;
+    @Mock
+    private PostRepository postRepository;
+    @Mock
+    private PostService postService;
+    @Mock
+    private RatingService ratingService;
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private BookPurgeJob job;
+
+    @BeforeEach
+    void setUp() {
+        doAnswer(inv -> {
+            inv.<Consumer<Object>>getArgument(0).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+        when(postRepository.findIdsByBookId(anyLong(), any())).thenReturn(List.of());
+        job = new BookPurgeJob(bookRepository, postRepository, postService, ratingService, transactionTemplate,
+                meterRegistry, 1000, 0);
+    }
+
+    @Test
+    void shouldSkipFailingBookAndPurgeTheRest() {
+        // El libro 1 es el más antiguo y sigue fallando: no debe frenar al 2
+        when(bookRepository.findSoftDeletedIds(BookPurgeJob.BOOKS_PER_QUERY)).thenReturn(List.of(1L, 2L));
+        when(bookRepository.findSoftDeletedIds(BookPurgeJob.BOOKS_PER_QUERY + 1)).thenReturn(List.of(1L));
+        when(bookRepository.purgeById(1L)).thenThrow(new DataIntegrityViolationException("post nuevo"));
+
+        int purged = job.purgePending();
+
+        assertThat(purged).isEqualTo(1);
+        verify(bookRepository).purgeById(2L);
+        verify(bookRepository, times(1)).purgeById(1L);
+        assertThat(meterRegistry.get("books.purge.pending").gauge().value()).isEqualTo(1.0);
+    }
+}
@@ -1,18 +1,40 @@
 package cloudlibrary.example.demo.service;
 
+import cloudlibrary.example.demo.config.CacheConfig;
+import cloudlibrary.example.demo.dto.BookDetail;
+import cloudlibrary.example.demo.dto.BookPurgeStatus;
+import cloudlibrary.example.demo.dto.BookSummary;
+import cloudlibrary.example.demo.dto.CommentRequest;
+import cloudlibrary.example.demo.dto.CommentView;
+import cloudlibrary.example.demo.dto.CursorPage;
+import cloudlibrary.example.demo.dto.PostFeedItem;
+import cloudlibrary.example.demo.dto.PostRequest;
+import cloudlibrary.example.demo.dto.PostView;
+import cloudlibrary.example.demo.dto.RatingRequest;
 import cloudlibrary.example.demo.model.Book;
+import cloudlibrary.example.demo.exception.ResourceNotFoundException;
+import cloudlibrary.example.demo.model.Category;
+import cloudlibrary.example.demo.model.User;
 import cloudlibrary.example.demo.repository.BookRepository;
+import cloudlibrary.example.demo.repository.CategoryRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.testcontainers.containers.PostgreSQLContainer;
 import org.testcontainers.junit.jupiter.Testcontainers;
 
-import java.util.List;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 @SpringBootTest
 @Testcontainers
@@ -36,10 +58,41 @@ class BookServiceIT { // "IT" = Integration Test
     @Autowired
     private BookRepository bookRepository; // Necesario para preparar y verificar
 
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private RatingService ratingService;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private BookExportService bookExportService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private PostService postService;
+
+    @Autowired
+    private CommentService commentService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private BookPurgeJob bookPurgeJob;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
     @BeforeEach
     void setup() {
         // Limpiamos la BBDD antes de CADA test para asegurar aislamiento
         bookRepository.deleteAll();
+        categoryRepository.deleteAll();
     }
 
     @Test
@@ -59,7 +112,7 @@ class BookServiceIT { // "IT" = Integration Test
     }
 
     @Test
-    void shouldFindAllBooks() {
+    void shouldFindBooksPage() {
         // given (Preparamos la BBDD)
         Book book1 = new Book();
         book1.setTitle("Clean Code");
@@ -72,11 +125,83 @@ class BookServiceIT { // "IT" = Integration Test
         bookRepository.save(book2);
 
         // when
-        List<Book> books = bookService.findAllBooks();
+        CursorPage<BookSummary> page = bookService.findBooks(null, null, null, null);
 
         // then
-        assertThat(books).hasSize(2);
-        assertThat(books).extracting(Book::getTitle).contains("Clean Code", "Effective Java");
+        assertThat(page.items()).hasSize(2);
+        assertThat(page.items()).extracting(BookSummary::title).contains("Clean Code", "Effective Java");
+        assertThat(page.next()).isNull();
+    }
+
+    @Test
+    void shouldWalkAllPagesWithCursor() {
+        // given
+        for (int i = 0; i < 5; i++) {
+            Book book = new Book();
+            book.setTitle("Libro " + i);
+            book.setAuthor("Autor");
+            bookRepository.save(book);
+        }
+
+        // when
+        CursorPage<BookSummary> first = bookService.findBooks(null, null, null, 2);
+        CursorPage<BookSummary> second = bookService.findBooks(null, null, first.next(), 2);
+        CursorPage<BookSummary> last = bookService.findBooks(null, null, second.next(), 2);
+
+        // then
+        assertThat(first.items()).extracting(BookSummary::title).containsExactly("Libro 0", "Libro 1");
+        assertThat(second.items()).extracting(BookSummary::title).containsExactly("Libro 2", "Libro 3");
+        assertThat(last.items()).extracting(BookSummary::title).containsExactly("Libro 4");
+        assertThat(last.next()).isNull();
+    }
+
+    @Test
+    void shouldSortByTitleWithUntitledBooksLast() {
+        // given
+        for (String title : new String[]{"B", null, "A", "C", null}) {
+            Book book = new Book();
+            book.setTitle(title);
+            bookRepository.save(book);
+        }
+
+        // when
+        CursorPage<BookSummary> first = bookService.findBooks(null, "title", null, 2);
+        CursorPage<BookSummary> second = bookService.findBooks(null, "title", first.next(), 2);
+        CursorPage<BookSummary> last = bookService.findBooks(null, "title", second.next(), 2);
+
+        // then
+        assertThat(first.items()).extracting(BookSummary::title).containsExactly("A", "B");
+        assertThat(second.items()).extracting(BookSummary::title).containsExactly("C", null);
+        assertThat(last.items()).extracting(BookSummary::title).containsExactly((String) null);
+        assertThat(last.next()).isNull();
+    }
+
+    @Test
+    void shouldFilterByCategoryAndSortByRating() {
+        // given
+        Category novel = new Category();
+        novel.setName("Novela");
+        categoryRepository.save(novel);
+        Category essay = new Category();
+        essay.setName("Ensayo");
+        categoryRepository.save(essay);
+
+        Book average = bookInCategory("Media", novel);
+        Book best = bookInCategory("Mejor", novel);
+        bookInCategory("Sin valorar", novel);
+        Book otherCategory = bookInCategory("Otra categoría", essay);
+        rate(average, 3);
+        rate(best, 5);
+        rate(otherCategory, 5);
+
+        // when
+        CursorPage<BookSummary> first = bookService.findBooks(novel.getId(), "rating", null, 2);
+        CursorPage<BookSummary> last = bookService.findBooks(novel.getId(), "rating", first.next(), 2);
+
+        // then
+        assertThat(first.items()).extracting(BookSummary::title).containsExactly("Mejor", "Media");
+        assertThat(last.items()).extracting(BookSummary::title).containsExactly("Sin valorar");
+        assertThat(last.next()).isNull();
     }
 
     @Test
@@ -95,6 +220,73 @@ class BookServiceIT { // "IT" = Integration Test
         assertThat(found.get().getTitle()).isEqualTo("Effective Java");
     }
 
+    @Test
+    void shouldFindBookDetailWithoutLoadingCollections() {
+        // given
+        Book book = new Book();
+        book.setTitle("Domain-Driven Design");
+        book.setAuthor("Eric Evans");
+        book.setDescription("Tackling complexity in the heart of software");
+        Book saved = bookRepository.save(book);
+
+        // when
+        Optional<BookDetail> found = bookService.findBookDetail(saved.getId());
+
+        // then
+        assertThat(found).isPresent();
+        assertThat(found.get().title()).isEqualTo("Domain-Driven Design");
+        assertThat(found.get().description()).isEqualTo("Tackling complexity in the heart of software");
+        assertThat(found.get().categoryId()).isNull();
+    }
+
+    @Test
+    void shouldCacheBookDetailAndEvictOnSave() {
+        // given
+        Book book = new Book();
+        book.setTitle("Título original");
+        book.setAuthor("Autor");
+        Book saved = bookRepository.save(book);
+        Cache cache = cacheManager.getCache(CacheConfig.BOOKS_CACHE);
+
+        // when
+        bookService.findBookDetail(saved.getId());
+
+        // then (la segunda lectura sale de la caché)
+        assertThat(cache.get(saved.getId(), BookDetail.class)).isNotNull();
+
+        // when (una escritura invalida la entrada)
+        saved.setTitle("Título corregido");
+        bookService.saveBook(saved);
+
+        // then
+        assertThat(cache.get(saved.getId())).isNull();
+        assertThat(bookService.findBookDetail(saved.getId()).orElseThrow().title()).isEqualTo("Título corregido");
+    }
+
+    @Test
+    void shouldExportAllBooksAsNdjsonInIdOrder() throws Exception {
+        // given
+        for (int i = 0; i < 3; i++) {
+            Book book = new Book();
+            book.setTitle("Libro " + i);
+            book.setAuthor("Autor");
+            bookRepository.save(book);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // when
+        long exported = bookExportService.exportNdjson(out);
+
+        // then (una línea JSON por libro)
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertThat(exported).isEqualTo(3);
+        assertThat(lines).hasSize(3);
+        JsonNode first = objectMapper.readTree(lines[0]);
+        assertThat(first.get("title").asText()).isEqualTo("Libro 0");
+        assertThat(objectMapper.readTree(lines[2]).get("title").asText()).isEqualTo("Libro 2");
+        assertThat(first.has("posts")).isFalse();
+    }
+
     @Test
     void shouldReturnEmptyOptionalForInvalidId() {
         // when
@@ -121,4 +313,82 @@ class BookServiceIT { // "IT" = Integration Test
         // then (Verificamos que se borró)
         assertThat(bookRepository.existsById(id)).isFalse();
     }
-}
\ No newline at end of file
+
+    @Test
+    void shouldHideSoftDeletedBookAndPurgeItsRowsInBackground() {
+        User user = new User();
+        user.setUsername("Lector");
+        user.setEmail("lector" + System.nanoTime() + "@example.com");
+        user.setPassword("123");
+        user = userService.registerUser(user);
+
+        Book book = new Book();
+        book.setTitle("Popular");
+        book = bookService.saveBook(book);
+        Long id = book.getId();
+        Book other = new Book();
+        other.setTitle("Se queda");
+        other = bookService.saveBook(other);
+
+        rate(book, 5);
+        rate(book, 4);
+        rate(book, 3);
+        rate(other, 2);
+        PostView post = postService.addPost(new PostRequest("Reseña", "...", user.getId(), id));
+        PostView kept = postService.addPost(new PostRequest("Otra", "...", user.getId(), other.getId()));
+        CommentView comment = commentService.addComment(new CommentRequest("Hilo", user.getId(), post.id(), null));
+        commentService.addReply(comment.id(), new CommentRequest("Respuesta", user.getId(), null, null));
+        assertThat(bookService.findBookDetail(id)).isPresent();
+
+        bookService.deleteBook(id);
+
+        // Desaparece al momento de las lecturas, aunque sus filas sigan ahí
+        assertThat(bookRepository.existsById(id)).isFalse();
+        assertThat(bookService.findBookDetail(id)).isEmpty();
+        assertThat(bookService.findBooks(null, null, null, null).items())
+                .extracting(BookSummary::id).containsExactly(other.getId());
+        assertThat(postService.getFeed(null, null).items())
+                .extracting(PostFeedItem::id).containsExactly(kept.id());
+        assertThat(postService.findPostVersion(post.id())).isEmpty();
+        assertThatThrownBy(() -> postService.getPostsByBook(id, null, null))
+                .isInstanceOf(ResourceNotFoundException.class);
+        assertThatThrownBy(() -> rate(bookRepository.getReferenceById(id), 1))
+                .isInstanceOf(ResourceNotFoundException.class);
+        // La FK no ve el borrado lógico: posts y comentarios nuevos se rechazan igual que las valoraciones
+        Long userId = user.getId();
+        assertThatThrownBy(() -> postService.addPost(new PostRequest("Tarde", "...", userId, id)))
+                .isInstanceOf(ResourceNotFoundException.class);
+        assertThatThrownBy(() -> commentService.addComment(new CommentRequest("Tarde", userId, post.id(), null)))
+                .isInstanceOf(ResourceNotFoundException.class);
+        assertThatThrownBy(() -> commentService.addReply(comment.id(), new CommentRequest("Tarde", userId, null, null)))
+                .isInstanceOf(ResourceNotFoundException.class);
+
+        BookPurgeStatus status = bookService.findPurgeStatus(id).orElseThrow();
+        assertThat(status.deletedAt()).isNotNull();
+        assertThat(status.posts()).isEqualTo(1);
+        assertThat(status.comments()).isEqualTo(2);
+        assertThat(status.ratings()).isEqualTo(3);
+        assertThat(bookService.findPurgeStatus(other.getId())).isEmpty();
+
+        bookPurgeJob.purgePending();
+
+        assertThat(bookService.findPurgeStatus(id)).isEmpty();
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM books WHERE id = ?", Long.class, id)).isZero();
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM ratings WHERE book_id = ?", Long.class, id)).isZero();
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM posts WHERE book_id = ?", Long.class, id)).isZero();
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM comments WHERE post_id = ?", Long.class, post.id())).isZero();
+        assertThat(ratingService.findRatingStats(other.getId()).orElseThrow().count()).isEqualTo(1);
+        assertThat(postService.getPostsByBook(other.getId(), null, null).items()).hasSize(1);
+    }
+
+    private Book bookInCategory(String title, Category category) {
+        Book book = new Book();
+        book.setTitle(title);
+        book.setCategory(category);
+        return bookRepository.save(book);
+    }
+
+    private void rate(Book book, int value) {
+        ratingService.addRating(new RatingRequest(book.getId(), null, value));
+    }
+}
@@ -1,13 +1,23 @@
 package cloudlibrary.example.demo.service;
 
+import cloudlibrary.example.demo.dto.CommentItem;
+import cloudlibrary.example.demo.dto.CommentNode;
+import cloudlibrary.example.demo.dto.CommentRequest;
+import cloudlibrary.example.demo.dto.CommentThread;
+import cloudlibrary.example.demo.dto.CommentView;
+import cloudlibrary.example.demo.dto.PostFeedItem;
+import cloudlibrary.example.demo.dto.PostRequest;
+import cloudlibrary.example.demo.dto.PostView;
+import cloudlibrary.example.demo.exception.InvalidRequestException;
+import cloudlibrary.example.demo.exception.ResourceNotFoundException;
 import cloudlibrary.example.demo.model.Book;
 import cloudlibrary.example.demo.model.Comment;
-import cloudlibrary.example.demo.model.Post;
 import cloudlibrary.example.demo.model.User;
 import cloudlibrary.example.demo.repository.BookRepository;
 import cloudlibrary.example.demo.repository.CommentRepository;
 import cloudlibrary.example.demo.repository.PostRepository;
 import cloudlibrary.example.demo.repository.UserRepository;
+import jakarta.persistence.EntityManager;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -17,9 +27,12 @@ import org.testcontainers.containers.PostgreSQLContainer;
 import org.testcontainers.junit.jupiter.Testcontainers;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.temporal.ChronoUnit;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
 
 @SpringBootTest
 @Testcontainers
@@ -47,9 +60,13 @@ class CommentServiceIT {
     @Autowired private BookRepository bookRepository;
     @Autowired private UserRepository userRepository;
     @Autowired private PasswordEncoder passwordEncoder;
+    @Autowired private EntityManager entityManager;
+    @Autowired private CommentPathBackfillJob commentPathBackfillJob;
+    @Autowired private CommentAggregateRepairJob commentAggregateRepairJob;
 
     private User testUser;
-    private Post testPost;
+    private Book testBook;
+    private PostView testPost;
 
     @BeforeEach
     void setup() {
@@ -67,55 +84,251 @@ class CommentServiceIT {
         Book book = new Book();
         book.setTitle("Libro de prueba");
         book.setAuthor("Autor");
+        testBook = bookRepository.save(book);
 
-        Post post = new Post();
-        post.setTitle("Post de prueba");
-        post.setAuthor(testUser);
-        post.setBook(book);
-        testPost = postService.addPost(post);
+        testPost = postService.addPost(new PostRequest("Post de prueba", null, testUser.getId(), testBook.getId()));
     }
 
     @Test
     void shouldAddReplyToComment() {
-        Comment parentComment = new Comment();
-        parentComment.setContent("Este es el comentario padre");
-        parentComment.setAuthor(testUser);
-        parentComment.setPost(testPost);
-        Comment savedParent = commentService.addComment(parentComment);
+        CommentView savedParent = comment("Este es el comentario padre");
 
-        Comment reply = new Comment();
-        reply.setContent("Esta es la respuesta");
-        reply.setAuthor(testUser);
+        CommentView savedReply = commentService.addReply(savedParent.id(),
+                new CommentRequest("Esta es la respuesta", testUser.getId(), null, null));
 
-        Comment savedReply = commentService.addReply(savedParent.getId(), reply);
+        assertThat(savedReply.id()).isNotNull();
+        assertThat(savedReply.content()).isEqualTo("Esta es la respuesta");
+        assertThat(savedReply.parentId()).isEqualTo(savedParent.id());
+        assertThat(savedReply.postId()).isEqualTo(testPost.id());
 
+        Comment stored = commentRepository.findById(savedReply.id()).orElseThrow();
+        assertThat(stored.getParent().getId()).isEqualTo(savedParent.id());
+        assertThat(stored.getPost().getId()).isEqualTo(testPost.id());
+    }
+
+    @Test
+    void shouldRejectReplyToMissingParent() {
+        CommentRequest reply = new CommentRequest("Sin padre", testUser.getId(), null, null);
 
-        assertThat(savedReply.getId()).isNotNull();
-        assertThat(savedReply.getContent()).isEqualTo("Esta es la respuesta");
+        assertThatThrownBy(() -> commentService.addReply(9999L, reply))
+                .isInstanceOf(ResourceNotFoundException.class);
+    }
 
-        assertThat(savedReply.getParent()).isNotNull();
-        assertThat(savedReply.getParent().getId()).isEqualTo(savedParent.getId());
+    @Test
+    void shouldRejectCommentOnMissingPost() {
+        CommentRequest request = new CommentRequest("Sin post", testUser.getId(), 9999L, null);
 
-        assertThat(savedReply.getPost().getId()).isEqualTo(testPost.getId());
+        assertThatThrownBy(() -> commentService.addComment(request))
+                .isInstanceOf(ResourceNotFoundException.class);
     }
 
     @Test
     void shouldGetCommentsByPost() {
-        Comment c1 = new Comment();
-        c1.setContent("C1");
-        c1.setAuthor(testUser);
-        c1.setPost(testPost);
-        commentService.addComment(c1);
-
-        Comment c2 = new Comment();
-        c2.setContent("C2");
-        c2.setAuthor(testUser);
-        c2.setPost(testPost);
-        commentService.addComment(c2);
+        comment("C1");
+        comment("C2");
 
-        List<Comment> comments = commentService.getCommentsByPost(testPost.getId());
+        List<Comment> comments = commentService.getCommentsByPost(testPost.id());
 
         assertThat(comments).hasSize(2);
         assertThat(comments).extracting(Comment::getContent).containsExactlyInAnyOrder("C1", "C2");
     }
-}
\ No newline at end of file
+
+    @Test
+    void shouldMaintainCommentAggregatesOnPost() {
+        CommentView first = comment("Primero");
+        CommentView second = comment("Segundo");
+        CommentView reply = commentService.addReply(first.id(),
+                new CommentRequest("Respuesta", testUser.getId(), null, null));
+
+        PostFeedItem item = feedItem();
+        assertThat(item.commentCount()).isEqualTo(3);
+        assertThat(item.lastCommentAt()).isCloseTo(reply.createdAt(), within(1, ChronoUnit.MICROS));
+
+        // Borrar el primero se lleva su respuesta, que era el último comentario. Se vacía el
+        // contexto como en una petición nueva, para que el padre se cargue con sus respuestas
+        entityManager.flush();
+        entityManager.clear();
+        commentService.deleteComment(first.id());
+
+        item = feedItem();
+        assertThat(item.commentCount()).isEqualTo(1);
+        assertThat(item.lastCommentAt()).isCloseTo(second.createdAt(), within(1, ChronoUnit.MICROS));
+    }
+
+    @Test
+    void shouldMaintainReplyCounts() {
+        CommentView root = comment("Raíz");
+        CommentView first = reply(root.id(), "Primera");
+        reply(root.id(), "Segunda");
+        reply(first.id(), "Anidada");
+
+        assertThat(topLevel().replyCount()).isEqualTo(2);
+        assertThat(commentService.getReplies(root.id(), null, null).items())
+                .extracting(CommentItem::replyCount).containsExactly(1L, 0L);
+
+        entityManager.flush();
+        entityManager.clear();
+        commentService.deleteComment(first.id());
+        assertThat(topLevel().replyCount()).isEqualTo(1);
+
+        // La reparación deja el mismo valor que el mantenimiento incremental
+        entityManager.createNativeQuery("UPDATE comments SET reply_count = 0").executeUpdate();
+        commentAggregateRepairJob.repairAll();
+        assertThat(topLevel().replyCount()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldStoreMaterializedPathOnInsert() {
+        CommentView root = comment("Raíz");
+        CommentView reply = reply(root.id(), "Respuesta");
+
+        Comment viaEntity = new Comment();
+        viaEntity.setContent("Por entidad");
+        viaEntity.setAuthor(testUser);
+        viaEntity.setPost(commentRepository.findById(root.id()).orElseThrow().getPost());
+        viaEntity.setParent(commentRepository.findById(reply.id()).orElseThrow());
+        commentRepository.save(viaEntity);
+        entityManager.flush();
+        entityManager.clear();
+        // Guardado por JPA no pasa por los INSERT con ruta: la recibe del job de relleno
+        assertThat(commentRepository.findById(viaEntity.getId()).orElseThrow().getPath()).isNull();
+        assertThat(commentPathBackfillJob.backfillAll()).isEqualTo(1);
+        entityManager.clear();
+
+        String rootPath = Comment.pathSegment(root.id());
+        assertThat(commentRepository.findById(root.id()).orElseThrow().getPath()).isEqualTo(rootPath);
+        Comment storedReply = commentRepository.findById(reply.id()).orElseThrow();
+        assertThat(storedReply.getPath()).isEqualTo(rootPath + Comment.pathSegment(reply.id()));
+        assertThat(storedReply.getDepth()).isEqualTo(1);
+        Comment storedEntity = commentRepository.findById(viaEntity.getId()).orElseThrow();
+        assertThat(storedEntity.getPath()).isEqualTo(storedReply.getPath() + Comment.pathSegment(viaEntity.getId()));
+        assertThat(storedEntity.getDepth()).isEqualTo(2);
+    }
+
+    @Test
+    void shouldReadThreadByPathRange() {
+        CommentView root = comment("Raíz");
+        CommentView first = reply(root.id(), "Primera");
+        reply(root.id(), "Segunda");
+        CommentView nested = reply(first.id(), "Anidada");
+        reply(nested.id(), "Profunda");
+        CommentView other = comment("Otro hilo");
+        reply(other.id(), "Fuera del subárbol");
+
+        CommentThread thread = commentService.getThread(first.id(), null, null);
+        assertThat(thread.descendantCount()).isEqualTo(2);
+        assertThat(thread.root().id()).isEqualTo(first.id());
+        assertThat(thread.root().replies()).extracting(CommentNode::id).containsExactly(nested.id());
+        assertThat(thread.root().replies().get(0).replies()).extracting(CommentNode::content).containsExactly("Profunda");
+
+        CommentThread slice = commentService.getThread(root.id(), 2, 1);
+        assertThat(slice.descendantCount()).isEqualTo(4);
+        assertThat(slice.root().replyCount()).isEqualTo(2);
+        assertThat(slice.root().replies()).extracting(CommentNode::id).containsExactly(first.id());
+        assertThat(slice.root().replies().get(0).replies()).isEmpty();
+    }
+
+    @Test
+    void shouldReadThreadOfCommentStillWithoutPath() {
+        CommentView root = comment("Raíz");
+        CommentView first = reply(root.id(), "Primera");
+        reply(root.id(), "Segunda");
+        CommentView nested = reply(first.id(), "Anidada");
+        reply(nested.id(), "Profunda");
+        CommentView other = comment("Otro hilo");
+        reply(other.id(), "Fuera del subárbol");
+        entityManager.flush();
+        entityManager.createNativeQuery("UPDATE comments SET path = NULL, depth = NULL").executeUpdate();
+        entityManager.clear();
+
+        CommentThread thread = commentService.getThread(first.id(), null, null);
+        assertThat(thread.descendantCount()).isEqualTo(2);
+        assertThat(thread.root().id()).isEqualTo(first.id());
+        assertThat(thread.root().replies()).extracting(CommentNode::id).containsExactly(nested.id());
+        assertThat(thread.root().replies().get(0).replies()).extracting(CommentNode::content).containsExactly("Profunda");
+
+        CommentThread slice = commentService.getThread(root.id(), 2, 1);
+        assertThat(slice.descendantCount()).isEqualTo(4);
+        assertThat(slice.root().replyCount()).isEqualTo(2);
+        assertThat(slice.root().replies()).extracting(CommentNode::id).containsExactly(first.id());
+        assertThatThrownBy(() -> commentService.getThread(9999L, null, null))
+                .isInstanceOf(ResourceNotFoundException.class);
+    }
+
+    @Test
+    void shouldRejectThreadOfMissingComment() {
+        assertThatThrownBy(() -> commentService.getThread(9999L, null, null))
+                .isInstanceOf(ResourceNotFoundException.class);
+    }
+
+    @Test
+    void shouldRejectReplyBeyondMaxDepth() {
+        CommentView last = comment("Raíz");
+        for (int depth = 1; depth < Comment.MAX_DEPTH; depth++) {
+            last = reply(last.id(), "Nivel " + depth);
+        }
+        Long deepest = last.id();
+
+        assertThatThrownBy(() -> reply(deepest, "Demasiado hondo"))
+                .isInstanceOf(InvalidRequestException.class);
+    }
+
+    @Test
+    void shouldBackfillPathsOfExistingComments() {
+        CommentView root = comment("Raíz");
+        CommentView reply = reply(root.id(), "Respuesta");
+        CommentView nested = reply(reply.id(), "Anidada");
+        entityManager.flush();
+        entityManager.createNativeQuery("UPDATE comments SET path = NULL, depth = NULL").executeUpdate();
+        entityManager.clear();
+
+        assertThat(commentPathBackfillJob.backfillAll()).isEqualTo(3);
+
+        Comment stored = commentRepository.findById(nested.id()).orElseThrow();
+        assertThat(stored.getPath()).isEqualTo(Comment.pathSegment(root.id())
+                + Comment.pathSegment(reply.id()) + Comment.pathSegment(nested.id()));
+        assertThat(stored.getDepth()).isEqualTo(2);
+        assertThat(commentPathBackfillJob.backfillAll()).isZero();
+    }
+
+    @Test
+    void shouldLeaveRepliesBeyondMaxDepthWithoutPath() {
+        CommentView last = comment("Raíz");
+        for (int depth = 1; depth < Comment.MAX_DEPTH; depth++) {
+            last = reply(last.id(), "Nivel " + depth);
+        }
+        entityManager.flush();
+        // Hilo antiguo, de antes del límite: un nivel más de lo que cabe en path
+        entityManager.createNativeQuery("INSERT INTO comments (content, created_at, author_id, post_id, parent_comment_id) " +
+                        "VALUES ('Demasiado hondo', CURRENT_TIMESTAMP, ?1, ?2, ?3)")
+                .setParameter(1, testUser.getId()).setParameter(2, testPost.id()).setParameter(3, last.id())
+                .executeUpdate();
+        CommentView later = comment("Posterior");
+        entityManager.flush();
+        entityManager.createNativeQuery("UPDATE comments SET path = NULL, depth = NULL").executeUpdate();
+        entityManager.clear();
+
+        // Toda la cadena que cabe y el comentario posterior; el nivel sobrante se queda sin ruta
+        assertThat(commentPathBackfillJob.backfillAll()).isEqualTo(Comment.MAX_DEPTH + 1);
+        assertThat(commentRepository.findById(later.id()).orElseThrow().getPath()).isEqualTo(Comment.pathSegment(later.id()));
+        assertThat(commentRepository.findById(last.id()).orElseThrow().getDepth()).isEqualTo(Comment.MAX_DEPTH - 1);
+        assertThat(commentRepository.findFirstBackfillableId()).isNull();
+        assertThat(commentPathBackfillJob.backfillAll()).isZero();
+    }
+
+    private CommentItem topLevel() {
+        return commentService.getTopLevelComments(testPost.id(), null, null).items().get(0);
+    }
+
+    private CommentView reply(Long parentId, String content) {
+        return commentService.addReply(parentId, new CommentRequest(content, testUser.getId(), null, null));
+    }
+
+    private CommentView comment(String content) {
+        return commentService.addComment(new CommentRequest(content, testUser.getId(), testPost.id(), null));
+    }
+
+    private PostFeedItem feedItem() {
+        return postService.getPostsByBook(testBook.getId(), null, null).items().get(0);
+    }
+}
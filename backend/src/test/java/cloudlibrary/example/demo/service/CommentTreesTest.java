@@ -0,0 +1,74 @@
+package cloudlibrary.example.demo.service;
+
+import cloudlibrary.example.demo.dto.CommentNode;
+import cloudlibrary.example.demo.dto.CommentView;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CommentTreesTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2030, 1, 1, 12, 0);
+
+    @Test
+    void shouldNestRepliesInArrivalOrder() {
+        List<CommentNode> tree = CommentTrees.build(List.of(
+                comment(1, null), comment(2, 1L), comment(3, null), comment(4, 1L), comment(5, 2L)),
+                Integer.MAX_VALUE, Integer.MAX_VALUE);
+
+        assertThat(tree).extracting(CommentNode::id).containsExactly(1L, 3L);
+        assertThat(tree.get(0).replyCount()).isEqualTo(2);
+        assertThat(tree.get(0).replies()).extracting(CommentNode::id).containsExactly(2L, 4L);
+        assertThat(tree.get(0).replies().get(0).replies()).extracting(CommentNode::id).containsExactly(5L);
+        assertThat(tree.get(1).replies()).isEmpty();
+    }
+
+    @Test
+    void shouldTruncateByDepthAndChildrenButKeepReplyCounts() {
+        List<CommentNode> tree = CommentTrees.build(List.of(
+                comment(1, null), comment(2, 1L), comment(3, 1L), comment(4, 2L), comment(5, 4L)), 2, 1);
+
+        CommentNode root = tree.get(0);
+        assertThat(root.replyCount()).isEqualTo(2);
+        assertThat(root.replies()).extracting(CommentNode::id).containsExactly(2L);
+        assertThat(root.replies().get(0).replyCount()).isEqualTo(1);
+        assertThat(root.replies().get(0).replies()).isEmpty();
+    }
+
+    @Test
+    void shouldTreatCommentsWithUnknownParentAsRoots() {
+        List<CommentNode> tree = CommentTrees.build(List.of(comment(7, 99L), comment(8, 7L)),
+                Integer.MAX_VALUE, Integer.MAX_VALUE);
+
+        assertThat(tree).extracting(CommentNode::id).containsExactly(7L);
+        assertThat(tree.get(0).replies()).extracting(CommentNode::id).containsExactly(8L);
+    }
+
+    @Test
+    void shouldBuildDeepThreadsWithoutRecursion() {
+        List<CommentView> chain = new ArrayList<>();
+        chain.add(comment(1, null));
+        for (long id = 2; id <= 50_000; id++) {
+            chain.add(comment(id, id - 1));
+        }
+
+        List<CommentNode> tree = CommentTrees.build(chain, 10, Integer.MAX_VALUE);
+
+        CommentNode node = tree.get(0);
+        int depth = 1;
+        while (!node.replies().isEmpty()) {
+            node = node.replies().get(0);
+            depth++;
+        }
+        assertThat(depth).isEqualTo(10);
+        assertThat(node.replyCount()).isEqualTo(1);
+    }
+
+    private static CommentView comment(long id, Long parentId) {
+        return new CommentView(id, "Comentario " + id, 1L, 1L, parentId, NOW);
+    }
+}
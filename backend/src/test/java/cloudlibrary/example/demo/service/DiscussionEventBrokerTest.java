@@ -0,0 +1,85 @@
+package cloudlibrary.example.demo.service;
+
+import cloudlibrary.example.demo.dto.CommentView;
+import cloudlibrary.example.demo.event.CommentCreatedEvent;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DiscussionEventBrokerTest {
+
+    // Las tareas de envío se guardan sin ejecutar: así el cliente "no lee" hasta que el test lo decide
+    private final List<Runnable> sends = new ArrayList<>();
+    private SimpleMeterRegistry meterRegistry;
+    private DiscussionEventBroker broker;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+        broker = new DiscussionEventBroker(objectMapper, meterRegistry, sends::add, 2, 60_000);
+    }
+
+    @Test
+    void shouldScheduleOneSenderPerSubscriberWhileDraining() {
+        broker.subscribe(DiscussionEventBroker.postTopic(1L));
+
+        broker.onCommentCreated(commentOn(1L));
+        broker.onCommentCreated(commentOn(1L));
+        assertThat(sends).hasSize(1);
+
+        sends.remove(0).run();
+        broker.onCommentCreated(commentOn(1L));
+        assertThat(sends).hasSize(1);
+        assertThat(broker.subscriberCount()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldEvictSlowSubscriberWithoutAffectingOthers() {
+        broker.subscribe(DiscussionEventBroker.postTopic(1L));
+        broker.subscribe(DiscussionEventBroker.postTopic(2L));
+
+        for (int i = 0; i < 3; i++) {
+            broker.onCommentCreated(commentOn(1L));
+        }
+
+        assertThat(broker.subscriberCount()).isEqualTo(1);
+        assertThat(meterRegistry.counter("live.evictions").count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void shouldDeliverToNewSubscriberAfterTopicEmptied() {
+        broker.subscribe(DiscussionEventBroker.postTopic(1L));
+        for (int i = 0; i < 3; i++) {
+            broker.onCommentCreated(commentOn(1L));
+        }
+        assertThat(broker.subscriberCount()).isZero();
+        sends.clear();
+
+        // La baja del último retira el tema; la nueva alta debe crear otro, no quedar en el huérfano
+        broker.subscribe(DiscussionEventBroker.postTopic(1L));
+        broker.onCommentCreated(commentOn(1L));
+
+        assertThat(broker.subscriberCount()).isEqualTo(1);
+        assertThat(sends).hasSize(1);
+    }
+
+    @Test
+    void shouldIgnoreTopicsWithoutSubscribers() {
+        broker.onCommentCreated(commentOn(3L));
+
+        assertThat(sends).isEmpty();
+    }
+
+    private static CommentCreatedEvent commentOn(Long postId) {
+        return new CommentCreatedEvent(new CommentView(10L, "Hola", 1L, postId, null, LocalDateTime.now()));
+    }
+}
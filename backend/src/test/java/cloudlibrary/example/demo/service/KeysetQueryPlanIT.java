@@ -0,0 +1,208 @@
+package cloudlibrary.example.demo.service;
+
+import cloudlibrary.example.demo.dto.BookSort;
+import cloudlibrary.example.demo.model.Book;
+import cloudlibrary.example.demo.model.Category;
+import cloudlibrary.example.demo.model.User;
+import cloudlibrary.example.demo.repository.BookRepository;
+import cloudlibrary.example.demo.repository.CategoryRepository;
+import cloudlibrary.example.demo.repository.CommentRepository;
+import cloudlibrary.example.demo.repository.PostRepository;
+import cloudlibrary.example.demo.repository.UserRepository;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Las páginas profundas de los listados keyset tienen que empezar en el índice por el cursor, no
+ * recorrerlo desde el principio filtrando. Se comprueba el SQL que genera Hibernate y, en
+ * PostgreSQL, su plan: la condición del cursor debe ser un Index Cond y no un Filter.
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+        + "cloudlibrary.example.demo.service.KeysetQueryPlanIT$RecordingInspector")
+@Testcontainers
+@Transactional
+class KeysetQueryPlanIT {
+
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15-alpine")
+            .withDatabaseName("testdb")
+            .withUsername("test")
+            .withPassword("test");
+
+    static {
+        postgres.start();
+        System.setProperty("spring.datasource.url", postgres.getJdbcUrl());
+        System.setProperty("spring.datasource.username", postgres.getUsername());
+        System.setProperty("spring.datasource.password", postgres.getPassword());
+    }
+
+    private static final int ROWS = 3000;
+
+    /** Guarda cada sentencia que Hibernate envía, para poder pedir su plan. */
+    public static class RecordingInspector implements StatementInspector {
+
+        static final List<String> statements = new CopyOnWriteArrayList<>();
+
+        @Override
+        public String inspect(String sql) {
+            statements.add(sql);
+            return sql;
+        }
+    }
+
+    @Autowired
+    private PostRepository postRepository;
+    @Autowired
+    private CommentRepository commentRepository;
+    @Autowired
+    private BookRepository bookRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private CategoryRepository categoryRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private User user;
+    private Book book;
+
+    @BeforeEach
+    void setup() {
+        User author = new User();
+        author.setUsername("Planes");
+        author.setEmail("planes" + System.nanoTime() + "@example.com");
+        author.setPassword("123");
+        user = userRepository.save(author);
+        Book target = new Book();
+        target.setTitle("Índices");
+        book = bookRepository.save(target);
+    }
+
+    @Test
+    void shouldSeekDeepFeedPagesThroughTheIndex() {
+        LocalDateTime start = LocalDateTime.now().minusDays(1);
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < ROWS; i++) {
+            rows.add(new Object[]{"Post " + i, "...", user.getId(), book.getId(), Timestamp.valueOf(start.plusSeconds(i))});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO posts (title, content, user_id, book_id, created_at) VALUES (?, ?, ?, ?, ?)", rows);
+        Long cursorId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM posts", Long.class) - ROWS / 2;
+        LocalDateTime cursorAt = start.plusSeconds(ROWS / 2);
+
+        String feed = captureSql(() -> postRepository.findFeedBefore(cursorAt, cursorId, Limit.of(21)), "from posts");
+        assertRowComparison(feed, "created_at", "id", "<");
+        assertIndexSeek(feed, "created_at", Timestamp.valueOf(cursorAt), cursorId, 21);
+
+        String byBook = captureSql(() -> postRepository.findByBookBefore(book.getId(), cursorAt, cursorId, Limit.of(21)),
+                "from posts");
+        assertRowComparison(byBook, "created_at", "id", "<");
+        assertIndexSeek(byBook, "created_at", book.getId(), Timestamp.valueOf(cursorAt), cursorId, 21);
+    }
+
+    @Test
+    void shouldSeekDeepCommentPagesThroughTheIndex() {
+        jdbcTemplate.update("INSERT INTO posts (title, content, user_id, book_id, created_at) VALUES (?, ?, ?, ?, ?)",
+                "Hilo", "...", user.getId(), book.getId(), Timestamp.valueOf(LocalDateTime.now()));
+        Long postId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM posts", Long.class);
+        jdbcTemplate.update("INSERT INTO comments (content, created_at, author_id, post_id) VALUES (?, ?, ?, ?)",
+                "Raíz", Timestamp.valueOf(LocalDateTime.now()), user.getId(), postId);
+        Long rootId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM comments", Long.class);
+
+        LocalDateTime start = LocalDateTime.now().minusDays(1);
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < ROWS; i++) {
+            Timestamp at = Timestamp.valueOf(start.plusSeconds(i));
+            rows.add(new Object[]{"Comentario " + i, at, user.getId(), postId, null});
+            rows.add(new Object[]{"Respuesta " + i, at, user.getId(), postId, rootId});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO comments (content, created_at, author_id, post_id, parent_comment_id) " +
+                "VALUES (?, ?, ?, ?, ?)", rows);
+        LocalDateTime cursorAt = start.plusSeconds(ROWS / 2);
+        Long cursorId = rootId + ROWS;
+
+        String topLevel = captureSql(() -> commentRepository.findTopLevelAfter(postId, cursorAt, cursorId, Limit.of(21)),
+                "from comments");
+        assertRowComparison(topLevel, "created_at", "id", ">");
+        assertIndexSeek(topLevel, "created_at", postId, Timestamp.valueOf(cursorAt), cursorId, 21);
+
+        String replies = captureSql(() -> commentRepository.findRepliesAfter(rootId, cursorAt, cursorId, Limit.of(21)),
+                "from comments");
+        assertRowComparison(replies, "created_at", "id", ">");
+        assertIndexSeek(replies, "created_at", rootId, Timestamp.valueOf(cursorAt), cursorId, 21);
+    }
+
+    @Test
+    void shouldSeekDeepListingPagesThroughTheIndex() {
+        Category category = new Category();
+        category.setName("Planes");
+        category = categoryRepository.save(category);
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < ROWS; i++) {
+            rows.add(new Object[]{String.format("Título %05d", i), "Autor " + (i % 50), category.getId(), (i % 50) / 10.0});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO books (title, author, category_id, rating_average) VALUES (?, ?, ?, ?)", rows);
+        Long cursorId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM books", Long.class) - ROWS / 2;
+        Long categoryId = category.getId();
+
+        String byTitle = captureSql(() -> bookRepository.findListing(categoryId, BookSort.TITLE,
+                new BookSort.Position("Título 01500", cursorId), 21), "from books");
+        assertRowComparison(byTitle, "title", "id", ">");
+        assertIndexSeek(byTitle, "title", categoryId, "Título 01500", cursorId, 21);
+
+        String byRating = captureSql(() -> bookRepository.findListing(null, BookSort.RATING,
+                new BookSort.Position(2.5, cursorId), 21), "from books");
+        assertRowComparison(byRating, "rating_average", "id", "<");
+        assertIndexSeek(byRating, "rating_average", 2.5, cursorId, 21);
+    }
+
+    private String captureSql(Runnable query, String fromClause) {
+        RecordingInspector.statements.clear();
+        query.run();
+        return RecordingInspector.statements.stream()
+                .filter(sql -> sql.toLowerCase().contains(fromClause))
+                .reduce((first, second) -> second)
+                .orElseThrow();
+    }
+
+    private static void assertRowComparison(String sql, String key, String id, String operator) {
+        Pattern tuple = Pattern.compile("\\(\\w+\\." + key + ",\\s*\\w+\\." + id + "\\)\\s*" + operator
+                + "\\s*\\(\\?,\\s*\\?\\)");
+        assertThat(tuple.matcher(sql.toLowerCase()).find()).as(sql).isTrue();
+    }
+
+    // Solo en PostgreSQL: en H2 el plan no distingue entre condición de índice y filtro
+    private void assertIndexSeek(String sql, String key, Object... params) {
+        if (!isPostgres()) {
+            return;
+        }
+        jdbcTemplate.execute("ANALYZE");
+        jdbcTemplate.execute("SET LOCAL enable_seqscan = off");
+        List<String> plan = jdbcTemplate.queryForList("EXPLAIN " + sql, String.class, params);
+        String text = String.join("\n", plan);
+        // Index Cond: (... ROW(clave, id) > ROW($n, $m)); con el OR sería un Filter sobre la clave
+        assertThat(plan).as(text).anyMatch(line -> line.contains("Index Cond") && line.contains("ROW(") && line.contains(key));
+        assertThat(plan).as(text).noneMatch(line -> line.contains("Filter") && line.contains("ROW("));
+    }
+
+    private boolean isPostgres() {
+        String product = jdbcTemplate.execute((ConnectionCallback<String>) c -> c.getMetaData().getDatabaseProductName());
+        return "PostgreSQL".equalsIgnoreCase(product);
+    }
+}
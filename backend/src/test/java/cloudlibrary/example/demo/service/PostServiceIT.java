@@ -1,21 +1,34 @@
 package cloudlibrary.example.demo.service;
 
+import cloudlibrary.example.demo.dto.CommentRequest;
+import cloudlibrary.example.demo.dto.CommentView;
+import cloudlibrary.example.demo.dto.PostRequest;
+import cloudlibrary.example.demo.dto.PostView;
+import cloudlibrary.example.demo.exception.ResourceNotFoundException;
 import cloudlibrary.example.demo.model.Book;
 import cloudlibrary.example.demo.model.Post;
 import cloudlibrary.example.demo.model.User;
 import cloudlibrary.example.demo.repository.BookRepository;
+import cloudlibrary.example.demo.repository.CommentRepository;
 import cloudlibrary.example.demo.repository.PostRepository;
 import cloudlibrary.example.demo.repository.UserRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.testcontainers.containers.PostgreSQLContainer;
 import org.testcontainers.junit.jupiter.Testcontainers;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 @SpringBootTest
 @Testcontainers
@@ -47,11 +60,18 @@ class PostServiceIT {
     private UserRepository userRepository;
     @Autowired
     private PasswordEncoder passwordEncoder;
+    @Autowired
+    private CommentService commentService;
+    @Autowired
+    private CommentRepository commentRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
 
     private User testUser;
 
     @BeforeEach
     void setup() {
+        commentRepository.deleteAll();
         postRepository.deleteAll();
         bookRepository.deleteAll();
         userRepository.deleteAll();
@@ -65,28 +85,57 @@ class PostServiceIT {
     }
 
     @Test
-    void shouldSavePostAndNewBookWithCascade() {
-        Book newBook = new Book();
-        newBook.setTitle("Dune");
-        newBook.setAuthor("Frank Herbert");
-
-        Post post = new Post();
-        post.setTitle("Mi reseña de Dune");
-        post.setContent("Increíble...");
-
-        post.setAuthor(testUser);
-        post.setBook(newBook);
-
-        Post savedPost = postService.addPost(post);
+    void shouldSavePostReferencingBookById() {
+        Book book = new Book();
+        book.setTitle("Dune");
+        book.setAuthor("Frank Herbert");
+        book = bookRepository.save(book);
+
+        PostView savedPost = postService.addPost(
+                new PostRequest("Mi reseña de Dune", "Increíble...", testUser.getId(), book.getId()));
+
+        assertThat(savedPost.id()).isNotNull();
+        assertThat(savedPost.authorId()).isEqualTo(testUser.getId());
+        assertThat(savedPost.bookId()).isEqualTo(book.getId());
+
+        Post stored = postRepository.findById(savedPost.id()).orElseThrow();
+        assertThat(stored.getTitle()).isEqualTo("Mi reseña de Dune");
+        assertThat(stored.getBook().getTitle()).isEqualTo("Dune");
+        assertThat(bookRepository.count()).isEqualTo(1);
+    }
 
-        assertThat(savedPost.getId()).isNotNull();
-        assertThat(savedPost.getAuthor().getId()).isEqualTo(testUser.getId());
-        assertThat(savedPost.getBook().getId()).isNotNull();
+    @Test
+    void shouldRejectPostForMissingBook() {
+        PostRequest request = new PostRequest("Sin libro", "...", testUser.getId(), 9999L);
 
-        assertThat(postRepository.count()).isEqualTo(1);
-        assertThat(bookRepository.count()).isEqualTo(1);
+        assertThatThrownBy(() -> postService.addPost(request))
+                .isInstanceOf(ResourceNotFoundException.class);
+    }
 
-        Book savedBook = bookRepository.findAll().get(0);
-        assertThat(savedBook.getTitle()).isEqualTo("Dune");
+    @Test
+    void shouldDeletePostWithCommentsInChunks() {
+        Book book = new Book();
+        book.setTitle("Viral");
+        book = bookRepository.save(book);
+        PostView viral = postService.addPost(new PostRequest("Viral", "...", testUser.getId(), book.getId()));
+        PostView other = postService.addPost(new PostRequest("Otro", "...", testUser.getId(), book.getId()));
+
+        // Varias tandas de comentarios y un hilo anidado que las cruza
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < 2500; i++) {
+            rows.add(new Object[]{"Comentario " + i, Timestamp.valueOf(LocalDateTime.now()), testUser.getId(), viral.id()});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO comments (content, created_at, author_id, post_id) VALUES (?, ?, ?, ?)", rows);
+        CommentView parent = commentService.addComment(new CommentRequest("Raíz", testUser.getId(), viral.id(), null));
+        for (int depth = 0; depth < 5; depth++) {
+            parent = commentService.addReply(parent.id(), new CommentRequest("Respuesta", testUser.getId(), null, null));
+        }
+        commentService.addComment(new CommentRequest("Se queda", testUser.getId(), other.id(), null));
+
+        postService.deletePost(viral.id());
+
+        assertThat(postRepository.existsById(viral.id())).isFalse();
+        assertThat(commentRepository.findByPostId(viral.id())).isEmpty();
+        assertThat(commentRepository.findByPostId(other.id())).hasSize(1);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,62 @@
+package cloudlibrary.example.demo.service;
+
+import cloudlibrary.example.demo.dto.RatingBucket;
+import cloudlibrary.example.demo.dto.RatingDistribution;
+import cloudlibrary.example.demo.event.RatingChangedEvent;
+import cloudlibrary.example.demo.repository.RatingRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class RatingHistogramServiceTest {
+
+    @Mock
+    private RatingRepository ratingRepository;
+
+    @InjectMocks
+    private RatingHistogramService histogramService;
+
+    @Test
+    void shouldWarmUpFromAggregateAndApplyChanges() {
+        when(ratingRepository.countByBookAndValue()).thenReturn(List.of(
+                new RatingBucket(1L, 5, 10), new RatingBucket(1L, 1, 2)));
+
+        histogramService.warmUp();
+        histogramService.onRatingChanged(RatingChangedEvent.created(1L, 2L, 4));
+        histogramService.onRatingChanged(RatingChangedEvent.deleted(1L, 2L, 1));
+
+        RatingDistribution distribution = histogramService.distribution(1L);
+        assertThat(distribution.total()).isEqualTo(12);
+        assertThat(distribution.stars()).containsEntry(1, 1L).containsEntry(4, 1L).containsEntry(5, 10L);
+    }
+
+    @Test
+    void shouldReturnZerosForBookWithoutRatings() {
+        RatingDistribution distribution = histogramService.distribution(7L);
+
+        assertThat(distribution.total()).isZero();
+        assertThat(distribution.stars()).hasSize(5).containsOnlyKeys(1, 2, 3, 4, 5);
+    }
+
+    @Test
+    void shouldCorrectDriftOnlyWhenItPersistsAcrossRuns() {
+        histogramService.onRatingChanged(RatingChangedEvent.created(1L, 2L, 3));
+        when(ratingRepository.countByBookAndValue()).thenReturn(List.of(new RatingBucket(1L, 3, 2)));
+
+        // Primera pasada: la diferencia podría ser una valoración en vuelo, no se toca
+        assertThat(histogramService.reconcile()).isZero();
+        assertThat(histogramService.distribution(1L).stars()).containsEntry(3, 1L);
+
+        // Segunda pasada con la misma diferencia: se corrige
+        assertThat(histogramService.reconcile()).isEqualTo(1);
+        assertThat(histogramService.distribution(1L).stars()).containsEntry(3, 2L);
+    }
+}
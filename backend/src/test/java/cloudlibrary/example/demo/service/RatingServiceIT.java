@@ -1,5 +1,11 @@
 package cloudlibrary.example.demo.service;
 
+import cloudlibrary.example.demo.dto.CursorPage;
+import cloudlibrary.example.demo.dto.RatingDistribution;
+import cloudlibrary.example.demo.dto.RatingRequest;
+import cloudlibrary.example.demo.dto.RatingStats;
+import cloudlibrary.example.demo.dto.RatingView;
+import cloudlibrary.example.demo.dto.RatingWriteResult;
 import cloudlibrary.example.demo.model.Book;
 import cloudlibrary.example.demo.model.Rating;
 import cloudlibrary.example.demo.model.User;
@@ -33,6 +39,7 @@ class RatingServiceIT {
     }
 
     @Autowired private RatingService ratingService;
+    @Autowired private RatingAggregateRepairJob ratingAggregateRepairJob;
     @Autowired private UserService userService;
 
     @Autowired private RatingRepository ratingRepository;
@@ -63,23 +70,9 @@ class RatingServiceIT {
 
     @Test
     void shouldCalculateAverageRatingForBook() {
-        Rating r1 = new Rating();
-        r1.setBook(testBook);
-        r1.setUser(testUser);
-        r1.setValue(5);
-        ratingService.addRating(r1);
-
-        Rating r2 = new Rating();
-        r2.setBook(testBook);
-        r2.setUser(testUser);
-        r2.setValue(4);
-        ratingService.addRating(r2);
-
-        Rating r3 = new Rating();
-        r3.setBook(testBook);
-        r3.setUser(testUser);
-        r3.setValue(3);
-        ratingService.addRating(r3);
+        rate(testUser, 5);
+        rate(newUser("Second"), 4);
+        rate(newUser("Third"), 3);
 
         Double average = ratingService.averageRatingForBook(testBook.getId());
 
@@ -92,4 +85,91 @@ class RatingServiceIT {
 
         assertThat(average).isNull();
     }
-}
\ No newline at end of file
+
+    @Test
+    void shouldKeepAggregatesInSyncOnAddAndDelete() {
+        rate(testUser, 5);
+        RatingWriteResult saved = rate(newUser("Second"), 2);
+
+        ratingService.deleteRating(saved.id());
+
+        RatingStats stats = ratingService.findRatingStats(testBook.getId()).orElseThrow();
+        assertThat(stats.count()).isEqualTo(1);
+        assertThat(stats.sum()).isEqualTo(5);
+    }
+
+    @Test
+    void shouldReplaceRatingOfSameUserInsteadOfAddingAnother() {
+        RatingWriteResult first = rate(testUser, 5);
+        RatingWriteResult second = rate(testUser, 2);
+
+        assertThat(first.outcome()).isEqualTo(RatingWriteResult.Outcome.CREATED);
+        assertThat(second.outcome()).isEqualTo(RatingWriteResult.Outcome.UPDATED);
+        assertThat(second.id()).isEqualTo(first.id());
+        assertThat(second.previousValue()).isEqualTo(5);
+        assertThat(ratingRepository.count()).isEqualTo(1);
+
+        RatingStats stats = ratingService.findRatingStats(testBook.getId()).orElseThrow();
+        assertThat(stats.count()).isEqualTo(1);
+        assertThat(stats.sum()).isEqualTo(2);
+        RatingDistribution distribution = ratingService.findRatingDistribution(testBook.getId()).orElseThrow();
+        assertThat(distribution.stars()).containsEntry(5, 0L).containsEntry(2, 1L);
+    }
+
+    @Test
+    void shouldUpdateRatingDistributionOnAddAndDelete() {
+        rate(testUser, 5);
+        RatingWriteResult saved = rate(newUser("Second"), 3);
+        ratingService.deleteRating(saved.id());
+
+        RatingDistribution distribution = ratingService.findRatingDistribution(testBook.getId()).orElseThrow();
+        assertThat(distribution.total()).isEqualTo(1);
+        assertThat(distribution.stars()).containsEntry(5, 1L).containsEntry(3, 0L);
+    }
+
+    @Test
+    void shouldPageRatingsOfBookByCursor() {
+        rate(testUser, 5);
+        rate(newUser("Second"), 4);
+        rate(newUser("Third"), 3);
+
+        CursorPage<RatingView> first = ratingService.getRatingsByBook(testBook.getId(), null, 2);
+        CursorPage<RatingView> second = ratingService.getRatingsByBook(testBook.getId(), first.next(), 2);
+
+        assertThat(first.items()).extracting(RatingView::value).containsExactly(5, 4);
+        assertThat(first.items().get(0).username()).isEqualTo("Rater");
+        assertThat(first.next()).isNotNull();
+        assertThat(second.items()).extracting(RatingView::value).containsExactly(3);
+        assertThat(second.next()).isNull();
+    }
+
+    @Test
+    void shouldRepairAggregatesFromRatingsTable() {
+        // Valoración insertada sin pasar por el servicio: los agregados quedan desfasados
+        Rating r = new Rating();
+        r.setBook(testBook);
+        r.setUser(testUser);
+        r.setValue(4);
+        ratingRepository.save(r);
+
+        assertThat(ratingService.findRatingStats(testBook.getId()).orElseThrow().count()).isZero();
+
+        ratingAggregateRepairJob.repairAll();
+
+        RatingStats stats = ratingService.findRatingStats(testBook.getId()).orElseThrow();
+        assertThat(stats.count()).isEqualTo(1);
+        assertThat(stats.average()).isEqualTo(4.0);
+    }
+
+    private RatingWriteResult rate(User user, int value) {
+        return ratingService.addRating(new RatingRequest(testBook.getId(), user.getId(), value));
+    }
+
+    private User newUser(String username) {
+        User user = new User();
+        user.setUsername(username);
+        user.setEmail(username.toLowerCase() + System.nanoTime() + "@example.com");
+        user.setPassword("123");
+        return userService.registerUser(user);
+    }
+}
@@ -0,0 +1,192 @@
+package cloudlibrary.example.demo.service;
+
+import cloudlibrary.example.demo.event.RatingChangedEvent;
+import cloudlibrary.example.demo.model.RatingLogProgress;
+import cloudlibrary.example.demo.repository.BookRepository;
+import cloudlibrary.example.demo.repository.RatingLogProgressRepository;
+import cloudlibrary.example.demo.repository.RatingRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RatingWriteBehindLogTest {
+
+    @Mock
+    private RatingRepository ratingRepository;
+
+    @Mock
+    private BookRepository bookRepository;
+
+    @Mock
+    private RatingLogProgressRepository progressRepository;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @TempDir
+    Path logDir;
+
+    private RatingWriteBehindLog writeBehindLog;
+
+    @BeforeEach
+    void setUp() {
+        // La transacción simplemente ejecuta el callback
+        lenient().doAnswer(inv -> {
+            inv.<Consumer<Object>>getArgument(0).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+        // Todos los libros existen salvo que el test diga lo contrario
+        lenient().when(bookRepository.applyRatingDelta(anyLong(), anyLong(), anyLong())).thenReturn(1);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (writeBehindLog != null) {
+            writeBehindLog.shutdown();
+        }
+    }
+
+    @Test
+    void shouldUpsertAppendedRatingsInOneTransactionAndDeleteSegment() throws IOException {
+        insertsAreNew();
+        writeBehindLog = newLog();
+        writeBehindLog.append(1L, 10L, 5);
+        writeBehindLog.append(1L, 11L, 3);
+        writeBehindLog.append(2L, null, 4);
+        assertThat(writeBehindLog.pending()).isEqualTo(3);
+
+        long drained = writeBehindLog.drain();
+
+        assertThat(drained).isEqualTo(3);
+        assertThat(writeBehindLog.pending()).isZero();
+        verify(transactionTemplate, times(1)).executeWithoutResult(any());
+        verify(ratingRepository, times(3)).upsert(any(), anyLong(), anyInt());
+        // Un UPDATE de agregados por libro
+        verify(bookRepository).applyRatingDelta(1L, 2, 8);
+        verify(bookRepository).applyRatingDelta(2L, 1, 4);
+        assertThat(segmentsOnDisk()).hasSize(1); // solo el segmento activo, vacío
+    }
+
+    @Test
+    void shouldApplyOnlyTheDifferenceWhenUserAlreadyRatedTheBook() throws IOException {
+        when(ratingRepository.upsert(10L, 1L, 2)).thenReturn(new RatingRepository.Upserted(5L, 4));
+        writeBehindLog = newLog();
+        writeBehindLog.append(1L, 10L, 2);
+
+        writeBehindLog.drain();
+
+        verify(bookRepository).applyRatingDelta(1L, 0, -2);
+        verify(eventPublisher).publishEvent(new RatingChangedEvent(1L, 10L, 4, 2));
+    }
+
+    @Test
+    void shouldReplaySegmentsLeftOnDiskIgnoringTornTail() throws IOException {
+        insertsAreNew();
+        Files.writeString(logDir.resolve("ratings-000000000007.log"), "3,1,5\n3,2,4\n3,", StandardCharsets.US_ASCII);
+
+        writeBehindLog = newLog();
+        assertThat(writeBehindLog.pending()).isEqualTo(2);
+
+        writeBehindLog.drain();
+
+        verify(ratingRepository, times(2)).upsert(any(), eq(3L), anyInt());
+        verify(bookRepository).applyRatingDelta(3L, 2, 9);
+        assertThat(Files.exists(logDir.resolve("ratings-000000000007.log"))).isFalse();
+    }
+
+    @Test
+    void shouldSkipEntriesAlreadyAppliedBeforeTheCrash() throws IOException {
+        insertsAreNew();
+        Files.writeString(logDir.resolve("ratings-000000000007.log"), "3,,5\n3,,4\n", StandardCharsets.US_ASCII);
+        RatingLogProgress progress = new RatingLogProgress();
+        progress.setSegment(7L);
+        progress.setApplied(1);
+        when(progressRepository.findById(7L)).thenReturn(Optional.of(progress));
+
+        writeBehindLog = newLog();
+        writeBehindLog.drain();
+
+        // La primera valoración anónima ya se había insertado: no se vuelve a contar
+        verify(ratingRepository, times(1)).upsert(any(), anyLong(), anyInt());
+        verify(ratingRepository).upsert(null, 3L, 4);
+        verify(bookRepository).applyRatingDelta(3L, 1, 4);
+        verify(progressRepository).save(argThat(p -> p.getSegment() == 7L && p.getApplied() == 2));
+        verify(progressRepository).deleteById(7L);
+        assertThat(Files.exists(logDir.resolve("ratings-000000000007.log"))).isFalse();
+    }
+
+    @Test
+    void shouldDropRatingsOfSoftDeletedBookLikeDirectMode() throws IOException {
+        insertsAreNew();
+        when(bookRepository.applyRatingDelta(eq(2L), anyLong(), anyLong())).thenReturn(0);
+        writeBehindLog = newLog();
+        writeBehindLog.append(1L, 10L, 5);
+        writeBehindLog.append(2L, 10L, 4);
+
+        writeBehindLog.drain();
+
+        // El lote se deshace y se reintenta fila a fila: solo se descarta la del libro borrado
+        assertThat(writeBehindLog.pending()).isZero();
+        verify(transactionTemplate, times(3)).executeWithoutResult(any());
+        verify(bookRepository, atLeastOnce()).applyRatingDelta(1L, 1, 5);
+        verify(eventPublisher).publishEvent(new RatingChangedEvent(1L, 10L, null, 5));
+        verify(eventPublisher, never()).publishEvent(new RatingChangedEvent(2L, 10L, null, 4));
+    }
+
+    @Test
+    void shouldKeepSegmentWhenDatabaseIsDown() throws IOException {
+        when(ratingRepository.upsert(any(), anyLong(), anyInt()))
+                .thenThrow(new DataAccessResourceFailureException("sin conexión"));
+        writeBehindLog = newLog();
+        writeBehindLog.append(1L, 10L, 5);
+
+        long drained = writeBehindLog.drain();
+
+        assertThat(drained).isZero();
+        assertThat(writeBehindLog.pending()).isEqualTo(1);
+        assertThat(segmentsOnDisk()).hasSize(2); // el sellado pendiente y el nuevo activo
+        verify(bookRepository, never()).applyRatingDelta(anyLong(), anyLong(), anyLong());
+    }
+
+    private void insertsAreNew() {
+        AtomicLong ids = new AtomicLong();
+        when(ratingRepository.upsert(any(), anyLong(), anyInt()))
+                .thenAnswer(inv -> new RatingRepository.Upserted(ids.incrementAndGet(), null));
+    }
+
+    private RatingWriteBehindLog newLog() throws IOException {
+        return new RatingWriteBehindLog(ratingRepository, bookRepository, progressRepository, transactionTemplate, eventPublisher,
+                new SimpleMeterRegistry(), logDir, 500, 200, false);
+    }
+
+    private List<Path> segmentsOnDisk() throws IOException {
+        try (var files = Files.list(logDir)) {
+            return files.toList();
+        }
+    }
+}
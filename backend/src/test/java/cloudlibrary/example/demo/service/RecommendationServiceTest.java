@@ -0,0 +1,124 @@
+package cloudlibrary.example.demo.service;
+
+import cloudlibrary.example.demo.dto.BookSummary;
+import cloudlibrary.example.demo.dto.RatingRef;
+import cloudlibrary.example.demo.dto.RecommendedBook;
+import cloudlibrary.example.demo.dto.Recommendations;
+import cloudlibrary.example.demo.event.RatingChangedEvent;
+import cloudlibrary.example.demo.exception.ResourceNotFoundException;
+import cloudlibrary.example.demo.repository.BookRepository;
+import cloudlibrary.example.demo.repository.RatingRepository;
+import cloudlibrary.example.demo.repository.RatingRepositoryCustom;
+import cloudlibrary.example.demo.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.Collection;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class RecommendationServiceTest {
+
+    @Mock
+    private RatingRepository ratingRepository;
+
+    @Mock
+    private BookRepository bookRepository;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private RecommendationService recommendationService;
+
+    @BeforeEach
+    void setUp() {
+        recommendationService = new RecommendationService(ratingRepository, bookRepository, userRepository,
+                transactionManager, meterRegistry, 50, 0f, 2000);
+        lenient().when(bookRepository.findSummariesByIds(anyCollection())).thenAnswer(inv -> inv.<Collection<Long>>getArgument(0)
+                .stream().map(id -> new BookSummary(id, "Libro " + id, "Autor", null, null)).toList());
+    }
+
+    @Test
+    void shouldRecommendFromModelAndPickUpNewRatings() {
+        // Los libros 1 y 2 gustan a los mismos lectores; el 4 solo lo conoce el lector 12
+        doAnswer(inv -> {
+            RatingRepositoryCustom.RatingVisitor visitor = inv.getArgument(0);
+            visitor.visit(10, 1, 5);
+            visitor.visit(10, 2, 5);
+            visitor.visit(10, 3, 1);
+            visitor.visit(11, 1, 4);
+            visitor.visit(11, 2, 5);
+            visitor.visit(11, 3, 2);
+            visitor.visit(12, 3, 5);
+            visitor.visit(12, 4, 1);
+            return null;
+        }).when(ratingRepository).forEachUserRating(any());
+        when(userRepository.existsById(20L)).thenReturn(true);
+        when(ratingRepository.findRefsByUserId(20L)).thenReturn(List.of(new RatingRef(1L, 20L, 5), new RatingRef(3L, 20L, 1)));
+
+        recommendationService.rebuild();
+        Recommendations before = recommendationService.recommend(20L, 5);
+
+        assertThat(before.modelBuiltAt()).isNotNull();
+        assertThat(before.books()).extracting(RecommendedBook::id).containsExactly(2L);
+
+        // El lector 12 pasa a valorar el 1 y el 4 como los del primer grupo: el 4 se parece ya al 1
+        recommendationService.onRatingChanged(RatingChangedEvent.created(1L, 12L, 5));
+        recommendationService.onRatingChanged(new RatingChangedEvent(4L, 12L, 1, 5));
+        recommendationService.onRatingChanged(new RatingChangedEvent(3L, 12L, 5, 1));
+        recommendationService.applyPendingChanges();
+
+        assertThat(recommendationService.recommend(20L, 5).books()).extracting(RecommendedBook::id).contains(2L, 4L);
+    }
+
+    @Test
+    void shouldReturnEmptyRecommendationsBeforeModelIsBuilt() {
+        when(userRepository.existsById(20L)).thenReturn(true);
+
+        Recommendations recommendations = recommendationService.recommend(20L, null);
+
+        assertThat(recommendations.modelBuiltAt()).isNull();
+        assertThat(recommendations.books()).isEmpty();
+    }
+
+    @Test
+    void shouldDropPendingChangesWhileThereIsNoModel() {
+        doThrow(new DataAccessResourceFailureException("sin conexión")).when(ratingRepository).forEachUserRating(any());
+        recommendationService.scheduledRebuild();
+
+        recommendationService.onRatingChanged(RatingChangedEvent.created(1L, 12L, 5));
+        recommendationService.onRatingChanged(RatingChangedEvent.created(2L, 12L, 4));
+        assertThat(meterRegistry.get("recommendations.pending").gauge().value()).isEqualTo(2.0);
+
+        recommendationService.applyPendingChanges();
+
+        assertThat(meterRegistry.get("recommendations.pending").gauge().value()).isZero();
+    }
+
+    @Test
+    void shouldRejectUnknownUser() {
+        when(userRepository.existsById(99L)).thenReturn(false);
+
+        assertThatThrownBy(() -> recommendationService.recommend(99L, 10))
+                .isInstanceOf(ResourceNotFoundException.class);
+    }
+}
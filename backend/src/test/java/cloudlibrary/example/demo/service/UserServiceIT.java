@@ -1,7 +1,19 @@
 package cloudlibrary.example.demo.service;
 
+import cloudlibrary.example.demo.dto.CommentItem;
+import cloudlibrary.example.demo.dto.CommentRequest;
+import cloudlibrary.example.demo.dto.CommentView;
+import cloudlibrary.example.demo.dto.PostFeedItem;
+import cloudlibrary.example.demo.dto.PostRequest;
+import cloudlibrary.example.demo.dto.PostView;
+import cloudlibrary.example.demo.dto.RatingRequest;
+import cloudlibrary.example.demo.dto.RatingStats;
+import cloudlibrary.example.demo.exception.ResourceNotFoundException;
+import cloudlibrary.example.demo.model.Book;
 import cloudlibrary.example.demo.model.User;
+import cloudlibrary.example.demo.repository.BookRepository;
 import cloudlibrary.example.demo.repository.UserRepository;
+import jakarta.persistence.EntityManager;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -10,8 +22,12 @@ import org.springframework.context.annotation.Import;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.testcontainers.containers.PostgreSQLContainer;
 import org.testcontainers.junit.jupiter.Testcontainers;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 @SpringBootTest
@@ -39,6 +55,21 @@ class UserServiceIT {
     @Autowired
     private PasswordEncoder passwordEncoder;
 
+    @Autowired
+    private PostService postService;
+
+    @Autowired
+    private CommentService commentService;
+
+    @Autowired
+    private RatingService ratingService;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
     @BeforeEach
     void setup() {
         userRepository.deleteAll();
@@ -107,4 +138,78 @@ class UserServiceIT {
 
         assertThat(exitoso).isTrue();
     }
-}
\ No newline at end of file
+
+    @Test
+    @Transactional
+    void shouldDeleteUserWithContentAndAdjustAggregates() {
+        User leaving = register("Se va");
+        User staying = register("Se queda");
+        Book book = new Book();
+        book.setTitle("Libro");
+        book = bookRepository.save(book);
+
+        ratingService.addRating(new RatingRequest(book.getId(), leaving.getId(), 4));
+        ratingService.addRating(new RatingRequest(book.getId(), staying.getId(), 2));
+
+        PostView ownPost = postService.addPost(new PostRequest("Suyo", "...", leaving.getId(), book.getId()));
+        commentService.addComment(new CommentRequest("Ajeno en su post", staying.getId(), ownPost.id(), null));
+
+        PostView otherPost = postService.addPost(new PostRequest("Ajeno", "...", staying.getId(), book.getId()));
+        CommentView kept = commentService.addComment(new CommentRequest("Se mantiene", staying.getId(), otherPost.id(), null));
+        CommentView reply = commentService.addReply(kept.id(), new CommentRequest("Suya", leaving.getId(), null, null));
+        commentService.addReply(reply.id(), new CommentRequest("Bajo la suya", staying.getId(), null, null));
+        commentService.addComment(new CommentRequest("Suya de primer nivel", leaving.getId(), otherPost.id(), null));
+
+        userService.deleteUser(leaving.getId());
+
+        assertThat(userRepository.existsById(leaving.getId())).isFalse();
+        assertThat(bookRepository.findRatingStats(book.getId())).contains(new RatingStats(1, 2));
+
+        List<PostFeedItem> posts = postService.getPostsByBook(book.getId(), null, null).items();
+        assertThat(posts).extracting(PostFeedItem::id).containsExactly(otherPost.id());
+        assertThat(posts.get(0).commentCount()).isEqualTo(1);
+        List<CommentItem> comments = commentService.getTopLevelComments(otherPost.id(), null, null).items();
+        assertThat(comments).extracting(CommentItem::id).containsExactly(kept.id());
+        assertThat(comments.get(0).replyCount()).isZero();
+    }
+
+    @Test
+    @Transactional
+    void shouldDeleteUserCommentsStillWithoutPath() {
+        User leaving = register("Se va");
+        User staying = register("Se queda");
+        Book book = new Book();
+        book.setTitle("Libro");
+        book = bookRepository.save(book);
+        PostView post = postService.addPost(new PostRequest("Ajeno", "...", staying.getId(), book.getId()));
+        CommentView own = commentService.addComment(new CommentRequest("Suya", leaving.getId(), post.id(), null));
+        commentService.addReply(own.id(), new CommentRequest("Bajo la suya", staying.getId(), null, null));
+        CommentView kept = commentService.addComment(new CommentRequest("Se mantiene", staying.getId(), post.id(), null));
+
+        // Como antes de CommentPathBackfillJob: sin ruta no se puede borrar por rango
+        entityManager.createNativeQuery("UPDATE comments SET path = NULL, depth = NULL").executeUpdate();
+        entityManager.flush();
+        entityManager.clear();
+
+        userService.deleteUser(leaving.getId());
+
+        assertThat(userRepository.existsById(leaving.getId())).isFalse();
+        List<CommentItem> comments = commentService.getTopLevelComments(post.id(), null, null).items();
+        assertThat(comments).extracting(CommentItem::id).containsExactly(kept.id());
+        assertThat(postService.getPostsByBook(book.getId(), null, null).items().get(0).commentCount()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldRejectDeletingMissingUser() {
+        assertThatThrownBy(() -> userService.deleteUser(9999L))
+                .isInstanceOf(ResourceNotFoundException.class);
+    }
+
+    private User register(String username) {
+        User user = new User();
+        user.setUsername(username);
+        user.setEmail(username.replace(' ', '.') + System.nanoTime() + "@example.com");
+        user.setPassword("123456");
+        return userService.registerUser(user);
+    }
+}